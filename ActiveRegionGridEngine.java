@@ -0,0 +1,269 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a change-tracked stepping engine. It keeps a running
+ * count of live neighbors for every cell, and a list of the cells that changed
+ * in the last generation. Only those cells and their neighbors can change in
+ * the next generation, so a step evaluates just that active set, and applies
+ * the cells that flip by adjusting the neighbor counts around each of them.
+ * Nothing is copied between buffers, so once a board has settled into still
+ * lifes and blinkers, the cost of a step scales with the number of cells still
+ * changing rather than with the area of the board.
+ *
+ * @see org.kmfahey.jgameoflife.GridEngine
+ */
+public class ActiveRegionGridEngine implements GridEngine {
+
+    /** This int constant is the initial capacity of the cell lists. */
+    private static final int INITIAL_LIST_CAPACITY = 1024;
+
+    /** This int is used to store the horizontal dimension of the cell
+        grid, in cells. */
+    private int cellGridHorizDim;
+
+    /** This int is used to store the vertical dimension of the cell grid,
+        in cells. */
+    private int cellGridVertDim;
+
+    /** This byte[] array stores the cells, 1 for live and 0 for dead, at index
+        (vertIndex * cellGridHorizDim + horizIndex). */
+    private byte[] cells;
+
+    /** This byte[] array stores the number of live neighbors of every cell,
+        at the same indexes as cells. */
+    private byte[] neighborCounts;
+
+    /** This int[] array stores, for every cell, the last generation in which
+        it was added to the active set, so that it's only added once. */
+    private int[] activeStamps;
+
+    /** This int is the stamp of the generation being computed. */
+    private int currentStamp;
+
+    /** This int[] array lists the cells that changed in the last generation,
+        or were set since; changedCount entries are in use. */
+    private int[] changedCells;
+    private int changedCount;
+
+    /** This int[] array lists the cells in the active set of the generation
+        being computed. */
+    private int[] activeCells;
+
+    /** This int[] array lists the cells that flip in the generation being
+        computed; it becomes changedCells once they've been applied. */
+    private int[] flippedCells;
+
+    /** This int is the size of the active set in the last generation. */
+    private int activeCellCount;
+
+    /** This LifeRule object is the rule the cells are stepped by. */
+    private LifeRule lifeRule;
+
+    /**
+     * This constructor initializes the ActiveRegionGridEngine object with the
+     * B3/S23 rule.
+     *
+     * @param horizDim The horizontal dimension of the cell grid, in cells.
+     * @param vertDim  The vertical dimension of the cell grid, in cells.
+     */
+    public ActiveRegionGridEngine(final int horizDim, final int vertDim) {
+        this(horizDim, vertDim, LifeRule.CONWAY);
+    }
+
+    /**
+     * This constructor initializes the ActiveRegionGridEngine object,
+     * allocating the cell and neighbor count arrays.
+     *
+     * @param horizDim    The horizontal dimension of the cell grid, in cells.
+     * @param vertDim     The vertical dimension of the cell grid, in cells.
+     * @param lifeRuleVal The rule to step the cells by.
+     * @throws IllegalArgumentException If the rule has B0, under which cells
+     *                                  outside the active set can change.
+     */
+    public ActiveRegionGridEngine(final int horizDim, final int vertDim, final LifeRule lifeRuleVal) {
+        if (lifeRuleVal.birthsFromEmpty()) {
+            throw new IllegalArgumentException("rule with B0 can't be change-tracked: " + lifeRuleVal);
+        }
+        lifeRule = lifeRuleVal;
+        cellGridHorizDim = horizDim;
+        cellGridVertDim = vertDim;
+        cells = new byte[horizDim * vertDim];
+        neighborCounts = new byte[horizDim * vertDim];
+        activeStamps = new int[horizDim * vertDim];
+        changedCells = new int[INITIAL_LIST_CAPACITY];
+        activeCells = new int[INITIAL_LIST_CAPACITY];
+        flippedCells = new int[INITIAL_LIST_CAPACITY];
+    }
+
+    /**
+     * This method is an accessor for the private activeCellCount variable:
+     * the number of cells that were evaluated in the last generation.
+     *
+     * @return The size of the active set in the last generation.
+     */
+    public int getActiveCellCount() {
+        return activeCellCount;
+    }
+
+    /**
+     * This method returns the number of cells that changed in the last
+     * generation, or have been set since.
+     *
+     * @return The number of changed cells.
+     */
+    public int getChangedCellCount() {
+        return changedCount;
+    }
+
+    /**
+     * This method returns an int[] array with room for at least one more
+     * entry, doubling it if it's full.
+     *
+     * @param cellList  The array.
+     * @param usedCount The number of entries in use.
+     * @return          The array, or a larger copy of it.
+     */
+    private static int[] ensureCapacity(final int[] cellList, final int usedCount) {
+        return (usedCount < cellList.length) ? cellList : Arrays.copyOf(cellList, cellList.length * 2);
+    }
+
+    /**
+     * This method computes the index of the cell at an offset from another,
+     * wrapping around the borders of the cell grid.
+     *
+     * @param cellIndex  The index of the cell.
+     * @param horizDelta The horizontal offset, from -1 to 1.
+     * @param vertDelta  The vertical offset, from -1 to 1.
+     * @return           The index of the offset cell.
+     */
+    private int offsetCellIndex(final int cellIndex, final int horizDelta, final int vertDelta) {
+        int horizIndex = cellIndex % cellGridHorizDim + horizDelta;
+        int vertIndex = cellIndex / cellGridHorizDim + vertDelta;
+        horizIndex = (horizIndex == -1) ? cellGridHorizDim - 1 : (horizIndex == cellGridHorizDim) ? 0 : horizIndex;
+        vertIndex = (vertIndex == -1) ? cellGridVertDim - 1 : (vertIndex == cellGridVertDim) ? 0 : vertIndex;
+        return vertIndex * cellGridHorizDim + horizIndex;
+    }
+
+    /**
+     * This method inverts a cell and adjusts the neighbor counts of its eight
+     * neighbors to match.
+     *
+     * @param cellIndex The index of the cell.
+     */
+    private void flipCell(final int cellIndex) {
+        cells[cellIndex] ^= 1;
+        int countDelta = (cells[cellIndex] == 1) ? 1 : -1;
+        for (int vertDelta = -1; vertDelta <= 1; vertDelta++) {
+            for (int horizDelta = -1; horizDelta <= 1; horizDelta++) {
+                if (horizDelta != 0 || vertDelta != 0) {
+                    neighborCounts[offsetCellIndex(cellIndex, horizDelta, vertDelta)] += countDelta;
+                }
+            }
+        }
+    }
+
+    /**
+     * This method is an accessor for the private cellGridHorizDim variable.
+     *
+     * @return The horizontal dimension of the cell grid, in cells.
+     */
+    public int getHorizDim() {
+        return cellGridHorizDim;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridVertDim variable.
+     *
+     * @return The vertical dimension of the cell grid, in cells.
+     */
+    public int getVertDim() {
+        return cellGridVertDim;
+    }
+
+    /**
+     * This method returns the value of a single cell.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    public int getCell(final int horizIndex, final int vertIndex) {
+        return cells[vertIndex * cellGridHorizDim + horizIndex];
+    }
+
+    /**
+     * This method sets the value of a single cell. If the value changes, the
+     * cell is flipped and added to the list of changed cells, so that it and
+     * its neighbors are evaluated in the next step.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    public void setCell(final int horizIndex, final int vertIndex, final int cellValue) {
+        int cellIndex = vertIndex * cellGridHorizDim + horizIndex;
+        if (cells[cellIndex] != cellValue) {
+            flipCell(cellIndex);
+            changedCells = ensureCapacity(changedCells, changedCount);
+            changedCells[changedCount++] = cellIndex;
+        }
+    }
+
+    /**
+     * This method sets every cell to 0 and empties the list of changed cells.
+     */
+    public void clearCells() {
+        Arrays.fill(cells, (byte) 0);
+        Arrays.fill(neighborCounts, (byte) 0);
+        changedCount = 0;
+        activeCellCount = 0;
+    }
+
+    /**
+     * This method executes a single step of the algorithm. The active set is
+     * gathered from the changed cells and their neighbors, each cell in it is
+     * evaluated against its neighbor count, and then the cells that flip are
+     * applied and become the changed cells of the next step.
+     */
+    public void stepGeneration() {
+        int activeCount = 0;
+        int flippedCount = 0;
+
+        currentStamp++;
+        for (int changedIndex = 0; changedIndex < changedCount; changedIndex++) {
+            for (int vertDelta = -1; vertDelta <= 1; vertDelta++) {
+                for (int horizDelta = -1; horizDelta <= 1; horizDelta++) {
+                    int cellIndex = offsetCellIndex(changedCells[changedIndex], horizDelta, vertDelta);
+                    if (activeStamps[cellIndex] != currentStamp) {
+                        activeStamps[cellIndex] = currentStamp;
+                        activeCells = ensureCapacity(activeCells, activeCount);
+                        activeCells[activeCount++] = cellIndex;
+                    }
+                }
+            }
+        }
+
+        /* Every cell in the active set is evaluated against the neighbor
+           counts of the current generation before any of them is flipped. */
+        for (int activeIndex = 0; activeIndex < activeCount; activeIndex++) {
+            int cellIndex = activeCells[activeIndex];
+            int nextValue = lifeRule.nextCellValue(cells[cellIndex], neighborCounts[cellIndex]);
+            if (nextValue != cells[cellIndex]) {
+                flippedCells = ensureCapacity(flippedCells, flippedCount);
+                flippedCells[flippedCount++] = cellIndex;
+            }
+        }
+
+        for (int flippedIndex = 0; flippedIndex < flippedCount; flippedIndex++) {
+            flipCell(flippedCells[flippedIndex]);
+        }
+
+        int[] swapCells = changedCells;
+        changedCells = flippedCells;
+        flippedCells = swapCells;
+        changedCount = flippedCount;
+        activeCellCount = activeCount;
+    }
+}
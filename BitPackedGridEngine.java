@@ -0,0 +1,466 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a stepping engine that stores 64 cells per long and
+ * applies its LifeRule to a whole word of cells at once. Each row of the
+ * cell grid is stored as a long[] array; the cell at horizIndex is kept in bit
+ * (horizIndex + 1) of the row, so that bit 0 and bit (horizDim + 1) are free
+ * to hold halo copies of the cells across the wrap-around border. The neighbor
+ * sums of 64 cells are computed in parallel by a tree of bitwise half and full
+ * adders, which produces the 4 bits of each cell's neighbor count in 4 longs,
+ * and LifeRule.nextWord() turns those into the next generation.
+ * <p>
+ * The static stepRowWords() method works on any three rows laid out this way
+ * and is also used by the threaded CellGridSection when it's run bit-packed.
+ * The static combineRowWords() method does the same work from rows that have
+ * been shifted into line ahead of time, and is the scalar WordRowKernel.
+ *
+ * @see org.kmfahey.jgameoflife.GridEngine
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridSection
+ */
+public class BitPackedGridEngine implements GridEngine {
+
+    /** This WordRowKernel constant is the scalar implementation of the row
+        kernel, and the fallback used when no vectorized kernel is available. */
+    public static final WordRowKernel SCALAR_ROW_KERNEL = BitPackedGridEngine::combineRowWords;
+
+    /** This int is used to store the horizontal dimension of the cell
+        grid, in cells. */
+    protected int cellGridHorizDim;
+
+    /** This int is used to store the vertical dimension of the cell grid,
+        in cells. */
+    protected int cellGridVertDim;
+
+    /** This int is the number of longs used to store a single row of the cell
+        grid, including its two halo bits. */
+    protected int wordsPerRow;
+
+    /** This long[][] stores the rows of the current generation of the cellular
+        automata, indexed [vertIndex][wordIndex]. */
+    protected long[][] displayRows;
+
+    /** This long[][] stores the rows of the next generation of the cellular
+        automata while it's being calculated. It's swapped with displayRows at
+        the end of every step instead of being copied. */
+    protected long[][] updateRows;
+
+    /** This LifeRule object is the rule the cells are stepped by. */
+    protected LifeRule lifeRule;
+
+    /**
+     * This constructor initializes the BitPackedGridEngine object with the
+     * B3/S23 rule, allocating both sets of rows.
+     *
+     * @param horizDim The horizontal dimension of the cell grid, in cells.
+     * @param vertDim  The vertical dimension of the cell grid, in cells.
+     */
+    public BitPackedGridEngine(final int horizDim, final int vertDim) {
+        this(horizDim, vertDim, LifeRule.CONWAY);
+    }
+
+    /**
+     * This constructor initializes the BitPackedGridEngine object with the
+     * given rule, allocating both sets of rows.
+     *
+     * @param horizDim    The horizontal dimension of the cell grid, in cells.
+     * @param vertDim     The vertical dimension of the cell grid, in cells.
+     * @param lifeRuleVal The rule to step the cells by.
+     */
+    public BitPackedGridEngine(final int horizDim, final int vertDim, final LifeRule lifeRuleVal) {
+        lifeRule = lifeRuleVal;
+        cellGridHorizDim = horizDim;
+        cellGridVertDim = vertDim;
+        wordsPerRow = wordsForCells(horizDim);
+        displayRows = new long[cellGridVertDim][wordsPerRow];
+        updateRows = new long[cellGridVertDim][wordsPerRow];
+    }
+
+    /**
+     * This method computes how many longs are needed to store a row of the
+     * given number of cells plus the two halo bits that flank it.
+     *
+     * @param cellCount The number of cells in the row.
+     * @return          The number of longs needed to store the row.
+     */
+    public static int wordsForCells(final int cellCount) {
+        return (cellCount + 2 + 63) >>> 6;
+    }
+
+    /**
+     * This method reads the bit at a given bit position in a row.
+     *
+     * @param row      The row to read.
+     * @param bitIndex The bit position; a cell's position is horizIndex + 1.
+     * @return         1 if the bit is set, or 0 if it isn't.
+     */
+    public static int getRowBit(final long[] row, final int bitIndex) {
+        return (int) (row[bitIndex >>> 6] >>> (bitIndex & 63)) & 1;
+    }
+
+    /**
+     * This method sets or clears the bit at a given bit position in a row.
+     *
+     * @param row      The row to alter.
+     * @param bitIndex The bit position; a cell's position is horizIndex + 1.
+     * @param bitValue 1 to set the bit, or 0 to clear it.
+     */
+    public static void setRowBit(final long[] row, final int bitIndex, final int bitValue) {
+        if (bitValue == 0) {
+            row[bitIndex >>> 6] &= ~(1L << (bitIndex & 63));
+        } else {
+            row[bitIndex >>> 6] |= 1L << (bitIndex & 63);
+        }
+    }
+
+    /**
+     * This method computes the next generation of one row from the current
+     * generation of that row and the rows to its north and south. Every row
+     * must be laid out with its cells in bits 1 through cellCount and its halo
+     * cells in bit 0 and bit cellCount + 1; the halo bits of nextRow are left
+     * holding garbage, and the caller is expected to clear or refresh them.
+     *
+     * @param lifeRule  The rule to step the cells by.
+     * @param northRow  The row to the north of centerRow.
+     * @param centerRow The row whose next generation is computed.
+     * @param southRow  The row to the south of centerRow.
+     * @param nextRow   The row that the next generation is written into.
+     * @param wordCount The number of longs in each row.
+     */
+    public static void stepRowWords(final LifeRule lifeRule, final long[] northRow, final long[] centerRow,
+                                    final long[] southRow, final long[] nextRow, final int wordCount) {
+        final int lastWordIndex = wordCount - 1;
+
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+            long northWord = northRow[wordIndex];
+            long centerWord = centerRow[wordIndex];
+            long southWord = southRow[wordIndex];
+
+            /* The west neighbor of the cell in bit i is the cell in bit i - 1,
+               so shifting a word left by 1 lines each cell up with its west
+               neighbor; bit 0 is carried in from the top bit of the previous
+               word. The east neighbors are lined up the same way by shifting
+               right and carrying in the bottom bit of the next word. */
+            long northCarryIn = (wordIndex > 0) ? northRow[wordIndex - 1] >>> 63 : 0L;
+            long centerCarryIn = (wordIndex > 0) ? centerRow[wordIndex - 1] >>> 63 : 0L;
+            long southCarryIn = (wordIndex > 0) ? southRow[wordIndex - 1] >>> 63 : 0L;
+            long northCarryOut = (wordIndex < lastWordIndex) ? northRow[wordIndex + 1] << 63 : 0L;
+            long centerCarryOut = (wordIndex < lastWordIndex) ? centerRow[wordIndex + 1] << 63 : 0L;
+            long southCarryOut = (wordIndex < lastWordIndex) ? southRow[wordIndex + 1] << 63 : 0L;
+
+            long northWestWord = (northWord << 1) | northCarryIn;
+            long northEastWord = (northWord >>> 1) | northCarryOut;
+            long westWord = (centerWord << 1) | centerCarryIn;
+            long eastWord = (centerWord >>> 1) | centerCarryOut;
+            long southWestWord = (southWord << 1) | southCarryIn;
+            long southEastWord = (southWord >>> 1) | southCarryOut;
+
+            nextRow[wordIndex] = nextWord(lifeRule, northWestWord, northWord, northEastWord, westWord,
+                                          centerWord, eastWord, southWestWord, southWord, southEastWord);
+        }
+    }
+
+    /**
+     * This method computes the next generation of the 64 cells in one word
+     * from the eight words that line each of those cells up with one of its
+     * neighbors. The neighbor sums of all 64 cells are computed in parallel by
+     * a tree of bitwise half and full adders, which leaves the 4 bits of each
+     * cell's neighbor count in 4 longs, and the rule is then applied to those
+     * bits by LifeRule.nextWord().
+     *
+     * @param lifeRule      The rule to step the cells by.
+     * @param northWestWord The word of northwest neighbors.
+     * @param northWord     The word of north neighbors.
+     * @param northEastWord The word of northeast neighbors.
+     * @param westWord      The word of west neighbors.
+     * @param centerWord    The word of cells being stepped.
+     * @param eastWord      The word of east neighbors.
+     * @param southWestWord The word of southwest neighbors.
+     * @param southWord     The word of south neighbors.
+     * @param southEastWord The word of southeast neighbors.
+     * @return              The next generation of the word of cells.
+     */
+    public static long nextWord(final LifeRule lifeRule,
+                                final long northWestWord, final long northWord, final long northEastWord,
+                                final long westWord, final long centerWord, final long eastWord,
+                                final long southWestWord, final long southWord, final long southEastWord) {
+        /* The eight neighbor words are summed pairwise with half adders
+           into four 2-bit sums... */
+        long pairSumA0 = northWestWord ^ northWord;
+        long pairSumA1 = northWestWord & northWord;
+        long pairSumB0 = northEastWord ^ westWord;
+        long pairSumB1 = northEastWord & westWord;
+        long pairSumC0 = eastWord ^ southWestWord;
+        long pairSumC1 = eastWord & southWestWord;
+        long pairSumD0 = southWord ^ southEastWord;
+        long pairSumD1 = southWord & southEastWord;
+
+        /* ...those are summed pairwise into two 3-bit sums... */
+        long carry = pairSumA0 & pairSumB0;
+        long quadSumA0 = pairSumA0 ^ pairSumB0;
+        long quadSumA1 = pairSumA1 ^ pairSumB1 ^ carry;
+        long quadSumA2 = (pairSumA1 & pairSumB1) | (carry & (pairSumA1 ^ pairSumB1));
+        carry = pairSumC0 & pairSumD0;
+        long quadSumB0 = pairSumC0 ^ pairSumD0;
+        long quadSumB1 = pairSumC1 ^ pairSumD1 ^ carry;
+        long quadSumB2 = (pairSumC1 & pairSumD1) | (carry & (pairSumC1 ^ pairSumD1));
+
+        /* ...and those are summed into the 4-bit neighbor count. */
+        carry = quadSumA0 & quadSumB0;
+        long countBit0 = quadSumA0 ^ quadSumB0;
+        long countBit1 = quadSumA1 ^ quadSumB1 ^ carry;
+        carry = (quadSumA1 & quadSumB1) | (carry & (quadSumA1 ^ quadSumB1));
+        long countBit2 = quadSumA2 ^ quadSumB2 ^ carry;
+        long countBit3 = (quadSumA2 & quadSumB2) | (carry & (quadSumA2 ^ quadSumB2));
+
+        return lifeRule.nextWord(centerWord, countBit0, countBit1, countBit2, countBit3);
+    }
+
+    /**
+     * This method lines every cell of a row up with its west neighbor, by
+     * shifting the whole row left by one bit into westRow.
+     *
+     * @param row       The row to shift.
+     * @param westRow   The row that the shifted bits are written into.
+     * @param wordCount The number of longs in each row.
+     */
+    public static void shiftRowWest(final long[] row, final long[] westRow, final int wordCount) {
+        long carryIn = 0L;
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+            long word = row[wordIndex];
+            westRow[wordIndex] = (word << 1) | carryIn;
+            carryIn = word >>> 63;
+        }
+    }
+
+    /**
+     * This method lines every cell of a row up with its east neighbor, by
+     * shifting the whole row right by one bit into eastRow.
+     *
+     * @param row       The row to shift.
+     * @param eastRow   The row that the shifted bits are written into.
+     * @param wordCount The number of longs in each row.
+     */
+    public static void shiftRowEast(final long[] row, final long[] eastRow, final int wordCount) {
+        long carryIn = 0L;
+        for (int wordIndex = wordCount - 1; wordIndex >= 0; wordIndex--) {
+            long word = row[wordIndex];
+            eastRow[wordIndex] = (word >>> 1) | carryIn;
+            carryIn = word << 63;
+        }
+    }
+
+    /**
+     * This method is the scalar implementation of WordRowKernel. It computes
+     * the next generation of a row one word at a time with nextWord(), from
+     * rows that have already been shifted into line by shiftRowWest() and
+     * shiftRowEast().
+     *
+     * @param lifeRule     The rule to step the cells by.
+     * @param northWestRow The north row, shifted west.
+     * @param northRow     The north row.
+     * @param northEastRow The north row, shifted east.
+     * @param westRow      The center row, shifted west.
+     * @param centerRow    The row being stepped.
+     * @param eastRow      The center row, shifted east.
+     * @param southWestRow The south row, shifted west.
+     * @param southRow     The south row.
+     * @param southEastRow The south row, shifted east.
+     * @param nextRow      The row that the next generation is written into.
+     * @param wordCount    The number of longs in each row.
+     * @see org.kmfahey.jgameoflife.WordRowKernel
+     */
+    public static void combineRowWords(final LifeRule lifeRule,
+                                       final long[] northWestRow, final long[] northRow, final long[] northEastRow,
+                                       final long[] westRow, final long[] centerRow, final long[] eastRow,
+                                       final long[] southWestRow, final long[] southRow, final long[] southEastRow,
+                                       final long[] nextRow, final int wordCount) {
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+            nextRow[wordIndex] = nextWord(lifeRule,
+                                          northWestRow[wordIndex], northRow[wordIndex], northEastRow[wordIndex],
+                                          westRow[wordIndex], centerRow[wordIndex], eastRow[wordIndex],
+                                          southWestRow[wordIndex], southRow[wordIndex], southEastRow[wordIndex]);
+        }
+    }
+
+    /**
+     * This method copies the cells on either side of the wrap-around border of
+     * a row into its halo bits, so that stepRowWords() sees the cell in the
+     * last column as the west neighbor of the first column and vice versa.
+     *
+     * @param row The row to refresh the halo bits of.
+     */
+    protected void refreshHaloBits(final long[] row) {
+        setRowBit(row, 0, getRowBit(row, cellGridHorizDim));
+        setRowBit(row, cellGridHorizDim + 1, getRowBit(row, 1));
+    }
+
+    /**
+     * This method clears the halo bits of a row, along with any unused bits
+     * past the east halo bit in its last word, so that only the bits holding
+     * cells remain set.
+     *
+     * @param row       The row to clear the halo bits of.
+     * @param cellCount The number of cells in the row.
+     */
+    public static void clearHaloBits(final long[] row, final int cellCount) {
+        int lastCellWordIndex = cellCount >>> 6;
+        row[0] &= ~1L;
+        /* Shifting an all-ones long right by (63 - bit position) leaves a mask
+           of every bit up to and including that position. */
+        row[lastCellWordIndex] &= -1L >>> (63 - (cellCount & 63));
+        for (int wordIndex = lastCellWordIndex + 1; wordIndex < row.length; wordIndex++) {
+            row[wordIndex] = 0L;
+        }
+    }
+
+    /**
+     * This method is an accessor for the lifeRule variable.
+     *
+     * @return The rule the cells are stepped by.
+     */
+    public LifeRule getLifeRule() {
+        return lifeRule;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridHorizDim variable.
+     *
+     * @return The horizontal dimension of the cell grid, in cells.
+     */
+    public int getHorizDim() {
+        return cellGridHorizDim;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridVertDim variable.
+     *
+     * @return The vertical dimension of the cell grid, in cells.
+     */
+    public int getVertDim() {
+        return cellGridVertDim;
+    }
+
+    /**
+     * This method returns the value of a single cell of the current generation.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    public int getCell(final int horizIndex, final int vertIndex) {
+        return getRowBit(displayRows[vertIndex], horizIndex + 1);
+    }
+
+    /**
+     * This method counts the live cells in a rectangle of the current
+     * generation a word at a time, masking off the bits outside the rectangle
+     * in its first and last words and counting the rest with
+     * Long.bitCount().
+     *
+     * @param originHoriz The horizontal coordinate of the rectangle's first
+     *                    cell.
+     * @param originVert  The vertical coordinate of the rectangle's first
+     *                    cell.
+     * @param regionHoriz The width of the rectangle, in cells.
+     * @param regionVert  The height of the rectangle, in cells.
+     * @return            The number of live cells in the rectangle.
+     */
+    public int countLiveCells(final int originHoriz, final int originVert, final int regionHoriz,
+                              final int regionVert) {
+        if (regionHoriz <= 0) {
+            return 0;
+        }
+        /* The rectangle covers bit positions firstBit to lastBit inclusive,
+           since a cell's bit position is its horizIndex + 1. */
+        int firstBit = originHoriz + 1;
+        int lastBit = originHoriz + regionHoriz;
+        int firstWord = firstBit >>> 6;
+        int lastWord = lastBit >>> 6;
+        long firstMask = -1L << (firstBit & 63);
+        long lastMask = -1L >>> (63 - (lastBit & 63));
+        int liveCells = 0;
+        for (int vertIndex = originVert; vertIndex < originVert + regionVert; vertIndex++) {
+            long[] row = displayRows[vertIndex];
+            if (firstWord == lastWord) {
+                liveCells += Long.bitCount(row[firstWord] & firstMask & lastMask);
+                continue;
+            }
+            liveCells += Long.bitCount(row[firstWord] & firstMask);
+            for (int wordIndex = firstWord + 1; wordIndex < lastWord; wordIndex++) {
+                liveCells += Long.bitCount(row[wordIndex]);
+            }
+            liveCells += Long.bitCount(row[lastWord] & lastMask);
+        }
+        return liveCells;
+    }
+
+    /**
+     * This method copies the current generation into an array of longs, 64
+     * cells to a long, a row at a time. Since the cell at horizIndex is bit
+     * (horizIndex + 1) of the row, each long copied is a word of the row
+     * shifted down a bit, with the low bit of the word after it carried in,
+     * and the halo bit past the last cell masked off.
+     *
+     * @param cellWords The array to fill, of at least vertDim * ceil(horizDim
+     *                  / 64) longs.
+     */
+    public void copyCellWords(final long[] cellWords) {
+        int rowWords = (cellGridHorizDim + 63) >>> 6;
+        long lastWordMask = ((cellGridHorizDim & 63) == 0) ? -1L : (1L << (cellGridHorizDim & 63)) - 1L;
+        for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
+            long[] row = displayRows[vertIndex];
+            int rowOffset = vertIndex * rowWords;
+            for (int wordIndex = 0; wordIndex < rowWords; wordIndex++) {
+                long cellWord = row[wordIndex] >>> 1;
+                if (wordIndex + 1 < wordsPerRow) {
+                    cellWord |= row[wordIndex + 1] << 63;
+                }
+                cellWords[rowOffset + wordIndex] = cellWord;
+            }
+            cellWords[rowOffset + rowWords - 1] &= lastWordMask;
+        }
+    }
+
+    /**
+     * This method sets the value of a single cell of the current generation.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    public void setCell(final int horizIndex, final int vertIndex, final int cellValue) {
+        setRowBit(displayRows[vertIndex], horizIndex + 1, cellValue);
+    }
+
+    /**
+     * This method sets every cell in the current generation to 0.
+     */
+    public void clearCells() {
+        for (long[] row : displayRows) {
+            Arrays.fill(row, 0L);
+        }
+    }
+
+    /**
+     * This method executes a single step of the algorithm. The halo bits of
+     * every row are refreshed, each row is stepped against its wrapped-around
+     * north and south neighbors, and the two sets of rows are swapped.
+     */
+    public void stepGeneration() {
+        for (long[] row : displayRows) {
+            refreshHaloBits(row);
+        }
+        for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
+            long[] northRow = displayRows[(vertIndex == 0) ? cellGridVertDim - 1 : vertIndex - 1];
+            long[] southRow = displayRows[(vertIndex == cellGridVertDim - 1) ? 0 : vertIndex + 1];
+            stepRowWords(lifeRule, northRow, displayRows[vertIndex], southRow, updateRows[vertIndex], wordsPerRow);
+            clearHaloBits(updateRows[vertIndex], cellGridHorizDim);
+        }
+        long[][] swapRows = displayRows;
+        displayRows = updateRows;
+        updateRows = swapRows;
+    }
+}
@@ -2,47 +2,116 @@ package org.kmfahey.jgameoflife;
 
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.nio.file.Path;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JComponent;
-import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 
 /**
  * This class implements the cells grid of Conway's Game of Life as a subclass
- * of JComponent. It implements the ActionListener interface so a Timer object
- * can prompt individual algorithm steps on a regular period so as to effect
- * the Game of Life animation. It also implements the MouseListener interface
- * so that it can detect and respond to mouse clicks in the component area by
- * inverting the value of the cell clicked on.
+ * of JComponent. It implements the SimulationSource interface so that a
+ * SimulationPipeline object can step its stepping engine on a simulation
+ * thread, at a regular period so as to effect the Game of Life animation, and
+ * hand each generation back as a GenerationFrame to be painted; the Swing
+ * event dispatch thread only ever paints the newest frame, and never steps
+ * the engine. It also implements the MouseListener interface so that it can
+ * detect and respond to mouse clicks in the component area by inverting the
+ * value of the cell clicked on.
+ * <p>
+ * The cell grid needn't be the size of the component. The component shows it
+ * through a Viewport object, which can be panned by dragging with the mouse
+ * and zoomed with the mouse wheel, from 32 pixels per cell down to 64 cells
+ * per pixel; only the cells in view are captured and drawn. So that it can,
+ * it also implements the MouseMotionListener and MouseWheelListener
+ * interfaces.
+ * <p>
+ * The frames can also be recorded to disk, as PNG files, an animated GIF or
+ * raw bit-packed frames, by a FrameRecorder attached to the pipeline with
+ * startRecording(); it encodes them on a thread of its own.
  *
  * @see org.kmfahey.jgameoflife.GameOfLife
+ * @see org.kmfahey.jgameoflife.GridEngine
+ * @see org.kmfahey.jgameoflife.SimulationPipeline
  * @see javax.swing.JComponent
- * @see javax.swing.Timer
+ * @see org.kmfahey.jgameoflife.Viewport
+ * @see org.kmfahey.jgameoflife.FrameRecorder
  * @see java.awt.event.MouseListener
- * @see java.awt.event.ActionListener
  */
-public class CellGrid extends JComponent implements ActionListener, MouseListener {
+public class CellGrid extends JComponent implements SimulationSource, MouseListener, MouseMotionListener,
+                                                    MouseWheelListener {
 
-    /** This constant int holds the length of time in milliseconds that the
-        Timer object is instructed to wait between "repaint" events. */
-    private final int stepLengthMillis = 333;
+    /** This String constant is the name of the original stepping engine,
+        which stores one cell per int. */
+    public static final String ENGINE_INT_ARRAY = "intarray";
 
-    /** This constant Color object holds the default color of the component, as
-        used by paintComponent when it renders the component. */
+    /** This String constant is the name of the stepping engine that stores 64
+        cells per long and steps them with bitwise logic. */
+    public static final String ENGINE_BIT_PACKED = "bitpacked";
+
+    /** This String constant is the name of the bit-packed stepping engine that
+        steps a vector of words at a time with jdk.incubator.vector. */
+    public static final String ENGINE_VECTOR = "vector";
+
+    /** This String constant is the name of the HashLife stepping engine, which
+        can advance 2^k generations per step. */
+    public static final String ENGINE_HASHLIFE = "hashlife";
+
+    /** This String constant is the name of the change-tracked stepping engine,
+        which only evaluates the cells around the ones that last changed. */
+    public static final String ENGINE_ACTIVE_REGION = "active";
+
+    /** This String constant is the name of the stepping engine whose universe
+        is an unbounded plane stored as a sparse map of bit-packed chunks. */
+    public static final String ENGINE_CHUNKED_PLANE = "chunked";
+
+    /** This String constant is the name of the stepping engine that steps
+        2 x 2 blocks of cells by looking up their 4 x 4 neighborhoods. */
+    public static final String ENGINE_LOOKUP_TABLE = "lut";
+
+    /** This String constant is the name of the stepping engine for
+        Generations rules, which stores one state per byte. */
+    public static final String ENGINE_GENERATIONS = "generations";
+
+    /** This String constant is the name of the stepping engine for Larger
+        than Life rules, which counts neighborhoods from a summed-area table. */
+    public static final String ENGINE_LARGER_THAN_LIFE = "ltl";
+
+    /** This constant double holds the number of generations per second the
+        simulation clock steps at until it's told otherwise. */
+    private final double defaultGenerationsPerSecond = 3D;
+
+    /** This constant Color object holds the color of a dead cell, and of the
+        margin around the cell grid, as the CellRasterizer draws them. */
     private final Color fieldColor = Color.WHITE;
 
-    /** This constant int holds the default height in pixels of a single
-        cell. */
-    private final int cellWidth = 10;
+    /** This constant int holds the default width and height in pixels of a
+        single cell: the scale the view starts at, and the one a cell grid
+        sized to the component is sized by. */
+    private final int defaultCellSize = 10;
+
+    /** This constant int holds the most cells seeded at once. Zoomed out on
+        a large cell grid, billions of cells can be in view, so only a region
+        of at most this many cells in the middle of the view is seeded; it's
+        about a full screen's worth at a pixel per cell. */
+    private final int seedCellLimit = 1 << 22;
 
-    /** This constant int holds the default width in pixels of a single
-        cell. */
-    private final int cellHeight = 10;
+    /** This constant int holds about how many cells are seeded in each edit,
+        so that the simulation thread is never held up for long. */
+    private final int seedBandCells = 1 << 18;
+
+    /** This AtomicInteger object is advanced by every clear, so that a seed
+        still in progress stops rather than go on seeding the cleared cell
+        grid. */
+    private final AtomicInteger seedingEpoch = new AtomicInteger();
 
     /** This int is used to store the width of the component, in pixels. */
     private int canvasWidth;
@@ -58,126 +127,581 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
         in cells. */
     private int cellGridVertDim;
 
-    /** This int[][] is used to store the active cellular automata grid that is
-        displayed when the component is rendered. */
-    private int[][] displayGrid;
+    /** This GridEngine object stores the cell grid and computes the successive
+        generations of the cellular automata. */
+    private GridEngine gridEngine;
+
+    /** This Viewport object maps the cell grid onto the component. It's only
+        used on the simulation thread of simulationPipeline. */
+    private Viewport viewport;
+
+    /** This int holds the X coordinate of the pointer when it was last
+        pressed or dragged, for mouseDragged() to pan the view by. It's only
+        used on the event dispatch thread. */
+    private int dragPixelX;
 
-    /** This int[][] is used to store the next generation of the cellular
-        automata while it's being calculated. */
-    private int[][] updateGrid;
+    /** This int holds the Y coordinate of the pointer when it was last
+        pressed or dragged. */
+    private int dragPixelY;
+
+    /** This Color[] array holds the color of each cell state, as the
+        CellRasterizer draws them. */
+    private Color[] statePalette;
+
+    /** This CellRasterizer object draws the frames into an image for
+        paintComponent(). */
+    private CellRasterizer cellRasterizer;
+
+    /** This FrameRecorder object records the frames published, or is null
+        if they aren't being recorded. */
+    private volatile FrameRecorder frameRecorder;
+
+    /** This RingConsumer object hands the frames published to
+        frameRecorder, or is null if it records the whole cell grid. */
+    private RingConsumer recorderConsumer;
+
+    /** This AtomicBoolean object is true while a call to updateDisplay() is
+        queued on the event dispatch thread, so that a burst of frames queues
+        only one. */
+    private final AtomicBoolean displayUpdateQueued = new AtomicBoolean();
+
+    /** This Runnable object runs updateDisplay(). It's made once, rather than
+        for every frame. */
+    private final Runnable displayUpdater = this::updateDisplay;
 
     /** This boolean is used to track whether the automata animation is running or not. */
     private boolean automataRunning = false;
 
-    /** This Timer object is used to send regular "repaint" events to actionPerformed(). */
-    private Timer animationTimer;
+    /** This SimulationPipeline object steps gridEngine on a simulation thread
+        and hands its generations to paintComponent(). Every change to the
+        cell grid goes through it. */
+    private SimulationPipeline simulationPipeline;
 
     /**
-     * This constructor initializes the CellGrid object. It initializes the
-     * instance variables and calls clearCellGrid() to set every cell in the
-     * cell grid to 0.
+     * This constructor initializes the CellGrid object with the original
+     * int[][] stepping engine.
      *
      * @param cellGridDims A Dimension object that holds the width and height of
      *                     the component; the size of the cell grid is set from
      *                     these values.
      */
     public CellGrid(final Dimension cellGridDims) {
+        this(cellGridDims, ENGINE_INT_ARRAY);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object. It initializes the
+     * instance variables, instances the named stepping engine and calls
+     * clearCellGrid() to set every cell in the cell grid to 0.
+     *
+     * @param cellGridDims A Dimension object that holds the width and height of
+     *                     the component; the size of the cell grid is set from
+     *                     these values.
+     * @param engineName   The name of the stepping engine to use, one of
+     *                     ENGINE_INT_ARRAY, ENGINE_BIT_PACKED,
+     *                     ENGINE_VECTOR, ENGINE_HASHLIFE,
+     *                     ENGINE_ACTIVE_REGION, ENGINE_CHUNKED_PLANE,
+     *                     ENGINE_LOOKUP_TABLE, ENGINE_GENERATIONS or
+     *                     ENGINE_LARGER_THAN_LIFE.
+     * @throws IllegalArgumentException If the engine name isn't recognized.
+     */
+    public CellGrid(final Dimension cellGridDims, final String engineName) {
+        this(cellGridDims, engineName, (String) null);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with the named stepping
+     * engine running the given rule.
+     *
+     * @param cellGridDims A Dimension object that holds the width and height of
+     *                     the component; the size of the cell grid is set from
+     *                     these values.
+     * @param engineName   The name of the stepping engine to use; see the
+     *                     two-argument constructor.
+     * @param ruleString   The rulestring of the rule to step the cells by, or
+     *                     null for the engine's default rule; see
+     *                     buildGridEngine().
+     * @throws IllegalArgumentException If the engine name isn't recognized,
+     *                                  the rulestring can't be parsed, or the
+     *                                  engine can't run the rule.
+     */
+    public CellGrid(final Dimension cellGridDims, final String engineName, final String ruleString) {
+        this(cellGridDims, engineName, ruleString, null);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with a cell grid of
+     * the given size, which is independent of the size of the component; the
+     * component shows it through a Viewport object, starting at its top left
+     * corner at 10 pixels per cell.
+     *
+     * @param cellGridDims A Dimension object that holds the width and height of
+     *                     the component, in pixels.
+     * @param engineName   The name of the stepping engine to use; see the
+     *                     two-argument constructor.
+     * @param ruleString   The rulestring of the rule to step the cells by, or
+     *                     null for the engine's default rule.
+     * @param boardDims    A Dimension object that holds the width and height of
+     *                     the cell grid, in cells, or null to size the cell
+     *                     grid to fill the component at 10 pixels per cell.
+     * @throws IllegalArgumentException If the engine name isn't recognized,
+     *                                  the rulestring can't be parsed, the
+     *                                  engine can't run the rule, or the cell
+     *                                  grid has no cells.
+     */
+    public CellGrid(final Dimension cellGridDims, final String engineName, final String ruleString,
+                    final Dimension boardDims) {
         canvasWidth = (int) cellGridDims.getWidth();
         canvasHeight = (int) cellGridDims.getHeight();
-        cellGridHorizDim = canvasWidth / cellWidth;
-        cellGridVertDim = canvasHeight / cellHeight;
-        displayGrid = new int[cellGridHorizDim][cellGridVertDim];
-        updateGrid = new int[cellGridHorizDim][cellGridVertDim];
+        if (boardDims == null) {
+            cellGridHorizDim = canvasWidth / defaultCellSize;
+            cellGridVertDim = canvasHeight / defaultCellSize;
+        } else {
+            cellGridHorizDim = (int) boardDims.getWidth();
+            cellGridVertDim = (int) boardDims.getHeight();
+        }
+        viewport = new Viewport(cellGridHorizDim, cellGridVertDim, canvasWidth, canvasHeight, defaultCellSize);
+        gridEngine = buildGridEngine(engineName, cellGridHorizDim, cellGridVertDim, ruleString);
+        statePalette = new Color[] {fieldColor, Color.BLACK};
+        if (gridEngine instanceof MultiStateGridEngine) {
+            statePalette = buildStatePalette(((MultiStateGridEngine) gridEngine).getStateCount());
+        }
+        cellRasterizer = new CellRasterizer(canvasWidth, canvasHeight, statePalette, true);
+        simulationPipeline = new SimulationPipeline(this, new SimulationClock(defaultGenerationsPerSecond),
+                                                    this::queueDisplayUpdate);
 
         clearCellGrid();
     }
 
+    /**
+     * This method instances the stepping engine named by the argument, sized
+     * to the given cell grid dimensions. It's also used by EngineBenchmark.
+     *
+     * @param engineName The name of the stepping engine to use.
+     * @param horizDim   The horizontal dimension of the cell grid, in cells.
+     * @param vertDim    The vertical dimension of the cell grid, in cells.
+     * @return           A GridEngine object constructed to order.
+     * @throws IllegalArgumentException If the engine name isn't recognized.
+     */
+    static GridEngine buildGridEngine(final String engineName, final int horizDim, final int vertDim) {
+        return buildGridEngine(engineName, horizDim, vertDim, LifeRule.CONWAY);
+    }
+
+    /**
+     * This method instances the stepping engine named by the argument, sized
+     * to the given cell grid dimensions and running the rule the rulestring
+     * describes. The ltl engine takes a Larger than Life rulestring, and
+     * defaults to Bosco's Rule; every other engine takes a Life-like or
+     * Generations rulestring, and defaults to B3/S23.
+     *
+     * @param engineName The name of the stepping engine to use.
+     * @param horizDim   The horizontal dimension of the cell grid, in cells.
+     * @param vertDim    The vertical dimension of the cell grid, in cells.
+     * @param ruleString The rulestring, or null for the engine's default rule.
+     * @return           A GridEngine object constructed to order.
+     * @throws IllegalArgumentException If the engine name isn't recognized,
+     *                                  the rulestring can't be parsed, or the
+     *                                  engine can't run the rule.
+     */
+    static GridEngine buildGridEngine(final String engineName, final int horizDim, final int vertDim,
+                                      final String ruleString) {
+        if (ENGINE_LARGER_THAN_LIFE.equals(engineName)) {
+            return new LargerThanLifeGridEngine(horizDim, vertDim, (ruleString == null) ? LargerThanLifeRule.BOSCO
+                                                                   : LargerThanLifeRule.parse(ruleString));
+        }
+        return buildGridEngine(engineName, horizDim, vertDim,
+                               (ruleString == null) ? GenerationsRule.CONWAY : GenerationsRule.parse(ruleString));
+    }
+
+    /**
+     * This method instances the stepping engine named by the argument, sized
+     * to the given cell grid dimensions and running the given rule.
+     *
+     * @param engineName      The name of the stepping engine to use.
+     * @param horizDim        The horizontal dimension of the cell grid, in
+     *                        cells.
+     * @param vertDim         The vertical dimension of the cell grid, in
+     *                        cells.
+     * @param generationsRule The rule to step the cells by.
+     * @return           A GridEngine object constructed to order.
+     * @throws IllegalArgumentException If the engine name isn't recognized,
+     *                                  or the engine can't run the rule.
+     */
+    static GridEngine buildGridEngine(final String engineName, final int horizDim, final int vertDim,
+                                      final GenerationsRule generationsRule) {
+        if (ENGINE_GENERATIONS.equals(engineName)) {
+            return new GenerationsGridEngine(horizDim, vertDim, generationsRule);
+        } else if (generationsRule.getStateCount() > 2) {
+            throw new IllegalArgumentException("only the " + ENGINE_GENERATIONS + " engine can run a rule with more "
+                                               + "than 2 states: " + generationsRule);
+        }
+        return buildGridEngine(engineName, horizDim, vertDim, generationsRule.getLifeRule());
+    }
+
+    /**
+     * This method instances the stepping engine named by the argument, sized
+     * to the given cell grid dimensions and running the given Life-like rule.
+     *
+     * @param engineName The name of the stepping engine to use.
+     * @param horizDim   The horizontal dimension of the cell grid, in cells.
+     * @param vertDim    The vertical dimension of the cell grid, in cells.
+     * @param lifeRule   The rule to step the cells by.
+     * @return           A GridEngine object constructed to order.
+     * @throws IllegalArgumentException If the engine name isn't recognized,
+     *                                  or the engine can't run the rule.
+     */
+    static GridEngine buildGridEngine(final String engineName, final int horizDim, final int vertDim,
+                                      final LifeRule lifeRule) {
+        switch (engineName) {
+            case ENGINE_INT_ARRAY:
+                return new IntArrayGridEngine(horizDim, vertDim, lifeRule);
+            case ENGINE_BIT_PACKED:
+                return new BitPackedGridEngine(horizDim, vertDim, lifeRule);
+            case ENGINE_VECTOR:
+                return new VectorGridEngine(horizDim, vertDim, lifeRule);
+            case ENGINE_HASHLIFE:
+                return new HashLifeEngine(horizDim, vertDim, HashLifeEngine.DEFAULT_MEMORY_BUDGET, lifeRule);
+            case ENGINE_ACTIVE_REGION:
+                return new ActiveRegionGridEngine(horizDim, vertDim, lifeRule);
+            case ENGINE_CHUNKED_PLANE:
+                return new ChunkedPlaneEngine(horizDim, vertDim, lifeRule);
+            case ENGINE_LOOKUP_TABLE:
+                return new LookupTableGridEngine(horizDim, vertDim, lifeRule);
+            case ENGINE_GENERATIONS:
+                return new GenerationsGridEngine(horizDim, vertDim, new GenerationsRule(lifeRule, 2));
+            case ENGINE_LARGER_THAN_LIFE:
+                throw new IllegalArgumentException("the " + ENGINE_LARGER_THAN_LIFE + " engine can't run the "
+                                                   + "Life-like rule " + lifeRule);
+            default:
+                throw new IllegalArgumentException("unrecognized engine name: " + engineName);
+        }
+    }
+
+    /**
+     * This method is an accessor for the private gridEngine variable. It's
+     * used by GameOfLife to apply engine-specific settings.
+     *
+     * @return The GridEngine object that stores and steps the cell grid.
+     */
+    public GridEngine getGridEngine() {
+        return gridEngine;
+    }
+
     /**
      * This method is used to set all cells in the cell grid to 0, wiping out
      * all alife forms and resetting the cellular automata to its starting
      * state. It is called by the Clear button defined in the GameOfLife class.
      */
     public void clearCellGrid() {
-        for (int horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
-            for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
-                displayGrid[horizIndex][vertIndex] = 0;
-            }
+        seedingEpoch.incrementAndGet();
+        simulationPipeline.applyEdit(() -> gridEngine.clearCells());
+    }
+
+    /**
+     * This method is called by the SimulationPipeline object on the
+     * simulation thread. It has the stepping engine execute a single step of
+     * the Conway's Game of Life algorithm.
+     *
+     * @return The number of generations the step advanced: 2^k for a
+     *         HashLifeEngine with step exponent k, or 1 otherwise.
+     */
+    public int stepSimulation() {
+        gridEngine.stepGeneration();
+        if (gridEngine instanceof HashLifeEngine) {
+            return 1 << ((HashLifeEngine) gridEngine).getStepExponent();
+        }
+        return 1;
+    }
+
+    /**
+     * This method is called by the SimulationPipeline object after every step
+     * and edit, to capture the part of the generation in view for
+     * paintComponent() and any other consumer of the pipeline. A raw
+     * recording is handed the whole cell grid here as well.
+     *
+     * @param targetFrame      The frame to fill.
+     * @param generationNumber The number of generations the engine has been
+     *                         stepped.
+     */
+    public void captureFrame(final GenerationFrame targetFrame, final long generationNumber) {
+        viewport.captureView(gridEngine, targetFrame, generationNumber);
+        FrameRecorder boardRecorder = frameRecorder;
+        if (boardRecorder != null && boardRecorder.recordsBoard()) {
+            boardRecorder.recordBoard(gridEngine, generationNumber);
+        }
+    }
+
+    /**
+     * This method is an accessor for the private simulationPipeline
+     * variable.
+     *
+     * @return The SimulationPipeline object that steps the cell grid.
+     */
+    public SimulationPipeline getSimulationPipeline() {
+        return simulationPipeline;
+    }
+
+    /**
+     * This method starts recording the frames published from now on, drawn
+     * as the component draws them, on a FrameRecorder attached to the
+     * SimulationPipeline object. The recorder is attached with
+     * POLICY_BACKPRESSURE so that it's handed every frame, but since it only
+     * copies them and leaves the encoding to a thread of its own, the
+     * simulation never waits for the encoder; the frames it can't keep up
+     * with are dropped and counted instead. A raw recording isn't attached to
+     * the pipeline: captureFrame() hands it the whole cell grid instead, so
+     * that it records the same cells however the view is panned or zoomed.
+     *
+     * @param outputPath    The directory to write a PNG sequence to, or the
+     *                      file to write a GIF or raw frames to.
+     * @param outputFormat  One of the FrameRecorder.FORMAT_* flags.
+     * @param frameInterval The number of frames published for each one
+     *                      recorded; 1 records every frame.
+     * @throws IllegalArgumentException If the format or interval isn't
+     *                                  valid, or the format is raw and the
+     *                                  cell grid has more than
+     *                                  FrameRecorder.MAX_RAW_BOARD_CELLS
+     *                                  cells.
+     * @throws IllegalStateException    If frames are already being recorded,
+     *                                  or the output can't be created.
+     */
+    public synchronized void startRecording(final Path outputPath, final int outputFormat,
+                                            final int frameInterval) {
+        if (frameRecorder != null) {
+            throw new IllegalStateException("the frames are already being recorded");
+        }
+        FrameRecorder startedRecorder = new FrameRecorder(outputPath, outputFormat, frameInterval, canvasWidth,
+                                                          canvasHeight, statePalette);
+        if (startedRecorder.recordsBoard()
+            && (long) cellGridHorizDim * cellGridVertDim > FrameRecorder.MAX_RAW_BOARD_CELLS) {
+            throw new IllegalArgumentException("a cell grid of " + cellGridHorizDim + " x " + cellGridVertDim
+                                               + " cells is too large to record raw; at most "
+                                               + FrameRecorder.MAX_RAW_BOARD_CELLS + " cells can be");
+        }
+        startedRecorder.start();
+        if (!startedRecorder.recordsBoard()) {
+            recorderConsumer = simulationPipeline.addConsumer(startedRecorder, RingConsumer.POLICY_BACKPRESSURE,
+                                                              "frame recorder");
+        }
+        frameRecorder = startedRecorder;
+    }
+
+    /**
+     * This method stops recording frames, if they're being recorded: it
+     * detaches the FrameRecorder object, and returns once it has written
+     * the frames it had queued and closed its output.
+     *
+     * @throws IllegalStateException If the recording couldn't be written.
+     */
+    public synchronized void stopRecording() {
+        if (frameRecorder == null) {
+            return;
+        }
+        FrameRecorder stoppedRecorder = frameRecorder;
+        if (recorderConsumer != null) {
+            simulationPipeline.removeConsumer(recorderConsumer);
+        }
+        frameRecorder = null;
+        recorderConsumer = null;
+        stoppedRecorder.finish();
+    }
+
+    /**
+     * This method is an accessor for the private frameRecorder variable.
+     *
+     * @return The FrameRecorder object recording the frames, or null if
+     *         they aren't being recorded.
+     */
+    public FrameRecorder getFrameRecorder() {
+        return frameRecorder;
+    }
+
+    /**
+     * This method returns the SimulationClock object that paces the
+     * simulation thread, so its mode can be set and its rate read.
+     *
+     * @return The SimulationClock object.
+     */
+    public SimulationClock getSimulationClock() {
+        return simulationPipeline.getSimulationClock();
+    }
+
+    /**
+     * This method builds the colors that the states of a MultiStateGridEngine
+     * are rendered in. Dead cells are white and live cells are black, as in
+     * the two-state engines, and the dying states fade from a dark blue
+     * toward white as they approach death.
+     *
+     * @param stateCount The number of states.
+     * @return           An array of one Color object per state.
+     */
+    private static Color[] buildStatePalette(final int stateCount) {
+        Color[] palette = new Color[stateCount];
+        palette[0] = Color.WHITE;
+        palette[1] = Color.BLACK;
+        for (int cellState = 2; cellState < stateCount; cellState++) {
+            /* The fraction runs from 0 for the first dying state to just under
+               1 for the last, so the last dying state is still visible. */
+            float fadeFraction = (float) (cellState - 2) / (float) (stateCount - 1);
+            palette[cellState] = new Color((int) (40 + 200 * fadeFraction), (int) (70 + 170 * fadeFraction),
+                                           (int) (170 + 70 * fadeFraction));
+        }
+        return palette;
+    }
+
+    /**
+     * This method is run by the SimulationPipeline object on the simulation
+     * thread after every frame is published. It queues a call to
+     * updateDisplay() on the event dispatch thread, unless one is queued
+     * already.
+     */
+    private void queueDisplayUpdate() {
+        if (displayUpdateQueued.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(displayUpdater);
+        }
+    }
+
+    /**
+     * This method is run on the event dispatch thread when frames have been
+     * published. It takes the newest GenerationFrame from the
+     * SimulationPipeline object, has the CellRasterizer rewrite the tiles of
+     * its image that changed since the frame it last drew, and repaints just
+     * the rectangle they cover. If nothing changed, nothing is repainted.
+     */
+    private void updateDisplay() {
+        /* The flag is cleared before the frame is taken, so a frame published
+           after this point queues another update rather than being missed. */
+        displayUpdateQueued.set(false);
+        GenerationFrame displayFrame = simulationPipeline.takeLatestFrame();
+        if (displayFrame == null) {
+            return;
+        }
+        Rectangle dirtyRegion = cellRasterizer.rasterizeChangedTiles(displayFrame);
+        if (dirtyRegion != null) {
+            repaint(dirtyRegion);
         }
     }
 
     /**
      * This method is called when paint() or repaint() is called. It overrides
-     * JComponent.paintComponent(). displayGrid cells grid and sets cells in the
-     * JComponent area to black or white to render the cells grid on-screen.
-     * According to a profiler, 87% of the work done by this program is done by
-     * fillRect() calls in this method.
+     * JComponent.paintComponent(). The image the CellRasterizer keeps is
+     * already up to date, so it's painted with a single drawImage() call,
+     * which only copies the pixels inside the clip: the dirty rectangle when
+     * the repaint came from updateDisplay(), or the whole component when Swing
+     * asked for it.
      *
      * @param graphics A graphics object that is used to draw in the component.
      * @see javax.swing.JComponent
      * @see java.awt.Graphics
      */
     protected void paintComponent(final Graphics graphics) {
-        graphics.setColor(fieldColor);
-        graphics.fillRect(0, 0, getWidth(), getHeight());
-        graphics.setColor(Color.BLACK);
-        /* These nested for loops iterate over the displayGrid 2d array and use
-           Graphics.fillRect to draw a 10px black square in the appropriate
-           place in the component area for every 1 value in the cell grid. */
-        for (int horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
-            for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
-                if (displayGrid[horizIndex][vertIndex] == 1) {
-                    graphics.fillRect(horizIndex * cellWidth, vertIndex * cellHeight, cellWidth, cellHeight);
+        cellRasterizer.paintImage(graphics);
+    }
+
+    /**
+     * This method populates the cells in view by randomly setting 0 cells to
+     * 1. On average it sets 1/8th of the cells to 1. It is called by the Seed
+     * button defined in the GameOfLife class. The cells are set through the
+     * SimulationPipeline object, between steps. If more than seedCellLimit
+     * cells are in view, only a region of that many in the middle of the
+     * view is seeded. The cells are seeded a band of rows at a time, each
+     * band as an edit of its own, on a thread of its own, so neither the
+     * event dispatch thread nor the simulation waits for the whole seed; a
+     * clear stops a seed still in progress.
+     */
+    public void seedCellGrid() {
+        int seedEpoch = seedingEpoch.get();
+        Thread seedingThread = new Thread(() -> seedCells(seedEpoch), "cell grid seeder");
+        seedingThread.setDaemon(true);
+        seedingThread.start();
+    }
+
+    /**
+     * This method does the work of seedCellGrid() on the seeding thread, a
+     * band of rows per edit, until every band is seeded or the cell grid is
+     * cleared.
+     *
+     * @param seedEpoch The value of seedingEpoch when the seed was asked for.
+     */
+    private void seedCells(final int seedEpoch) {
+        /* The region is found by the first band's edit, since the viewport
+           is only read on the simulation thread; it holds the origin and the
+           dimensions of the region, in that order. */
+        int[] seedRegion = new int[4];
+        int bandOrigin = 0;
+        do {
+            int firstRow = bandOrigin;
+            simulationPipeline.applyEdit(() -> {
+                /* A clear advances the epoch before its own edit, so a band
+                   whose edit comes after the clear's is skipped here. */
+                if (seedingEpoch.get() != seedEpoch) {
+                    return;
                 }
-            }
-        }
-        /* I'm displeased by having to do this, but it seems
-           necessary. I was dealing with a weird bug where <a
-           href="https://conwaylife.com/wiki/File:Blinker.gif">blinkers</a> --
-           and only blinkers -- would hang and not update while the rest of the
-           automata continued to update. I dug into the update algorithm and
-           found the correct transformations were being done for the blinkers --
-           so it was a display issue.
-
-           I found that if I implemented this nested loop, which paints a 10px
-           *white* square in the component area for every *0* cell, the issue
-           went away. This is a major processing slowdown but I don't know any
-           other way to ensure the blinkers issue goes away. */
-        graphics.setColor(Color.WHITE);
-        for (int horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
-            for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
-                if (displayGrid[horizIndex][vertIndex] == 0) {
-                    graphics.fillRect(horizIndex * cellWidth, vertIndex * cellHeight, cellWidth, cellHeight);
+                if (firstRow == 0) {
+                    findSeedRegion(seedRegion);
                 }
+                seedBand(seedRegion, firstRow);
+            });
+
+            /* Each band waits for the one before it, so that the simulation
+               steps between them, and so that the region is known after the
+               first. */
+            simulationPipeline.awaitEdits();
+            if (seedingEpoch.get() != seedEpoch) {
+                break;
             }
+            bandOrigin += Math.max(1, seedBandCells / seedRegion[2]);
+        } while (bandOrigin < seedRegion[3]);
+    }
+
+    /**
+     * This method finds the region of the cell grid to seed: the cells in
+     * view, or if there are more than seedCellLimit of them, a region of that
+     * many in the middle of the view, of the same shape.
+     *
+     * @param seedRegion An int[] array to receive the horizontal and vertical
+     *                   coordinates of the region's first cell and its
+     *                   horizontal and vertical dimensions, in that order.
+     */
+    private void findSeedRegion(final int[] seedRegion) {
+        int seedHoriz = viewport.getVisibleHoriz();
+        int seedVert = viewport.getVisibleVert();
+        long visibleCells = (long) seedHoriz * (long) seedVert;
+        if (visibleCells > seedCellLimit) {
+            /* Both sides are shrunk by the same factor, so the region seeded
+               has the shape of the view. */
+            double shrinkFactor = Math.sqrt((double) seedCellLimit / (double) visibleCells);
+            seedHoriz = Math.max(1, (int) (seedHoriz * shrinkFactor));
+            seedVert = Math.max(1, Math.min(seedVert, seedCellLimit / seedHoriz));
         }
+        seedRegion[0] = viewport.getOriginHoriz() + (viewport.getVisibleHoriz() - seedHoriz) / 2;
+        seedRegion[1] = viewport.getOriginVert() + (viewport.getVisibleVert() - seedVert) / 2;
+        seedRegion[2] = seedHoriz;
+        seedRegion[3] = seedVert;
     }
 
     /**
-     * This method populates the cellGrid by randomly setting 0 cells to 1. On
-     * average it sets 1/8th of the cells to 1. It is called by the Seed button
-     * defined in the GameOfLife class.
+     * This method seeds a band of rows of the region found by
+     * findSeedRegion(), and is run by the SimulationPipeline object as an
+     * edit.
      *
+     * @param seedRegion The origin and dimensions of the region.
+     * @param firstRow   The first row of the band, counted from the top of
+     *                   the region.
      */
-    public void seedCellGrid() {
-        /* ThreadLocalRandom is used to provide a stream of random ints that
-           are used to determine whether a cell should be set to 1 or not. */
+    private void seedBand(final int[] seedRegion, final int firstRow) {
+        /* ThreadLocalRandom is used to decide whether a cell should be set
+           to 1 or not. */
         ThreadLocalRandom rng = ThreadLocalRandom.current();
-        Iterator<Integer> randomInts = rng.ints((long) cellGridHorizDim * (long) cellGridVertDim).iterator();
-        for (int horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
-            for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
-                /* The int that is returned is in the range [0,
-                   Integer.MAX_VALUE]. That value is divided by
-                   Integer.MAX_VALUE and then multiplied by 8 to rescale it to
-                   (practically) [0,7]. The cell is set to 1 if the value equals
-                   0, a 1-in-8 chance.
-
-                   This statement uses Iterator.next() without checking
-                   hasNext(). But the length of the stream is set to
-                   cellGridHorizDim * cellGridVertDim, which is exactly the
-                   number of cells in the grid, so the iterator lasts exactly
-                   the number of iterations in the combined loops. */
-                if ((int) Math.floor((double) randomInts.next() / (double) Integer.MAX_VALUE * 8) == 0) {
-                    displayGrid[horizIndex][vertIndex] = 1;
+        int originHoriz = seedRegion[0];
+        int seedHoriz = seedRegion[2];
+        int firstVert = seedRegion[1] + firstRow;
+        int endVert = seedRegion[1] + Math.min(seedRegion[3], firstRow + Math.max(1, seedBandCells / seedHoriz));
+        for (int vertIndex = firstVert; vertIndex < endVert; vertIndex++) {
+            for (int horizIndex = originHoriz; horizIndex < originHoriz + seedHoriz; horizIndex++) {
+                /* The cell is set to 1 with a 1-in-8 chance. */
+                if (rng.nextInt(8) == 0) {
+                    gridEngine.setCell(horizIndex, vertIndex, 1);
                 }
             }
         }
@@ -186,9 +710,9 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
     /**
      * This method is used to begin or resume the cellular automata
      * animation. It's called by the Start button in the GameOfLife class. It
-     * either instantiated a Timer object and starts it, or if one already
-     * exists it restarts it. The Timer object sends a "repaint" event to
-     * actionPerformed() every stepLengthMillis milliseconds (optimistically).
+     * starts the simulation thread of the SimulationPipeline object, which
+     * steps the engine at the pace its SimulationClock sets and has the
+     * component repainted after each frame.
      *
      */
     public void startCellularAutomata() {
@@ -196,133 +720,53 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
             System.out.println("Starting automata!");
             automataRunning = true;
         }
-        if (animationTimer == null) {
-            animationTimer = new Timer(stepLengthMillis, this);
-            animationTimer.setActionCommand("repaint");
-            animationTimer.setRepeats(true);
-            animationTimer.start();
-        } else if (!animationTimer.isRunning()) {
-            animationTimer.restart();
-        }
+        simulationPipeline.start();
     }
 
     /**
      * This method is used to suspend the cellular automata animation. It's
      * called by the Stop button defined in the GameOfLife class. It stops
-     * the Timer object that is used to send regular repaint events to
-     * actionPerformed().
+     * the simulation thread, and returns once the step it was on is done.
      */
     public void stopCellularAutomata() {
         if (automataRunning) {
             automataRunning = false;
         }
-        animationTimer.stop();
-    }
-
-    /**
-     * This method is called by the Timer object set by startCellularAutomata()
-     * above, every stepLengthMillis milliseconds (optimistically). A single
-     * step of the Conway's Game of Life algorithm is executed here.
-     *
-     * @param event The event sent to this method by the Timer object that this
-     *              class uses to regularly prompt steps of the algorithm so the
-     *              cellular automata animates. Its getActionCommand() method
-     *              should equal "repaint".
-     * @see javax.swing.Timer
-     */
-    public void actionPerformed(final ActionEvent event) {
-        /* This 2d array stores the offsets used in the algorithm to mod the
-           cell coordinates into coordinates of the neighboring cells. This is
-           used in preference to two nested for loops in order to avoid having
-           to test for and skip the horizDelta=0, vertDelta=0 case. */
-        int[][] deltaPairs = new int[][] {new int[] {-1, -1}, new int[] {-1, 0}, new int[] {-1, +1},
-                                          new int[] {0, -1},                     new int[] {0, +1},
-                                          new int[] {+1, -1}, new int[] {+1, 0}, new int[] {+1, +1}};
-        int sumOfNeighbors = 0;
-        int moddedHorizIndex;
-        int moddedVertIndex;
-        int horizIndex;
-        int vertIndex;
-        int horizIndexDelta;
-        int vertIndexDelta;
-
-        if (event.getActionCommand().equals("repaint")) {
-            /* The for loops iterate across the horizIndex and vertIndex of
-               every cell in the cell grid. */
-            for (horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
-                for (vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
-                    sumOfNeighbors = 0;
-                    /* The coordinate delta values in deltaPairs are used to
-                       compute from the cell coordinates into the coordinates of
-                       every neighboring cell. */
-                    for (int[] deltaPair : deltaPairs) {
-                        moddedHorizIndex = horizIndex + deltaPair[0];
-                        moddedVertIndex = vertIndex + deltaPair[1];
-                        /* The cell grid has wrap-around borders. That is
-                           achieved by replacing a neighbor cooordinate value of
-                           -1 as the max value for that ordinate, and a neighbor
-                           coordinate of the max ordinate value + 1 as 0. */
-                        moddedHorizIndex = (moddedHorizIndex == -1) ? cellGridHorizDim - 1
-                                               : (moddedHorizIndex == cellGridHorizDim) ? 0
-                                               : moddedHorizIndex;
-                        moddedVertIndex = (moddedVertIndex == -1) ? cellGridVertDim - 1
-                                               : (moddedVertIndex == cellGridVertDim) ? 0 : moddedVertIndex;
-                        sumOfNeighbors += displayGrid[moddedHorizIndex][moddedVertIndex];
-                    }
-                    /* The cell in the grid is set to 1 if the neighboring cells
-                       sum to 3, or to its existing value if they sum to 2, or
-                       otherwise it's set to 0. */
-                    updateGrid[horizIndex][vertIndex] = (sumOfNeighbors == 3) ? 1 : (sumOfNeighbors == 2) ? updateGrid[horizIndex][vertIndex] : 0;
-                }
-            }
-
-            /* Two grids are used: displayGrid is the 2d array that's used to
-               update the JComponent's cell display. updateGrid is the offscreen
-               buffer object that updated values are computed into. Two grids
-               must be used since the calculations would go awry if displayCell
-               values were being updated even as the summing operation was
-               running from a mixture of old and updated values.
-
-               In this step I iterate across displayGrid and update it from
-               matching values in updateGrid. */
-            for (horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
-                for (vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
-                    displayGrid[horizIndex][vertIndex] = updateGrid[horizIndex][vertIndex];
-                }
-            }
-
-            repaint();
-        }
+        simulationPipeline.stop();
     }
 
     /**
      * An implementation of MouseListener.mouseClicked, as part of the
      * MouseListener interface. The pixel X and Y values are collected from the
      * event and used to determine a cell in the cell grid. If that cell is 1,
-     * it's set to 0; if 0, it's set to 1.
+     * it's set to 0; if 0, it's set to 1. A click while the view is zoomed
+     * out, or past the edge of the cell grid, is ignored.
      *
      * @param event The event to be processed.
      * @see java.awt.event.MouseListener
      */
     public void mouseClicked(final MouseEvent event) {
-        int horizCoord;
-        int vertCoord;
-
-        /* The cells are 10 pixels on a side, so the X and Y values on the
-           MouseEvent object are interpreted to coordinates in the cell grid by
-           dividing them by 10 and rounding down. */
-        horizCoord = (int) Math.floor((double) event.getX() / (double) cellWidth);
-        vertCoord = (int) Math.floor((double) event.getY() / (double) cellHeight);
-
-        /* The cell at those coordinates is inverted from 1 to 0, or 0 to 1. */
-        if (displayGrid[horizCoord][vertCoord] == 1) {
-            displayGrid[horizCoord][vertCoord] = 0;
-        } else {
-            displayGrid[horizCoord][vertCoord] = 1;
-        }
-
-        /* repaint() is called, which will trigger paintComponent above. */
-        repaint();
+        int pixelX = event.getX();
+        int pixelY = event.getY();
+
+        /* The X and Y values on the MouseEvent object are interpreted to
+           coordinates in the cell grid by the viewport, and the cell at those
+           coordinates is inverted from 1 to 0, or 0 to 1, between steps. The
+           SimulationPipeline object then publishes a frame of the edited
+           generation and calls repaint(), which will trigger paintComponent
+           above. */
+        simulationPipeline.applyEdit(() -> {
+            int horizCoord = viewport.cellHorizAt(pixelX);
+            int vertCoord = viewport.cellVertAt(pixelY);
+            if (horizCoord < 0 || vertCoord < 0) {
+                return;
+            }
+            if (gridEngine.getCell(horizCoord, vertCoord) == 1) {
+                gridEngine.setCell(horizCoord, vertCoord, 0);
+            } else {
+                gridEngine.setCell(horizCoord, vertCoord, 1);
+            }
+        });
     }
 
     /**
@@ -350,15 +794,16 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
     }
 
     /**
-     * An implementation of MouseListener.mousePressed, required because I
-     * implement that interface. I ignore the event, so 'assert true' is used as
-     * a filler line.
+     * An implementation of MouseListener.mousePressed, as part of the
+     * MouseListener interface. It records where the pointer was pressed, for
+     * a drag that follows to pan the view from.
      *
      * @param event The event to be processed.
      * @see java.awt.event.MouseListener
      */
     public void mousePressed(final MouseEvent event) {
-        assert true;
+        dragPixelX = event.getX();
+        dragPixelY = event.getY();
     }
 
     /**
@@ -372,4 +817,51 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
     public void mouseReleased(final MouseEvent event) {
         assert true;
     }
+
+    /**
+     * An implementation of MouseMotionListener.mouseDragged, as part of the
+     * MouseMotionListener interface. The view is panned by the distance the
+     * pointer moved since it was pressed or last dragged, so that the cells
+     * under it move with it.
+     *
+     * @param event The event to be processed.
+     * @see java.awt.event.MouseMotionListener
+     */
+    public void mouseDragged(final MouseEvent event) {
+        int pixelsHoriz = event.getX() - dragPixelX;
+        int pixelsVert = event.getY() - dragPixelY;
+        dragPixelX = event.getX();
+        dragPixelY = event.getY();
+        simulationPipeline.applyEdit(() -> viewport.pan(pixelsHoriz, pixelsVert));
+    }
+
+    /**
+     * An implementation of MouseMotionListener.mouseMoved, required because I
+     * implement that interface. I ignore the event, so 'assert true' is used as
+     * a filler line.
+     *
+     * @param event The event to be processed.
+     * @see java.awt.event.MouseMotionListener
+     */
+    public void mouseMoved(final MouseEvent event) {
+        assert true;
+    }
+
+    /**
+     * An implementation of MouseWheelListener.mouseWheelMoved, as part of the
+     * MouseWheelListener interface. Rolling the wheel away from the user
+     * zooms the view in a level per notch, and rolling it back zooms it out,
+     * keeping the cell under the pointer where it is.
+     *
+     * @param event The event to be processed.
+     * @see java.awt.event.MouseWheelListener
+     */
+    public void mouseWheelMoved(final MouseWheelEvent event) {
+        int zoomSteps = -event.getWheelRotation();
+        int anchorX = event.getX();
+        int anchorY = event.getY();
+        if (zoomSteps != 0) {
+            simulationPipeline.applyEdit(() -> viewport.zoom(zoomSteps, anchorX, anchorY));
+        }
+    }
 }
@@ -0,0 +1,480 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class implements a stepping engine whose universe is an unbounded
+ * plane rather than a torus. The plane is divided into 64 x 64 cell chunks,
+ * stored bit-packed in a sparse map keyed by their 64-bit chunk coordinates,
+ * and only the chunks that hold live cells, or border ones that do, are
+ * allocated. A chunk is allocated when live cells reach the edge facing it,
+ * and reclaimed when it's empty and no longer needed; reclaimed chunks are
+ * kept in a pooled free list and reused, so that a glider crossing the plane
+ * doesn't allocate a fresh chunk at every boundary it crosses. Memory scales
+ * with the live area rather than with the bounding box.
+ * <p>
+ * Like HashLifeEngine, the cell grid that CellGrid displays is the window of
+ * cells from (0, 0) to (horizDim - 1, vertDim - 1), and anything that leaves
+ * the window keeps running outside it instead of wrapping around.
+ *
+ * @see org.kmfahey.jgameoflife.PlaneChunk
+ * @see org.kmfahey.jgameoflife.GridEngine
+ */
+public class ChunkedPlaneEngine implements GridEngine {
+
+    /** This int constant is the most chunks kept in the free list; chunks
+        reclaimed beyond it are left to the garbage collector. */
+    public static final int MAX_POOLED_CHUNKS = 4096;
+
+    /** This long[] constant stands in for the rows of a neighboring chunk
+        that isn't allocated. */
+    private static final long[] EMPTY_ROWS = new long[PlaneChunk.CHUNK_SIZE];
+
+    /** This int is used to store the horizontal dimension of the displayed
+        window, in cells. */
+    private int cellGridHorizDim;
+
+    /** This int is used to store the vertical dimension of the displayed
+        window, in cells. */
+    private int cellGridVertDim;
+
+    /** This HashMap&lt;Long, PlaneChunk&gt; maps chunk keys to the allocated
+        chunks. */
+    private HashMap<Long, PlaneChunk> chunkMap = new HashMap<Long, PlaneChunk>();
+
+    /** This ArrayList&lt;PlaneChunk&gt; holds the allocated chunks, so that a
+        step can iterate across them without iterating the map. */
+    private ArrayList<PlaneChunk> chunkList = new ArrayList<PlaneChunk>();
+
+    /** This PlaneChunk object is the head of the free list of pooled
+        chunks. */
+    private PlaneChunk freeChunkHead;
+
+    /** This int is the number of chunks in the free list. */
+    private int pooledChunkCount;
+
+    /** This long is the number of generations stepped since the engine was
+        constructed. */
+    private long generationCount;
+
+    /** This LifeRule object is the rule the cells are stepped by. */
+    private LifeRule lifeRule;
+
+    /**
+     * This constructor initializes the ChunkedPlaneEngine object with an empty
+     * plane and the B3/S23 rule.
+     *
+     * @param horizDim The horizontal dimension of the displayed window, in
+     *                 cells.
+     * @param vertDim  The vertical dimension of the displayed window, in
+     *                 cells.
+     */
+    public ChunkedPlaneEngine(final int horizDim, final int vertDim) {
+        this(horizDim, vertDim, LifeRule.CONWAY);
+    }
+
+    /**
+     * This constructor initializes the ChunkedPlaneEngine object with an empty
+     * plane.
+     *
+     * @param horizDim    The horizontal dimension of the displayed window, in
+     *                    cells.
+     * @param vertDim     The vertical dimension of the displayed window, in
+     *                    cells.
+     * @param lifeRuleVal The rule to step the cells by.
+     * @throws IllegalArgumentException If the rule has B0, under which the
+     *                                  empty plane doesn't stay empty.
+     */
+    public ChunkedPlaneEngine(final int horizDim, final int vertDim, final LifeRule lifeRuleVal) {
+        if (lifeRuleVal.birthsFromEmpty()) {
+            throw new IllegalArgumentException("rule with B0 can't run on an unbounded plane: " + lifeRuleVal);
+        }
+        lifeRule = lifeRuleVal;
+        cellGridHorizDim = horizDim;
+        cellGridVertDim = vertDim;
+    }
+
+    /**
+     * This method returns the number of chunks currently allocated on the
+     * plane.
+     *
+     * @return The number of allocated chunks.
+     */
+    public int getChunkCount() {
+        return chunkList.size();
+    }
+
+    /**
+     * This method returns the number of chunks waiting in the free list.
+     *
+     * @return The number of pooled chunks.
+     */
+    public int getPooledChunkCount() {
+        return pooledChunkCount;
+    }
+
+    /**
+     * This method counts the live cells on the whole plane, including those
+     * outside the displayed window.
+     *
+     * @return The number of live cells.
+     */
+    public long getPopulation() {
+        long population = 0L;
+        for (PlaneChunk chunk : chunkList) {
+            for (long row : chunk.rows) {
+                population += Long.bitCount(row);
+            }
+        }
+        return population;
+    }
+
+    /**
+     * This method returns the chunk at the given chunk coordinates, taking one
+     * from the free list or constructing one if it isn't allocated yet, and
+     * links it to whichever of its neighbors are allocated.
+     *
+     * @param chunkHorizCoord The horizontal coordinate of the chunk.
+     * @param chunkVertCoord  The vertical coordinate of the chunk.
+     * @return                The chunk at those coordinates.
+     */
+    private PlaneChunk allocateChunk(final int chunkHorizCoord, final int chunkVertCoord) {
+        PlaneChunk chunk = chunkMap.get(PlaneChunk.chunkKey(chunkHorizCoord, chunkVertCoord));
+        if (chunk != null) {
+            return chunk;
+        }
+
+        if (freeChunkHead != null) {
+            chunk = freeChunkHead;
+            freeChunkHead = chunk.nextFreeChunk;
+            chunk.nextFreeChunk = null;
+            pooledChunkCount--;
+            Arrays.fill(chunk.rows, 0L);
+            chunk.occupied = false;
+            chunk.neededGeneration = -1L;
+        } else {
+            chunk = new PlaneChunk();
+        }
+        chunk.chunkHorizCoord = chunkHorizCoord;
+        chunk.chunkVertCoord = chunkVertCoord;
+        chunkMap.put(PlaneChunk.chunkKey(chunkHorizCoord, chunkVertCoord), chunk);
+        chunkList.add(chunk);
+
+        for (int direction = 0; direction < 8; direction++) {
+            PlaneChunk neighbor = chunkMap.get(PlaneChunk.chunkKey(chunkHorizCoord + PlaneChunk.HORIZ_DELTAS[direction],
+                                                                   chunkVertCoord + PlaneChunk.VERT_DELTAS[direction]));
+            chunk.neighbors[direction] = neighbor;
+            if (neighbor != null) {
+                neighbor.neighbors[PlaneChunk.oppositeDirection(direction)] = chunk;
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * This method unlinks a chunk from its neighbors and removes it from the
+     * chunk map, then puts it in the free list if the free list isn't full.
+     * The caller is responsible for removing it from chunkList.
+     *
+     * @param chunk The chunk to reclaim.
+     */
+    private void reclaimChunk(final PlaneChunk chunk) {
+        for (int direction = 0; direction < 8; direction++) {
+            PlaneChunk neighbor = chunk.neighbors[direction];
+            if (neighbor != null) {
+                neighbor.neighbors[PlaneChunk.oppositeDirection(direction)] = null;
+                chunk.neighbors[direction] = null;
+            }
+        }
+        chunkMap.remove(PlaneChunk.chunkKey(chunk.chunkHorizCoord, chunk.chunkVertCoord));
+        if (pooledChunkCount < MAX_POOLED_CHUNKS) {
+            chunk.nextFreeChunk = freeChunkHead;
+            freeChunkHead = chunk;
+            pooledChunkCount++;
+        }
+    }
+
+    /**
+     * This method allocates the neighbor of a chunk in one direction if it
+     * isn't allocated, and marks it as needed in the current generation.
+     *
+     * @param chunk     The chunk whose neighbor is needed.
+     * @param direction One of the PlaneChunk direction constants.
+     */
+    private void requireNeighbor(final PlaneChunk chunk, final int direction) {
+        PlaneChunk neighbor = chunk.neighbors[direction];
+        if (neighbor == null) {
+            neighbor = allocateChunk(chunk.chunkHorizCoord + PlaneChunk.HORIZ_DELTAS[direction],
+                                     chunk.chunkVertCoord + PlaneChunk.VERT_DELTAS[direction]);
+        }
+        neighbor.neededGeneration = generationCount;
+    }
+
+    /**
+     * This method returns the rows of a neighboring chunk, or EMPTY_ROWS if
+     * it isn't allocated.
+     *
+     * @param chunk The neighboring chunk, or null.
+     * @return      The rows of the chunk.
+     */
+    private static long[] rowsOf(final PlaneChunk chunk) {
+        return (chunk == null) ? EMPTY_ROWS : chunk.rows;
+    }
+
+    /**
+     * This method aligns each cell of a row with its west neighbor, carrying
+     * in the easternmost cell of the row to the west.
+     *
+     * @param row     The row.
+     * @param westRow The same row of the chunk to the west.
+     * @return        A word with the west neighbor of cell x in bit x.
+     */
+    private static long alignWestNeighbors(final long row, final long westRow) {
+        return (row << 1) | (westRow >>> (PlaneChunk.CHUNK_SIZE - 1));
+    }
+
+    /**
+     * This method aligns each cell of a row with its east neighbor, carrying
+     * in the westernmost cell of the row to the east.
+     *
+     * @param row     The row.
+     * @param eastRow The same row of the chunk to the east.
+     * @return        A word with the east neighbor of cell x in bit x.
+     */
+    private static long alignEastNeighbors(final long row, final long eastRow) {
+        return (row >>> 1) | (eastRow << (PlaneChunk.CHUNK_SIZE - 1));
+    }
+
+    /**
+     * This method computes the next generation of a chunk into its nextRows
+     * array, a row at a time with BitPackedGridEngine.nextWord(), reading the
+     * cells beyond its edges from its neighbors.
+     *
+     * @param chunk The chunk to step.
+     */
+    private void stepChunk(final PlaneChunk chunk) {
+        final int lastRow = PlaneChunk.CHUNK_SIZE - 1;
+        long[] rows = chunk.rows;
+        long[] nextRows = chunk.nextRows;
+        long[] northRows = rowsOf(chunk.neighbors[PlaneChunk.NORTH]);
+        long[] northEastRows = rowsOf(chunk.neighbors[PlaneChunk.NORTHEAST]);
+        long[] eastRows = rowsOf(chunk.neighbors[PlaneChunk.EAST]);
+        long[] southEastRows = rowsOf(chunk.neighbors[PlaneChunk.SOUTHEAST]);
+        long[] southRows = rowsOf(chunk.neighbors[PlaneChunk.SOUTH]);
+        long[] southWestRows = rowsOf(chunk.neighbors[PlaneChunk.SOUTHWEST]);
+        long[] westRows = rowsOf(chunk.neighbors[PlaneChunk.WEST]);
+        long[] northWestRows = rowsOf(chunk.neighbors[PlaneChunk.NORTHWEST]);
+        long occupiedBits = 0L;
+
+        for (int rowIndex = 0; rowIndex < PlaneChunk.CHUNK_SIZE; rowIndex++) {
+            /* The rows above and below are taken from the neighboring chunks
+               at the north and south edges, along with the corner chunks that
+               supply their west and east ends. */
+            long northRow = (rowIndex == 0) ? northRows[lastRow] : rows[rowIndex - 1];
+            long northWestRow = (rowIndex == 0) ? northWestRows[lastRow] : westRows[rowIndex - 1];
+            long northEastRow = (rowIndex == 0) ? northEastRows[lastRow] : eastRows[rowIndex - 1];
+            long southRow = (rowIndex == lastRow) ? southRows[0] : rows[rowIndex + 1];
+            long southWestRow = (rowIndex == lastRow) ? southWestRows[0] : westRows[rowIndex + 1];
+            long southEastRow = (rowIndex == lastRow) ? southEastRows[0] : eastRows[rowIndex + 1];
+            long centerRow = rows[rowIndex];
+
+            long nextRow = BitPackedGridEngine.nextWord(lifeRule, alignWestNeighbors(northRow, northWestRow), northRow,
+                                                        alignEastNeighbors(northRow, northEastRow),
+                                                        alignWestNeighbors(centerRow, westRows[rowIndex]), centerRow,
+                                                        alignEastNeighbors(centerRow, eastRows[rowIndex]),
+                                                        alignWestNeighbors(southRow, southWestRow), southRow,
+                                                        alignEastNeighbors(southRow, southEastRow));
+            nextRows[rowIndex] = nextRow;
+            occupiedBits |= nextRow;
+        }
+        chunk.occupied = occupiedBits != 0L;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridHorizDim variable.
+     *
+     * @return The horizontal dimension of the displayed window, in cells.
+     */
+    public int getHorizDim() {
+        return cellGridHorizDim;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridVertDim variable.
+     *
+     * @return The vertical dimension of the displayed window, in cells.
+     */
+    public int getVertDim() {
+        return cellGridVertDim;
+    }
+
+    /**
+     * This method returns the value of a single cell of the plane.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    public int getCell(final int horizIndex, final int vertIndex) {
+        PlaneChunk chunk = chunkMap.get(PlaneChunk.chunkKey(horizIndex >> PlaneChunk.CHUNK_SHIFT,
+                                                            vertIndex >> PlaneChunk.CHUNK_SHIFT));
+        if (chunk == null) {
+            return 0;
+        }
+        return (int) (chunk.rows[vertIndex & (PlaneChunk.CHUNK_SIZE - 1)]
+                      >>> (horizIndex & (PlaneChunk.CHUNK_SIZE - 1))) & 1;
+    }
+
+    /**
+     * This method counts the live cells in a rectangle of the plane a chunk
+     * at a time, passing over the chunks that aren't allocated and counting a
+     * row of each one that is with a single Long.bitCount().
+     *
+     * @param originHoriz The horizontal coordinate of the rectangle's first
+     *                    cell.
+     * @param originVert  The vertical coordinate of the rectangle's first
+     *                    cell.
+     * @param regionHoriz The width of the rectangle, in cells.
+     * @param regionVert  The height of the rectangle, in cells.
+     * @return            The number of live cells in the rectangle.
+     */
+    public int countLiveCells(final int originHoriz, final int originVert, final int regionHoriz,
+                              final int regionVert) {
+        if (regionHoriz <= 0 || regionVert <= 0) {
+            return 0;
+        }
+        int lastHoriz = originHoriz + regionHoriz - 1;
+        int lastVert = originVert + regionVert - 1;
+        int liveCells = 0;
+        for (int chunkVertCoord = originVert >> PlaneChunk.CHUNK_SHIFT;
+             chunkVertCoord <= lastVert >> PlaneChunk.CHUNK_SHIFT; chunkVertCoord++) {
+            int chunkOriginVert = chunkVertCoord << PlaneChunk.CHUNK_SHIFT;
+            int firstRow = Math.max(originVert - chunkOriginVert, 0);
+            int lastRow = Math.min(lastVert - chunkOriginVert, PlaneChunk.CHUNK_SIZE - 1);
+            for (int chunkHorizCoord = originHoriz >> PlaneChunk.CHUNK_SHIFT;
+                 chunkHorizCoord <= lastHoriz >> PlaneChunk.CHUNK_SHIFT; chunkHorizCoord++) {
+                PlaneChunk chunk = chunkMap.get(PlaneChunk.chunkKey(chunkHorizCoord, chunkVertCoord));
+                if (chunk == null) {
+                    continue;
+                }
+                /* The mask keeps the bits of the columns of this chunk that
+                   lie inside the rectangle. */
+                int chunkOriginHoriz = chunkHorizCoord << PlaneChunk.CHUNK_SHIFT;
+                int firstColumn = Math.max(originHoriz - chunkOriginHoriz, 0);
+                int lastColumn = Math.min(lastHoriz - chunkOriginHoriz, PlaneChunk.CHUNK_SIZE - 1);
+                long columnMask = (-1L << firstColumn) & (-1L >>> (PlaneChunk.CHUNK_SIZE - 1 - lastColumn));
+                for (int rowIndex = firstRow; rowIndex <= lastRow; rowIndex++) {
+                    liveCells += Long.bitCount(chunk.rows[rowIndex] & columnMask);
+                }
+            }
+        }
+        return liveCells;
+    }
+
+    /**
+     * This method sets the value of a single cell of the plane, allocating its
+     * chunk if a live cell is set in a chunk that isn't allocated.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    public void setCell(final int horizIndex, final int vertIndex, final int cellValue) {
+        int chunkHorizCoord = horizIndex >> PlaneChunk.CHUNK_SHIFT;
+        int chunkVertCoord = vertIndex >> PlaneChunk.CHUNK_SHIFT;
+        PlaneChunk chunk = (cellValue == 1) ? allocateChunk(chunkHorizCoord, chunkVertCoord)
+                           : chunkMap.get(PlaneChunk.chunkKey(chunkHorizCoord, chunkVertCoord));
+        if (chunk == null) {
+            return;
+        }
+        long cellBit = 1L << (horizIndex & (PlaneChunk.CHUNK_SIZE - 1));
+        int rowIndex = vertIndex & (PlaneChunk.CHUNK_SIZE - 1);
+        chunk.rows[rowIndex] = (cellValue == 1) ? (chunk.rows[rowIndex] | cellBit) : (chunk.rows[rowIndex] & ~cellBit);
+        if (cellValue == 1) {
+            chunk.occupied = true;
+        }
+    }
+
+    /**
+     * This method empties the plane, reclaiming every chunk.
+     */
+    public void clearCells() {
+        for (PlaneChunk chunk : chunkList) {
+            reclaimChunk(chunk);
+        }
+        chunkList.clear();
+    }
+
+    /**
+     * This method executes a single step of the algorithm in three passes.
+     * The first allocates the chunks that live cells along an edge could be
+     * born into. The second computes the next generation of every allocated
+     * chunk. The third swaps each chunk's rows, and reclaims chunks that are
+     * empty and weren't needed by a neighbor this step.
+     */
+    public void stepGeneration() {
+        final int lastRow = PlaneChunk.CHUNK_SIZE - 1;
+        int occupiedChunkCount = chunkList.size();
+
+        /* Only the chunks allocated before this pass are checked; a chunk
+           that's allocated during it is empty and can't extend the plane. */
+        for (int chunkIndex = 0; chunkIndex < occupiedChunkCount; chunkIndex++) {
+            PlaneChunk chunk = chunkList.get(chunkIndex);
+            if (!chunk.occupied) {
+                continue;
+            }
+            long[] rows = chunk.rows;
+            long columnBits = 0L;
+            for (long row : rows) {
+                columnBits |= row;
+            }
+            if (rows[0] != 0L) {
+                requireNeighbor(chunk, PlaneChunk.NORTH);
+            }
+            if (rows[lastRow] != 0L) {
+                requireNeighbor(chunk, PlaneChunk.SOUTH);
+            }
+            if ((columnBits & 1L) != 0L) {
+                requireNeighbor(chunk, PlaneChunk.WEST);
+            }
+            if (columnBits < 0L) {
+                requireNeighbor(chunk, PlaneChunk.EAST);
+            }
+            if ((rows[0] & 1L) != 0L) {
+                requireNeighbor(chunk, PlaneChunk.NORTHWEST);
+            }
+            if (rows[0] < 0L) {
+                requireNeighbor(chunk, PlaneChunk.NORTHEAST);
+            }
+            if ((rows[lastRow] & 1L) != 0L) {
+                requireNeighbor(chunk, PlaneChunk.SOUTHWEST);
+            }
+            if (rows[lastRow] < 0L) {
+                requireNeighbor(chunk, PlaneChunk.SOUTHEAST);
+            }
+        }
+
+        for (PlaneChunk chunk : chunkList) {
+            stepChunk(chunk);
+        }
+
+        /* The surviving chunks are compacted toward the front of chunkList
+           as it's iterated, and the leftover tail is cleared afterward. */
+        int keptChunkCount = 0;
+        for (int chunkIndex = 0; chunkIndex < chunkList.size(); chunkIndex++) {
+            PlaneChunk chunk = chunkList.get(chunkIndex);
+            long[] swapRows = chunk.rows;
+            chunk.rows = chunk.nextRows;
+            chunk.nextRows = swapRows;
+            if (!chunk.occupied && chunk.neededGeneration != generationCount) {
+                reclaimChunk(chunk);
+            } else {
+                chunkList.set(keptChunkCount++, chunk);
+            }
+        }
+        chunkList.subList(keptChunkCount, chunkList.size()).clear();
+        generationCount++;
+    }
+}
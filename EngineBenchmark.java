@@ -0,0 +1,121 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.Random;
+
+/**
+ * This class is a commandline benchmark for the GridEngine implementations. It
+ * seeds every engine named on the commandline with the same random soup,
+ * steps each one for a fixed number of generations after a warm-up run, and
+ * reports the generations per second each one achieved, along with its
+ * speedup over the first engine named. The soup can be stepped for a number
+ * of untimed generations first, so that engines whose cost depends on activity
+ * are measured on a board that has settled.
+ * <p>
+ * Usage: java org.kmfahey.jgameoflife.EngineBenchmark
+ * --engines=intarray,bitpacked,vector --width=1024 --height=1024
+ * --generations=200 --fill=0.5 --settle=0 --rule=B3/S23
+ *
+ * @see org.kmfahey.jgameoflife.GridEngine
+ * @see org.kmfahey.jgameoflife.CellGrid
+ */
+public class EngineBenchmark {
+
+    /** This long constant is the seed of the random number generator that
+        fills the soup, so that every engine starts from the same board. */
+    private static final long SOUP_SEED = 20221L;
+
+    /**
+     * This method fills an engine's cell grid with a random soup.
+     *
+     * @param gridEngine The engine to fill.
+     * @param fillRatio  The fraction of cells, between 0 and 1, that should be
+     *                   live.
+     */
+    private static void fillSoup(final GridEngine gridEngine, final double fillRatio) {
+        Random random = new Random(SOUP_SEED);
+        for (int horizIndex = 0; horizIndex < gridEngine.getHorizDim(); horizIndex++) {
+            for (int vertIndex = 0; vertIndex < gridEngine.getVertDim(); vertIndex++) {
+                gridEngine.setCell(horizIndex, vertIndex, (random.nextDouble() < fillRatio) ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * This method times a number of generations of an engine.
+     *
+     * @param gridEngine  The engine to step.
+     * @param generations The number of generations to step it.
+     * @return            The elapsed time, in nanoseconds.
+     */
+    private static long timeGenerations(final GridEngine gridEngine, final int generations) {
+        long startNanos = System.nanoTime();
+        for (int generation = 0; generation < generations; generation++) {
+            gridEngine.stepGeneration();
+        }
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * This method looks through the commandline arguments for one of the form
+     * --name=value and returns its value.
+     *
+     * @param args         The argument string array composed from the
+     *                     commandline arguments.
+     * @param optionName   The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option isn't present.
+     * @return             The value of the option, or defaultValue.
+     */
+    private static String findOption(final String[] args, final String optionName, final String defaultValue) {
+        String optionPrefix = "--" + optionName + "=";
+        for (String arg : args) {
+            if (arg.startsWith(optionPrefix)) {
+                return arg.substring(optionPrefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * This method is called when the class is run from the commandline. It
+     * benchmarks each named engine in turn and prints one line per engine.
+     *
+     * @param args The argument string array composed from the commandline
+     *             arguments, if any.
+     */
+    public static void main(final String[] args) {
+        String[] engineNames = findOption(args, "engines", "intarray,bitpacked,vector").split(",");
+        int horizDim = Integer.parseInt(findOption(args, "width", "1024"));
+        int vertDim = Integer.parseInt(findOption(args, "height", "1024"));
+        int generations = Integer.parseInt(findOption(args, "generations", "200"));
+        double fillRatio = Double.parseDouble(findOption(args, "fill", "0.5"));
+        int settleGenerations = Integer.parseInt(findOption(args, "settle", "0"));
+        String ruleString = findOption(args, "rule", null);
+        double baselineGensPerSec = 0D;
+
+        System.out.printf("%d x %d cells, %d generations, %.0f%% fill, %d settling generations, rule %s%n",
+                          horizDim, vertDim, generations, fillRatio * 100D, settleGenerations,
+                          (ruleString == null) ? "default" : ruleString);
+        for (String engineName : engineNames) {
+            GridEngine gridEngine = CellGrid.buildGridEngine(engineName, horizDim, vertDim, ruleString);
+            fillSoup(gridEngine, fillRatio);
+            timeGenerations(gridEngine, settleGenerations);
+
+            /* The warm-up run gives the JIT compiler a chance to compile the
+               engine's inner loops before the timed run. */
+            timeGenerations(gridEngine, Math.max(1, generations / 4));
+            long elapsedNanos = timeGenerations(gridEngine, generations);
+            double gensPerSec = generations / (elapsedNanos / 1e9D);
+            if (baselineGensPerSec == 0D) {
+                baselineGensPerSec = gensPerSec;
+            }
+            System.out.printf("%-12s %10.1f gens/sec %8.2fx%s%n", engineName, gensPerSec,
+                              gensPerSec / baselineGensPerSec,
+                              (gridEngine instanceof VectorGridEngine
+                               && !((VectorGridEngine) gridEngine).isVectorized()) ? "  (scalar fallback)"
+                              : (gridEngine instanceof ActiveRegionGridEngine)
+                                ? String.format("  (%d active cells)",
+                                                ((ActiveRegionGridEngine) gridEngine).getActiveCellCount())
+                              : "");
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a stepping engine for an ensemble of independent
+ * boards of the same size, such as the thousands of small random soups of a
+ * statistical run. The boards are bit-sliced: rather than packing 64 cells of
+ * one board into a long, as BitPackedGridEngine does, it packs the same cell
+ * of 64 different boards into a long, so bit b of a word belongs to board b.
+ * A cell's eight neighbors are then the eight words at the neighboring
+ * positions, and the bitwise adder tree of BitPackedGridEngine.nextWord()
+ * steps that cell on all 64 boards at once, with no shifting at all.
+ * <p>
+ * With more than 64 boards, every cell position holds laneWords longs side by
+ * side, for boards 0 to 63, 64 to 127, and so on. A row of the ensemble is a
+ * long[] array of horizDim * laneWords longs, which is stepped by the same
+ * WordRowKernel a VectorGridEngine uses, so where the vectorized kernel is
+ * available, each SIMD lane steps a further 64 boards.
+ * <p>
+ * The engine keeps the last maxPeriod generations as well as the current one,
+ * and after every step compares the new generation against each of them. A
+ * board whose new generation matches the one p generations back has
+ * stabilized into still lifes and oscillators of period p (or less): the
+ * generation it stabilized at and its period are recorded, and stay recorded,
+ * since the board repeats from then on. A board with a glider running around
+ * its torus, or an oscillator of a longer period, never stabilizes. The
+ * population of every board can be counted at any time by countPopulations(),
+ * which sums the boards' bits 64 at a time with a bit-sliced counter.
+ *
+ * @see org.kmfahey.jgameoflife.BitPackedGridEngine
+ * @see org.kmfahey.jgameoflife.WordRowKernel
+ * @see org.kmfahey.jgameoflife.SoupSurvey
+ */
+public class EnsembleGridEngine {
+
+    /** This int is the horizontal dimension of every board, in cells. */
+    private final int horizDim;
+
+    /** This int is the vertical dimension of every board, in cells. */
+    private final int vertDim;
+
+    /** This int is the number of boards in the ensemble. */
+    private final int boardCount;
+
+    /** This int is the number of longs at every cell position, 64 boards
+        apiece. */
+    private final int laneWords;
+
+    /** This int is the number of longs in a row, horizDim * laneWords. */
+    private final int rowWords;
+
+    /** This int is the longest period of oscillation that a board can be
+        recognized as having stabilized with. */
+    private final int maxPeriod;
+
+    /** This LifeRule object is the rule the cells are stepped by. */
+    private final LifeRule lifeRule;
+
+    /** This WordRowKernel object steps a row of words, vectorized if
+        possible. */
+    private final WordRowKernel rowKernel;
+
+    /** This long is a mask of the boards that exist in the last word of each
+        cell position, which isn't full if boardCount isn't a multiple of 64;
+        the bits of the boards that don't exist are kept clear. */
+    private final long lastLaneMask;
+
+    /** This long[][][] array is a ring of maxPeriod + 1 generations, each
+        indexed [vertIndex][horizIndex * laneWords + laneIndex]. The current
+        generation is at currentSlot, and the one p generations before it at
+        currentSlot - p, wrapping around. */
+    private final long[][][] generationRing;
+
+    /** These long[][] arrays hold every row of the current generation shifted
+        by a cell to line each cell up with its west or east neighbor, and are
+        rebuilt every step. */
+    private final long[][] westRows;
+    private final long[][] eastRows;
+
+    /** This long[][] array accumulates, for each period, a mask of the boards
+        whose new generation differs anywhere from the one that many
+        generations back. It's indexed [period][laneIndex]. */
+    private final long[][] differingBoards;
+
+    /** This int is the index in generationRing of the current generation. */
+    private int currentSlot;
+
+    /** This int counts the generations behind the current one that are in the
+        ring and were reached by stepping, not by an edit; only those can be
+        compared against. */
+    private int validHistory;
+
+    /** This long is the number of generations the ensemble has been
+        stepped. */
+    private long generationNumber;
+
+    /** This long[] array holds, for each board, the generation it stabilized
+        at, or -1 if it hasn't. */
+    private final long[] stabilizedGenerations;
+
+    /** This int[] array holds, for each board, the period it stabilized with,
+        or 0 if it hasn't. */
+    private final int[] stabilizedPeriods;
+
+    /** This int counts the boards that have stabilized. */
+    private int stableBoardCount;
+
+    /**
+     * This constructor initializes the EnsembleGridEngine object with every
+     * board empty, recognizing boards as stabilized with periods of up to 3.
+     *
+     * @param horizDimVal   The horizontal dimension of every board, in cells.
+     * @param vertDimVal    The vertical dimension of every board, in cells.
+     * @param boardCountVal The number of boards.
+     * @param lifeRuleVal   The rule to step the cells by.
+     * @throws IllegalArgumentException If a dimension or the board count is
+     *                                  less than 1.
+     */
+    public EnsembleGridEngine(final int horizDimVal, final int vertDimVal, final int boardCountVal,
+                              final LifeRule lifeRuleVal) {
+        this(horizDimVal, vertDimVal, boardCountVal, lifeRuleVal, 3);
+    }
+
+    /**
+     * This constructor initializes the EnsembleGridEngine object with every
+     * board empty.
+     *
+     * @param horizDimVal   The horizontal dimension of every board, in cells.
+     * @param vertDimVal    The vertical dimension of every board, in cells.
+     * @param boardCountVal The number of boards.
+     * @param lifeRuleVal   The rule to step the cells by.
+     * @param maxPeriodVal  The longest period of oscillation that a board can
+     *                      be recognized as having stabilized with. Each
+     *                      period costs another generation of memory and an
+     *                      extra comparison per word per step.
+     * @throws IllegalArgumentException If a dimension, the board count or the
+     *                                  period is less than 1.
+     */
+    public EnsembleGridEngine(final int horizDimVal, final int vertDimVal, final int boardCountVal,
+                              final LifeRule lifeRuleVal, final int maxPeriodVal) {
+        if (horizDimVal < 1 || vertDimVal < 1 || boardCountVal < 1 || maxPeriodVal < 1) {
+            throw new IllegalArgumentException("an ensemble needs at least 1 board of at least 1 x 1 cells, and "
+                                               + "a maximum period of at least 1");
+        }
+        horizDim = horizDimVal;
+        vertDim = vertDimVal;
+        boardCount = boardCountVal;
+        lifeRule = lifeRuleVal;
+        maxPeriod = maxPeriodVal;
+        laneWords = (boardCount + 63) / 64;
+        rowWords = horizDim * laneWords;
+        lastLaneMask = ((boardCount & 63) == 0) ? -1L : (1L << (boardCount & 63)) - 1L;
+        rowKernel = VectorGridEngine.loadRowKernel();
+
+        generationRing = new long[maxPeriod + 1][vertDim][rowWords];
+        westRows = new long[vertDim][rowWords];
+        eastRows = new long[vertDim][rowWords];
+        differingBoards = new long[maxPeriod + 1][laneWords];
+        stabilizedGenerations = new long[boardCount];
+        Arrays.fill(stabilizedGenerations, -1L);
+        stabilizedPeriods = new int[boardCount];
+    }
+
+    /**
+     * This method is an accessor for the private horizDim variable.
+     *
+     * @return The horizontal dimension of every board, in cells.
+     */
+    public int getHorizDim() {
+        return horizDim;
+    }
+
+    /**
+     * This method is an accessor for the private vertDim variable.
+     *
+     * @return The vertical dimension of every board, in cells.
+     */
+    public int getVertDim() {
+        return vertDim;
+    }
+
+    /**
+     * This method is an accessor for the private boardCount variable.
+     *
+     * @return The number of boards in the ensemble.
+     */
+    public int getBoardCount() {
+        return boardCount;
+    }
+
+    /**
+     * This method is an accessor for the private generationNumber variable.
+     *
+     * @return The number of generations the ensemble has been stepped.
+     */
+    public long getGenerationNumber() {
+        return generationNumber;
+    }
+
+    /**
+     * This method reports whether the rows are stepped by the vectorized row
+     * kernel or the scalar one.
+     *
+     * @return true if the vectorized row kernel is in use.
+     */
+    public boolean isVectorized() {
+        return rowKernel != BitPackedGridEngine.SCALAR_ROW_KERNEL;
+    }
+
+    /**
+     * This method returns the value of a single cell of a board's current
+     * generation.
+     *
+     * @param boardIndex The index of the board.
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    public int getCell(final int boardIndex, final int horizIndex, final int vertIndex) {
+        long cellWord = generationRing[currentSlot][vertIndex][horizIndex * laneWords + (boardIndex >>> 6)];
+        return (int) (cellWord >>> (boardIndex & 63)) & 1;
+    }
+
+    /**
+     * This method sets the value of a single cell of a board's current
+     * generation. The board's stabilization is forgotten, and since the
+     * generations before the edit aren't what led to it, no board is compared
+     * against them.
+     *
+     * @param boardIndex The index of the board.
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    public void setCell(final int boardIndex, final int horizIndex, final int vertIndex, final int cellValue) {
+        long[] row = generationRing[currentSlot][vertIndex];
+        int wordIndex = horizIndex * laneWords + (boardIndex >>> 6);
+        long boardBit = 1L << (boardIndex & 63);
+        row[wordIndex] = (cellValue == 0) ? row[wordIndex] & ~boardBit : row[wordIndex] | boardBit;
+        validHistory = 0;
+        if (stabilizedPeriods[boardIndex] != 0) {
+            stabilizedPeriods[boardIndex] = 0;
+            stabilizedGenerations[boardIndex] = -1L;
+            stableBoardCount--;
+        }
+    }
+
+    /**
+     * This method clears every board, and forgets every board's
+     * stabilization.
+     */
+    public void clearCells() {
+        for (long[] row : generationRing[currentSlot]) {
+            Arrays.fill(row, 0L);
+        }
+        validHistory = 0;
+        Arrays.fill(stabilizedGenerations, -1L);
+        Arrays.fill(stabilizedPeriods, 0);
+        stableBoardCount = 0;
+    }
+
+    /**
+     * This method executes a single step of the algorithm on every board.
+     * Each row of the current generation is shifted into line with its west
+     * and east neighbors, each row of the next generation is computed by the
+     * row kernel from the shifted and unshifted rows around it, and the new
+     * generation is compared against the ones before it to find the boards
+     * that have stabilized.
+     */
+    public void stepGeneration() {
+        long[][] currentRows = generationRing[currentSlot];
+        int nextSlot = (currentSlot + 1) % generationRing.length;
+        long[][] nextRows = generationRing[nextSlot];
+        int lastCellOffset = rowWords - laneWords;
+
+        /* A cell's west neighbor on every board is the cell position to its
+           west, wrapping around, so lining the cells up with their west
+           neighbors is a copy of the row laneWords longs to the east, and the
+           same to the west for the east neighbors. */
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            long[] row = currentRows[vertIndex];
+            System.arraycopy(row, 0, westRows[vertIndex], laneWords, lastCellOffset);
+            System.arraycopy(row, lastCellOffset, westRows[vertIndex], 0, laneWords);
+            System.arraycopy(row, laneWords, eastRows[vertIndex], 0, lastCellOffset);
+            System.arraycopy(row, 0, eastRows[vertIndex], lastCellOffset, laneWords);
+        }
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            int northIndex = (vertIndex == 0) ? vertDim - 1 : vertIndex - 1;
+            int southIndex = (vertIndex == vertDim - 1) ? 0 : vertIndex + 1;
+            rowKernel.combineRows(lifeRule,
+                                  westRows[northIndex], currentRows[northIndex], eastRows[northIndex],
+                                  westRows[vertIndex], currentRows[vertIndex], eastRows[vertIndex],
+                                  westRows[southIndex], currentRows[southIndex], eastRows[southIndex],
+                                  nextRows[vertIndex], rowWords);
+            if (lastLaneMask != -1L) {
+                for (int wordIndex = laneWords - 1; wordIndex < rowWords; wordIndex += laneWords) {
+                    nextRows[vertIndex][wordIndex] &= lastLaneMask;
+                }
+            }
+        }
+
+        currentSlot = nextSlot;
+        generationNumber++;
+        if (validHistory < maxPeriod) {
+            validHistory++;
+        }
+        if (stableBoardCount < boardCount) {
+            recordStabilizedBoards();
+        }
+    }
+
+    /**
+     * This method counts the live cells of every board, with a bit-sliced
+     * counter: plane k of the counter holds bit k of the count of all 64
+     * boards of a lane, and adding a word of cells to it is a ripple of
+     * half adders through the planes, which usually stops after one or two.
+     *
+     * @return An array of the population of each board.
+     */
+    public int[] countPopulations() {
+        int planeCount = 64 - Long.numberOfLeadingZeros((long) horizDim * vertDim);
+        long[][] counterPlanes = new long[laneWords][planeCount];
+        for (long[] row : generationRing[currentSlot]) {
+            for (int cellOffset = 0; cellOffset < rowWords; cellOffset += laneWords) {
+                for (int laneIndex = 0; laneIndex < laneWords; laneIndex++) {
+                    long[] lanePlanes = counterPlanes[laneIndex];
+                    long carryBits = row[cellOffset + laneIndex];
+                    for (int planeIndex = 0; carryBits != 0L; planeIndex++) {
+                        long nextCarryBits = lanePlanes[planeIndex] & carryBits;
+                        lanePlanes[planeIndex] ^= carryBits;
+                        carryBits = nextCarryBits;
+                    }
+                }
+            }
+        }
+
+        int[] populations = new int[boardCount];
+        for (int boardIndex = 0; boardIndex < boardCount; boardIndex++) {
+            long[] lanePlanes = counterPlanes[boardIndex >>> 6];
+            int population = 0;
+            for (int planeIndex = 0; planeIndex < planeCount; planeIndex++) {
+                population |= (int) ((lanePlanes[planeIndex] >>> (boardIndex & 63)) & 1L) << planeIndex;
+            }
+            populations[boardIndex] = population;
+        }
+        return populations;
+    }
+
+    /**
+     * This method returns the generation a board stabilized at: the first
+     * generation of the cycle it has repeated since.
+     *
+     * @param boardIndex The index of the board.
+     * @return           The generation, or -1 if the board hasn't
+     *                   stabilized.
+     */
+    public long getStabilizedGeneration(final int boardIndex) {
+        return stabilizedGenerations[boardIndex];
+    }
+
+    /**
+     * This method returns the period a board stabilized with: 1 if it's
+     * nothing but still lifes, or the least period that its oscillators share.
+     *
+     * @param boardIndex The index of the board.
+     * @return           The period, or 0 if the board hasn't stabilized.
+     */
+    public int getStabilizedPeriod(final int boardIndex) {
+        return stabilizedPeriods[boardIndex];
+    }
+
+    /**
+     * This method is an accessor for the private stableBoardCount variable.
+     *
+     * @return The number of boards that have stabilized.
+     */
+    public int getStableBoardCount() {
+        return stableBoardCount;
+    }
+
+    /**
+     * This method compares the new generation against each generation up to
+     * maxPeriod back that was reached by stepping, and records the boards that
+     * match one of them for the first time. A board that matches the
+     * generation p back has repeated with period p since then; the least such
+     * p is its period.
+     */
+    private void recordStabilizedBoards() {
+        long[][] currentRows = generationRing[currentSlot];
+        int ringLength = generationRing.length;
+        for (int period = 1; period <= validHistory; period++) {
+            long[][] pastRows = generationRing[(currentSlot - period + ringLength) % ringLength];
+            long[] differingLanes = differingBoards[period];
+            Arrays.fill(differingLanes, 0L);
+            for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+                long[] currentRow = currentRows[vertIndex];
+                long[] pastRow = pastRows[vertIndex];
+                for (int cellOffset = 0; cellOffset < rowWords; cellOffset += laneWords) {
+                    for (int laneIndex = 0; laneIndex < laneWords; laneIndex++) {
+                        differingLanes[laneIndex] |= currentRow[cellOffset + laneIndex]
+                                                     ^ pastRow[cellOffset + laneIndex];
+                    }
+                }
+            }
+        }
+
+        for (int boardIndex = 0; boardIndex < boardCount; boardIndex++) {
+            if (stabilizedPeriods[boardIndex] != 0) {
+                continue;
+            }
+            long boardBit = 1L << (boardIndex & 63);
+            for (int period = 1; period <= validHistory; period++) {
+                if ((differingBoards[period][boardIndex >>> 6] & boardBit) == 0L) {
+                    stabilizedPeriods[boardIndex] = period;
+                    stabilizedGenerations[boardIndex] = generationNumber - period;
+                    stableBoardCount++;
+                    break;
+                }
+            }
+        }
+    }
+}
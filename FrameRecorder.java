@@ -0,0 +1,637 @@
+package org.kmfahey.jgameoflife;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * This class implements a recording stage of a SimulationPipeline that writes
+ * the frames it's handed to disk, as a sequence of PNG files, as an animated
+ * GIF, or as a stream of raw bit-packed frames. It's attached with
+ * SimulationPipeline.addConsumer(), and can record every frame or only every
+ * Nth.
+ * <p>
+ * Encoding a frame takes far longer than stepping a generation, so it isn't
+ * done on the thread that hands the recorder its frames. That thread only
+ * copies each frame to be recorded into a spare frame from a pool of
+ * queueCapacity frames preallocated at start(), and queues it for an encoder
+ * thread of the recorder's own, which encodes and writes it and puts the
+ * frame back in the pool. Copying a frame is about as fast as capturing one,
+ * so the recorder can be attached with POLICY_BACKPRESSURE without holding up
+ * the simulation for long, though the encoder does compete with it for the
+ * processor. When the encoder falls behind and the pool runs dry, the frame
+ * is dropped and counted rather than waited for; the drops are reported by
+ * getDroppedFrameCount(). Since no frame is allocated after start(), and the
+ * encoder reuses its images, recording allocates little beyond what the
+ * encoders themselves do.
+ * <p>
+ * The PNG and GIF formats record what the component shows. They draw each
+ * frame published as the CellGrid does, a viewScale-pixel square per cell or
+ * a pixel per block of a zoomed-out view, into an image the size of the
+ * component, with the same colors. The images are palette images, a byte per
+ * pixel, whose palette is the colors of the states, or of the 256 densities
+ * of a zoomed-out frame.
+ * <p>
+ * The raw format records the whole cell grid instead, whatever is in view
+ * and however far the view is zoomed, so a recording is the same at any
+ * zoom and loses nothing. Its frames aren't taken from the pipeline but
+ * handed to recordBoard(), which copies the whole cell grid out of the
+ * engine on the thread that steps it, 64 cells to a long, with
+ * GridEngine.copyCellWords(). A bit-packed engine copies its words in bulk
+ * and HashLife passes over empty space, but most engines read the cells one
+ * at a time, so the copy can cost as much as the cell grid is large, and raw
+ * recording is limited to cell grids of at most MAX_RAW_BOARD_CELLS cells.
+ * A raw file opens with the 8 ASCII bytes "JGOLRAW1", and each frame is the
+ * generation number as a long, the horizontal and vertical dimensions of the
+ * cell grid as ints, and then each row of cells as ceil(horizDim / 64)
+ * longs, the cell at horizIndex being bit (horizIndex % 64) of long
+ * (horizIndex / 64), set if the cell is live. All the numbers are
+ * big-endian, as DataOutputStream writes them.
+ *
+ * @see org.kmfahey.jgameoflife.SimulationPipeline
+ * @see org.kmfahey.jgameoflife.RingConsumer
+ * @see org.kmfahey.jgameoflife.CellRasterizer
+ */
+public class FrameRecorder implements Consumer<GenerationFrame> {
+
+    /** This int is the format that writes every frame recorded to a PNG file
+        of its own, in a directory. */
+    public static final int FORMAT_PNG_SEQUENCE = 0;
+
+    /** This int is the format that writes the frames recorded to a single
+        animated GIF file. */
+    public static final int FORMAT_GIF = 1;
+
+    /** This int is the format that writes the frames recorded to a single
+        file of raw bit-packed frames. */
+    public static final int FORMAT_RAW = 2;
+
+    /** This int is the most cells a cell grid can have to be recorded in the
+        raw format, which copies the whole of it for every frame recorded. */
+    public static final int MAX_RAW_BOARD_CELLS = 1 << 22;
+
+    /** This int is the number of frames in the pool, which is how far the
+        encoder can fall behind before frames are dropped. */
+    private final int queueCapacity = 16;
+
+    /** This long is the longest the encoder thread waits for a frame at a
+        time before checking whether it's been stopped, in milliseconds. */
+    private final long encoderPollMillis = 50L;
+
+    /** This int is the delay between the frames of a GIF, in hundredths of
+        a second, so it plays back at 10 frames a second. */
+    private final int gifFrameDelay = 10;
+
+    /** This Path object is the directory of a PNG sequence, or the file of
+        a GIF or raw recording. */
+    private final Path outputPath;
+
+    /** This int is one of the FORMAT_* flags. */
+    private final int outputFormat;
+
+    /** This int is the number of frames handed to the recorder for each one
+        that's recorded. */
+    private final int frameInterval;
+
+    /** This int is the width of the images recorded, in pixels. */
+    private final int imageWidth;
+
+    /** This int is the height of the images recorded, in pixels. */
+    private final int imageHeight;
+
+    /** This BufferedImage object is the image that frames of a zoomed-in
+        view are drawn into, with the colors of the states as its palette. */
+    private final BufferedImage stateImage;
+
+    /** This BufferedImage object is the image that frames of a zoomed-out
+        view are drawn into, with the colors of the densities as its
+        palette. */
+    private final BufferedImage densityImage;
+
+    /** This ArrayBlockingQueue object holds the frames of the pool that
+        aren't queued for the encoder. */
+    private final ArrayBlockingQueue<GenerationFrame> spareFrames;
+
+    /** This ArrayBlockingQueue object holds the frames waiting for the
+        encoder, oldest first. */
+    private final ArrayBlockingQueue<GenerationFrame> queuedFrames;
+
+    /** This long counts the frames handed to the recorder. It's only used by
+        the thread that hands them over. */
+    private long handedFrameCount;
+
+    /** This long counts the frames written. It's only written by the
+        encoder thread. */
+    private volatile long recordedFrameCount;
+
+    /** This long counts the frames to be recorded that were dropped because
+        the pool was empty. It's only written by the thread that hands the
+        recorder its frames. */
+    private volatile long droppedFrameCount;
+
+    /** This boolean is true until the recorder is finished. */
+    private volatile boolean recorderRunning;
+
+    /** This IOException object is the error that stopped the encoder, or
+        null if none has. */
+    private volatile IOException encoderFailure;
+
+    /** This Thread object is the encoder thread, or null if it hasn't been
+        started. */
+    private Thread encoderThread;
+
+    /** This ImageWriter object writes the frames of a GIF recording. */
+    private ImageWriter gifWriter;
+
+    /** This ImageOutputStream object is the file a GIF is written to. */
+    private ImageOutputStream gifStream;
+
+    /** This DataOutputStream object is the file raw frames are written
+        to. */
+    private DataOutputStream rawStream;
+
+    /** This ByteBuffer object holds the cells of a raw frame as bytes, in the
+        order DataOutputStream writes longs, so they're written in one call.
+        It's only used by the encoder thread. */
+    private ByteBuffer rawBuffer = ByteBuffer.allocate(0);
+
+    /**
+     * This constructor initializes the FrameRecorder object. Nothing is
+     * opened or written until it's started.
+     *
+     * @param outputPathVal    The directory to write a PNG sequence to, or
+     *                         the file to write a GIF or raw frames to.
+     * @param outputFormatVal  One of the FORMAT_* flags.
+     * @param frameIntervalVal The number of frames handed to the recorder for
+     *                         each one recorded; 1 records every frame.
+     * @param canvasWidth      The width of the images recorded, in pixels.
+     * @param canvasHeight     The height of the images recorded, in pixels.
+     * @param statePalette     The color of each cell state, as the CellGrid
+     *                         draws them.
+     * @throws IllegalArgumentException If the format isn't one of the
+     *                                  FORMAT_* flags, the interval or a
+     *                                  dimension isn't positive, or the
+     *                                  palette doesn't have from 2 to 256
+     *                                  colors.
+     */
+    public FrameRecorder(final Path outputPathVal, final int outputFormatVal, final int frameIntervalVal,
+                         final int canvasWidth, final int canvasHeight, final Color[] statePalette) {
+        if (outputFormatVal != FORMAT_PNG_SEQUENCE && outputFormatVal != FORMAT_GIF
+            && outputFormatVal != FORMAT_RAW) {
+            throw new IllegalArgumentException("unknown recording format " + outputFormatVal);
+        }
+        if (frameIntervalVal <= 0 || canvasWidth <= 0 || canvasHeight <= 0) {
+            throw new IllegalArgumentException("can't record every " + frameIntervalVal + " frames at "
+                                               + canvasWidth + " x " + canvasHeight + " pixels");
+        }
+        if (statePalette.length < 2 || statePalette.length > 256) {
+            throw new IllegalArgumentException("a palette image needs from 2 to 256 colors, not "
+                                               + statePalette.length);
+        }
+        outputPath = outputPathVal;
+        outputFormat = outputFormatVal;
+        frameInterval = frameIntervalVal;
+        imageWidth = canvasWidth;
+        imageHeight = canvasHeight;
+
+        int[] statePixels = new int[statePalette.length];
+        for (int cellState = 0; cellState < statePalette.length; cellState++) {
+            statePixels[cellState] = statePalette[cellState].getRGB() & 0xFFFFFF;
+        }
+        int[] densityPixels = new int[256];
+        for (int density = 0; density < densityPixels.length; density++) {
+            densityPixels[density] = CellRasterizer.blendPixels(statePixels[0], statePixels[1], density);
+        }
+        stateImage = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_BYTE_INDEXED,
+                                       new IndexColorModel(8, statePixels.length, statePixels, 0, false, -1,
+                                                           DataBufferByte.TYPE_BYTE));
+        densityImage = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_BYTE_INDEXED,
+                                         new IndexColorModel(8, densityPixels.length, densityPixels, 0, false, -1,
+                                                             DataBufferByte.TYPE_BYTE));
+
+        spareFrames = new ArrayBlockingQueue<>(queueCapacity);
+        queuedFrames = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * This method parses the name of a recording format. The png and gif
+     * formats record the view, as the component shows it; the raw format
+     * records the whole cell grid, at any zoom, and can only be used with a
+     * cell grid of at most MAX_RAW_BOARD_CELLS cells.
+     *
+     * @param formatName "png" for a PNG sequence, "gif" for an animated GIF,
+     *                   or "raw" for raw bit-packed frames.
+     * @return           One of the FORMAT_* flags.
+     * @throws IllegalArgumentException If the name isn't one of those.
+     */
+    public static int parseFormat(final String formatName) {
+        switch (formatName) {
+            case "png":
+                return FORMAT_PNG_SEQUENCE;
+            case "gif":
+                return FORMAT_GIF;
+            case "raw":
+                return FORMAT_RAW;
+            default:
+                throw new IllegalArgumentException("unknown recording format '" + formatName
+                                                   + "'; expected png, gif or raw");
+        }
+    }
+
+    /**
+     * This method is used to tell whether the recorder records the whole cell
+     * grid, and so is to be handed it with recordBoard() rather than
+     * attached to a pipeline.
+     *
+     * @return true if the format is FORMAT_RAW, false otherwise.
+     */
+    public boolean recordsBoard() {
+        return outputFormat == FORMAT_RAW;
+    }
+
+    /**
+     * This method creates the output, fills the pool of frames, and starts
+     * the encoder thread. It's to be called before the recorder is attached
+     * to a pipeline or handed a cell grid.
+     *
+     * @throws IllegalStateException If the recorder has already been
+     *                               started, or the output can't be
+     *                               created.
+     */
+    public synchronized void start() {
+        if (encoderThread != null) {
+            throw new IllegalStateException("a recorder can only be started once");
+        }
+        try {
+            openOutput();
+        } catch (IOException exception) {
+            throw new IllegalStateException("can't record to " + outputPath, exception);
+        }
+        for (int frameIndex = 0; frameIndex < queueCapacity; frameIndex++) {
+            spareFrames.add(new GenerationFrame());
+        }
+        recorderRunning = true;
+        encoderThread = new Thread(this::runEncoder, "frame encoder");
+        encoderThread.setDaemon(true);
+        encoderThread.start();
+    }
+
+    /**
+     * This method finishes the recording once the recorder has been detached
+     * from its pipeline: the encoder writes the frames still queued, closes
+     * the output, and stops, and this method returns once it has. A cell
+     * grid handed to recordBoard() afterward is ignored.
+     *
+     * @throws IllegalStateException If the encoder stopped early because the
+     *                               output couldn't be written.
+     */
+    public void finish() {
+        Thread runningThread;
+        synchronized (this) {
+            recorderRunning = false;
+            runningThread = encoderThread;
+        }
+        if (runningThread != null) {
+            try {
+                runningThread.join();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (encoderFailure != null) {
+            throw new IllegalStateException("the recording to " + outputPath + " failed", encoderFailure);
+        }
+    }
+
+    /**
+     * This method is called on the consumer's thread with every frame. If the
+     * frame is one to be recorded, it's copied into a spare frame and queued
+     * for the encoder, or if there's no spare frame, dropped. A recorder
+     * that records the whole cell grid ignores the frames.
+     *
+     * @param generationFrame The frame handed to the recorder.
+     */
+    @Override
+    public void accept(final GenerationFrame generationFrame) {
+        if (recordsBoard() || handedFrameCount++ % frameInterval != 0L) {
+            return;
+        }
+        GenerationFrame spareFrame = spareFrames.poll();
+        if (spareFrame == null) {
+            droppedFrameCount++;
+            return;
+        }
+        spareFrame.copyFrom(generationFrame);
+        /* The two queues only ever hold the frames of the pool between them,
+           so there's always room in this one. */
+        queuedFrames.add(spareFrame);
+    }
+
+    /**
+     * This method is called with every generation captured, for a recorder
+     * that records the whole cell grid. If the generation is one to be
+     * recorded, the whole cell grid is copied out of the engine into a spare
+     * frame, 64 cells to a long, and queued for the encoder, or if there's no
+     * spare frame, dropped. It's to be called by the thread that steps the
+     * engine, between steps.
+     *
+     * @param gridEngine       The engine to copy the cell grid from.
+     * @param generationNumber The number of generations it's been stepped.
+     * @throws IllegalArgumentException If the cell grid has more than
+     *                                  MAX_RAW_BOARD_CELLS cells.
+     */
+    public synchronized void recordBoard(final GridEngine gridEngine, final long generationNumber) {
+        if ((long) gridEngine.getHorizDim() * gridEngine.getVertDim() > MAX_RAW_BOARD_CELLS) {
+            throw new IllegalArgumentException("a cell grid of " + gridEngine.getHorizDim() + " x "
+                                               + gridEngine.getVertDim() + " cells is too large to record raw");
+        }
+        if (!recorderRunning || !recordsBoard() || handedFrameCount++ % frameInterval != 0L) {
+            return;
+        }
+        GenerationFrame spareFrame = spareFrames.poll();
+        if (spareFrame == null) {
+            droppedFrameCount++;
+            return;
+        }
+        spareFrame.captureCellWords(gridEngine, generationNumber);
+        spareFrame.setView(1, 0, 0);
+        queuedFrames.add(spareFrame);
+    }
+
+    /**
+     * This method is an accessor for the private recordedFrameCount
+     * variable.
+     *
+     * @return The number of frames written.
+     */
+    public long getRecordedFrameCount() {
+        return recordedFrameCount;
+    }
+
+    /**
+     * This method is an accessor for the private droppedFrameCount
+     * variable.
+     *
+     * @return The number of frames to be recorded that were dropped because
+     *         the encoder had fallen behind.
+     */
+    public long getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    /**
+     * This method is an accessor for the private encoderFailure variable.
+     *
+     * @return The error that stopped the encoder, or null if it hasn't
+     *         failed.
+     */
+    public IOException getEncoderFailure() {
+        return encoderFailure;
+    }
+
+    /**
+     * This method is the body of the encoder thread. It writes the frames
+     * queued, oldest first, and returns each to the pool, until the recorder
+     * is finished and the queue is empty, and then closes the output. If the
+     * output can't be written, it keeps the error for finish() and stops;
+     * with nothing returning frames to the pool, every frame after that is
+     * counted as dropped.
+     */
+    private void runEncoder() {
+        try {
+            while (true) {
+                GenerationFrame queuedFrame = queuedFrames.poll(encoderPollMillis, TimeUnit.MILLISECONDS);
+                if (queuedFrame == null) {
+                    /* The recorder is detached before it's finished, so once
+                       it's finished an empty queue stays empty. */
+                    if (!recorderRunning) {
+                        break;
+                    }
+                    continue;
+                }
+                encodeFrame(queuedFrame);
+                spareFrames.add(queuedFrame);
+                recordedFrameCount++;
+            }
+        } catch (IOException exception) {
+            encoderFailure = exception;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                closeOutput();
+            } catch (IOException exception) {
+                if (encoderFailure == null) {
+                    encoderFailure = exception;
+                }
+            }
+        }
+    }
+
+    /**
+     * This method creates the output: the directory of a PNG sequence, or
+     * the file of a GIF or of raw frames, which is started with the GIF
+     * header or the raw format's 8 magic bytes.
+     *
+     * @throws IOException If the directory or file can't be created.
+     */
+    private void openOutput() throws IOException {
+        switch (outputFormat) {
+            case FORMAT_PNG_SEQUENCE:
+                Files.createDirectories(outputPath);
+                break;
+            case FORMAT_GIF:
+                Iterator<ImageWriter> gifWriters = ImageIO.getImageWritersByFormatName("gif");
+                if (!gifWriters.hasNext()) {
+                    throw new IOException("no GIF writer is available");
+                }
+                gifWriter = gifWriters.next();
+                Files.deleteIfExists(outputPath);
+                gifStream = new FileImageOutputStream(outputPath.toFile());
+                gifWriter.setOutput(gifStream);
+                gifWriter.prepareWriteSequence(null);
+                break;
+            default:
+                rawStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(outputPath)));
+                rawStream.writeBytes("JGOLRAW1");
+                break;
+        }
+    }
+
+    /**
+     * This method writes a frame in the recording's format.
+     *
+     * @param queuedFrame The frame to write.
+     * @throws IOException If it can't be written.
+     */
+    private void encodeFrame(final GenerationFrame queuedFrame) throws IOException {
+        switch (outputFormat) {
+            case FORMAT_PNG_SEQUENCE:
+                Path framePath = outputPath.resolve(String.format("frame-%06d.png", recordedFrameCount));
+                if (!ImageIO.write(drawIndexedImage(queuedFrame), "png", framePath.toFile())) {
+                    throw new IOException("no PNG writer is available");
+                }
+                break;
+            case FORMAT_GIF:
+                BufferedImage indexedImage = drawIndexedImage(queuedFrame);
+                gifWriter.writeToSequence(new IIOImage(indexedImage, null, buildGifMetadata(indexedImage)), null);
+                break;
+            default:
+                writeRawFrame(queuedFrame);
+                break;
+        }
+    }
+
+    /**
+     * This method closes the output, finishing a GIF with its trailer.
+     *
+     * @throws IOException If the output can't be finished.
+     */
+    private void closeOutput() throws IOException {
+        if (gifWriter != null) {
+            try {
+                gifWriter.endWriteSequence();
+            } finally {
+                gifWriter.dispose();
+                gifStream.close();
+            }
+        }
+        if (rawStream != null) {
+            rawStream.close();
+        }
+    }
+
+    /**
+     * This method draws a frame into the palette image for its view, with a
+     * viewScale x viewScale block of pixels per cell, or a pixel per block
+     * of a zoomed-out view. The pixels the frame doesn't cover are given the
+     * color of state 0, or of density 0, which is the same color.
+     *
+     * @param queuedFrame The frame to draw.
+     * @return            The image it was drawn into.
+     */
+    private BufferedImage drawIndexedImage(final GenerationFrame queuedFrame) {
+        int viewScale = queuedFrame.getViewScale();
+        BufferedImage indexedImage = (viewScale > 0) ? stateImage : densityImage;
+        byte[] imageBytes = ((DataBufferByte) indexedImage.getRaster().getDataBuffer()).getData();
+        Arrays.fill(imageBytes, (byte) 0);
+        int cellPixels = Math.max(viewScale, 1);
+        int endPixelX = Math.min(queuedFrame.getHorizDim() * cellPixels, imageWidth);
+        int endPixelY = Math.min(queuedFrame.getVertDim() * cellPixels, imageHeight);
+        for (int pixelY = 0; pixelY < endPixelY; pixelY++) {
+            int rowOffset = pixelY * imageWidth;
+            /* Only the first row of pixels of a row of cells is filled cell by
+               cell; the rest are copies of it. */
+            if (pixelY % cellPixels != 0) {
+                System.arraycopy(imageBytes, rowOffset - imageWidth, imageBytes, rowOffset, endPixelX);
+                continue;
+            }
+            int vertIndex = pixelY / cellPixels;
+            for (int pixelX = 0; pixelX < endPixelX; pixelX++) {
+                imageBytes[rowOffset + pixelX] = (byte) queuedFrame.getCellState(pixelX / cellPixels, vertIndex);
+            }
+        }
+        return indexedImage;
+    }
+
+    /**
+     * This method builds the metadata of a frame of a GIF: its palette, its
+     * delay, and for the first frame, the application extension that makes
+     * the GIF loop forever. The palette is given as a local color table of
+     * the frame's own; without one, the GIF writer leaves the frame to the
+     * default global color table, which has nothing to do with the image's.
+     *
+     * @param indexedImage The image of the frame.
+     * @return             The IIOMetadata object to write it with.
+     * @throws IOException If the GIF writer won't take the metadata.
+     */
+    private IIOMetadata buildGifMetadata(final BufferedImage indexedImage) throws IOException {
+        IIOMetadata imageMetadata = gifWriter.getDefaultImageMetadata(
+            ImageTypeSpecifier.createFromRenderedImage(indexedImage), null);
+        String formatName = imageMetadata.getNativeMetadataFormatName();
+        IIOMetadataNode metadataRoot = new IIOMetadataNode(formatName);
+
+        IndexColorModel imagePalette = (IndexColorModel) indexedImage.getColorModel();
+        IIOMetadataNode tableNode = new IIOMetadataNode("LocalColorTable");
+        /* A GIF's color tables come in powers of 2, from 2 to 256 entries. */
+        int tableSize = Math.max(2, Integer.highestOneBit(imagePalette.getMapSize() * 2 - 1));
+        tableNode.setAttribute("sizeOfLocalColorTable", Integer.toString(tableSize));
+        tableNode.setAttribute("sortFlag", "FALSE");
+        for (int colorIndex = 0; colorIndex < tableSize; colorIndex++) {
+            int colorPixel = (colorIndex < imagePalette.getMapSize()) ? imagePalette.getRGB(colorIndex) : 0;
+            IIOMetadataNode entryNode = new IIOMetadataNode("ColorTableEntry");
+            entryNode.setAttribute("index", Integer.toString(colorIndex));
+            entryNode.setAttribute("red", Integer.toString((colorPixel >>> 16) & 0xFF));
+            entryNode.setAttribute("green", Integer.toString((colorPixel >>> 8) & 0xFF));
+            entryNode.setAttribute("blue", Integer.toString(colorPixel & 0xFF));
+            tableNode.appendChild(entryNode);
+        }
+        metadataRoot.appendChild(tableNode);
+
+        IIOMetadataNode controlNode = new IIOMetadataNode("GraphicControlExtension");
+        controlNode.setAttribute("disposalMethod", "none");
+        controlNode.setAttribute("userInputFlag", "FALSE");
+        controlNode.setAttribute("transparentColorFlag", "FALSE");
+        controlNode.setAttribute("delayTime", Integer.toString(gifFrameDelay));
+        controlNode.setAttribute("transparentColorIndex", "0");
+        metadataRoot.appendChild(controlNode);
+
+        if (recordedFrameCount == 0L) {
+            IIOMetadataNode extensionNode = new IIOMetadataNode("ApplicationExtension");
+            extensionNode.setAttribute("applicationID", "NETSCAPE");
+            extensionNode.setAttribute("authenticationCode", "2.0");
+            /* A loop count of 0, little-endian, loops forever. */
+            extensionNode.setUserObject(new byte[] {1, 0, 0});
+            IIOMetadataNode extensionsNode = new IIOMetadataNode("ApplicationExtensions");
+            extensionsNode.appendChild(extensionNode);
+            metadataRoot.appendChild(extensionsNode);
+        }
+
+        imageMetadata.mergeTree(formatName, metadataRoot);
+        return imageMetadata;
+    }
+
+    /**
+     * This method writes a frame in the raw format: its generation number and
+     * dimensions, and then its cells, 64 to a long.
+     *
+     * @param queuedFrame The frame to write.
+     * @throws IOException If it can't be written.
+     */
+    private void writeRawFrame(final GenerationFrame queuedFrame) throws IOException {
+        int horizDim = queuedFrame.getHorizDim();
+        int vertDim = queuedFrame.getVertDim();
+        long[] cellWords = queuedFrame.getCellWords();
+        rawStream.writeLong(queuedFrame.getGenerationNumber());
+        rawStream.writeInt(horizDim);
+        rawStream.writeInt(vertDim);
+        int wordCount = vertDim * ((horizDim + 63) >>> 6);
+        if (rawBuffer.capacity() != wordCount * Long.BYTES) {
+            rawBuffer = ByteBuffer.allocate(wordCount * Long.BYTES);
+        }
+        /* A ByteBuffer is big-endian, as DataOutputStream is. */
+        rawBuffer.clear();
+        rawBuffer.asLongBuffer().put(cellWords, 0, wordCount);
+        rawStream.write(rawBuffer.array(), 0, wordCount * Long.BYTES);
+    }
+}
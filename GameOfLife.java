@@ -7,9 +7,13 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.Toolkit;
+import java.nio.file.Path;
 import javax.swing.JButton;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingConstants;
+import javax.swing.Timer;
 
 /**
  * This class implements the GUI frontend that provides an interface to this
@@ -33,11 +37,23 @@ public class GameOfLife extends JFrame {
      * JComponent subclass CellGrid &amp; the JButton objects, and attaches them
      * to the JPanel that holds the GUI elements.
      *
+     * @param engineName The name of the stepping engine the CellGrid object
+     *                   should use; see CellGrid.ENGINE_INT_ARRAY and the
+     *                   other engine name constants.
+     * @param ruleString The rulestring of the rule the CellGrid object should
+     *                   step the cells by, or null for the engine's default
+     *                   rule.
+     * @param boardSize  The size of the cell grid in cells, as a string of the
+     *                   form WxH, or null to size it to fill the window.
+     * @throws IllegalArgumentException If the engine name isn't recognized,
+     *                                  the rulestring can't be parsed, the
+     *                                  engine can't run the rule, or the
+     *                                  board size can't be parsed.
      * @see java.awt.GridBagLayout
      * @see javax.swing.JFrame
      */
-    public GameOfLife() {
-        super("Conway's Game of Life");
+    public GameOfLife(final String engineName, final String ruleString, final String boardSize) {
+        super(windowTitle(engineName, ruleString));
 
         /* Basic setup of this JFrame subclass. */
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -94,15 +110,18 @@ public class GameOfLife extends JFrame {
            extracts the insets that buildCellGridConstraints defined, uses
            them to calculate the width &amp; height of the actual cell grid,
            and passes those values in a Dimensions object to the CellGrid
-           constructor. It adds cellGrid as a mouse listener to itself and
-           attaches the cell grid with its constraints to the JPanel object.  */
+           constructor. It adds cellGrid as a mouse, mouse motion and mouse
+           wheel listener to itself and attaches the cell grid with its
+           constraints to the JPanel object.  */
         GridBagConstraints cellGridConstraints = buildCellGridConstraints(0, 0, 1, 5, cellGridRegionDims);
         Dimension cellGridDims = new Dimension((int) cellGridRegionDims.getWidth() - cellGridConstraints.insets.left
                                                                                    - cellGridConstraints.insets.right,
                                                (int) cellGridRegionDims.getHeight() - cellGridConstraints.insets.top
                                                                                     - cellGridConstraints.insets.bottom);
-        cellGrid = new CellGrid(cellGridDims);
+        cellGrid = new CellGrid(cellGridDims, engineName, ruleString, parseBoardSize(boardSize));
         cellGrid.addMouseListener(cellGrid);
+        cellGrid.addMouseMotionListener(cellGrid);
+        cellGrid.addMouseWheelListener(cellGrid);
         gamePanel.add(cellGrid, cellGridConstraints);
 
         /* These three blocks of code define the GridBagConstraints for each
@@ -121,6 +140,10 @@ public class GameOfLife extends JFrame {
         JButton seedButton = buildSeedButton();
         gamePanel.add(seedButton, seedButtonGridConstraints);
 
+        GridBagConstraints rateLabelGridConstraints = buildButtonConstraints(1, 0, 1, 2, buttonRegionDims);
+        JLabel rateLabel = buildRateLabel();
+        gamePanel.add(rateLabel, rateLabelGridConstraints);
+
         /* These steps confirm the layout that I've defined, and pack()
            attends to the error in the dimensions introduced when I used
            Toolkit.getDefaultToolkit().getScreenSize().getHeight() (which
@@ -290,17 +313,191 @@ public class GameOfLife extends JFrame {
         return button;
     }
 
+    /**
+     * This method composes the title of the window from the engine and the
+     * rulestring it was started with.
+     *
+     * @param engineName The name of the stepping engine.
+     * @param ruleString The rulestring, or null for the engine's default rule.
+     * @return           The window title.
+     */
+    private static String windowTitle(final String engineName, final String ruleString) {
+        if (CellGrid.ENGINE_LARGER_THAN_LIFE.equals(engineName)) {
+            return "Larger than Life "
+                   + ((ruleString == null) ? LargerThanLifeRule.BOSCO : LargerThanLifeRule.parse(ruleString));
+        }
+        GenerationsRule ruleVal = (ruleString == null) ? GenerationsRule.CONWAY : GenerationsRule.parse(ruleString);
+        return (ruleVal == GenerationsRule.CONWAY) ? "Conway's Game of Life" : "Cellular Automaton " + ruleVal;
+    }
+
+    /**
+     * This method parses the value of the --board option, a size of the form
+     * WxH in cells, eg. 100000x100000.
+     *
+     * @param boardSize The board size string, or null.
+     * @return          A Dimension object holding the size, or null if the
+     *                  string was null.
+     * @throws IllegalArgumentException If the string isn't of the form WxH
+     *                                  with both dimensions positive.
+     */
+    private static Dimension parseBoardSize(final String boardSize) {
+        if (boardSize == null) {
+            return null;
+        }
+        String[] sizeParts = boardSize.split("x");
+        try {
+            if (sizeParts.length == 2) {
+                int boardWidth = Integer.parseInt(sizeParts[0]);
+                int boardHeight = Integer.parseInt(sizeParts[1]);
+                if (boardWidth > 0 && boardHeight > 0) {
+                    return new Dimension(boardWidth, boardHeight);
+                }
+            }
+        } catch (NumberFormatException exception) {
+            assert true;
+        }
+        throw new IllegalArgumentException("a board size must be of the form WxH, not " + boardSize);
+    }
+
+    /**
+     * This method is used to construct a JLabel that reports the rate the
+     * simulation is achieving against the rate it was asked for, and the
+     * population of the cell grid. The population is counted by a
+     * PopulationTracker attached to the cell grid's SimulationPipeline, off
+     * the simulation thread. While the frames are being recorded, it also
+     * reports how many have been recorded and dropped. A Timer object
+     * refreshes the text twice a second.
+     *
+     * @return The JLabel constructed by the method.
+     */
+    private JLabel buildRateLabel() {
+        PopulationTracker populationTracker = new PopulationTracker();
+        cellGrid.getSimulationPipeline().addConsumer(populationTracker, RingConsumer.POLICY_BACKPRESSURE,
+                                                     "population tracker");
+        JLabel label = new JLabel(describeRate(cellGrid.getSimulationClock(), populationTracker,
+                                               cellGrid.getFrameRecorder()),
+                                  SwingConstants.CENTER);
+        Timer refreshTimer = new Timer(500, new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent event) {
+                label.setText(describeRate(cellGrid.getSimulationClock(), populationTracker,
+                                           cellGrid.getFrameRecorder()));
+            }
+        });
+        refreshTimer.start();
+        return label;
+    }
+
+    /**
+     * This method composes the text of the rate label from the clock's mode,
+     * its achieved rate, and the rate it was asked for, with the population
+     * and any cycle found by the tracker on a second line, and the frames
+     * recorded and dropped by the recorder, if there is one, on a third.
+     *
+     * @param simulationClock   The SimulationClock object to describe.
+     * @param populationTracker The PopulationTracker object to describe.
+     * @param frameRecorder     The FrameRecorder object to describe, or null
+     *                          if the frames aren't being recorded.
+     * @return                  The label text.
+     */
+    private static String describeRate(final SimulationClock simulationClock,
+                                       final PopulationTracker populationTracker,
+                                       final FrameRecorder frameRecorder) {
+        String rateText;
+        switch (simulationClock.getMode()) {
+            case SimulationClock.MODE_MAX_SPEED:
+                rateText = String.format("%.1f gen/s (max)", simulationClock.getAchievedRate());
+                break;
+            case SimulationClock.MODE_PER_FRAME:
+                rateText = String.format("%.1f gen/s (%d/frame)", simulationClock.getAchievedRate(),
+                                         simulationClock.getGenerationsPerFrame());
+                break;
+            default:
+                rateText = String.format("%.1f of %.1f gen/s", simulationClock.getAchievedRate(),
+                                         simulationClock.getRequestedRate());
+                break;
+        }
+        String populationText = populationTracker.getPopulation() + " live";
+        if (populationTracker.getCyclePeriod() == 1L) {
+            populationText += ", still";
+        } else if (populationTracker.getCyclePeriod() > 1L) {
+            populationText += ", period " + populationTracker.getCyclePeriod();
+        }
+        String recordingText = "";
+        if (frameRecorder != null) {
+            recordingText = "<br>" + frameRecorder.getRecordedFrameCount() + " recorded, "
+                            + frameRecorder.getDroppedFrameCount() + " dropped";
+        }
+        return "<html><center>" + rateText + "<br>" + populationText + recordingText + "</center></html>";
+    }
+
+    /**
+     * This method looks through the commandline arguments for one of the form
+     * --name=value and returns its value.
+     *
+     * @param args         The argument string array composed from the
+     *                     commandline arguments.
+     * @param optionName   The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option isn't present.
+     * @return             The value of the option, or defaultValue.
+     */
+    private static String findOption(final String[] args, final String optionName, final String defaultValue) {
+        String optionPrefix = "--" + optionName + "=";
+        for (String arg : args) {
+            if (arg.startsWith(optionPrefix)) {
+                return arg.substring(optionPrefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
     /**
      * This method is called when the class is run as the frontend to the
      * program. It instances the class into a GameOfLife object and sets some
      * instance variables appropriately. The rest of the execution occurs when
-     * the user interacts with the GUI this class implements.
+     * the user interacts with the GUI this class implements. The stepping
+     * engine can be chosen with an --engine=name argument, eg.
+     * --engine=bitpacked. With --engine=hashlife, a --step-exponent=k argument
+     * makes every step of the animation advance 2^k generations. Any Life-like
+     * rule can be run with a --rule=rulestring argument, eg. --rule=B36/S23 for
+     * HighLife, and with --engine=generations so can any Generations rule, eg.
+     * --rule=B2/S/C3 for Brian's Brain. With --engine=ltl, the rulestring is a
+     * Larger than Life rule, eg. --rule=R5,C0,M1,S34..58,B34..45,NM, which is
+     * Bosco's Rule and the default. --speed=g steps g generations per second (3
+     * by default), --speed=max steps as fast as possible, and --speed=n/frame
+     * steps n generations per frame painted. The cell grid fills the window at
+     * 10 pixels per cell unless it's given a size with a --board=WxH argument,
+     * eg. --board=100000x100000; it can be panned by dragging and zoomed with
+     * the mouse wheel either way. A board much larger than the window is best
+     * run with the bitpacked, hashlife or chunked engine. A --record=path
+     * argument records the frames painted, as --record-format=png (the default)
+     * writes a PNG file per frame into the directory path and
+     * --record-format=gif an animated GIF, both of the view, and
+     * --record-format=raw a file of raw bit-packed frames of the whole board,
+     * for a board of at most FrameRecorder.MAX_RAW_BOARD_CELLS cells;
+     * --record-every=n records only every nth frame. The recording is finished
+     * when the program exits.
      *
      * @param args The argument string array composed from the commandline
      *             arguments, if any.
      */
     public static void main(final String[] args) {
-        GameOfLife game = new GameOfLife();
+        GameOfLife game = new GameOfLife(findOption(args, "engine", CellGrid.ENGINE_INT_ARRAY),
+                                         findOption(args, "rule", null), findOption(args, "board", null));
+        if (game.cellGrid.getGridEngine() instanceof HashLifeEngine) {
+            ((HashLifeEngine) game.cellGrid.getGridEngine())
+                .setStepExponent(Integer.parseInt(findOption(args, "step-exponent", "0")));
+        }
+        game.cellGrid.getSimulationClock().setSpeed(findOption(args, "speed", "3"));
+        String recordPath = findOption(args, "record", null);
+        if (recordPath != null) {
+            game.cellGrid.startRecording(Path.of(recordPath),
+                                         FrameRecorder.parseFormat(findOption(args, "record-format", "png")),
+                                         Integer.parseInt(findOption(args, "record-every", "1")));
+            /* The window closes with System.exit(), so the recording is
+               finished, and a GIF given its trailer, by a shutdown hook. */
+            Runtime.getRuntime().addShutdownHook(new Thread(game.cellGrid::stopRecording, "recording finisher"));
+        }
         game.setVisible(true);
         game.setLocationRelativeTo(null);
     }
@@ -0,0 +1,467 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a snapshot of one generation of a cell grid, as it's
+ * passed from the simulation thread to the stages that consume it. Frames are
+ * reused rather than built anew for every generation: each slot of a
+ * GenerationRing is a GenerationFrame that the simulation thread fills in
+ * place, and a consumer that wants to hold on to a generation copies it into a
+ * frame of its own with copyFrom(). A frame's array is only reallocated when
+ * it's filled with a cell grid of a different size, so once every frame in
+ * the pipeline has been filled once, nothing more is allocated.
+ * <p>
+ * The state of every cell is kept as a byte, row by row at index (vertIndex *
+ * horizDim + horizIndex): 0 or 1 for a two-state cell grid, or the state
+ * number for a MultiStateGridEngine.
+ * <p>
+ * A frame holds the part of the cell grid a Viewport shows rather than
+ * necessarily the whole of it, and records how it's to be drawn: its view
+ * scale is the number of pixels on a side of each of its cells if it's
+ * positive, in which case every byte is the state of a cell of the cell grid
+ * and its view origin is the cell grid coordinate of its first cell. If the
+ * scale is negative, the view is zoomed out, and each byte of the frame
+ * stands for a block of -scale x -scale cells drawn as a single pixel; it
+ * holds the density of live cells in the block, from 0 for none to 255 for
+ * all of them, rounded up so that a block with any live cell in it isn't
+ * drawn as empty.
+ * <p>
+ * The cell grid is also divided into tiles of TILE_DIM x TILE_DIM cells, and a
+ * published frame records for every tile the sequence number of the last frame
+ * in which any of its cells changed. The simulation thread stamps them, with
+ * stampChangedTiles(), as it publishes each frame. A painter that last painted
+ * frame p only has to repaint the tiles stamped later than p. Stamps are used
+ * rather than a bit per tile that changed since the previous frame, since the
+ * painter doesn't see every frame: a cell that changed in a frame it skipped,
+ * and not since, would otherwise never be repainted, and would be left
+ * showing a state the cell grid had moved on from.
+ * <p>
+ * A frame filled by captureCellWords() holds the whole cell grid 64 cells to
+ * a long instead, as the raw format of a FrameRecorder stores it, and is only
+ * read with getCellWords(); its bytes and tile stamps are left as they were.
+ *
+ * @see org.kmfahey.jgameoflife.GenerationRing
+ * @see org.kmfahey.jgameoflife.SimulationPipeline
+ * @see org.kmfahey.jgameoflife.SimulationSource
+ */
+public final class GenerationFrame {
+
+    /** This int is the width and height of a tile, in cells. */
+    public static final int TILE_DIM = 16;
+
+    /** This int is the horizontal dimension of the cell grid, in cells. */
+    private int horizDim;
+
+    /** This int is the vertical dimension of the cell grid, in cells. */
+    private int vertDim;
+
+    /** This long is the number of generations the cell grid had been stepped
+        when the frame was filled. */
+    private long generationNumber;
+
+    /** This byte[] array holds the state of every cell, row by row. */
+    private byte[] cellStates = new byte[0];
+
+    /** This long[] array holds the cells of a frame filled by
+        captureCellWords(), 64 to a long, row by row. */
+    private long[] cellWords = new long[0];
+
+    /** This long is the sequence number the frame was published with, or -1
+        if it hasn't been. */
+    private long frameSequence = -1L;
+
+    /** This int is the number of tiles across the cell grid. */
+    private int tilesHoriz;
+
+    /** This int is the number of tiles down the cell grid. */
+    private int tilesVert;
+
+    /** This long[] array holds the sequence number of the last frame in
+        which each tile changed, row by row. */
+    private long[] tileStamps = new long[0];
+
+    /** This int is the number of pixels on a side of each cell of the frame,
+        or if it's negative, the number of cells of the cell grid on a side of
+        each pixel. */
+    private int viewScale = 1;
+
+    /** This int is the horizontal coordinate, in the cell grid, of the cell
+        the frame starts at. */
+    private int viewOriginHoriz;
+
+    /** This int is the vertical coordinate, in the cell grid, of the cell the
+        frame starts at. */
+    private int viewOriginVert;
+
+    /** This int is the number of live cells in the blocks of a frame filled
+        by captureDensity(), which can't be counted from its bytes. */
+    private int liveCellCount;
+
+    /**
+     * This constructor initializes an empty GenerationFrame object, of no
+     * cells, to be filled later.
+     */
+    public GenerationFrame() {
+    }
+
+    /**
+     * This method readies the frame to be filled with a generation of a cell
+     * grid, reallocating its array if the cell grid is of a different size.
+     * The cells are left as they were, to be overwritten with
+     * setCellState().
+     *
+     * @param horizDimVal         The horizontal dimension of the cell grid.
+     * @param vertDimVal          The vertical dimension of the cell grid.
+     * @param generationNumberVal The number of generations the cell grid has
+     *                            been stepped.
+     */
+    public void reset(final int horizDimVal, final int vertDimVal, final long generationNumberVal) {
+        if (cellStates.length != horizDimVal * vertDimVal) {
+            cellStates = new byte[horizDimVal * vertDimVal];
+        }
+        horizDim = horizDimVal;
+        vertDim = vertDimVal;
+        generationNumber = generationNumberVal;
+        tilesHoriz = (horizDim + TILE_DIM - 1) / TILE_DIM;
+        tilesVert = (vertDim + TILE_DIM - 1) / TILE_DIM;
+        if (tileStamps.length != tilesHoriz * tilesVert) {
+            tileStamps = new long[tilesHoriz * tilesVert];
+        }
+    }
+
+    /**
+     * This method fills the frame with the current generation of a stepping
+     * engine, reading the states of a MultiStateGridEngine and the values of
+     * the cells of any other engine.
+     *
+     * @param gridEngine          The engine to read the cell grid from.
+     * @param generationNumberVal The number of generations it's been stepped.
+     */
+    public void captureFrom(final GridEngine gridEngine, final long generationNumberVal) {
+        captureRegion(gridEngine, 0, 0, gridEngine.getHorizDim(), gridEngine.getVertDim(), generationNumberVal);
+    }
+
+    /**
+     * This method fills the frame with the whole of the current generation of
+     * a stepping engine, 64 cells to a long, as GridEngine.copyCellWords()
+     * lays them out, reallocating its array of longs if the cell grid is of a
+     * different size. The view is left as it was, for the caller to set.
+     *
+     * @param gridEngine          The engine to read the cell grid from.
+     * @param generationNumberVal The number of generations it's been stepped.
+     */
+    public void captureCellWords(final GridEngine gridEngine, final long generationNumberVal) {
+        horizDim = gridEngine.getHorizDim();
+        vertDim = gridEngine.getVertDim();
+        generationNumber = generationNumberVal;
+        int wordCount = vertDim * ((horizDim + 63) >>> 6);
+        if (cellWords.length != wordCount) {
+            cellWords = new long[wordCount];
+        }
+        gridEngine.copyCellWords(cellWords);
+    }
+
+    /**
+     * This method fills the frame with a rectangle of the current generation
+     * of a stepping engine, one byte per cell, reading the states of a
+     * MultiStateGridEngine and the values of the cells of any other engine.
+     * The view is left as it was, for the caller to set.
+     *
+     * @param gridEngine          The engine to read the cell grid from.
+     * @param originHoriz         The horizontal coordinate of the rectangle's
+     *                            first cell.
+     * @param originVert          The vertical coordinate of the rectangle's
+     *                            first cell.
+     * @param regionHoriz         The width of the rectangle, in cells.
+     * @param regionVert          The height of the rectangle, in cells.
+     * @param generationNumberVal The number of generations it's been stepped.
+     */
+    public void captureRegion(final GridEngine gridEngine, final int originHoriz, final int originVert,
+                              final int regionHoriz, final int regionVert, final long generationNumberVal) {
+        reset(regionHoriz, regionVert, generationNumberVal);
+        MultiStateGridEngine multiStateEngine = (gridEngine instanceof MultiStateGridEngine)
+                                                ? (MultiStateGridEngine) gridEngine : null;
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                int cellState = (multiStateEngine != null)
+                                ? multiStateEngine.getCellState(originHoriz + horizIndex, originVert + vertIndex)
+                                : gridEngine.getCell(originHoriz + horizIndex, originVert + vertIndex);
+                cellStates[vertIndex * horizDim + horizIndex] = (byte) cellState;
+            }
+        }
+    }
+
+    /**
+     * This method fills the frame with the density of live cells in a grid of
+     * square blocks of the current generation of a stepping engine, one byte
+     * per block. A block that runs past the edge of the cell grid is shaded by
+     * the density of the part of it inside. The view is left as it was, for
+     * the caller to set.
+     *
+     * @param gridEngine          The engine to read the cell grid from.
+     * @param originHoriz         The horizontal coordinate of the first
+     *                            block's first cell.
+     * @param originVert          The vertical coordinate of the first block's
+     *                            first cell.
+     * @param blockDim            The width and height of a block, in cells.
+     * @param blocksHoriz         The number of blocks across the frame.
+     * @param blocksVert          The number of blocks down the frame.
+     * @param generationNumberVal The number of generations it's been stepped.
+     */
+    public void captureDensity(final GridEngine gridEngine, final int originHoriz, final int originVert,
+                               final int blockDim, final int blocksHoriz, final int blocksVert,
+                               final long generationNumberVal) {
+        reset(blocksHoriz, blocksVert, generationNumberVal);
+        int liveCells = 0;
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            int blockOriginVert = originVert + vertIndex * blockDim;
+            int blockVert = Math.min(blockDim, gridEngine.getVertDim() - blockOriginVert);
+            for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                int blockOriginHoriz = originHoriz + horizIndex * blockDim;
+                int blockHoriz = Math.min(blockDim, gridEngine.getHorizDim() - blockOriginHoriz);
+                int blockLiveCells = gridEngine.countLiveCells(blockOriginHoriz, blockOriginVert, blockHoriz,
+                                                               blockVert);
+                int blockCells = blockHoriz * blockVert;
+                cellStates[vertIndex * horizDim + horizIndex] =
+                    (byte) ((blockLiveCells * 255 + blockCells - 1) / blockCells);
+                liveCells += blockLiveCells;
+            }
+        }
+        liveCellCount = liveCells;
+    }
+
+    /**
+     * This method sets how the frame is to be drawn.
+     *
+     * @param viewScaleVal       The number of pixels on a side of each cell
+     *                           of the frame, or if it's negative, the number
+     *                           of cells on a side of each pixel.
+     * @param viewOriginHorizVal The horizontal coordinate, in the cell grid,
+     *                           of the cell the frame starts at.
+     * @param viewOriginVertVal  The vertical coordinate, in the cell grid, of
+     *                           the cell the frame starts at.
+     */
+    public void setView(final int viewScaleVal, final int viewOriginHorizVal, final int viewOriginVertVal) {
+        viewScale = viewScaleVal;
+        viewOriginHoriz = viewOriginHorizVal;
+        viewOriginVert = viewOriginVertVal;
+    }
+
+    /**
+     * This method makes the frame a copy of another. The copy is bounded by
+     * the length of the other frame's array rather than by its dimensions, so
+     * that copying a frame that's being refilled at the same moment can give
+     * a torn copy, which GenerationRing detects and discards, but never an
+     * exception.
+     *
+     * @param sourceFrame The frame to copy.
+     */
+    public void copyFrom(final GenerationFrame sourceFrame) {
+        byte[] sourceStates = sourceFrame.cellStates;
+        long[] sourceStamps = sourceFrame.tileStamps;
+        reset(sourceFrame.horizDim, sourceFrame.vertDim, sourceFrame.generationNumber);
+        frameSequence = sourceFrame.frameSequence;
+        viewScale = sourceFrame.viewScale;
+        viewOriginHoriz = sourceFrame.viewOriginHoriz;
+        viewOriginVert = sourceFrame.viewOriginVert;
+        liveCellCount = sourceFrame.liveCellCount;
+        System.arraycopy(sourceStates, 0, cellStates, 0, Math.min(sourceStates.length, cellStates.length));
+        System.arraycopy(sourceStamps, 0, tileStamps, 0, Math.min(sourceStamps.length, tileStamps.length));
+    }
+
+    /**
+     * This method gives the frame its sequence number, and stamps every tile
+     * with it whose cells differ from the frame published before it; the
+     * other tiles keep the stamps they had in that frame. If there's no frame
+     * before it, or it's of a different size or view, every tile is
+     * stamped.
+     *
+     * @param previousFrame    The frame published before this one, or null.
+     * @param frameSequenceVal The sequence number of this frame.
+     */
+    public void stampChangedTiles(final GenerationFrame previousFrame, final long frameSequenceVal) {
+        frameSequence = frameSequenceVal;
+        if (previousFrame == null || previousFrame.horizDim != horizDim || previousFrame.vertDim != vertDim
+            || !hasSameView(previousFrame)) {
+            Arrays.fill(tileStamps, frameSequence);
+            return;
+        }
+        System.arraycopy(previousFrame.tileStamps, 0, tileStamps, 0, tileStamps.length);
+        byte[] previousStates = previousFrame.cellStates;
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            int rowOffset = vertIndex * horizDim;
+            int tileRowOffset = (vertIndex / TILE_DIM) * tilesHoriz;
+            /* A row that hasn't changed, which in a settled cell grid is most
+               of them, is passed over with a single comparison. */
+            int mismatchIndex = Arrays.mismatch(cellStates, rowOffset, rowOffset + horizDim,
+                                                previousStates, rowOffset, rowOffset + horizDim);
+            while (mismatchIndex >= 0) {
+                int tileHoriz = mismatchIndex / TILE_DIM;
+                tileStamps[tileRowOffset + tileHoriz] = frameSequence;
+                int nextTileStart = (tileHoriz + 1) * TILE_DIM;
+                if (nextTileStart >= horizDim) {
+                    break;
+                }
+                int remainingIndex = Arrays.mismatch(cellStates, rowOffset + nextTileStart, rowOffset + horizDim,
+                                                     previousStates, rowOffset + nextTileStart,
+                                                     rowOffset + horizDim);
+                mismatchIndex = (remainingIndex < 0) ? -1 : nextTileStart + remainingIndex;
+            }
+        }
+    }
+
+    /**
+     * This method reports whether another frame is drawn at the same scale
+     * from the same origin as this one.
+     *
+     * @param otherFrame The frame to compare with.
+     * @return           true if the two frames have the same view, false
+     *                   otherwise.
+     */
+    public boolean hasSameView(final GenerationFrame otherFrame) {
+        return otherFrame.viewScale == viewScale && otherFrame.viewOriginHoriz == viewOriginHoriz
+               && otherFrame.viewOriginVert == viewOriginVert;
+    }
+
+    /**
+     * This method returns the sequence number of the last frame in which any
+     * cell of a tile changed.
+     *
+     * @param tileHoriz The horizontal coordinate of the tile, in tiles.
+     * @param tileVert  The vertical coordinate of the tile, in tiles.
+     * @return          The sequence number of the frame.
+     */
+    public long getTileStamp(final int tileHoriz, final int tileVert) {
+        return tileStamps[tileVert * tilesHoriz + tileHoriz];
+    }
+
+    /**
+     * This method is an accessor for the private frameSequence variable.
+     *
+     * @return The sequence number the frame was published with, or -1 if it
+     *         hasn't been.
+     */
+    public long getFrameSequence() {
+        return frameSequence;
+    }
+
+    /**
+     * This method is an accessor for the private tilesHoriz variable.
+     *
+     * @return The number of tiles across the cell grid.
+     */
+    public int getTilesHoriz() {
+        return tilesHoriz;
+    }
+
+    /**
+     * This method is an accessor for the private tilesVert variable.
+     *
+     * @return The number of tiles down the cell grid.
+     */
+    public int getTilesVert() {
+        return tilesVert;
+    }
+
+    /**
+     * This method sets the state of a single cell.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellState  The state of the cell.
+     */
+    public void setCellState(final int horizIndex, final int vertIndex, final int cellState) {
+        cellStates[vertIndex * horizDim + horizIndex] = (byte) cellState;
+    }
+
+    /**
+     * This method returns the state of a single cell.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           The state of the cell: 1 if it's live or 0 if it's
+     *                   dead, or a dying state of a multi-state rule.
+     */
+    public int getCellState(final int horizIndex, final int vertIndex) {
+        return cellStates[vertIndex * horizDim + horizIndex] & 0xFF;
+    }
+
+    /**
+     * This method is an accessor for the private cellWords variable.
+     *
+     * @return The cells of a frame filled by captureCellWords(), 64 to a
+     *         long, row by row.
+     */
+    public long[] getCellWords() {
+        return cellWords;
+    }
+
+    /**
+     * This method is an accessor for the private viewScale variable.
+     *
+     * @return The number of pixels on a side of each cell of the frame, or if
+     *         it's negative, the number of cells on a side of each pixel.
+     */
+    public int getViewScale() {
+        return viewScale;
+    }
+
+    /**
+     * This method is an accessor for the private viewOriginHoriz variable.
+     *
+     * @return The horizontal coordinate, in the cell grid, of the cell the
+     *         frame starts at.
+     */
+    public int getViewOriginHoriz() {
+        return viewOriginHoriz;
+    }
+
+    /**
+     * This method is an accessor for the private viewOriginVert variable.
+     *
+     * @return The vertical coordinate, in the cell grid, of the cell the
+     *         frame starts at.
+     */
+    public int getViewOriginVert() {
+        return viewOriginVert;
+    }
+
+    /**
+     * This method is an accessor for the private liveCellCount variable.
+     *
+     * @return The number of live cells in the blocks of a frame filled by
+     *         captureDensity().
+     */
+    public int getLiveCellCount() {
+        return liveCellCount;
+    }
+
+    /**
+     * This method is an accessor for the private horizDim variable.
+     *
+     * @return The horizontal dimension of the cell grid, in cells.
+     */
+    public int getHorizDim() {
+        return horizDim;
+    }
+
+    /**
+     * This method is an accessor for the private vertDim variable.
+     *
+     * @return The vertical dimension of the cell grid, in cells.
+     */
+    public int getVertDim() {
+        return vertDim;
+    }
+
+    /**
+     * This method is an accessor for the private generationNumber variable.
+     *
+     * @return The number of generations the cell grid had been stepped when
+     *         the frame was filled.
+     */
+    public long getGenerationNumber() {
+        return generationNumber;
+    }
+}
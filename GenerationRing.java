@@ -0,0 +1,265 @@
+package org.kmfahey.jgameoflife;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements a ring buffer of GenerationFrame slots, after the
+ * LMAX Disruptor, that connects the simulation thread to any number of
+ * stages that consume its generations: the painter, statistics, a recorder.
+ * The slots are allocated once, when the ring is built, and the simulation
+ * thread fills them in place, so handing a generation to every stage costs no
+ * allocation at all.
+ * <p>
+ * Every generation published gets the next sequence number, counting from 0,
+ * and goes in slot (sequence % slotCount). The producer claims a slot with
+ * claimNext(), fills it, and publishes it with publish(); the cursor is the
+ * sequence of the newest frame published. There is a single producer: claims
+ * and publishes must not overlap, which SimulationPipeline ensures by making
+ * them with its edit lock held.
+ * <p>
+ * Each consumer is a RingConsumer with a sequence of its own, the last frame
+ * it's finished with, and a policy. A consumer with POLICY_BACKPRESSURE gates
+ * the producer: a slot isn't reclaimed until every such consumer is done with
+ * the frame in it, so it sees every generation, in order, read straight from
+ * the slot, and if it falls slotCount frames behind the simulation waits for
+ * it. A consumer with POLICY_SKIP never holds up the producer; it takes the
+ * newest frame whenever it's ready for one, and the ones in between are
+ * skipped. Since the slot it's reading may be refilled underneath it, it
+ * copies the frame out with readLatest(), which guards every slot with a
+ * sequence lock: a slot's sequence is set to -1 while it's being filled and
+ * to the frame's sequence once it's published, and a copy that doesn't see the
+ * same published sequence before and after is thrown away and retried.
+ *
+ * @see org.kmfahey.jgameoflife.RingConsumer
+ * @see org.kmfahey.jgameoflife.SimulationPipeline
+ * @see org.kmfahey.jgameoflife.GenerationFrame
+ */
+public class GenerationRing {
+
+    /** This long is the longest the producer parks at a time while it waits
+        for a consumer to free a slot, in nanoseconds. Consumers unpark it when
+        they advance, so this only bounds a missed wakeup. */
+    private final long producerParkNanos = 1_000_000L;
+
+    /** This int is the number of slots, a power of 2. */
+    private final int slotCount;
+
+    /** This int is slotCount - 1, which masks a sequence into a slot
+        index. */
+    private final int slotMask;
+
+    /** This GenerationFrame[] array holds the slots. */
+    private final GenerationFrame[] frameSlots;
+
+    /** This AtomicLongArray object holds the sequence of the frame published
+        in each slot, or -1 while the slot is being filled. */
+    private final AtomicLongArray slotSequences;
+
+    /** This long is the sequence of the newest frame published, or -1 if
+        none has been. */
+    private volatile long cursor = -1L;
+
+    /** This long is the sequence of the slot last claimed by the producer.
+        It's only used by the producer. */
+    private long claimedSequence = -1L;
+
+    /** This RingConsumer[] array holds the consumers registered with the
+        ring. It's replaced rather than changed when one is added or removed,
+        so the producer can read it without a lock. */
+    private volatile RingConsumer[] ringConsumers = new RingConsumer[0];
+
+    /** This Thread object is the producer while it's waiting for a
+        consumer to free a slot, or null. */
+    private volatile Thread waitingProducer;
+
+    /**
+     * This constructor initializes the GenerationRing object and allocates
+     * its slots.
+     *
+     * @param slotCountVal The number of slots, a power of 2 no smaller than
+     *                     2.
+     * @throws IllegalArgumentException If the number of slots isn't a power
+     *                                  of 2, or is less than 2.
+     */
+    public GenerationRing(final int slotCountVal) {
+        if (slotCountVal < 2 || Integer.bitCount(slotCountVal) != 1) {
+            throw new IllegalArgumentException("the slot count must be a power of 2 no smaller than 2, not "
+                                               + slotCountVal);
+        }
+        slotCount = slotCountVal;
+        slotMask = slotCountVal - 1;
+        frameSlots = new GenerationFrame[slotCount];
+        slotSequences = new AtomicLongArray(slotCount);
+        for (int slotIndex = 0; slotIndex < slotCount; slotIndex++) {
+            frameSlots[slotIndex] = new GenerationFrame();
+            slotSequences.set(slotIndex, -1L);
+        }
+    }
+
+    /**
+     * This method is an accessor for the private slotCount variable.
+     *
+     * @return The number of slots.
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * This method is an accessor for the private cursor variable.
+     *
+     * @return The sequence of the newest frame published, or -1 if none has
+     *         been.
+     */
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * This method registers a consumer. It'll be handed the frames published
+     * after its current sequence, and if its policy is POLICY_BACKPRESSURE,
+     * the producer won't reclaim a slot it hasn't finished with.
+     *
+     * @param ringConsumer The consumer to register.
+     */
+    public synchronized void addConsumer(final RingConsumer ringConsumer) {
+        RingConsumer[] newConsumers = Arrays.copyOf(ringConsumers, ringConsumers.length + 1);
+        newConsumers[ringConsumers.length] = ringConsumer;
+        ringConsumers = newConsumers;
+    }
+
+    /**
+     * This method unregisters a consumer, and wakes the producer in case it
+     * was waiting on it.
+     *
+     * @param ringConsumer The consumer to unregister.
+     */
+    public synchronized void removeConsumer(final RingConsumer ringConsumer) {
+        RingConsumer[] newConsumers = new RingConsumer[ringConsumers.length];
+        int consumerCount = 0;
+        for (RingConsumer registeredConsumer : ringConsumers) {
+            if (registeredConsumer != ringConsumer) {
+                newConsumers[consumerCount++] = registeredConsumer;
+            }
+        }
+        ringConsumers = Arrays.copyOf(newConsumers, consumerCount);
+        consumerAdvanced();
+    }
+
+    /**
+     * This method claims the slot for the next frame and returns it, to be
+     * filled and then published with publish(). If the slot still holds a
+     * frame that a POLICY_BACKPRESSURE consumer hasn't finished with, it
+     * waits until the consumer has.
+     *
+     * @return The GenerationFrame object to fill.
+     */
+    public GenerationFrame claimNext() {
+        long nextSequence = claimedSequence + 1;
+        long wrapSequence = nextSequence - slotCount;
+        while (minimumGatingSequence() < wrapSequence) {
+            /* The producer announces that it's waiting before checking again,
+               so a consumer that advances in between sees it and unparks
+               it. */
+            waitingProducer = Thread.currentThread();
+            if (minimumGatingSequence() < wrapSequence) {
+                LockSupport.parkNanos(this, producerParkNanos);
+            }
+            waitingProducer = null;
+        }
+        claimedSequence = nextSequence;
+
+        /* The slot is marked as being filled before anything is written to
+           it; the fence keeps the writes that fill it from being seen before
+           the mark. */
+        int slotIndex = (int) nextSequence & slotMask;
+        slotSequences.set(slotIndex, -1L);
+        VarHandle.storeStoreFence();
+        return frameSlots[slotIndex];
+    }
+
+    /**
+     * This method publishes the slot last claimed, and wakes any consumer
+     * that's waiting for a frame.
+     */
+    public void publish() {
+        slotSequences.setRelease((int) claimedSequence & slotMask, claimedSequence);
+        cursor = claimedSequence;
+        for (RingConsumer ringConsumer : ringConsumers) {
+            ringConsumer.wake();
+        }
+    }
+
+    /**
+     * This method returns the slot holding a published frame, to be read in
+     * place. It's only safe for a registered POLICY_BACKPRESSURE consumer to
+     * call, for a sequence after its own and no later than the cursor, since
+     * only then can the slot not be refilled while it's read.
+     *
+     * @param sequence The sequence of the frame.
+     * @return         The GenerationFrame object holding it.
+     */
+    public GenerationFrame getSlot(final long sequence) {
+        return frameSlots[(int) sequence & slotMask];
+    }
+
+    /**
+     * This method copies the newest frame published into a frame of the
+     * caller's, retrying if the slot is refilled while it's being copied.
+     *
+     * @param targetFrame The frame to copy into.
+     * @return            The sequence of the frame copied, or -1 if none has
+     *                    been published.
+     */
+    public long readLatest(final GenerationFrame targetFrame) {
+        while (true) {
+            long latestSequence = cursor;
+            if (latestSequence < 0L) {
+                return -1L;
+            }
+            int slotIndex = (int) latestSequence & slotMask;
+            if (slotSequences.getAcquire(slotIndex) != latestSequence) {
+                /* The slot has been reclaimed since the cursor was read, so
+                   there's a newer frame to read instead. */
+                Thread.onSpinWait();
+                continue;
+            }
+            targetFrame.copyFrom(frameSlots[slotIndex]);
+            VarHandle.loadLoadFence();
+            if (slotSequences.get(slotIndex) == latestSequence) {
+                return latestSequence;
+            }
+        }
+    }
+
+    /**
+     * This method is called by a consumer after it advances its sequence,
+     * and unparks the producer if it's waiting for a slot.
+     */
+    public void consumerAdvanced() {
+        Thread producerThread = waitingProducer;
+        if (producerThread != null) {
+            LockSupport.unpark(producerThread);
+        }
+    }
+
+    /**
+     * This method finds the sequence of the slowest POLICY_BACKPRESSURE
+     * consumer, which is the last frame the producer may not yet overwrite.
+     *
+     * @return The least sequence of the consumers that gate the producer, or
+     *         Long.MAX_VALUE if none do.
+     */
+    private long minimumGatingSequence() {
+        long minimumSequence = Long.MAX_VALUE;
+        for (RingConsumer ringConsumer : ringConsumers) {
+            if (ringConsumer.getConsumerPolicy() == RingConsumer.POLICY_BACKPRESSURE) {
+                minimumSequence = Math.min(minimumSequence, ringConsumer.getConsumedSequence());
+            }
+        }
+        return minimumSequence;
+    }
+}
@@ -0,0 +1,256 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a stepping engine for Generations rules, which have
+ * dying states between alive and dead. The board is stored as a byte plane,
+ * one byte per cell holding its state, and nothing else of the board's size
+ * is allocated; even a very large board costs one byte per cell. The plane is
+ * an array per row, so that a board of more than 2^31 cells can be indexed.
+ * <p>
+ * Only live neighbors are counted, so a step packs the live cells of each row
+ * into the same bit-packed layout as BitPackedGridEngine and counts them with
+ * BitPackedGridEngine.stepRowWords(), 64 cells per word. Only three rows of
+ * live bits exist at a time, rolling down the board, plus a copy of the first
+ * row for the last row to wrap around to, so every row is updated in place.
+ * The outcome bit of each cell and its state are then looked up in a table of
+ * next states built from the rule.
+ *
+ * @see org.kmfahey.jgameoflife.GenerationsRule
+ * @see org.kmfahey.jgameoflife.MultiStateGridEngine
+ */
+public class GenerationsGridEngine implements MultiStateGridEngine {
+
+    /** This int is used to store the horizontal dimension of the cell
+        grid, in cells. */
+    private int cellGridHorizDim;
+
+    /** This int is used to store the vertical dimension of the cell grid,
+        in cells. */
+    private int cellGridVertDim;
+
+    /** This int is the number of longs in each row of live bits. */
+    private int wordsPerRow;
+
+    /** This byte[][] array stores the state of every cell, at index
+        [vertIndex][horizIndex]. */
+    private byte[][] cellStates;
+
+    /** This GenerationsRule object is the rule the cells are stepped by. */
+    private GenerationsRule generationsRule;
+
+    /** This byte[] array holds the next state of a cell at index
+        ((cellState &lt;&lt; 1) | outcome), where outcome is the bit its
+        LifeRule produced. */
+    private byte[] transitionTable;
+
+    /** These long[] arrays hold the live bits of the rows north of, at and
+        south of the row being stepped. */
+    private long[] northAliveRow;
+    private long[] centerAliveRow;
+    private long[] southAliveRow;
+
+    /** This long[] array holds the live bits of the first row, saved before
+        it's updated so that the last row can read it as its south row. */
+    private long[] firstAliveRow;
+
+    /** This long[] array holds the outcome bits of the row being stepped. */
+    private long[] outcomeRow;
+
+    /**
+     * This constructor initializes the GenerationsGridEngine object with
+     * Brian's Brain, B2/S/C3.
+     *
+     * @param horizDim The horizontal dimension of the cell grid, in cells.
+     * @param vertDim  The vertical dimension of the cell grid, in cells.
+     */
+    public GenerationsGridEngine(final int horizDim, final int vertDim) {
+        this(horizDim, vertDim, GenerationsRule.parse("B2/S/C3"));
+    }
+
+    /**
+     * This constructor initializes the GenerationsGridEngine object,
+     * allocating the byte plane and the row buffers and building the table of
+     * next states.
+     *
+     * @param horizDim           The horizontal dimension of the cell grid, in
+     *                           cells.
+     * @param vertDim            The vertical dimension of the cell grid, in
+     *                           cells.
+     * @param generationsRuleVal The rule to step the cells by.
+     */
+    public GenerationsGridEngine(final int horizDim, final int vertDim, final GenerationsRule generationsRuleVal) {
+        cellGridHorizDim = horizDim;
+        cellGridVertDim = vertDim;
+        generationsRule = generationsRuleVal;
+        wordsPerRow = BitPackedGridEngine.wordsForCells(horizDim);
+        cellStates = new byte[vertDim][horizDim];
+        northAliveRow = new long[wordsPerRow];
+        centerAliveRow = new long[wordsPerRow];
+        southAliveRow = new long[wordsPerRow];
+        firstAliveRow = new long[wordsPerRow];
+        outcomeRow = new long[wordsPerRow];
+
+        transitionTable = new byte[generationsRule.getStateCount() * 2];
+        for (int cellState = 0; cellState < generationsRule.getStateCount(); cellState++) {
+            for (int outcome = 0; outcome < 2; outcome++) {
+                transitionTable[(cellState << 1) | outcome] = (byte) generationsRule.nextCellState(cellState, outcome);
+            }
+        }
+    }
+
+    /**
+     * This method is an accessor for the private generationsRule variable.
+     *
+     * @return The rule the cells are stepped by.
+     */
+    public GenerationsRule getGenerationsRule() {
+        return generationsRule;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridHorizDim variable.
+     *
+     * @return The horizontal dimension of the cell grid, in cells.
+     */
+    public int getHorizDim() {
+        return cellGridHorizDim;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridVertDim variable.
+     *
+     * @return The vertical dimension of the cell grid, in cells.
+     */
+    public int getVertDim() {
+        return cellGridVertDim;
+    }
+
+    /**
+     * This method returns the number of states of the rule.
+     *
+     * @return The number of states, including dead and alive.
+     */
+    public int getStateCount() {
+        return generationsRule.getStateCount();
+    }
+
+    /**
+     * This method returns the state of a single cell.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           The state of the cell.
+     */
+    public int getCellState(final int horizIndex, final int vertIndex) {
+        return cellStates[vertIndex][horizIndex] & 0xFF;
+    }
+
+    /**
+     * This method sets the state of a single cell.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellState  The state of the cell.
+     */
+    public void setCellState(final int horizIndex, final int vertIndex, final int cellState) {
+        cellStates[vertIndex][horizIndex] = (byte) cellState;
+    }
+
+    /**
+     * This method returns the value of a single cell: 1 if it's alive, or 0
+     * if it's dead or dying.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's not.
+     */
+    public int getCell(final int horizIndex, final int vertIndex) {
+        return (getCellState(horizIndex, vertIndex) == 1) ? 1 : 0;
+    }
+
+    /**
+     * This method sets a single cell alive or dead.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    public void setCell(final int horizIndex, final int vertIndex, final int cellValue) {
+        setCellState(horizIndex, vertIndex, cellValue);
+    }
+
+    /**
+     * This method sets every cell to state 0.
+     */
+    public void clearCells() {
+        for (byte[] stateRow : cellStates) {
+            Arrays.fill(stateRow, (byte) 0);
+        }
+    }
+
+    /**
+     * This method packs the live cells of a row into a row of live bits, with
+     * the halo bits set from the cells on the opposite border.
+     *
+     * @param vertIndex The vertical coordinate of the row.
+     * @param aliveRow  The row of live bits to fill.
+     */
+    private void loadAliveRow(final int vertIndex, final long[] aliveRow) {
+        byte[] stateRow = cellStates[vertIndex];
+        Arrays.fill(aliveRow, 0L);
+
+        /* A state of 1 is the only one whose xor with 1 is 0, and so the only
+           one that goes negative when 1 is subtracted from that. */
+        for (int horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
+            int bitIndex = horizIndex + 1;
+            long aliveBit = (((stateRow[horizIndex] & 0xFF) ^ 1) - 1) >>> 31;
+            aliveRow[bitIndex >>> 6] |= aliveBit << (bitIndex & 63);
+        }
+        BitPackedGridEngine.setRowBit(aliveRow, 0, BitPackedGridEngine.getRowBit(aliveRow, cellGridHorizDim));
+        BitPackedGridEngine.setRowBit(aliveRow, cellGridHorizDim + 1, BitPackedGridEngine.getRowBit(aliveRow, 1));
+    }
+
+    /**
+     * This method executes a single step of the algorithm. Rows are stepped
+     * from north to south; each row's outcome bits are computed from the live
+     * bits of it and its two neighboring rows, which were packed before any of
+     * them was updated, and then the row's states are updated in place.
+     */
+    public void stepGeneration() {
+        LifeRule lifeRule = generationsRule.getLifeRule();
+
+        loadAliveRow(cellGridVertDim - 1, northAliveRow);
+        loadAliveRow(0, centerAliveRow);
+        System.arraycopy(centerAliveRow, 0, firstAliveRow, 0, wordsPerRow);
+
+        for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
+            long[] southRow;
+            if (vertIndex + 1 < cellGridVertDim) {
+                loadAliveRow(vertIndex + 1, southAliveRow);
+                southRow = southAliveRow;
+            } else {
+                southRow = firstAliveRow;
+            }
+            BitPackedGridEngine.stepRowWords(lifeRule, northAliveRow, centerAliveRow, southRow, outcomeRow,
+                                             wordsPerRow);
+
+            byte[] stateRow = cellStates[vertIndex];
+            for (int horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
+                int bitIndex = horizIndex + 1;
+                int outcome = (int) (outcomeRow[bitIndex >>> 6] >>> (bitIndex & 63)) & 1;
+                int cellState = stateRow[horizIndex] & 0xFF;
+                stateRow[horizIndex] = transitionTable[(cellState << 1) | outcome];
+            }
+
+            /* The rows roll north by one. The row that was north is reused for
+               the next south row; it's never firstAliveRow, which is only
+               read on the last row. */
+            long[] swapRow = northAliveRow;
+            northAliveRow = centerAliveRow;
+            centerAliveRow = southAliveRow;
+            southAliveRow = swapRow;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This class implements a rule of the Generations family of cellular
+ * automata, such as Brian's Brain, "B2/S/C3". A Generations rule is a
+ * Life-like rule with a number of states C: state 0 is dead, state 1 is alive,
+ * and states 2 through C - 1 are dying. A dead cell is born and a live cell
+ * survives by the birth and survival counts of its LifeRule, counting only
+ * live neighbors; a live cell that doesn't survive starts dying, and a dying
+ * cell advances one state per generation until it's dead again, whatever its
+ * neighbors are doing. With C = 2 there are no dying states, and the rule is
+ * just its LifeRule.
+ *
+ * @see org.kmfahey.jgameoflife.LifeRule
+ * @see org.kmfahey.jgameoflife.GenerationsGridEngine
+ */
+public final class GenerationsRule {
+
+    /** This int constant is the most states a rule can have, so that every
+        state fits in one byte. */
+    public static final int MAX_STATE_COUNT = 256;
+
+    /** This GenerationsRule constant is Conway's Game of Life, B3/S23 with 2
+        states. */
+    public static final GenerationsRule CONWAY = new GenerationsRule(LifeRule.CONWAY, 2);
+
+    /** This LifeRule object holds the birth and survival counts. */
+    private final LifeRule lifeRule;
+
+    /** This int is the number of states, including dead and alive. */
+    private final int stateCount;
+
+    /**
+     * This constructor initializes the GenerationsRule object.
+     *
+     * @param lifeRuleVal   The rule giving the birth and survival counts.
+     * @param stateCountVal The number of states, from 2 to MAX_STATE_COUNT.
+     * @throws IllegalArgumentException If the number of states is out of
+     *                                  range.
+     */
+    public GenerationsRule(final LifeRule lifeRuleVal, final int stateCountVal) {
+        if (stateCountVal < 2 || stateCountVal > MAX_STATE_COUNT) {
+            throw new IllegalArgumentException("state count must be from 2 to " + MAX_STATE_COUNT + ": "
+                                               + stateCountVal);
+        }
+        lifeRule = lifeRuleVal;
+        stateCount = stateCountVal;
+    }
+
+    /**
+     * This method parses a rulestring into a GenerationsRule object. The
+     * B/S/C notation ("B2/S/C3") and the numeric S/B/C notation ("/2/3") are
+     * accepted, as is any rulestring LifeRule.parse() accepts, which is read
+     * as a rule with 2 states.
+     *
+     * @param ruleString The rulestring.
+     * @return           The GenerationsRule object it describes.
+     * @throws IllegalArgumentException If the rulestring can't be parsed.
+     */
+    public static GenerationsRule parse(final String ruleString) {
+        String[] ruleParts = ruleString.trim().split("/", -1);
+        if (ruleParts.length == 2) {
+            LifeRule lifeRulePart = LifeRule.parse(ruleString);
+            return (lifeRulePart == LifeRule.CONWAY) ? CONWAY : new GenerationsRule(lifeRulePart, 2);
+        } else if (ruleParts.length != 3) {
+            throw new IllegalArgumentException("unrecognized rulestring: " + ruleString);
+        }
+
+        String statePart = ruleParts[2].trim();
+        if (statePart.startsWith("C") || statePart.startsWith("c")) {
+            statePart = statePart.substring(1);
+        }
+        int stateCountVal;
+        try {
+            stateCountVal = Integer.parseInt(statePart);
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("unrecognized rulestring: " + ruleString);
+        }
+        return new GenerationsRule(LifeRule.parse(ruleParts[0] + "/" + ruleParts[1]), stateCountVal);
+    }
+
+    /**
+     * This method is an accessor for the private lifeRule variable.
+     *
+     * @return The rule giving the birth and survival counts.
+     */
+    public LifeRule getLifeRule() {
+        return lifeRule;
+    }
+
+    /**
+     * This method is an accessor for the private stateCount variable.
+     *
+     * @return The number of states, including dead and alive.
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * This method computes the next state of a cell.
+     *
+     * @param cellState The state of the cell.
+     * @param outcome   The outcome of the cell's LifeRule: whether it would be
+     *                  born if it's dead, or survive if it's alive. It's
+     *                  ignored for a dying cell.
+     * @return          The state of the cell in the next generation.
+     */
+    public int nextCellState(final int cellState, final int outcome) {
+        if (cellState == 0) {
+            return outcome;
+        } else if (cellState == 1 && outcome == 1) {
+            return 1;
+        }
+        return (cellState + 1 == stateCount) ? 0 : cellState + 1;
+    }
+
+    /**
+     * This method returns the rulestring of the rule in B/S/C notation, or in
+     * B/S notation if it has 2 states.
+     *
+     * @return The rulestring, for example "B2/S/C3".
+     */
+    public String toString() {
+        return (stateCount == 2) ? lifeRule.toString() : lifeRule + "/C" + stateCount;
+    }
+}
@@ -0,0 +1,117 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.Arrays;
+
+/**
+ * This interface describes a stepping engine: an object that stores the cell
+ * grid of the cellular automata and computes its successive generations.
+ * CellGrid renders and steps whichever engine it was instanced with, so the
+ * storage layout of the cell grid and the algorithm used to advance it can be
+ * swapped out without touching the GUI code. Every engine treats the cell grid
+ * as having wrap-around borders, just like the original implementation.
+ *
+ * @see org.kmfahey.jgameoflife.CellGrid
+ * @see org.kmfahey.jgameoflife.IntArrayGridEngine
+ * @see org.kmfahey.jgameoflife.BitPackedGridEngine
+ */
+public interface GridEngine {
+
+    /**
+     * This method is an accessor for the horizontal dimension of the cell grid
+     * maintained by the engine.
+     *
+     * @return The horizontal dimension of the cell grid, in cells.
+     */
+    int getHorizDim();
+
+    /**
+     * This method is an accessor for the vertical dimension of the cell grid
+     * maintained by the engine.
+     *
+     * @return The vertical dimension of the cell grid, in cells.
+     */
+    int getVertDim();
+
+    /**
+     * This method returns the value of a single cell of the current generation.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    int getCell(int horizIndex, int vertIndex);
+
+    /**
+     * This method sets the value of a single cell of the current generation.
+     * It's used by CellGrid when the cell grid is seeded or a cell is clicked
+     * on.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    void setCell(int horizIndex, int vertIndex, int cellValue);
+
+    /**
+     * This method counts the live cells in a rectangle of the current
+     * generation. It's used by the Viewport to shade a block of cells that's
+     * drawn as a single pixel when the view is zoomed out. This default reads
+     * the cells one at a time; engines that can count a row of cells, or a
+     * whole quadrant, at once override it.
+     *
+     * @param originHoriz The horizontal coordinate of the rectangle's first
+     *                    cell.
+     * @param originVert  The vertical coordinate of the rectangle's first
+     *                    cell.
+     * @param regionHoriz The width of the rectangle, in cells.
+     * @param regionVert  The height of the rectangle, in cells.
+     * @return            The number of live cells in the rectangle.
+     */
+    default int countLiveCells(final int originHoriz, final int originVert, final int regionHoriz,
+                               final int regionVert) {
+        int liveCells = 0;
+        for (int vertIndex = originVert; vertIndex < originVert + regionVert; vertIndex++) {
+            for (int horizIndex = originHoriz; horizIndex < originHoriz + regionHoriz; horizIndex++) {
+                if (getCell(horizIndex, vertIndex) == 1) {
+                    liveCells++;
+                }
+            }
+        }
+        return liveCells;
+    }
+
+    /**
+     * This method copies the current generation into an array of longs, 64
+     * cells to a long, as the raw format of a FrameRecorder stores it: each
+     * row is ceil(horizDim / 64) longs, and the cell at horizIndex is bit
+     * (horizIndex % 64) of the row's long (horizIndex / 64), set if the cell
+     * is live. It's used to record the whole cell grid between steps. This
+     * default reads the cells one at a time; engines that store their cells
+     * 64 to a long, or can pass over empty space, override it.
+     *
+     * @param cellWords The array to fill, of at least vertDim * ceil(horizDim
+     *                  / 64) longs.
+     */
+    default void copyCellWords(final long[] cellWords) {
+        int rowWords = (getHorizDim() + 63) >>> 6;
+        Arrays.fill(cellWords, 0, getVertDim() * rowWords, 0L);
+        for (int vertIndex = 0; vertIndex < getVertDim(); vertIndex++) {
+            for (int horizIndex = 0; horizIndex < getHorizDim(); horizIndex++) {
+                if (getCell(horizIndex, vertIndex) == 1) {
+                    cellWords[vertIndex * rowWords + (horizIndex >>> 6)] |= 1L << (horizIndex & 63);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method sets every cell in the cell grid to 0.
+     */
+    void clearCells();
+
+    /**
+     * This method computes the next generation of the cellular automata and
+     * makes it the current generation.
+     */
+    void stepGeneration();
+}
@@ -0,0 +1,759 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.Arrays;
+
+/**
+ * This class implements Gosper's HashLife algorithm as a stepping engine. The
+ * universe is stored as a canonicalized quadtree of HashLifeNode objects, kept
+ * in a hash-consed node table so that every distinct square of cells exists
+ * only once, and each node memoizes its RESULT: its center, advanced a power
+ * of 2 generations. Repetitive patterns hit the memoized results over and over
+ * again, so a single call to stepGeneration() can advance 2^stepExponent
+ * generations in far less time than 2^stepExponent ordinary steps.
+ * <p>
+ * Unlike the other engines, the universe is an unbounded plane rather than a
+ * torus; the cell grid that CellGrid displays is the window of cells from
+ * (0, 0) to (horizDim - 1, vertDim - 1), and anything that leaves the window
+ * keeps running outside it.
+ * <p>
+ * The node table is held to a soft memory budget. When a step leaves it
+ * holding more nodes than the budget allows, unreachable nodes are swept out
+ * of it, first keeping the memoized results and, if that doesn't free enough
+ * room, discarding them too.
+ *
+ * @see org.kmfahey.jgameoflife.HashLifeNode
+ * @see org.kmfahey.jgameoflife.GridEngine
+ */
+public class HashLifeEngine implements GridEngine {
+
+    /** This long constant is a rough estimate of the memory used by a node
+        and its share of the node table, in bytes. */
+    private static final long BYTES_PER_NODE = 80L;
+
+    /** This long constant is the default memory budget of the node table, in
+        bytes. */
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024L * 1024L;
+
+    /** This int constant is the highest step exponent accepted; at that point
+        a single step already advances more than 10^15 generations. */
+    public static final int MAX_STEP_EXPONENT = 50;
+
+    /** This int constant is the level of the smallest root node used. */
+    private static final int MIN_ROOT_LEVEL = 3;
+
+    /** This int is used to store the horizontal dimension of the window of
+        cells displayed, in cells. */
+    private int cellGridHorizDim;
+
+    /** This int is used to store the vertical dimension of the window of
+        cells displayed, in cells. */
+    private int cellGridVertDim;
+
+    /** This HashLifeNode[] array is the node table; each entry is the first
+        node in a bucket of nodes chained together by nextInBucket. */
+    private HashLifeNode[] nodeTable;
+
+    /** This int is the number of nodes in the node table. */
+    private int nodeCount;
+
+    /** This int is the most nodes the node table may hold before unreachable
+        nodes are swept out of it. */
+    private int maxNodeCount;
+
+    /** This int is the serial number given to the next node created. */
+    private int nextSerialNumber;
+
+    /** This int counts the garbage collection passes made. */
+    private int collectionPass;
+
+    /** These HashLifeNode objects are the two level 0 nodes. */
+    private HashLifeNode deadCell;
+    private HashLifeNode liveCell;
+
+    /** This LifeRule object is the rule the cells are stepped by. */
+    private LifeRule lifeRule;
+
+    /** This HashLifeNode[] array caches the empty node of each level. */
+    private HashLifeNode[] emptyNodes;
+
+    /** This HashLifeNode object is the root of the quadtree. Its center is at
+        the origin of the plane, so it spans -2^(level - 1) to 2^(level - 1) - 1
+        on both axes. */
+    private HashLifeNode rootNode;
+
+    /** This int is the base 2 logarithm of the number of generations that a
+        call to stepGeneration() advances. */
+    private int stepExponent;
+
+    /** This long is the number of generations advanced since the engine was
+        created or cleared. */
+    private long generationCount;
+
+    /**
+     * This constructor initializes the HashLifeEngine object with the default
+     * memory budget and a step exponent of 0, so each step advances a single
+     * generation.
+     *
+     * @param horizDim The horizontal dimension of the window of cells, in
+     *                 cells.
+     * @param vertDim  The vertical dimension of the window of cells, in
+     *                 cells.
+     */
+    public HashLifeEngine(final int horizDim, final int vertDim) {
+        this(horizDim, vertDim, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * This constructor initializes the HashLifeEngine object with the given
+     * memory budget.
+     *
+     * @param horizDim     The horizontal dimension of the window of cells, in
+     *                     cells.
+     * @param vertDim      The vertical dimension of the window of cells, in
+     *                     cells.
+     * @param memoryBudget The approximate memory the node table may use, in
+     *                     bytes.
+     */
+    public HashLifeEngine(final int horizDim, final int vertDim, final long memoryBudget) {
+        this(horizDim, vertDim, memoryBudget, LifeRule.CONWAY);
+    }
+
+    /**
+     * This constructor initializes the HashLifeEngine object with the given
+     * memory budget and rule. Memoized results are only valid for a single
+     * rule, so the rule can't be changed afterward.
+     *
+     * @param horizDim     The horizontal dimension of the window of cells, in
+     *                     cells.
+     * @param vertDim      The vertical dimension of the window of cells, in
+     *                     cells.
+     * @param memoryBudget The approximate memory the node table may use, in
+     *                     bytes.
+     * @param lifeRuleVal  The rule to step the cells by.
+     * @throws IllegalArgumentException If the rule has B0, under which the
+     *                                  empty plane doesn't stay empty.
+     */
+    public HashLifeEngine(final int horizDim, final int vertDim, final long memoryBudget,
+                          final LifeRule lifeRuleVal) {
+        if (lifeRuleVal.birthsFromEmpty()) {
+            throw new IllegalArgumentException("rule with B0 can't run on an unbounded plane: " + lifeRuleVal);
+        }
+        lifeRule = lifeRuleVal;
+        cellGridHorizDim = horizDim;
+        cellGridVertDim = vertDim;
+        setMemoryBudget(memoryBudget);
+        nodeTable = new HashLifeNode[1 << 16];
+        deadCell = new HashLifeNode(0, nextSerialNumber++);
+        liveCell = new HashLifeNode(1, nextSerialNumber++);
+        emptyNodes = new HashLifeNode[MAX_STEP_EXPONENT + 8];
+        emptyNodes[0] = deadCell;
+        clearCells();
+    }
+
+    /**
+     * This method sets the memory budget of the node table.
+     *
+     * @param memoryBudget The approximate memory the node table may use, in
+     *                     bytes.
+     */
+    public void setMemoryBudget(final long memoryBudget) {
+        maxNodeCount = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(1024L, memoryBudget / BYTES_PER_NODE));
+    }
+
+    /**
+     * This method sets how many generations each call to stepGeneration()
+     * advances.
+     *
+     * @param stepExponentVal The base 2 logarithm of the number of generations
+     *                        per step, from 0 to MAX_STEP_EXPONENT.
+     * @throws IllegalArgumentException If the exponent is out of range.
+     */
+    public void setStepExponent(final int stepExponentVal) {
+        if (stepExponentVal < 0 || stepExponentVal > MAX_STEP_EXPONENT) {
+            throw new IllegalArgumentException("step exponent out of range: " + stepExponentVal);
+        }
+        stepExponent = stepExponentVal;
+    }
+
+    /**
+     * This method is an accessor for the private stepExponent variable.
+     *
+     * @return The base 2 logarithm of the number of generations per step.
+     */
+    public int getStepExponent() {
+        return stepExponent;
+    }
+
+    /**
+     * This method is an accessor for the private generationCount variable.
+     *
+     * @return The number of generations advanced since the engine was created
+     *         or cleared.
+     */
+    public long getGenerationCount() {
+        return generationCount;
+    }
+
+    /**
+     * This method is an accessor for the private nodeCount variable.
+     *
+     * @return The number of nodes in the node table.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * This method returns the number of live cells in the whole universe,
+     * including any outside the window.
+     *
+     * @return The number of live cells.
+     */
+    public long getPopulation() {
+        return rootNode.population;
+    }
+
+    /**
+     * This method returns the canonical node with the four given children,
+     * creating it and adding it to the node table if it doesn't exist yet.
+     *
+     * @param northWestNode The northwest quadrant.
+     * @param northEastNode The northeast quadrant.
+     * @param southWestNode The southwest quadrant.
+     * @param southEastNode The southeast quadrant.
+     * @return              The canonical node with those children.
+     */
+    private HashLifeNode joinNodes(final HashLifeNode northWestNode, final HashLifeNode northEastNode,
+                                   final HashLifeNode southWestNode, final HashLifeNode southEastNode) {
+        int bucketIndex = HashLifeNode.hashChildren(northWestNode, northEastNode, southWestNode, southEastNode)
+                          & (nodeTable.length - 1);
+        for (HashLifeNode node = nodeTable[bucketIndex]; node != null; node = node.nextInBucket) {
+            if (node.hasChildren(northWestNode, northEastNode, southWestNode, southEastNode)) {
+                return node;
+            }
+        }
+        HashLifeNode node = new HashLifeNode(northWestNode, northEastNode, southWestNode, southEastNode,
+                                             nextSerialNumber++);
+        node.nextInBucket = nodeTable[bucketIndex];
+        nodeTable[bucketIndex] = node;
+        nodeCount++;
+        if (nodeCount > nodeTable.length) {
+            resizeNodeTable(nodeTable.length * 2);
+        }
+        return node;
+    }
+
+    /**
+     * This method rehashes every node into a node table of a new size.
+     *
+     * @param tableSize The new number of buckets, a power of 2.
+     */
+    private void resizeNodeTable(final int tableSize) {
+        HashLifeNode[] oldTable = nodeTable;
+        nodeTable = new HashLifeNode[tableSize];
+        for (HashLifeNode bucketHead : oldTable) {
+            HashLifeNode node = bucketHead;
+            while (node != null) {
+                HashLifeNode nextNode = node.nextInBucket;
+                int bucketIndex = node.childrenHash & (tableSize - 1);
+                node.nextInBucket = nodeTable[bucketIndex];
+                nodeTable[bucketIndex] = node;
+                node = nextNode;
+            }
+        }
+    }
+
+    /**
+     * This method returns the canonical empty node of a given level.
+     *
+     * @param level The level of the node.
+     * @return      The empty node of that level.
+     */
+    private HashLifeNode emptyNode(final int level) {
+        if (emptyNodes[level] == null) {
+            HashLifeNode childNode = emptyNode(level - 1);
+            emptyNodes[level] = joinNodes(childNode, childNode, childNode, childNode);
+        }
+        return emptyNodes[level];
+    }
+
+    /**
+     * This method wraps a node in a node one level higher, with the original
+     * node at its center and empty space around it.
+     *
+     * @param node The node to expand.
+     * @return     The expanded node.
+     */
+    private HashLifeNode expandNode(final HashLifeNode node) {
+        HashLifeNode emptyChild = emptyNode(node.level - 1);
+        return joinNodes(joinNodes(emptyChild, emptyChild, emptyChild, node.northWest),
+                         joinNodes(emptyChild, emptyChild, node.northEast, emptyChild),
+                         joinNodes(emptyChild, node.southWest, emptyChild, emptyChild),
+                         joinNodes(node.southEast, emptyChild, emptyChild, emptyChild));
+    }
+
+    /**
+     * This method returns the node one level lower at the center of a node.
+     *
+     * @param node The node, at level 2 or higher.
+     * @return     The node at its center.
+     */
+    private HashLifeNode centerNode(final HashLifeNode node) {
+        return joinNodes(node.northWest.southEast, node.northEast.southWest,
+                         node.southWest.northEast, node.southEast.northWest);
+    }
+
+    /**
+     * This method reads a single cell of a node.
+     *
+     * @param node       The node.
+     * @param horizCoord The horizontal coordinate of the cell, relative to the
+     *                   node's northwest corner.
+     * @param vertCoord  The vertical coordinate of the cell, relative to the
+     *                   node's northwest corner.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    private static int readCell(final HashLifeNode node, final long horizCoord, final long vertCoord) {
+        HashLifeNode currentNode = node;
+        long currentHoriz = horizCoord;
+        long currentVert = vertCoord;
+        while (currentNode.level > 0) {
+            if (currentNode.population == 0) {
+                return 0;
+            }
+            long halfSize = 1L << (currentNode.level - 1);
+            boolean east = currentHoriz >= halfSize;
+            boolean south = currentVert >= halfSize;
+            currentNode = south ? (east ? currentNode.southEast : currentNode.southWest)
+                                : (east ? currentNode.northEast : currentNode.northWest);
+            currentHoriz -= east ? halfSize : 0;
+            currentVert -= south ? halfSize : 0;
+        }
+        return (int) currentNode.population;
+    }
+
+    /**
+     * This method counts the live cells of a node that lie in a rectangle.
+     *
+     * @param node       The node.
+     * @param firstHoriz The horizontal coordinate of the rectangle's first
+     *                   cell, relative to the node's northwest corner.
+     * @param firstVert  The vertical coordinate of the rectangle's first cell,
+     *                   relative to the node's northwest corner.
+     * @param endHoriz   The horizontal coordinate just past the rectangle's
+     *                   last cell.
+     * @param endVert    The vertical coordinate just past the rectangle's
+     *                   last cell.
+     * @return           The number of live cells in the rectangle.
+     */
+    private static long countRegion(final HashLifeNode node, final long firstHoriz, final long firstVert,
+                                    final long endHoriz, final long endVert) {
+        long nodeSize = 1L << node.level;
+        if (node.population == 0 || endHoriz <= 0 || endVert <= 0 || firstHoriz >= nodeSize
+            || firstVert >= nodeSize) {
+            return 0L;
+        }
+        if (firstHoriz <= 0 && firstVert <= 0 && endHoriz >= nodeSize && endVert >= nodeSize) {
+            return node.population;
+        }
+        /* A node of level 0 is a single cell, so it's wholly inside or
+           outside the rectangle and never gets this far. */
+        long halfSize = nodeSize >> 1;
+        return countRegion(node.northWest, firstHoriz, firstVert, endHoriz, endVert)
+               + countRegion(node.northEast, firstHoriz - halfSize, firstVert, endHoriz - halfSize, endVert)
+               + countRegion(node.southWest, firstHoriz, firstVert - halfSize, endHoriz, endVert - halfSize)
+               + countRegion(node.southEast, firstHoriz - halfSize, firstVert - halfSize, endHoriz - halfSize,
+                             endVert - halfSize);
+    }
+
+    /**
+     * This method sets the bits of the live cells of a node that lie in the
+     * window, in an array of longs laid out as copyCellWords() fills it.
+     * Empty nodes and nodes outside the window are passed over whole.
+     *
+     * @param node        The node.
+     * @param originHoriz The horizontal coordinate in the window of the
+     *                    node's northwest corner.
+     * @param originVert  The vertical coordinate in the window of the node's
+     *                    northwest corner.
+     * @param cellWords   The array to set the bits in.
+     * @param rowWords    The number of longs in each row of the array.
+     */
+    private void fillCellWords(final HashLifeNode node, final long originHoriz, final long originVert,
+                               final long[] cellWords, final int rowWords) {
+        long nodeSize = 1L << node.level;
+        if (node.population == 0 || originHoriz >= cellGridHorizDim || originVert >= cellGridVertDim
+            || originHoriz + nodeSize <= 0 || originVert + nodeSize <= 0) {
+            return;
+        }
+        if (node.level == 0) {
+            cellWords[(int) originVert * rowWords + (int) (originHoriz >>> 6)] |= 1L << (originHoriz & 63);
+            return;
+        }
+        long halfSize = nodeSize >> 1;
+        fillCellWords(node.northWest, originHoriz, originVert, cellWords, rowWords);
+        fillCellWords(node.northEast, originHoriz + halfSize, originVert, cellWords, rowWords);
+        fillCellWords(node.southWest, originHoriz, originVert + halfSize, cellWords, rowWords);
+        fillCellWords(node.southEast, originHoriz + halfSize, originVert + halfSize, cellWords, rowWords);
+    }
+
+    /**
+     * This method returns a copy of a node with a single cell changed.
+     *
+     * @param node       The node.
+     * @param horizCoord The horizontal coordinate of the cell, relative to the
+     *                   node's northwest corner.
+     * @param vertCoord  The vertical coordinate of the cell, relative to the
+     *                   node's northwest corner.
+     * @param cellValue  1 for a live cell, or 0 for a dead one.
+     * @return           The canonical node with the cell changed.
+     */
+    private HashLifeNode writeCell(final HashLifeNode node, final long horizCoord, final long vertCoord,
+                                   final int cellValue) {
+        if (node.level == 0) {
+            return (cellValue == 0) ? deadCell : liveCell;
+        }
+        long halfSize = 1L << (node.level - 1);
+        boolean east = horizCoord >= halfSize;
+        boolean south = vertCoord >= halfSize;
+        long childHoriz = east ? horizCoord - halfSize : horizCoord;
+        long childVert = south ? vertCoord - halfSize : vertCoord;
+        if (south) {
+            return east ? joinNodes(node.northWest, node.northEast, node.southWest,
+                                    writeCell(node.southEast, childHoriz, childVert, cellValue))
+                        : joinNodes(node.northWest, node.northEast,
+                                    writeCell(node.southWest, childHoriz, childVert, cellValue), node.southEast);
+        }
+        return east ? joinNodes(node.northWest, writeCell(node.northEast, childHoriz, childVert, cellValue),
+                                node.southWest, node.southEast)
+                    : joinNodes(writeCell(node.northWest, childHoriz, childVert, cellValue), node.northEast,
+                                node.southWest, node.southEast);
+    }
+
+    /**
+     * This method reports whether a plane coordinate lies within the root
+     * node.
+     *
+     * @param coord The coordinate on either axis.
+     * @return      true if the coordinate lies within the root node.
+     */
+    private boolean withinRoot(final long coord) {
+        long halfSize = 1L << (rootNode.level - 1);
+        return coord >= -halfSize && coord < halfSize;
+    }
+
+    /**
+     * This method computes the result of a level 2 node by brute force: the
+     * 2x2 cells at its center, one generation on.
+     *
+     * @param node The level 2 node.
+     * @return     The level 1 node at its center, one generation on.
+     */
+    private HashLifeNode baseResult(final HashLifeNode node) {
+        /* The 16 cells are gathered into a 16-bit mask, bit (4 * row + col). */
+        int cellMask = 0;
+        for (int vertCoord = 0; vertCoord < 4; vertCoord++) {
+            for (int horizCoord = 0; horizCoord < 4; horizCoord++) {
+                cellMask |= readCell(node, horizCoord, vertCoord) << (4 * vertCoord + horizCoord);
+            }
+        }
+        HashLifeNode[] nextCells = new HashLifeNode[4];
+        for (int cellIndex = 0; cellIndex < 4; cellIndex++) {
+            int horizCoord = 1 + (cellIndex & 1);
+            int vertCoord = 1 + (cellIndex >>> 1);
+            int sumOfNeighbors = 0;
+            for (int vertDelta = -1; vertDelta <= 1; vertDelta++) {
+                for (int horizDelta = -1; horizDelta <= 1; horizDelta++) {
+                    if (horizDelta != 0 || vertDelta != 0) {
+                        sumOfNeighbors += (cellMask >>> (4 * (vertCoord + vertDelta) + horizCoord + horizDelta)) & 1;
+                    }
+                }
+            }
+            int cellValue = (cellMask >>> (4 * vertCoord + horizCoord)) & 1;
+            nextCells[cellIndex] = (lifeRule.nextCellValue(cellValue, sumOfNeighbors) == 1) ? liveCell : deadCell;
+        }
+        return joinNodes(nextCells[0], nextCells[1], nextCells[2], nextCells[3]);
+    }
+
+    /**
+     * This method computes and memoizes the RESULT of a node: the node one
+     * level lower at its center, advanced 2^min(stepExponentVal, level - 2)
+     * generations. The nine overlapping subnodes one level lower are formed
+     * and their results taken, or just their centers if the step is shorter
+     * than the node allows; those are assembled into four subnodes, whose
+     * results make up the answer.
+     *
+     * @param node            The node, at level 2 or higher.
+     * @param stepExponentVal The base 2 logarithm of the desired number of
+     *                        generations.
+     * @return                The node's RESULT.
+     */
+    private HashLifeNode nodeResult(final HashLifeNode node, final int stepExponentVal) {
+        int effectiveExponent = Math.min(stepExponentVal, node.level - 2);
+        if (node.result != null && node.resultStepExponent == effectiveExponent) {
+            return node.result;
+        }
+        HashLifeNode result;
+        if (node.population == 0) {
+            result = emptyNode(node.level - 1);
+        } else if (node.level == 2) {
+            result = baseResult(node);
+        } else {
+            HashLifeNode[] subnodes = new HashLifeNode[] {
+                node.northWest,
+                joinNodes(node.northWest.northEast, node.northEast.northWest,
+                          node.northWest.southEast, node.northEast.southWest),
+                node.northEast,
+                joinNodes(node.northWest.southWest, node.northWest.southEast,
+                          node.southWest.northWest, node.southWest.northEast),
+                centerNode(node),
+                joinNodes(node.northEast.southWest, node.northEast.southEast,
+                          node.southEast.northWest, node.southEast.northEast),
+                node.southWest,
+                joinNodes(node.southWest.northEast, node.southEast.northWest,
+                          node.southWest.southEast, node.southEast.southWest),
+                node.southEast};
+
+            /* At full speed the first half of the advance is taken here; at a
+               reduced speed the subnodes are just centered, and the whole
+               advance is left to the second half below. */
+            boolean fullSpeed = effectiveExponent == node.level - 2;
+            for (int subnodeIndex = 0; subnodeIndex < 9; subnodeIndex++) {
+                subnodes[subnodeIndex] = fullSpeed ? nodeResult(subnodes[subnodeIndex], effectiveExponent)
+                                                   : centerNode(subnodes[subnodeIndex]);
+            }
+            result = joinNodes(
+                nodeResult(joinNodes(subnodes[0], subnodes[1], subnodes[3], subnodes[4]), effectiveExponent),
+                nodeResult(joinNodes(subnodes[1], subnodes[2], subnodes[4], subnodes[5]), effectiveExponent),
+                nodeResult(joinNodes(subnodes[3], subnodes[4], subnodes[6], subnodes[7]), effectiveExponent),
+                nodeResult(joinNodes(subnodes[4], subnodes[5], subnodes[7], subnodes[8]), effectiveExponent));
+        }
+        node.result = result;
+        node.resultStepExponent = effectiveExponent;
+        return result;
+    }
+
+    /**
+     * This method advances the universe 2^stepExponentVal generations. The
+     * root is expanded until it's big enough to hold the pattern however far
+     * it spreads in that time, and then replaced with its RESULT, which is
+     * centered on the same point.
+     *
+     * @param stepExponentVal The base 2 logarithm of the number of
+     *                        generations.
+     */
+    private void advanceRoot(final int stepExponentVal) {
+        while (rootNode.level < stepExponentVal + 2 || centerNode(rootNode).population != rootNode.population) {
+            rootNode = expandNode(rootNode);
+        }
+        rootNode = expandNode(rootNode);
+        rootNode = nodeResult(rootNode, stepExponentVal);
+        generationCount += 1L << stepExponentVal;
+        if (nodeCount > maxNodeCount) {
+            collectGarbage();
+        }
+    }
+
+    /**
+     * This method advances the universe by an arbitrary number of
+     * generations, in one pass per set bit of the count.
+     *
+     * @param generations The number of generations to advance.
+     */
+    public void advanceGenerations(final long generations) {
+        for (int bitIndex = MAX_STEP_EXPONENT; bitIndex >= 0; bitIndex--) {
+            if ((generations & (1L << bitIndex)) != 0) {
+                advanceRoot(bitIndex);
+            }
+        }
+    }
+
+    /**
+     * This method marks a node, and every node reachable from it, as
+     * reachable in the current garbage collection pass.
+     *
+     * @param node           The node to mark.
+     * @param includeResults true if memoized results should be followed and
+     *                       kept as well.
+     */
+    private void markReachable(final HashLifeNode node, final boolean includeResults) {
+        if (node == null || node.markedPass == collectionPass) {
+            return;
+        }
+        node.markedPass = collectionPass;
+        if (node.level > 0) {
+            markReachable(node.northWest, includeResults);
+            markReachable(node.northEast, includeResults);
+            markReachable(node.southWest, includeResults);
+            markReachable(node.southEast, includeResults);
+        }
+        if (includeResults) {
+            markReachable(node.result, true);
+        }
+    }
+
+    /**
+     * This method sweeps every node that wasn't marked in the current garbage
+     * collection pass out of the node table, and drops any memoized result
+     * that points at a swept node.
+     */
+    private void sweepUnmarked() {
+        nodeCount = 0;
+        for (int bucketIndex = 0; bucketIndex < nodeTable.length; bucketIndex++) {
+            HashLifeNode keptNodes = null;
+            HashLifeNode node = nodeTable[bucketIndex];
+            while (node != null) {
+                HashLifeNode nextNode = node.nextInBucket;
+                if (node.markedPass == collectionPass) {
+                    node.nextInBucket = keptNodes;
+                    keptNodes = node;
+                    nodeCount++;
+                }
+                node = nextNode;
+            }
+            nodeTable[bucketIndex] = keptNodes;
+        }
+        for (HashLifeNode bucketHead : nodeTable) {
+            for (HashLifeNode node = bucketHead; node != null; node = node.nextInBucket) {
+                if (node.result != null && node.result.markedPass != collectionPass) {
+                    node.result = null;
+                    node.resultStepExponent = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * This method frees room in the node table. Every node reachable from the
+     * root or from the empty node cache is kept, along with the memoized
+     * results reachable from them; if that still leaves the table more than
+     * half full, a second pass keeps only the nodes themselves and drops the
+     * memoized results.
+     */
+    private void collectGarbage() {
+        collectionPass++;
+        markReachable(rootNode, true);
+        for (HashLifeNode emptyNodeVal : emptyNodes) {
+            markReachable(emptyNodeVal, false);
+        }
+        sweepUnmarked();
+        if (nodeCount > maxNodeCount / 2) {
+            for (HashLifeNode bucketHead : nodeTable) {
+                for (HashLifeNode node = bucketHead; node != null; node = node.nextInBucket) {
+                    node.result = null;
+                    node.resultStepExponent = -1;
+                }
+            }
+            collectionPass++;
+            markReachable(rootNode, false);
+            for (HashLifeNode emptyNodeVal : emptyNodes) {
+                markReachable(emptyNodeVal, false);
+            }
+            sweepUnmarked();
+        }
+    }
+
+    /**
+     * This method is an accessor for the private cellGridHorizDim variable.
+     *
+     * @return The horizontal dimension of the window of cells, in cells.
+     */
+    public int getHorizDim() {
+        return cellGridHorizDim;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridVertDim variable.
+     *
+     * @return The vertical dimension of the window of cells, in cells.
+     */
+    public int getVertDim() {
+        return cellGridVertDim;
+    }
+
+    /**
+     * This method returns the value of a single cell of the plane.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    public int getCell(final int horizIndex, final int vertIndex) {
+        if (!withinRoot(horizIndex) || !withinRoot(vertIndex)) {
+            return 0;
+        }
+        long halfSize = 1L << (rootNode.level - 1);
+        return readCell(rootNode, horizIndex + halfSize, vertIndex + halfSize);
+    }
+
+    /**
+     * This method counts the live cells in a rectangle of the plane by
+     * descending the quadtree, taking the population of every node that lies
+     * wholly inside the rectangle and passing over every node that lies
+     * outside it or is empty, so it costs about as much as the rectangle's
+     * border rather than its area.
+     *
+     * @param originHoriz The horizontal coordinate of the rectangle's first
+     *                    cell.
+     * @param originVert  The vertical coordinate of the rectangle's first
+     *                    cell.
+     * @param regionHoriz The width of the rectangle, in cells.
+     * @param regionVert  The height of the rectangle, in cells.
+     * @return            The number of live cells in the rectangle.
+     */
+    public int countLiveCells(final int originHoriz, final int originVert, final int regionHoriz,
+                              final int regionVert) {
+        long halfSize = 1L << (rootNode.level - 1);
+        return (int) countRegion(rootNode, originHoriz + halfSize, originVert + halfSize,
+                                 originHoriz + halfSize + regionHoriz, originVert + halfSize + regionVert);
+    }
+
+    /**
+     * This method copies the window of cells into an array of longs, 64 cells
+     * to a long, by descending the quadtree and passing over every node that
+     * is empty or lies outside the window, so it costs about as much as the
+     * live part of the window rather than a descent from the root per cell.
+     *
+     * @param cellWords The array to fill, of at least vertDim * ceil(horizDim
+     *                  / 64) longs.
+     */
+    public void copyCellWords(final long[] cellWords) {
+        int rowWords = (cellGridHorizDim + 63) >>> 6;
+        Arrays.fill(cellWords, 0, cellGridVertDim * rowWords, 0L);
+        long halfSize = 1L << (rootNode.level - 1);
+        fillCellWords(rootNode, -halfSize, -halfSize, cellWords, rowWords);
+    }
+
+    /**
+     * This method sets the value of a single cell of the plane, expanding the
+     * root until it covers the cell.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    public void setCell(final int horizIndex, final int vertIndex, final int cellValue) {
+        while (!withinRoot(horizIndex) || !withinRoot(vertIndex)) {
+            rootNode = expandNode(rootNode);
+        }
+        long halfSize = 1L << (rootNode.level - 1);
+        rootNode = writeCell(rootNode, horizIndex + halfSize, vertIndex + halfSize, cellValue);
+    }
+
+    /**
+     * This method empties the universe and resets the generation count. The
+     * node table is swept as well, since nothing in it is reachable anymore.
+     */
+    public void clearCells() {
+        rootNode = emptyNode(MIN_ROOT_LEVEL);
+        generationCount = 0L;
+        collectGarbage();
+    }
+
+    /**
+     * This method advances the universe 2^stepExponent generations.
+     */
+    public void stepGeneration() {
+        advanceRoot(stepExponent);
+    }
+}
@@ -0,0 +1,129 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This class implements a node of the canonicalized quadtree used by
+ * HashLifeEngine. A node at level L is a square of 2^L x 2^L cells, made up of
+ * four level L - 1 child nodes; a level 0 node is a single cell. Nodes are
+ * immutable and hash-consed by HashLifeEngine, so two nodes with the same
+ * children are always the same object, and children can be compared by
+ * identity. Each node memoizes its RESULT: the level L - 1 node at its center,
+ * advanced some power of 2 generations.
+ *
+ * @see org.kmfahey.jgameoflife.HashLifeEngine
+ */
+public class HashLifeNode {
+
+    /** This int is the level of the node; the node is 2^level cells on a
+        side. */
+    final int level;
+
+    /** These HashLifeNode objects are the four quadrants of the node. They're
+        null for a level 0 node. */
+    final HashLifeNode northWest;
+    final HashLifeNode northEast;
+    final HashLifeNode southWest;
+    final HashLifeNode southEast;
+
+    /** This long is the number of live cells in the node. */
+    final long population;
+
+    /** This int is a serial number unique to the node, used to compute the
+        hash codes of the nodes it's a child of. */
+    final int serialNumber;
+
+    /** This int is the hash of the identities of the node's four children,
+        used to locate it in HashLifeEngine's node table. */
+    final int childrenHash;
+
+    /** This HashLifeNode object is the next node in the same bucket of
+        HashLifeEngine's node table. */
+    HashLifeNode nextInBucket;
+
+    /** This HashLifeNode object is the memoized RESULT of the node, or null
+        if it hasn't been computed yet. */
+    HashLifeNode result;
+
+    /** This int is the base 2 logarithm of the number of generations that the
+        memoized result was advanced by. */
+    int resultStepExponent = -1;
+
+    /** This int is the garbage collection pass that last found this node to
+        be reachable. */
+    int markedPass;
+
+    /**
+     * This constructor initializes a level 0 node, a single cell.
+     *
+     * @param cellValue       1 for a live cell, or 0 for a dead one.
+     * @param serialNumberVal The serial number of the node.
+     */
+    HashLifeNode(final int cellValue, final int serialNumberVal) {
+        level = 0;
+        northWest = null;
+        northEast = null;
+        southWest = null;
+        southEast = null;
+        population = cellValue;
+        serialNumber = serialNumberVal;
+        childrenHash = cellValue;
+    }
+
+    /**
+     * This constructor initializes a node from four child nodes one level
+     * lower.
+     *
+     * @param northWestNode   The northwest quadrant.
+     * @param northEastNode   The northeast quadrant.
+     * @param southWestNode   The southwest quadrant.
+     * @param southEastNode   The southeast quadrant.
+     * @param serialNumberVal The serial number of the node.
+     */
+    HashLifeNode(final HashLifeNode northWestNode, final HashLifeNode northEastNode,
+                 final HashLifeNode southWestNode, final HashLifeNode southEastNode,
+                 final int serialNumberVal) {
+        level = northWestNode.level + 1;
+        northWest = northWestNode;
+        northEast = northEastNode;
+        southWest = southWestNode;
+        southEast = southEastNode;
+        population = northWestNode.population + northEastNode.population
+                     + southWestNode.population + southEastNode.population;
+        serialNumber = serialNumberVal;
+        childrenHash = hashChildren(northWestNode, northEastNode, southWestNode, southEastNode);
+    }
+
+    /**
+     * This method computes the hash of four child nodes from their serial
+     * numbers.
+     *
+     * @param northWestNode The northwest quadrant.
+     * @param northEastNode The northeast quadrant.
+     * @param southWestNode The southwest quadrant.
+     * @param southEastNode The southeast quadrant.
+     * @return              The hash of the four children.
+     */
+    static int hashChildren(final HashLifeNode northWestNode, final HashLifeNode northEastNode,
+                            final HashLifeNode southWestNode, final HashLifeNode southEastNode) {
+        int hash = northWestNode.serialNumber;
+        hash = hash * 0x9E3779B1 + northEastNode.serialNumber;
+        hash = hash * 0x9E3779B1 + southWestNode.serialNumber;
+        hash = hash * 0x9E3779B1 + southEastNode.serialNumber;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * This method reports whether this node has exactly the given children.
+     * Since children are themselves canonical, they're compared by identity.
+     *
+     * @param northWestNode The northwest quadrant.
+     * @param northEastNode The northeast quadrant.
+     * @param southWestNode The southwest quadrant.
+     * @param southEastNode The southeast quadrant.
+     * @return              true if this node has those four children.
+     */
+    boolean hasChildren(final HashLifeNode northWestNode, final HashLifeNode northEastNode,
+                        final HashLifeNode southWestNode, final HashLifeNode southEastNode) {
+        return northWest == northWestNode && northEast == northEastNode
+               && southWest == southWestNode && southEast == southEastNode;
+    }
+}
@@ -0,0 +1,176 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This class implements the original stepping engine of this program, which
+ * stores one cell per int in a pair of int[][] arrays and counts the neighbors
+ * of each cell one at a time. It was refactored out of CellGrid so that it can
+ * be selected alongside the other GridEngine implementations.
+ *
+ * @see org.kmfahey.jgameoflife.GridEngine
+ * @see org.kmfahey.jgameoflife.CellGrid
+ */
+public class IntArrayGridEngine implements GridEngine {
+
+    /** This int is used to store the horizontal dimension of the cell
+        grid, in cells. */
+    private int cellGridHorizDim;
+
+    /** This int is used to store the vertical dimension of the cell grid,
+        in cells. */
+    private int cellGridVertDim;
+
+    /** This int[][] is used to store the current generation of the cellular
+        automata, which is the one displayed when the component is rendered. */
+    private int[][] displayGrid;
+
+    /** This int[][] is used to store the next generation of the cellular
+        automata while it's being calculated. */
+    private int[][] updateGrid;
+
+    /** This LifeRule object is the rule the cells are stepped by. */
+    private LifeRule lifeRule;
+
+    /**
+     * This constructor initializes the IntArrayGridEngine object with the
+     * B3/S23 rule.
+     *
+     * @param horizDim The horizontal dimension of the cell grid, in cells.
+     * @param vertDim  The vertical dimension of the cell grid, in cells.
+     */
+    public IntArrayGridEngine(final int horizDim, final int vertDim) {
+        this(horizDim, vertDim, LifeRule.CONWAY);
+    }
+
+    /**
+     * This constructor initializes the IntArrayGridEngine object, allocating
+     * both cell grid arrays.
+     *
+     * @param horizDim    The horizontal dimension of the cell grid, in cells.
+     * @param vertDim     The vertical dimension of the cell grid, in cells.
+     * @param lifeRuleVal The rule to step the cells by.
+     */
+    public IntArrayGridEngine(final int horizDim, final int vertDim, final LifeRule lifeRuleVal) {
+        lifeRule = lifeRuleVal;
+        cellGridHorizDim = horizDim;
+        cellGridVertDim = vertDim;
+        displayGrid = new int[cellGridHorizDim][cellGridVertDim];
+        updateGrid = new int[cellGridHorizDim][cellGridVertDim];
+    }
+
+    /**
+     * This method is an accessor for the private cellGridHorizDim variable.
+     *
+     * @return The horizontal dimension of the cell grid, in cells.
+     */
+    public int getHorizDim() {
+        return cellGridHorizDim;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridVertDim variable.
+     *
+     * @return The vertical dimension of the cell grid, in cells.
+     */
+    public int getVertDim() {
+        return cellGridVertDim;
+    }
+
+    /**
+     * This method returns the value of a single cell of displayGrid.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    public int getCell(final int horizIndex, final int vertIndex) {
+        return displayGrid[horizIndex][vertIndex];
+    }
+
+    /**
+     * This method sets the value of a single cell of displayGrid.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    public void setCell(final int horizIndex, final int vertIndex, final int cellValue) {
+        displayGrid[horizIndex][vertIndex] = cellValue;
+    }
+
+    /**
+     * This method sets every cell in displayGrid to 0.
+     */
+    public void clearCells() {
+        for (int horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
+            for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
+                displayGrid[horizIndex][vertIndex] = 0;
+            }
+        }
+    }
+
+    /**
+     * This method executes a single step of the algorithm, counting the
+     * neighbors of every cell in displayGrid into updateGrid and then copying
+     * updateGrid back into displayGrid.
+     */
+    public void stepGeneration() {
+        /* This 2d array stores the offsets used in the algorithm to mod the
+           cell coordinates into coordinates of the neighboring cells. This is
+           used in preference to two nested for loops in order to avoid having
+           to test for and skip the horizDelta=0, vertDelta=0 case. */
+        int[][] deltaPairs = new int[][] {new int[] {-1, -1}, new int[] {-1, 0}, new int[] {-1, +1},
+                                          new int[] {0, -1},                     new int[] {0, +1},
+                                          new int[] {+1, -1}, new int[] {+1, 0}, new int[] {+1, +1}};
+        int sumOfNeighbors = 0;
+        int moddedHorizIndex;
+        int moddedVertIndex;
+        int horizIndex;
+        int vertIndex;
+
+        /* The for loops iterate across the horizIndex and vertIndex of every
+           cell in the cell grid. */
+        for (horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
+            for (vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
+                sumOfNeighbors = 0;
+                /* The coordinate delta values in deltaPairs are used to
+                   compute from the cell coordinates into the coordinates of
+                   every neighboring cell. */
+                for (int[] deltaPair : deltaPairs) {
+                    moddedHorizIndex = horizIndex + deltaPair[0];
+                    moddedVertIndex = vertIndex + deltaPair[1];
+                    /* The cell grid has wrap-around borders. That is
+                       achieved by replacing a neighbor cooordinate value of
+                       -1 as the max value for that ordinate, and a neighbor
+                       coordinate of the max ordinate value + 1 as 0. */
+                    moddedHorizIndex = (moddedHorizIndex == -1) ? cellGridHorizDim - 1
+                                           : (moddedHorizIndex == cellGridHorizDim) ? 0
+                                           : moddedHorizIndex;
+                    moddedVertIndex = (moddedVertIndex == -1) ? cellGridVertDim - 1
+                                           : (moddedVertIndex == cellGridVertDim) ? 0 : moddedVertIndex;
+                    sumOfNeighbors += displayGrid[moddedHorizIndex][moddedVertIndex];
+                }
+                /* The cell's next value is looked up from its existing value
+                   and the sum of its neighbors by the rule. The existing value
+                   is read from displayGrid; updateGrid can be stale if a cell
+                   was clicked, seeded or cleared since the last step. */
+                updateGrid[horizIndex][vertIndex] = lifeRule.nextCellValue(displayGrid[horizIndex][vertIndex],
+                                                                           sumOfNeighbors);
+            }
+        }
+
+        /* Two grids are used: displayGrid is the 2d array that's used to
+           update the JComponent's cell display. updateGrid is the offscreen
+           buffer object that updated values are computed into. Two grids
+           must be used since the calculations would go awry if displayCell
+           values were being updated even as the summing operation was
+           running from a mixture of old and updated values.
+
+           In this step I iterate across displayGrid and update it from
+           matching values in updateGrid. */
+        for (horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
+            for (vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
+                displayGrid[horizIndex][vertIndex] = updateGrid[horizIndex][vertIndex];
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a stepping engine for Larger than Life rules, whose
+ * neighborhood is the square of side 2R + 1 around each cell. Counting that
+ * square cell by cell would cost O(R^2) per cell, so each step instead builds
+ * a summed-area table, in which every entry holds the number of live cells
+ * above and to the left of it; the count of any square is then four entries
+ * of the table added and subtracted, O(1) per cell whatever the radius.
+ * <p>
+ * The table is built over a copy of the cell grid padded by R cells on every
+ * side with the cells from the opposite border, so that the wrap-around
+ * borders of the torus need no special case. The padding and table methods
+ * are static, so that the threaded implementation's sections can use them
+ * with halos taken from their neighbors instead. The padded grid and the
+ * table are single arrays, so a board whose table would have more than
+ * Integer.MAX_VALUE entries is refused when the engine is constructed.
+ *
+ * @see org.kmfahey.jgameoflife.LargerThanLifeRule
+ * @see org.kmfahey.jgameoflife.GridEngine
+ */
+public class LargerThanLifeGridEngine implements GridEngine {
+
+    /** This int is used to store the horizontal dimension of the cell
+        grid, in cells. */
+    private int cellGridHorizDim;
+
+    /** This int is used to store the vertical dimension of the cell grid,
+        in cells. */
+    private int cellGridVertDim;
+
+    /** This byte[] array stores the cells, 1 for live and 0 for dead, at index
+        (vertIndex * cellGridHorizDim + horizIndex). */
+    private byte[] cells;
+
+    /** This LargerThanLifeRule object is the rule the cells are stepped by. */
+    private LargerThanLifeRule largerThanLifeRule;
+
+    /** This int is the radius of the rule's neighborhood. */
+    private int radius;
+
+    /** This byte[] array holds the padded copy of the cell grid, at index
+        ((vertIndex + radius) * paddedHorizDim + horizIndex + radius). */
+    private byte[] paddedCells;
+
+    /** These ints are the dimensions of paddedCells, in cells. */
+    private int paddedHorizDim;
+    private int paddedVertDim;
+
+    /** This int[] array holds the summed-area table of paddedCells. */
+    private int[] summedAreaTable;
+
+    /** These int[] arrays map each padded column and row to the column and
+        row of the cell grid it's copied from. */
+    private int[] horizSources;
+    private int[] vertSources;
+
+    /**
+     * This constructor initializes the LargerThanLifeGridEngine object with
+     * Bosco's Rule.
+     *
+     * @param horizDim The horizontal dimension of the cell grid, in cells.
+     * @param vertDim  The vertical dimension of the cell grid, in cells.
+     */
+    public LargerThanLifeGridEngine(final int horizDim, final int vertDim) {
+        this(horizDim, vertDim, LargerThanLifeRule.BOSCO);
+    }
+
+    /**
+     * This constructor initializes the LargerThanLifeGridEngine object,
+     * allocating the cell grid, its padded copy and the summed-area table.
+     *
+     * @param horizDim              The horizontal dimension of the cell grid,
+     *                              in cells.
+     * @param vertDim               The vertical dimension of the cell grid, in
+     *                              cells.
+     * @param largerThanLifeRuleVal The rule to step the cells by.
+     * @throws IllegalArgumentException If the summed-area table of the padded
+     *                                  cell grid would have more entries
+     *                                  than an array can hold.
+     */
+    public LargerThanLifeGridEngine(final int horizDim, final int vertDim,
+                                    final LargerThanLifeRule largerThanLifeRuleVal) {
+        cellGridHorizDim = horizDim;
+        cellGridVertDim = vertDim;
+        largerThanLifeRule = largerThanLifeRuleVal;
+        radius = largerThanLifeRule.getRadius();
+
+        /* The table is the largest of the arrays, so if its size fits in an
+           int, so do the indices of the cell grid and its padded copy. */
+        long tableSize = (horizDim + 2L * radius + 1L) * (vertDim + 2L * radius + 1L);
+        if (tableSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a " + horizDim + " x " + vertDim + " cell grid is too large for "
+                                               + "the Larger than Life engine, whose summed-area table can hold "
+                                               + "at most " + Integer.MAX_VALUE + " entries");
+        }
+        cells = new byte[horizDim * vertDim];
+        paddedHorizDim = horizDim + 2 * radius;
+        paddedVertDim = vertDim + 2 * radius;
+        paddedCells = new byte[paddedHorizDim * paddedVertDim];
+        summedAreaTable = new int[summedAreaTableSize(paddedHorizDim, paddedVertDim)];
+
+        /* A radius wider than the grid wraps around more than once, so the
+           source of each padded column and row is taken modulo the grid. */
+        horizSources = new int[paddedHorizDim];
+        for (int paddedIndex = 0; paddedIndex < paddedHorizDim; paddedIndex++) {
+            horizSources[paddedIndex] = Math.floorMod(paddedIndex - radius, horizDim);
+        }
+        vertSources = new int[paddedVertDim];
+        for (int paddedIndex = 0; paddedIndex < paddedVertDim; paddedIndex++) {
+            vertSources[paddedIndex] = Math.floorMod(paddedIndex - radius, vertDim);
+        }
+    }
+
+    /**
+     * This method returns the length of the summed-area table of a padded grid
+     * of the given dimensions. The table has an extra row and column of zeroes
+     * along its north and west sides.
+     *
+     * @param paddedHorizDim The horizontal dimension of the padded grid.
+     * @param paddedVertDim  The vertical dimension of the padded grid.
+     * @return               The number of entries in the table.
+     */
+    public static int summedAreaTableSize(final int paddedHorizDim, final int paddedVertDim) {
+        return (paddedHorizDim + 1) * (paddedVertDim + 1);
+    }
+
+    /**
+     * This method builds the summed-area table of a padded grid: the entry at
+     * row y + 1 and column x + 1 holds the number of live cells in columns 0
+     * through x of rows 0 through y. Each entry is the running sum of its row
+     * added to the entry above it.
+     *
+     * @param paddedCells     The padded grid, one cell per byte, row-major.
+     * @param paddedHorizDim  The horizontal dimension of the padded grid.
+     * @param paddedVertDim   The vertical dimension of the padded grid.
+     * @param summedAreaTable The table to fill; its north row and west column
+     *                        must be zero.
+     */
+    public static void buildSummedAreaTable(final byte[] paddedCells, final int paddedHorizDim,
+                                            final int paddedVertDim, final int[] summedAreaTable) {
+        final int tableWidth = paddedHorizDim + 1;
+        for (int vertIndex = 0; vertIndex < paddedVertDim; vertIndex++) {
+            int cellOffset = vertIndex * paddedHorizDim;
+            int tableOffset = (vertIndex + 1) * tableWidth + 1;
+            int rowSum = 0;
+            for (int horizIndex = 0; horizIndex < paddedHorizDim; horizIndex++) {
+                rowSum += paddedCells[cellOffset + horizIndex];
+                summedAreaTable[tableOffset + horizIndex] = summedAreaTable[tableOffset + horizIndex - tableWidth]
+                                                            + rowSum;
+            }
+        }
+    }
+
+    /**
+     * This method counts the live cells in the square of side 2 * radius + 1
+     * centered on a cell, from the summed-area table of a grid padded by
+     * radius cells on every side. The count is the table entry at the
+     * square's southeast corner, less the entries beyond its north and west
+     * sides, plus the entry beyond its northwest corner, which was subtracted
+     * twice.
+     *
+     * @param summedAreaTable The table built by buildSummedAreaTable().
+     * @param paddedHorizDim  The horizontal dimension of the padded grid.
+     * @param radius          The radius of the square.
+     * @param horizIndex      The horizontal coordinate of the cell in the
+     *                        unpadded grid.
+     * @param vertIndex       The vertical coordinate of the cell in the
+     *                        unpadded grid.
+     * @return                The number of live cells in the square.
+     */
+    public static int squareSum(final int[] summedAreaTable, final int paddedHorizDim, final int radius,
+                                final int horizIndex, final int vertIndex) {
+        final int tableWidth = paddedHorizDim + 1;
+        final int side = 2 * radius + 1;
+        int northOffset = vertIndex * tableWidth;
+        int southOffset = (vertIndex + side) * tableWidth;
+        return summedAreaTable[southOffset + horizIndex + side] - summedAreaTable[northOffset + horizIndex + side]
+               - summedAreaTable[southOffset + horizIndex] + summedAreaTable[northOffset + horizIndex];
+    }
+
+    /**
+     * This method is an accessor for the private cellGridHorizDim variable.
+     *
+     * @return The horizontal dimension of the cell grid, in cells.
+     */
+    public int getHorizDim() {
+        return cellGridHorizDim;
+    }
+
+    /**
+     * This method is an accessor for the private cellGridVertDim variable.
+     *
+     * @return The vertical dimension of the cell grid, in cells.
+     */
+    public int getVertDim() {
+        return cellGridVertDim;
+    }
+
+    /**
+     * This method returns the value of a single cell.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    public int getCell(final int horizIndex, final int vertIndex) {
+        return cells[vertIndex * cellGridHorizDim + horizIndex];
+    }
+
+    /**
+     * This method sets the value of a single cell.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    public void setCell(final int horizIndex, final int vertIndex, final int cellValue) {
+        cells[vertIndex * cellGridHorizDim + horizIndex] = (byte) cellValue;
+    }
+
+    /**
+     * This method sets every cell to 0.
+     */
+    public void clearCells() {
+        Arrays.fill(cells, (byte) 0);
+    }
+
+    /**
+     * This method executes a single step of the algorithm. The cell grid is
+     * copied into its padded copy with the wrapped-around cells around it,
+     * the summed-area table is built from that, and every cell is stepped by
+     * the count of its square. The cells are written back in place, since the
+     * counts all come from the table.
+     */
+    public void stepGeneration() {
+        for (int paddedVert = 0; paddedVert < paddedVertDim; paddedVert++) {
+            int sourceOffset = vertSources[paddedVert] * cellGridHorizDim;
+            int paddedOffset = paddedVert * paddedHorizDim;
+            for (int paddedHoriz = 0; paddedHoriz < paddedHorizDim; paddedHoriz++) {
+                paddedCells[paddedOffset + paddedHoriz] = cells[sourceOffset + horizSources[paddedHoriz]];
+            }
+        }
+        buildSummedAreaTable(paddedCells, paddedHorizDim, paddedVertDim, summedAreaTable);
+
+        for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex++) {
+            int rowOffset = vertIndex * cellGridHorizDim;
+            for (int horizIndex = 0; horizIndex < cellGridHorizDim; horizIndex++) {
+                int sumOfSquare = squareSum(summedAreaTable, paddedHorizDim, radius, horizIndex, vertIndex);
+                cells[rowOffset + horizIndex] = (byte) largerThanLifeRule.nextCellValue(cells[rowOffset + horizIndex],
+                                                                                        sumOfSquare);
+            }
+        }
+    }
+}
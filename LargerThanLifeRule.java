@@ -0,0 +1,209 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This class implements a Larger than Life rule: a rule of the same kind as
+ * Conway's Game of Life, but whose neighborhood is the square of cells within
+ * a radius R of the cell, rather than just the eight cells around it, and
+ * whose birth and survival conditions are ranges of counts. It's given in the
+ * notation Golly uses, for example "R5,C0,M1,S34..58,B34..45,NM", Bosco's
+ * Rule: radius 5, 2 states, the cell itself counted in its neighborhood,
+ * survival with 34 to 58 live cells and birth with 34 to 45, in the Moore
+ * (square) neighborhood.
+ * <p>
+ * Only the Moore neighborhood and 2 states are supported, since those are
+ * what a summed-area table can count.
+ *
+ * @see org.kmfahey.jgameoflife.LargerThanLifeGridEngine
+ */
+public final class LargerThanLifeRule {
+
+    /** This LargerThanLifeRule constant is Bosco's Rule, the rule used when no
+        other is given. */
+    public static final LargerThanLifeRule BOSCO = parse("R5,C0,M1,S34..58,B34..45,NM");
+
+    /** This int is the radius of the neighborhood, in cells. */
+    private final int radius;
+
+    /** This boolean is true if a cell counts itself in its neighborhood. */
+    private final boolean includesCenter;
+
+    /** These ints are the lowest and highest counts a dead cell is born
+        with. */
+    private final int birthMin;
+    private final int birthMax;
+
+    /** These ints are the lowest and highest counts a live cell survives
+        with. */
+    private final int survivalMin;
+    private final int survivalMax;
+
+    /** These int[] arrays hold the lowest count of each range and its width,
+        indexed by the value of the cell, so that nextCellValue() doesn't have
+        to branch on it. */
+    private final int[] rangeMins;
+    private final int[] rangeSpans;
+
+    /**
+     * This constructor initializes the LargerThanLifeRule object.
+     *
+     * @param radiusVal         The radius of the neighborhood, in cells.
+     * @param includesCenterVal Whether a cell counts itself.
+     * @param birthMinVal       The lowest count a dead cell is born with.
+     * @param birthMaxVal       The highest count a dead cell is born with.
+     * @param survivalMinVal    The lowest count a live cell survives with.
+     * @param survivalMaxVal    The highest count a live cell survives with.
+     * @throws IllegalArgumentException If the radius isn't positive, or a
+     *                                  range ends below where it starts.
+     */
+    public LargerThanLifeRule(final int radiusVal, final boolean includesCenterVal, final int birthMinVal,
+                              final int birthMaxVal, final int survivalMinVal, final int survivalMaxVal) {
+        if (radiusVal < 1) {
+            throw new IllegalArgumentException("radius must be at least 1: " + radiusVal);
+        } else if (birthMaxVal < birthMinVal || survivalMaxVal < survivalMinVal) {
+            throw new IllegalArgumentException("range ends below where it starts");
+        }
+        radius = radiusVal;
+        includesCenter = includesCenterVal;
+        birthMin = birthMinVal;
+        birthMax = birthMaxVal;
+        survivalMin = survivalMinVal;
+        survivalMax = survivalMaxVal;
+        rangeMins = new int[] {birthMin, survivalMin};
+        rangeSpans = new int[] {birthMax - birthMin, survivalMax - survivalMin};
+    }
+
+    /**
+     * This method parses a rulestring in Golly's Larger than Life notation.
+     * The R, S and B terms are required; C defaults to 0 (which, like C2,
+     * means 2 states), M to 0 and N to M.
+     *
+     * @param ruleString The rulestring, eg. "R5,C0,M1,S34..58,B34..45,NM".
+     * @return           The LargerThanLifeRule object it describes.
+     * @throws IllegalArgumentException If the rulestring can't be parsed, or
+     *                                  describes a rule this class doesn't
+     *                                  support.
+     */
+    public static LargerThanLifeRule parse(final String ruleString) {
+        int radiusVal = -1;
+        boolean includesCenterVal = false;
+        int[] birthRange = null;
+        int[] survivalRange = null;
+
+        for (String ruleTerm : ruleString.trim().toUpperCase().split(",")) {
+            ruleTerm = ruleTerm.trim();
+            if (ruleTerm.isEmpty()) {
+                throw new IllegalArgumentException("unrecognized rulestring: " + ruleString);
+            }
+            String termValue = ruleTerm.substring(1);
+            switch (ruleTerm.charAt(0)) {
+                case 'R':
+                    radiusVal = parseCount(termValue, ruleString);
+                    break;
+                case 'C':
+                    int stateCount = parseCount(termValue, ruleString);
+                    if (stateCount != 0 && stateCount != 2) {
+                        throw new IllegalArgumentException("only 2-state Larger than Life rules are supported: "
+                                                           + ruleString);
+                    }
+                    break;
+                case 'M':
+                    includesCenterVal = parseCount(termValue, ruleString) == 1;
+                    break;
+                case 'S':
+                    survivalRange = parseRange(termValue, ruleString);
+                    break;
+                case 'B':
+                    birthRange = parseRange(termValue, ruleString);
+                    break;
+                case 'N':
+                    if (!termValue.equals("M")) {
+                        throw new IllegalArgumentException("only the Moore neighborhood is supported: " + ruleString);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("unrecognized rulestring: " + ruleString);
+            }
+        }
+        if (radiusVal == -1 || birthRange == null || survivalRange == null) {
+            throw new IllegalArgumentException("unrecognized rulestring: " + ruleString);
+        }
+        return new LargerThanLifeRule(radiusVal, includesCenterVal, birthRange[0], birthRange[1],
+                                      survivalRange[0], survivalRange[1]);
+    }
+
+    /**
+     * This method parses a nonnegative decimal count from a rulestring term.
+     *
+     * @param countDigits The digits.
+     * @param ruleString  The whole rulestring, for the exception message.
+     * @return            The count.
+     * @throws IllegalArgumentException If the digits can't be parsed.
+     */
+    private static int parseCount(final String countDigits, final String ruleString) {
+        try {
+            int count = Integer.parseInt(countDigits);
+            if (count >= 0) {
+                return count;
+            }
+        } catch (NumberFormatException exception) {
+            assert true;
+        }
+        throw new IllegalArgumentException("unrecognized rulestring: " + ruleString);
+    }
+
+    /**
+     * This method parses a range of counts of the form "min..max", or a single
+     * count, from a rulestring term.
+     *
+     * @param rangeText  The range.
+     * @param ruleString The whole rulestring, for the exception message.
+     * @return           A length-2 array of the lowest and highest counts.
+     * @throws IllegalArgumentException If the range can't be parsed.
+     */
+    private static int[] parseRange(final String rangeText, final String ruleString) {
+        int separatorIndex = rangeText.indexOf("..");
+        if (separatorIndex == -1) {
+            int count = parseCount(rangeText, ruleString);
+            return new int[] {count, count};
+        }
+        return new int[] {parseCount(rangeText.substring(0, separatorIndex), ruleString),
+                          parseCount(rangeText.substring(separatorIndex + 2), ruleString)};
+    }
+
+    /**
+     * This method is an accessor for the private radius variable.
+     *
+     * @return The radius of the neighborhood, in cells.
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * This method computes the next value of a single cell from the number of
+     * live cells in the square of side 2R + 1 centered on it, which includes
+     * the cell itself.
+     *
+     * @param cellValue 1 if the cell is live, or 0 if it's dead.
+     * @param squareSum The number of live cells in the square.
+     * @return          1 if the cell is live in the next generation, or 0 if
+     *                  it's dead.
+     */
+    public int nextCellValue(final int cellValue, final int squareSum) {
+        int neighborCount = includesCenter ? squareSum : squareSum - cellValue;
+
+        /* An unsigned comparison of the count's offset from the bottom of the
+           range against the range's width tests both ends at once. */
+        return (Integer.compareUnsigned(neighborCount - rangeMins[cellValue], rangeSpans[cellValue]) <= 0) ? 1 : 0;
+    }
+
+    /**
+     * This method returns the rulestring of the rule in Golly's notation.
+     *
+     * @return The rulestring, for example "R5,C0,M1,S34..58,B34..45,NM".
+     */
+    public String toString() {
+        return "R" + radius + ",C0,M" + (includesCenter ? 1 : 0) + ",S" + survivalMin + ".." + survivalMax
+               + ",B" + birthMin + ".." + birthMax + ",NM";
+    }
+}
@@ -0,0 +1,323 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This class implements a Life-like cellular automaton rule, as given by a
+ * rulestring in B/S notation: "B3/S23" is Conway's Game of Life, in which a
+ * dead cell is born with exactly 3 live neighbors and a live cell survives
+ * with 2 or 3. The older S/B notation, "23/3", is accepted too. A rulestring is
+ * parsed once into a birth mask and a survival mask, with bit n set if a
+ * count of n live neighbors causes a birth or survival, and those masks are
+ * compiled into the two forms the engines use, so that no engine has to
+ * branch on the rule while it steps:
+ * <p>
+ * nextCellValue() looks the cell up by shifting a combined 18-bit mask, for
+ * engines that count neighbors one cell at a time.
+ * <p>
+ * nextWord() applies the rule to 64 bit-packed cells at once, from the 4 bit
+ * planes of their neighbor counts. It works as a tree of multiplexers: the
+ * rule's outcome for each count 0 through 8 is selected by the center cell,
+ * and then the count bits select among those outcomes. The outcomes are
+ * compiled into constant words here, so the tree costs the same bitwise
+ * operations for every rule. B3/S23 alone keeps the shorter expression it
+ * reduces to.
+ *
+ * @see org.kmfahey.jgameoflife.GridEngine
+ */
+public final class LifeRule {
+
+    /** This LifeRule constant is Conway's Game of Life, B3/S23, the rule used
+        when no other is given. */
+    public static final LifeRule CONWAY = new LifeRule(1 << 3, (1 << 2) | (1 << 3));
+
+    /** This int constant is the highest neighbor count a cell can have. */
+    private static final int MAX_NEIGHBORS = 8;
+
+    /** This int has bit n set if a dead cell with n live neighbors is born. */
+    private final int birthMask;
+
+    /** This int has bit n set if a live cell with n live neighbors
+        survives. */
+    private final int survivalMask;
+
+    /** This boolean is true if the rule is B3/S23, which has a dedicated
+        expression shorter than the general multiplexer tree. */
+    private final boolean conway;
+
+    /** This int holds birthMask in bits 0 through 8 and survivalMask in bits
+        9 through 17, so that a cell's next value is bit (cellValue * 9 +
+        sumOfNeighbors). */
+    private final int ruleBits;
+
+    /** These longs hold, for each neighbor count, the next value of a dead
+        cell with that count, as a word of all 0s or all 1s. They're fields
+        rather than an array so that the JIT compiler can keep them in
+        registers across a row, which it can't do for loads from a long[] array
+        that might alias the row being written. */
+    private final long birthWord0;
+    private final long birthWord1;
+    private final long birthWord2;
+    private final long birthWord3;
+    private final long birthWord4;
+    private final long birthWord5;
+    private final long birthWord6;
+    private final long birthWord7;
+    private final long birthWord8;
+
+    /** These longs hold, for each neighbor count, the next value of a live
+        cell with that count, as a word of all 0s or all 1s. */
+    private final long survivalWord0;
+    private final long survivalWord1;
+    private final long survivalWord2;
+    private final long survivalWord3;
+    private final long survivalWord4;
+    private final long survivalWord5;
+    private final long survivalWord6;
+    private final long survivalWord7;
+    private final long survivalWord8;
+
+    /**
+     * This constructor initializes the LifeRule object from its birth and
+     * survival masks, and compiles them.
+     *
+     * @param birthMaskVal    A mask with bit n set for every neighbor count n
+     *                        that causes a birth.
+     * @param survivalMaskVal A mask with bit n set for every neighbor count n
+     *                        that a live cell survives.
+     */
+    private LifeRule(final int birthMaskVal, final int survivalMaskVal) {
+        birthMask = birthMaskVal;
+        survivalMask = survivalMaskVal;
+        ruleBits = birthMask | (survivalMask << (MAX_NEIGHBORS + 1));
+        conway = birthMask == (1 << 3) && survivalMask == ((1 << 2) | (1 << 3));
+        birthWord0 = getBirthWord(0);
+        birthWord1 = getBirthWord(1);
+        birthWord2 = getBirthWord(2);
+        birthWord3 = getBirthWord(3);
+        birthWord4 = getBirthWord(4);
+        birthWord5 = getBirthWord(5);
+        birthWord6 = getBirthWord(6);
+        birthWord7 = getBirthWord(7);
+        birthWord8 = getBirthWord(8);
+        survivalWord0 = getSurvivalWord(0);
+        survivalWord1 = getSurvivalWord(1);
+        survivalWord2 = getSurvivalWord(2);
+        survivalWord3 = getSurvivalWord(3);
+        survivalWord4 = getSurvivalWord(4);
+        survivalWord5 = getSurvivalWord(5);
+        survivalWord6 = getSurvivalWord(6);
+        survivalWord7 = getSurvivalWord(7);
+        survivalWord8 = getSurvivalWord(8);
+    }
+
+    /**
+     * This method parses a rulestring into a LifeRule object. Both B/S
+     * notation ("B36/S23", in either order and in either case) and S/B
+     * notation ("23/36") are accepted; either side may be empty, as in "B2/S"
+     * for Seeds.
+     *
+     * @param ruleString The rulestring.
+     * @return           The LifeRule object it describes; B3/S23 in any
+     *                   notation returns CONWAY.
+     * @throws IllegalArgumentException If the rulestring can't be parsed.
+     */
+    public static LifeRule parse(final String ruleString) {
+        String[] ruleParts = ruleString.trim().split("/", -1);
+        if (ruleParts.length != 2) {
+            throw new IllegalArgumentException("unrecognized rulestring: " + ruleString);
+        }
+        int birthMaskVal = -1;
+        int survivalMaskVal = -1;
+
+        for (int partIndex = 0; partIndex < 2; partIndex++) {
+            String rulePart = ruleParts[partIndex].trim().toUpperCase();
+            /* A part without a B or S prefix is read by its position, as in
+               S/B notation: survival first, then birth. */
+            boolean isBirth = (rulePart.startsWith("B") || rulePart.startsWith("S"))
+                              ? rulePart.startsWith("B") : partIndex == 1;
+            if (rulePart.startsWith("B") || rulePart.startsWith("S")) {
+                rulePart = rulePart.substring(1);
+            }
+            int partMask = parseCounts(rulePart, ruleString);
+            if (isBirth && birthMaskVal == -1) {
+                birthMaskVal = partMask;
+            } else if (!isBirth && survivalMaskVal == -1) {
+                survivalMaskVal = partMask;
+            } else {
+                throw new IllegalArgumentException("unrecognized rulestring: " + ruleString);
+            }
+        }
+        if (birthMaskVal == CONWAY.birthMask && survivalMaskVal == CONWAY.survivalMask) {
+            return CONWAY;
+        }
+        return new LifeRule(birthMaskVal, survivalMaskVal);
+    }
+
+    /**
+     * This method parses the neighbor counts of one side of a rulestring into
+     * a mask.
+     *
+     * @param countDigits The digits of the neighbor counts.
+     * @param ruleString  The whole rulestring, for the exception message.
+     * @return            A mask with bit n set for every count n given.
+     * @throws IllegalArgumentException If a character isn't a digit from 0
+     *                                  to 8.
+     */
+    private static int parseCounts(final String countDigits, final String ruleString) {
+        int countMask = 0;
+        for (char countDigit : countDigits.toCharArray()) {
+            if (countDigit < '0' || countDigit > '0' + MAX_NEIGHBORS) {
+                throw new IllegalArgumentException("unrecognized rulestring: " + ruleString);
+            }
+            countMask |= 1 << (countDigit - '0');
+        }
+        return countMask;
+    }
+
+    /**
+     * This method is an accessor for the private birthMask variable.
+     *
+     * @return A mask with bit n set if a dead cell with n live neighbors is
+     *         born.
+     */
+    public int getBirthMask() {
+        return birthMask;
+    }
+
+    /**
+     * This method is an accessor for the private survivalMask variable.
+     *
+     * @return A mask with bit n set if a live cell with n live neighbors
+     *         survives.
+     */
+    public int getSurvivalMask() {
+        return survivalMask;
+    }
+
+    /**
+     * This method reports whether the rule is B3/S23, for row kernels that
+     * keep a dedicated path for it.
+     *
+     * @return true if the rule is Conway's Game of Life.
+     */
+    public boolean isConway() {
+        return conway;
+    }
+
+    /**
+     * This method reports whether a dead cell with no live neighbors is born
+     * under this rule. Engines that skip empty space can't run such a rule,
+     * since empty space doesn't stay empty under it.
+     *
+     * @return true if the rule has B0.
+     */
+    public boolean birthsFromEmpty() {
+        return (birthMask & 1) != 0;
+    }
+
+    /**
+     * This method computes the next value of a single cell.
+     *
+     * @param cellValue      1 if the cell is live, or 0 if it's dead.
+     * @param sumOfNeighbors The number of live neighbors of the cell.
+     * @return               1 if the cell is live in the next generation, or 0
+     *                       if it's dead.
+     */
+    public int nextCellValue(final int cellValue, final int sumOfNeighbors) {
+        return (ruleBits >>> (cellValue * (MAX_NEIGHBORS + 1) + sumOfNeighbors)) & 1;
+    }
+
+    /**
+     * This method computes the next generation of a word of 64 cells from the
+     * 4 bit planes of their neighbor counts.
+     *
+     * @param centerWord The word of cells being stepped.
+     * @param countBit0  The word of bit 0 of each cell's neighbor count.
+     * @param countBit1  The word of bit 1 of each cell's neighbor count.
+     * @param countBit2  The word of bit 2 of each cell's neighbor count.
+     * @param countBit3  The word of bit 3 of each cell's neighbor count.
+     * @return           The next generation of the word of cells.
+     */
+    public long nextWord(final long centerWord, final long countBit0, final long countBit1,
+                         final long countBit2, final long countBit3) {
+        /* B3/S23 reduces to a count of 2 or 3 with the cell live or 3 with it
+           dead. The test is the same for every word of a row, so the JIT
+           compiler can hoist it out of the row loop. */
+        if (conway) {
+            return countBit1 & ~countBit2 & ~countBit3 & (countBit0 | centerWord);
+        }
+
+        /* The center cell selects the survival outcome of each count where
+           it's live and the birth outcome where it's dead. A count of 8 is
+           the only one with bit 3 set, and it has bits 0 through 2 clear. */
+        long outcome0 = select(birthWord0, survivalWord0, centerWord);
+        long outcome1 = select(birthWord1, survivalWord1, centerWord);
+        long outcome2 = select(birthWord2, survivalWord2, centerWord);
+        long outcome3 = select(birthWord3, survivalWord3, centerWord);
+        long outcome4 = select(birthWord4, survivalWord4, centerWord);
+        long outcome5 = select(birthWord5, survivalWord5, centerWord);
+        long outcome6 = select(birthWord6, survivalWord6, centerWord);
+        long outcome7 = select(birthWord7, survivalWord7, centerWord);
+        long outcome8 = select(birthWord8, survivalWord8, centerWord);
+        long selected03 = select(select(outcome0, outcome1, countBit0), select(outcome2, outcome3, countBit0),
+                                 countBit1);
+        long selected47 = select(select(outcome4, outcome5, countBit0), select(outcome6, outcome7, countBit0),
+                                 countBit1);
+        return select(select(selected03, selected47, countBit2), outcome8, countBit3);
+    }
+
+    /**
+     * This method is a bitwise multiplexer: it takes the bits of secondWord
+     * where selectWord is set, and the bits of firstWord where it isn't.
+     *
+     * @param firstWord  The word selected by clear bits.
+     * @param secondWord The word selected by set bits.
+     * @param selectWord The word of select bits.
+     * @return           The selected bits.
+     */
+    private static long select(final long firstWord, final long secondWord, final long selectWord) {
+        return firstWord ^ ((firstWord ^ secondWord) & selectWord);
+    }
+
+    /**
+     * This method returns the rule's birth outcome for a neighbor count, as a
+     * word of all 0s or all 1s, for use by the vectorized row kernel.
+     *
+     * @param neighborCount A neighbor count from 0 to 8.
+     * @return              The birth outcome word.
+     */
+    public long getBirthWord(final int neighborCount) {
+        return -((long) (birthMask >>> neighborCount) & 1L);
+    }
+
+    /**
+     * This method returns the rule's survival outcome for a neighbor count, as
+     * a word of all 0s or all 1s, for use by the vectorized row kernel.
+     *
+     * @param neighborCount A neighbor count from 0 to 8.
+     * @return              The survival outcome word.
+     */
+    public long getSurvivalWord(final int neighborCount) {
+        return -((long) (survivalMask >>> neighborCount) & 1L);
+    }
+
+    /**
+     * This method returns the rulestring of the rule in B/S notation.
+     *
+     * @return The rulestring, for example "B36/S23".
+     */
+    public String toString() {
+        StringBuilder ruleString = new StringBuilder("B");
+        for (int neighborCount = 0; neighborCount <= MAX_NEIGHBORS; neighborCount++) {
+            if ((birthMask & (1 << neighborCount)) != 0) {
+                ruleString.append(neighborCount);
+            }
+        }
+        ruleString.append("/S");
+        for (int neighborCount = 0; neighborCount <= MAX_NEIGHBORS; neighborCount++) {
+            if ((survivalMask & (1 << neighborCount)) != 0) {
+                ruleString.append(neighborCount);
+            }
+        }
+        return ruleString.toString();
+    }
+}
@@ -0,0 +1,178 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This class implements a stepping engine that computes the next generation
+ * by table lookup. A 65,536-entry table is built once, when the engine is
+ * constructed, mapping every 4 x 4 neighborhood to the next state of the 2 x 2
+ * block of cells at its center. The cells are stored in the same bit-packed
+ * rows as BitPackedGridEngine, so that a step reads the 4 x 4 neighborhood of a
+ * block as four 4-bit nibbles, one from each of four consecutive rows, and
+ * replaces all the neighbor counting with a single array access per block.
+ *
+ * @see org.kmfahey.jgameoflife.BitPackedGridEngine
+ * @see org.kmfahey.jgameoflife.GridEngine
+ */
+public class LookupTableGridEngine extends BitPackedGridEngine {
+
+    /** This int constant is the number of entries in the lookup table, one
+        for every possible 16-cell neighborhood. */
+    public static final int TABLE_SIZE = 1 << 16;
+
+    /** This byte[] array is the lookup table. The index holds a 4 x 4
+        neighborhood, one row per nibble from north to south, with the
+        westernmost cell of each row in the nibble's lowest bit. The entry
+        holds the next state of the 2 x 2 center, the north row in bits 0 and 1
+        and the south row in bits 2 and 3. */
+    private byte[] blockTable;
+
+    /**
+     * This constructor initializes the LookupTableGridEngine object with the
+     * B3/S23 rule.
+     *
+     * @param horizDim The horizontal dimension of the cell grid, in cells.
+     * @param vertDim  The vertical dimension of the cell grid, in cells.
+     */
+    public LookupTableGridEngine(final int horizDim, final int vertDim) {
+        this(horizDim, vertDim, LifeRule.CONWAY);
+    }
+
+    /**
+     * This constructor initializes the LookupTableGridEngine object, allocating
+     * the rows and building the lookup table from the rule.
+     *
+     * @param horizDim    The horizontal dimension of the cell grid, in cells.
+     * @param vertDim     The vertical dimension of the cell grid, in cells.
+     * @param lifeRuleVal The rule to step the cells by.
+     */
+    public LookupTableGridEngine(final int horizDim, final int vertDim, final LifeRule lifeRuleVal) {
+        super(horizDim, vertDim, lifeRuleVal);
+        blockTable = buildBlockTable(lifeRule);
+    }
+
+    /**
+     * This method builds the lookup table by applying a rule to the four
+     * center cells of every 4 x 4 neighborhood.
+     *
+     * @param lifeRule The rule to build the table for.
+     * @return         The lookup table.
+     */
+    private static byte[] buildBlockTable(final LifeRule lifeRule) {
+        byte[] table = new byte[TABLE_SIZE];
+        for (int neighborhood = 0; neighborhood < TABLE_SIZE; neighborhood++) {
+            int blockBits = 0;
+            for (int blockVert = 0; blockVert < 2; blockVert++) {
+                for (int blockHoriz = 0; blockHoriz < 2; blockHoriz++) {
+                    /* The center cells sit at columns and rows 1 and 2 of the
+                       neighborhood. */
+                    int cellColumn = blockHoriz + 1;
+                    int cellRow = blockVert + 1;
+                    int sumOfNeighbors = 0;
+                    for (int vertDelta = -1; vertDelta <= 1; vertDelta++) {
+                        for (int horizDelta = -1; horizDelta <= 1; horizDelta++) {
+                            if (horizDelta != 0 || vertDelta != 0) {
+                                sumOfNeighbors += (neighborhood >>> ((cellRow + vertDelta) * 4
+                                                                     + cellColumn + horizDelta)) & 1;
+                            }
+                        }
+                    }
+                    int cellValue = (neighborhood >>> (cellRow * 4 + cellColumn)) & 1;
+                    blockBits |= lifeRule.nextCellValue(cellValue, sumOfNeighbors) << (blockVert * 2 + blockHoriz);
+                }
+            }
+            table[neighborhood] = (byte) blockBits;
+        }
+        return table;
+    }
+
+    /**
+     * This method steps one pair of rows by table lookup. The neighborhood of
+     * the block whose west cell is at horizIndex x is read from bits x through
+     * x + 3 of each of the four rows, since the cell at x - 1 is kept in bit x.
+     * A block at bit offset 62 straddles two words, and takes its last two
+     * columns from the next word and writes its east cells into it.
+     *
+     * @param northRow      The row north of the pair.
+     * @param firstRow      The first row of the pair.
+     * @param secondRow     The second row of the pair.
+     * @param southRow      The row south of the pair.
+     * @param nextFirstRow  The row the next generation of firstRow is written
+     *                      into.
+     * @param nextSecondRow The row the next generation of secondRow is
+     *                      written into, or null if the pair is only one row.
+     */
+    private void stepRowPair(final long[] northRow, final long[] firstRow, final long[] secondRow,
+                             final long[] southRow, final long[] nextFirstRow, final long[] nextSecondRow) {
+        long firstCarry = 0L;
+        long secondCarry = 0L;
+
+        for (int wordIndex = 0; wordIndex < wordsPerRow; wordIndex++) {
+            long northWord = northRow[wordIndex];
+            long firstWord = firstRow[wordIndex];
+            long secondWord = secondRow[wordIndex];
+            long southWord = southRow[wordIndex];
+            long nextFirstWord = firstCarry;
+            long nextSecondWord = secondCarry;
+
+            for (int bitOffset = 0; bitOffset < 62; bitOffset += 2) {
+                int neighborhood = (int) ((northWord >>> bitOffset) & 0xFL)
+                                   | (int) ((firstWord >>> bitOffset) & 0xFL) << 4
+                                   | (int) ((secondWord >>> bitOffset) & 0xFL) << 8
+                                   | (int) ((southWord >>> bitOffset) & 0xFL) << 12;
+                int blockBits = blockTable[neighborhood];
+                nextFirstWord |= (long) (blockBits & 3) << (bitOffset + 1);
+                nextSecondWord |= (long) ((blockBits >>> 2) & 3) << (bitOffset + 1);
+            }
+
+            /* The block at bit offset 62 reads its last two columns from the
+               low bits of the next word, if there is one; past the last word
+               they're beyond the east halo bit and don't matter. */
+            int spillIndex = wordIndex + 1;
+            boolean hasSpillWord = spillIndex < wordsPerRow;
+            long northSpill = hasSpillWord ? northRow[spillIndex] : 0L;
+            long firstSpill = hasSpillWord ? firstRow[spillIndex] : 0L;
+            long secondSpill = hasSpillWord ? secondRow[spillIndex] : 0L;
+            long southSpill = hasSpillWord ? southRow[spillIndex] : 0L;
+            int neighborhood = (int) ((northWord >>> 62) | (northSpill & 3L) << 2)
+                               | (int) ((firstWord >>> 62) | (firstSpill & 3L) << 2) << 4
+                               | (int) ((secondWord >>> 62) | (secondSpill & 3L) << 2) << 8
+                               | (int) ((southWord >>> 62) | (southSpill & 3L) << 2) << 12;
+            int blockBits = blockTable[neighborhood];
+            nextFirstWord |= (long) (blockBits & 1) << 63;
+            nextSecondWord |= (long) ((blockBits >>> 2) & 1) << 63;
+            firstCarry = (blockBits >>> 1) & 1;
+            secondCarry = (blockBits >>> 3) & 1;
+
+            nextFirstRow[wordIndex] = nextFirstWord;
+            if (nextSecondRow != null) {
+                nextSecondRow[wordIndex] = nextSecondWord;
+            }
+        }
+    }
+
+    /**
+     * This method executes a single step of the algorithm. The halo bits of
+     * every row are refreshed, each pair of rows is stepped against its
+     * wrapped-around north and south neighbors by table lookup, and the two
+     * sets of rows are swapped. When the vertical dimension is odd, the last
+     * pair is a single row.
+     */
+    public void stepGeneration() {
+        for (long[] row : displayRows) {
+            refreshHaloBits(row);
+        }
+        for (int vertIndex = 0; vertIndex < cellGridVertDim; vertIndex += 2) {
+            long[] northRow = displayRows[(vertIndex == 0) ? cellGridVertDim - 1 : vertIndex - 1];
+            long[] secondRow = displayRows[(vertIndex + 1) % cellGridVertDim];
+            long[] southRow = displayRows[(vertIndex + 2) % cellGridVertDim];
+            long[] nextSecondRow = (vertIndex + 1 < cellGridVertDim) ? updateRows[vertIndex + 1] : null;
+            stepRowPair(northRow, displayRows[vertIndex], secondRow, southRow, updateRows[vertIndex], nextSecondRow);
+            clearHaloBits(updateRows[vertIndex], cellGridHorizDim);
+            if (nextSecondRow != null) {
+                clearHaloBits(nextSecondRow, cellGridHorizDim);
+            }
+        }
+        long[][] swapRows = displayRows;
+        displayRows = updateRows;
+        updateRows = swapRows;
+    }
+}
@@ -0,0 +1,40 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This interface describes a stepping engine whose cells can be in more than
+ * the two states that GridEngine.getCell() reports. Through the GridEngine
+ * methods, state 1 reads as live and every other state as dead, and setting a
+ * cell to 1 or 0 sets it to state 1 or 0. CellGrid renders an engine that
+ * implements this interface with a color per state.
+ *
+ * @see org.kmfahey.jgameoflife.GridEngine
+ * @see org.kmfahey.jgameoflife.CellGrid
+ */
+public interface MultiStateGridEngine extends GridEngine {
+
+    /**
+     * This method is an accessor for the number of states a cell can be in.
+     *
+     * @return The number of states, including dead and alive.
+     */
+    int getStateCount();
+
+    /**
+     * This method returns the state of a single cell of the current
+     * generation.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           The state of the cell, from 0 to getStateCount() - 1.
+     */
+    int getCellState(int horizIndex, int vertIndex);
+
+    /**
+     * This method sets the state of a single cell of the current generation.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellState  The state, from 0 to getStateCount() - 1.
+     */
+    void setCellState(int horizIndex, int vertIndex, int cellState);
+}
@@ -0,0 +1,87 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This class implements a chunk of the unbounded plane stepped by
+ * ChunkedPlaneEngine: a square of 64 x 64 cells, stored one row per long with
+ * the cell at local horizontal coordinate x in bit x. Each chunk keeps direct
+ * references to the chunks that neighbor it, so that a step doesn't have to
+ * look them up in the chunk map, and is linked into the engine's free list
+ * while it's pooled.
+ *
+ * @see org.kmfahey.jgameoflife.ChunkedPlaneEngine
+ */
+public class PlaneChunk {
+
+    /** This int constant is the width and height of a chunk, in cells. */
+    static final int CHUNK_SIZE = 64;
+
+    /** This int constant is the base 2 logarithm of CHUNK_SIZE, used to
+        convert cell coordinates to chunk coordinates. */
+    static final int CHUNK_SHIFT = 6;
+
+    /** These int constants are the indexes of the neighboring chunks in the
+        neighbors array, in the same order as the compass direction signal
+        values used by CellGridSection. */
+    static final int NORTH = 0;
+    static final int NORTHEAST = 1;
+    static final int EAST = 2;
+    static final int SOUTHEAST = 3;
+    static final int SOUTH = 4;
+    static final int SOUTHWEST = 5;
+    static final int WEST = 6;
+    static final int NORTHWEST = 7;
+
+    /** These int[] arrays hold the chunk coordinate offsets of each of the
+        eight directions; north is toward lower vertical coordinates. */
+    static final int[] HORIZ_DELTAS = new int[] {0, +1, +1, +1, 0, -1, -1, -1};
+    static final int[] VERT_DELTAS = new int[] {-1, -1, 0, +1, +1, +1, 0, -1};
+
+    /** These ints are the coordinates of the chunk, in chunks. */
+    int chunkHorizCoord;
+    int chunkVertCoord;
+
+    /** This long[] array holds the rows of the current generation. */
+    long[] rows = new long[CHUNK_SIZE];
+
+    /** This long[] array holds the rows of the next generation while it's
+        being computed. */
+    long[] nextRows = new long[CHUNK_SIZE];
+
+    /** This PlaneChunk[] array holds the eight neighboring chunks, or null
+        for a neighbor that isn't allocated. */
+    final PlaneChunk[] neighbors = new PlaneChunk[8];
+
+    /** This boolean is true if any cell in rows is live. */
+    boolean occupied;
+
+    /** This long is the last generation in which a neighboring chunk had live
+        cells along the edge facing this one, so that this chunk couldn't be
+        reclaimed. */
+    long neededGeneration = -1L;
+
+    /** This PlaneChunk object is the next chunk in the free list while this
+        chunk is pooled. */
+    PlaneChunk nextFreeChunk;
+
+    /**
+     * This method computes the 64-bit key a chunk is stored under in the chunk
+     * map, from its two 32-bit chunk coordinates.
+     *
+     * @param chunkHorizCoordVal The horizontal coordinate of the chunk.
+     * @param chunkVertCoordVal  The vertical coordinate of the chunk.
+     * @return                   The key of the chunk.
+     */
+    static long chunkKey(final int chunkHorizCoordVal, final int chunkVertCoordVal) {
+        return ((long) chunkHorizCoordVal << 32) | (chunkVertCoordVal & 0xFFFFFFFFL);
+    }
+
+    /**
+     * This method returns the direction opposite to the given one.
+     *
+     * @param direction One of the direction constants.
+     * @return          The direction constant pointing the other way.
+     */
+    static int oppositeDirection(final int direction) {
+        return (direction + 4) & 7;
+    }
+}
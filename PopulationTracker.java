@@ -0,0 +1,142 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.function.Consumer;
+
+/**
+ * This class implements an analysis stage of a SimulationPipeline that counts
+ * the live cells of every frame it's handed and watches for the cell grid
+ * repeating itself. It's attached with SimulationPipeline.addConsumer() and
+ * runs on the consumer's thread, so the counting costs the simulation thread
+ * nothing unless the tracker falls a whole ring behind.
+ * <p>
+ * Cycles are found by hashing every frame and comparing the hash with those of
+ * the last few frames: a still life matches the frame before it, a blinker
+ * the one before that. Attached with POLICY_BACKPRESSURE, the tracker sees
+ * every frame published, so it finds every cycle no longer than historyLength
+ * frames; with POLICY_SKIP it may skip past one. A cycle is reported in
+ * generations rather than frames, so it's right however many generations each
+ * frame advances. Since two different generations can share a hash, a
+ * reported cycle is very likely but not certain.
+ * <p>
+ * The tracker sees what the frames hold, which is the part of the cell grid
+ * in view: the cells counted are the ones in view, and when the view is
+ * panned or zoomed the history is started over, since the frames before
+ * it can't be compared with the ones after. A zoomed-out frame holds the
+ * density of blocks of cells rather than cells, and its count of live cells
+ * is taken from the frame.
+ *
+ * @see org.kmfahey.jgameoflife.SimulationPipeline
+ * @see org.kmfahey.jgameoflife.RingConsumer
+ */
+public class PopulationTracker implements Consumer<GenerationFrame> {
+
+    /** This int is the number of frames back that the tracker looks for a
+        repeat. */
+    private final int historyLength = 8;
+
+    /** This long[] array holds the hashes of the last historyLength frames,
+        as a ring indexed by frame count. */
+    private final long[] frameHashes = new long[historyLength];
+
+    /** This long[] array holds the generation numbers of the same frames. */
+    private final long[] frameGenerations = new long[historyLength];
+
+    /** This long counts the frames the tracker has been handed since the
+        view last changed. It's only used by the consumer's thread. */
+    private long frameCount;
+
+    /** This GenerationFrame object holds the view of the newest frame; only
+        its view is kept, not its cells. */
+    private final GenerationFrame previousView = new GenerationFrame();
+
+    /** This int is the number of live cells in the newest frame. */
+    private volatile int population;
+
+    /** This long is the generation number of the newest frame. */
+    private volatile long generationNumber;
+
+    /** This long is the period, in generations, of the cycle the cell grid
+        is in, or 0 if it isn't in one. */
+    private volatile long cyclePeriod;
+
+    /**
+     * This method is called on the consumer's thread with every frame. It
+     * counts the live cells and hashes the frame, and compares the hash with
+     * those of the frames before it.
+     *
+     * @param generationFrame The frame to analyze.
+     */
+    @Override
+    public void accept(final GenerationFrame generationFrame) {
+        int liveCells = 0;
+        long frameHash = 0xcbf29ce484222325L;
+        for (int vertIndex = 0; vertIndex < generationFrame.getVertDim(); vertIndex++) {
+            for (int horizIndex = 0; horizIndex < generationFrame.getHorizDim(); horizIndex++) {
+                int cellState = generationFrame.getCellState(horizIndex, vertIndex);
+                if (cellState == 1) {
+                    liveCells++;
+                }
+                /* An FNV-1a hash of every cell's state. */
+                frameHash = (frameHash ^ cellState) * 0x100000001b3L;
+            }
+        }
+
+        if (generationFrame.getViewScale() < 0) {
+            liveCells = generationFrame.getLiveCellCount();
+        }
+        if (!previousView.hasSameView(generationFrame)) {
+            frameCount = 0L;
+            previousView.setView(generationFrame.getViewScale(), generationFrame.getViewOriginHoriz(),
+                                 generationFrame.getViewOriginVert());
+        }
+
+        /* The most recent match is the shortest cycle. A match with the same
+           generation number is an edit that changed nothing, not a cycle. */
+        long frameGeneration = generationFrame.getGenerationNumber();
+        long foundPeriod = 0L;
+        long historyCount = Math.min(frameCount, historyLength);
+        for (long framesBack = 1; framesBack <= historyCount; framesBack++) {
+            int historyIndex = (int) ((frameCount - framesBack) % historyLength);
+            if (frameHashes[historyIndex] == frameHash && frameGenerations[historyIndex] < frameGeneration) {
+                foundPeriod = frameGeneration - frameGenerations[historyIndex];
+                break;
+            }
+        }
+        int nextIndex = (int) (frameCount % historyLength);
+        frameHashes[nextIndex] = frameHash;
+        frameGenerations[nextIndex] = frameGeneration;
+        frameCount++;
+
+        population = liveCells;
+        generationNumber = frameGeneration;
+        cyclePeriod = foundPeriod;
+    }
+
+    /**
+     * This method is an accessor for the private population variable.
+     *
+     * @return The number of live cells in the newest frame.
+     */
+    public int getPopulation() {
+        return population;
+    }
+
+    /**
+     * This method is an accessor for the private generationNumber variable.
+     *
+     * @return The generation number of the newest frame.
+     */
+    public long getGenerationNumber() {
+        return generationNumber;
+    }
+
+    /**
+     * This method is an accessor for the private cyclePeriod variable.
+     *
+     * @return The period, in generations, of the cycle the cell grid is in,
+     *         or 0 if it isn't in one.
+     */
+    public long getCyclePeriod() {
+        return cyclePeriod;
+    }
+}
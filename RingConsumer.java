@@ -0,0 +1,264 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * This class implements a stage that consumes the frames published to a
+ * GenerationRing, such as a painter, a statistics tracker or a recorder. Each
+ * consumer keeps its own sequence, the last frame it's finished with, so
+ * consumers run independently of each other and of the simulation thread.
+ * <p>
+ * The policy decides what happens when a consumer is slower than the
+ * simulation. With POLICY_BACKPRESSURE it's handed every frame, in order,
+ * straight from its slot, and the simulation waits for it rather than
+ * overwrite a frame it hasn't finished with. With POLICY_SKIP the simulation
+ * never waits: whenever the consumer is ready, it's handed a copy of the
+ * newest frame, and the frames it didn't get to are counted as skipped. The
+ * copy is kept in a frame the consumer owns, so no policy allocates anything
+ * per frame.
+ * <p>
+ * A consumer either runs its handler on a thread of its own, started by
+ * start(), or is polled by another thread with pollLatest(), as the painter is
+ * by the Swing event dispatch thread. Only a POLICY_SKIP consumer can be
+ * polled. A handler that holds up a POLICY_BACKPRESSURE consumer holds up the
+ * simulation thread and any edit to the cell grid, so it mustn't wait on
+ * either.
+ *
+ * @see org.kmfahey.jgameoflife.GenerationRing
+ * @see org.kmfahey.jgameoflife.SimulationPipeline
+ */
+public class RingConsumer {
+
+    /** This int is the policy of a consumer that's handed every frame, and
+        that the simulation waits for when it falls behind. */
+    public static final int POLICY_BACKPRESSURE = 0;
+
+    /** This int is the policy of a consumer that's handed the newest frame
+        when it's ready for one, and that skips the frames in between. */
+    public static final int POLICY_SKIP = 1;
+
+    /** This long is the longest a consumer thread parks at a time while it
+        waits for a frame, in nanoseconds. The producer unparks it when it
+        publishes, so this only bounds a missed wakeup. */
+    private final long consumerParkNanos = 10_000_000L;
+
+    /** This GenerationRing object is the ring the frames come from. */
+    private final GenerationRing generationRing;
+
+    /** This int is one of the POLICY_* flags. */
+    private final int consumerPolicy;
+
+    /** This Consumer object is handed each frame, or is null for a consumer
+        that's polled. */
+    private final Consumer<GenerationFrame> frameHandler;
+
+    /** This GenerationFrame object holds the copy of the newest frame taken
+        by a POLICY_SKIP consumer. */
+    private final GenerationFrame latestFrame = new GenerationFrame();
+
+    /** This long is the sequence of the last frame the consumer has finished
+        with, or -1 if it hasn't taken one. The producer reads it to decide
+        whether a slot can be reclaimed. */
+    private volatile long consumedSequence = -1L;
+
+    /** This long counts the frames published that a POLICY_SKIP consumer
+        never took. It's only written by the consuming thread. */
+    private volatile long skippedFrameCount;
+
+    /** This boolean is true while the consumer thread should keep
+        running. */
+    private volatile boolean consumerRunning;
+
+    /** This boolean is true while the consumer thread is parked waiting for
+        a frame. */
+    private volatile boolean consumerWaiting;
+
+    /** This Thread object is the consumer thread, or null if it hasn't been
+        started. */
+    private Thread consumerThread;
+
+    /**
+     * This constructor initializes the RingConsumer object. It doesn't take
+     * any frames until it's started or polled.
+     *
+     * @param generationRingVal The ring to consume frames from.
+     * @param consumerPolicyVal One of the POLICY_* flags.
+     * @param frameHandlerVal   The Consumer object to hand each frame to, or
+     *                          null for a consumer that will be polled.
+     * @throws IllegalArgumentException If the policy isn't one of the
+     *                                  POLICY_* flags.
+     */
+    public RingConsumer(final GenerationRing generationRingVal, final int consumerPolicyVal,
+                        final Consumer<GenerationFrame> frameHandlerVal) {
+        if (consumerPolicyVal != POLICY_BACKPRESSURE && consumerPolicyVal != POLICY_SKIP) {
+            throw new IllegalArgumentException("unknown consumer policy " + consumerPolicyVal);
+        }
+        generationRing = generationRingVal;
+        consumerPolicy = consumerPolicyVal;
+        frameHandler = frameHandlerVal;
+    }
+
+    /**
+     * This method registers the consumer with its ring and starts a thread
+     * that hands every frame published from now on to the handler, or under
+     * POLICY_SKIP as many as it can keep up with.
+     *
+     * @param threadName The name to give the consumer thread.
+     * @throws IllegalStateException If the consumer has no handler or has
+     *                               already been started.
+     */
+    public synchronized void start(final String threadName) {
+        if (frameHandler == null || consumerThread != null) {
+            throw new IllegalStateException("a consumer can only be started once, and only with a handler");
+        }
+        consumedSequence = generationRing.getCursor();
+        generationRing.addConsumer(this);
+        consumerRunning = true;
+        consumerThread = new Thread(this::runConsumer, threadName);
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+    }
+
+    /**
+     * This method unregisters the consumer, so the producer no longer waits
+     * on it, and stops its thread, returning once the frame it was handling
+     * is done with. It can be called from the handler itself.
+     */
+    public void stop() {
+        generationRing.removeConsumer(this);
+        consumerRunning = false;
+        Thread runningThread;
+        synchronized (this) {
+            runningThread = consumerThread;
+        }
+        if (runningThread == null || runningThread == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(runningThread);
+        try {
+            runningThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method copies the newest frame published into latestFrame, if it
+     * wasn't the last one taken, for a POLICY_SKIP consumer polled by another
+     * thread. Only one thread may poll a consumer.
+     *
+     * @return true if a new frame was taken, false otherwise.
+     * @throws IllegalStateException If the consumer's policy isn't
+     *                               POLICY_SKIP.
+     */
+    public boolean pollLatest() {
+        if (consumerPolicy != POLICY_SKIP) {
+            throw new IllegalStateException("only a POLICY_SKIP consumer can take the newest frame");
+        }
+        if (generationRing.getCursor() == consumedSequence) {
+            return false;
+        }
+        long latestSequence = generationRing.readLatest(latestFrame);
+        if (latestSequence <= consumedSequence) {
+            return false;
+        }
+        skippedFrameCount += latestSequence - consumedSequence - 1;
+        consumedSequence = latestSequence;
+        return true;
+    }
+
+    /**
+     * This method is an accessor for the private latestFrame variable.
+     *
+     * @return The copy of the newest frame taken, or null if none has been.
+     */
+    public GenerationFrame getLatestFrame() {
+        return (consumedSequence < 0L || consumerPolicy != POLICY_SKIP) ? null : latestFrame;
+    }
+
+    /**
+     * This method is an accessor for the private consumerPolicy variable.
+     *
+     * @return One of the POLICY_* flags.
+     */
+    public int getConsumerPolicy() {
+        return consumerPolicy;
+    }
+
+    /**
+     * This method is an accessor for the private consumedSequence
+     * variable.
+     *
+     * @return The sequence of the last frame the consumer finished with, or
+     *         -1 if it hasn't taken one.
+     */
+    public long getConsumedSequence() {
+        return consumedSequence;
+    }
+
+    /**
+     * This method is an accessor for the private skippedFrameCount
+     * variable.
+     *
+     * @return The number of frames published that the consumer skipped.
+     */
+    public long getSkippedFrameCount() {
+        return skippedFrameCount;
+    }
+
+    /**
+     * This method is called by the ring after every frame is published, and
+     * unparks the consumer thread if it's waiting for one.
+     */
+    public void wake() {
+        if (consumerWaiting) {
+            LockSupport.unpark(consumerThread);
+        }
+    }
+
+    /**
+     * This method is the body of the consumer thread. It waits for frames
+     * and hands them to the handler until it's stopped. If the handler
+     * throws, the consumer unregisters itself before the thread dies, so the
+     * producer isn't left waiting on it.
+     */
+    private void runConsumer() {
+        try {
+            while (consumerRunning) {
+                long cursor = generationRing.getCursor();
+                if (cursor == consumedSequence) {
+                    awaitFrame();
+                } else if (consumerPolicy == POLICY_BACKPRESSURE) {
+                    /* Every frame up to the cursor is handled straight from
+                       its slot; advancing the sequence after each one frees
+                       its slot for the producer. */
+                    for (long sequence = consumedSequence + 1; sequence <= cursor && consumerRunning; sequence++) {
+                        frameHandler.accept(generationRing.getSlot(sequence));
+                        consumedSequence = sequence;
+                        generationRing.consumerAdvanced();
+                    }
+                } else if (pollLatest()) {
+                    frameHandler.accept(latestFrame);
+                }
+            }
+        } finally {
+            consumerRunning = false;
+            generationRing.removeConsumer(this);
+        }
+    }
+
+    /**
+     * This method parks the consumer thread until a frame newer than the
+     * last one it took is published, or it's stopped.
+     */
+    private void awaitFrame() {
+        /* The thread announces that it's waiting before checking the cursor
+           again, so a frame published in between unparks it. */
+        consumerWaiting = true;
+        if (consumerRunning && generationRing.getCursor() == consumedSequence) {
+            LockSupport.parkNanos(this, consumerParkNanos);
+        }
+        consumerWaiting = false;
+    }
+}
@@ -0,0 +1,329 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements the clock that paces the simulation thread of a
+ * SimulationPipeline. It runs in one of three modes:
+ * <p>
+ * MODE_TARGET_RATE steps the cell grid at a target number of generations per
+ * second. The time each step is due is counted from the time the clock was
+ * started, not from the time the last step ended, so a step that runs late
+ * doesn't push every step after it later too: the steps after it are due
+ * sooner, until the clock has caught up. If it falls more than maxLagNanos
+ * behind, it gives up catching up and starts counting again from the current
+ * time, so a grid too big to step at the target rate runs as fast as it can
+ * rather than bursting.
+ * <p>
+ * MODE_MAX_SPEED steps the cell grid as fast as it can.
+ * <p>
+ * MODE_PER_FRAME steps the cell grid a given number of generations, publishes
+ * a frame, and waits until the frame has been taken for display before it
+ * steps again, so the simulation runs at the pace the cell grid is painted.
+ * <p>
+ * In every mode, the clock measures the rate the generations were actually
+ * stepped at over the last half second or so, to be reported alongside the
+ * rate that was asked for.
+ *
+ * @see org.kmfahey.jgameoflife.SimulationPipeline
+ */
+public class SimulationClock {
+
+    /** This int is a flag for the mode that steps at a target rate. */
+    public static final int MODE_TARGET_RATE = 0;
+
+    /** This int is a flag for the mode that steps as fast as it can. */
+    public static final int MODE_MAX_SPEED = 1;
+
+    /** This int is a flag for the mode that steps a number of generations
+        per frame displayed. */
+    public static final int MODE_PER_FRAME = 2;
+
+    /** This long is the furthest behind the target rate the clock falls, in
+        nanoseconds, before it stops catching up. */
+    private final long maxLagNanos = 250_000_000L;
+
+    /** This long is the length of time the achieved rate is measured over, in
+        nanoseconds. */
+    private final long rateWindowNanos = 500_000_000L;
+
+    /** This int is one of the MODE_* flags. */
+    private int clockMode;
+
+    /** This double is the number of generations per second to step in
+        MODE_TARGET_RATE. */
+    private double targetRate;
+
+    /** This long is the time per generation at the target rate, in
+        nanoseconds. */
+    private long generationNanos;
+
+    /** This int is the number of generations to step per frame in
+        MODE_PER_FRAME. */
+    private int generationsPerFrame = 1;
+
+    /** This long is the time the next step is due in MODE_TARGET_RATE, on the
+        System.nanoTime() clock. */
+    private long nextStepNanos;
+
+    /** This int counts the generations stepped since the last frame was
+        published in MODE_PER_FRAME. */
+    private int generationsSinceFrame;
+
+    /** This boolean is true in MODE_PER_FRAME while a frame has been
+        published and not yet taken for display. */
+    private boolean framePending;
+
+    /** This long is the time the current measurement of the achieved rate
+        began. */
+    private long windowStartNanos;
+
+    /** This long counts the generations stepped since windowStartNanos. */
+    private long windowGenerations;
+
+    /** This double is the rate the generations were stepped at over the last
+        measurement, in generations per second. */
+    private volatile double achievedRate;
+
+    /** This Thread object is the simulation thread, once it has waited on the
+        clock, so it can be woken when the mode changes or a frame is
+        taken. */
+    private volatile Thread waitingThread;
+
+    /**
+     * This constructor initializes the SimulationClock object in
+     * MODE_TARGET_RATE.
+     *
+     * @param targetRateVal The number of generations per second to step.
+     * @throws IllegalArgumentException If the rate isn't a positive number.
+     */
+    public SimulationClock(final double targetRateVal) {
+        setTargetRate(targetRateVal);
+    }
+
+    /**
+     * This method puts the clock in MODE_TARGET_RATE.
+     *
+     * @param targetRateVal The number of generations per second to step.
+     * @throws IllegalArgumentException If the rate isn't a positive number.
+     */
+    public synchronized void setTargetRate(final double targetRateVal) {
+        if (!(targetRateVal > 0D) || Double.isInfinite(targetRateVal)) {
+            throw new IllegalArgumentException("target rate must be a positive number of generations per second, "
+                                               + "not " + targetRateVal);
+        }
+        targetRate = targetRateVal;
+        generationNanos = Math.max(1L, Math.round(1_000_000_000D / targetRateVal));
+        setMode(MODE_TARGET_RATE);
+    }
+
+    /**
+     * This method puts the clock in MODE_MAX_SPEED.
+     */
+    public synchronized void setMaxSpeed() {
+        setMode(MODE_MAX_SPEED);
+    }
+
+    /**
+     * This method puts the clock in MODE_PER_FRAME.
+     *
+     * @param generationsPerFrameVal The number of generations to step per
+     *                               frame displayed.
+     * @throws IllegalArgumentException If the number is less than 1.
+     */
+    public synchronized void setGenerationsPerFrame(final int generationsPerFrameVal) {
+        if (generationsPerFrameVal < 1) {
+            throw new IllegalArgumentException("generations per frame must be at least 1, not "
+                                               + generationsPerFrameVal);
+        }
+        generationsPerFrame = generationsPerFrameVal;
+        setMode(MODE_PER_FRAME);
+    }
+
+    /**
+     * This method sets the mode from a setting as it's given on the
+     * commandline: a number of generations per second such as "30", "max" for
+     * MODE_MAX_SPEED, or a number of generations per frame such as "4/frame".
+     *
+     * @param speedSetting The setting.
+     * @throws IllegalArgumentException If the setting can't be parsed.
+     */
+    public void setSpeed(final String speedSetting) {
+        try {
+            if (speedSetting.equals("max")) {
+                setMaxSpeed();
+            } else if (speedSetting.endsWith("/frame")) {
+                setGenerationsPerFrame(Integer.parseInt(speedSetting.substring(0, speedSetting.length() - 6)));
+            } else {
+                setTargetRate(Double.parseDouble(speedSetting));
+            }
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("unrecognized speed: " + speedSetting, exception);
+        }
+    }
+
+    /**
+     * This method is an accessor for the private clockMode variable.
+     *
+     * @return One of the MODE_* flags.
+     */
+    public synchronized int getMode() {
+        return clockMode;
+    }
+
+    /**
+     * This method returns the rate the clock was asked to step at.
+     *
+     * @return The target rate in generations per second in MODE_TARGET_RATE,
+     *         or 0 in the other modes, which don't set a rate.
+     */
+    public synchronized double getRequestedRate() {
+        return (clockMode == MODE_TARGET_RATE) ? targetRate : 0D;
+    }
+
+    /**
+     * This method is an accessor for the private generationsPerFrame
+     * variable.
+     *
+     * @return The number of generations stepped per frame in MODE_PER_FRAME.
+     */
+    public synchronized int getGenerationsPerFrame() {
+        return generationsPerFrame;
+    }
+
+    /**
+     * This method returns the rate the generations were actually stepped at,
+     * measured over the last half second or so the simulation was running.
+     *
+     * @return The achieved rate, in generations per second.
+     */
+    public double getAchievedRate() {
+        return achievedRate;
+    }
+
+    /**
+     * This method restarts the clock, as the simulation thread starts: the
+     * first step is due at once, and the rate is measured from now.
+     */
+    public synchronized void restart() {
+        long nowNanos = System.nanoTime();
+        nextStepNanos = nowNanos;
+        windowStartNanos = nowNanos;
+        windowGenerations = 0L;
+        generationsSinceFrame = 0;
+        framePending = false;
+    }
+
+    /**
+     * This method is called by the simulation thread before each step. It
+     * waits until the step is due, or until the thread is woken, whichever
+     * comes first. Since it can return early, the caller checks whether it
+     * should still be running and calls it again if the step isn't due.
+     *
+     * @return true if the step is due, false if the wait ended early.
+     */
+    public boolean awaitNextStep() {
+        waitingThread = Thread.currentThread();
+        long waitNanos;
+        synchronized (this) {
+            if (clockMode == MODE_MAX_SPEED) {
+                return true;
+            } else if (clockMode == MODE_PER_FRAME) {
+                if (!framePending) {
+                    return true;
+                }
+                waitNanos = -1L;
+            } else {
+                waitNanos = nextStepNanos - System.nanoTime();
+                if (waitNanos <= 0L) {
+                    return true;
+                }
+            }
+        }
+
+        /* The thread parks outside the lock so the mode can be changed, or a
+           frame taken, while it waits; either one unparks it. */
+        if (waitNanos < 0L) {
+            LockSupport.park(this);
+        } else {
+            LockSupport.parkNanos(this, waitNanos);
+        }
+        return false;
+    }
+
+    /**
+     * This method is called by the simulation thread after each step. It
+     * sets the time the next step is due and counts the generations toward
+     * the achieved rate.
+     *
+     * @param generationCount The number of generations the step advanced.
+     * @return                true if a frame of the new generation should be
+     *                        published, false if it should be skipped.
+     */
+    public synchronized boolean recordStep(final int generationCount) {
+        long nowNanos = System.nanoTime();
+
+        windowGenerations += generationCount;
+        if (nowNanos - windowStartNanos >= rateWindowNanos) {
+            achievedRate = windowGenerations * 1_000_000_000D / (nowNanos - windowStartNanos);
+            windowStartNanos = nowNanos;
+            windowGenerations = 0L;
+        }
+
+        if (clockMode == MODE_TARGET_RATE) {
+            nextStepNanos += generationCount * generationNanos;
+            if (nowNanos - nextStepNanos > maxLagNanos) {
+                nextStepNanos = nowNanos;
+            }
+        } else if (clockMode == MODE_PER_FRAME) {
+            generationsSinceFrame += generationCount;
+            if (generationsSinceFrame < generationsPerFrame) {
+                return false;
+            }
+            generationsSinceFrame = 0;
+            framePending = true;
+        }
+        return true;
+    }
+
+    /**
+     * This method is called when a frame is taken for display. In
+     * MODE_PER_FRAME, it lets the simulation thread step the next frame's
+     * generations.
+     */
+    public void frameTaken() {
+        synchronized (this) {
+            if (!framePending) {
+                return;
+            }
+            framePending = false;
+        }
+        wake();
+    }
+
+    /**
+     * This method sets the mode, and wakes the simulation thread so that a
+     * long wait under the old mode is cut short. It's called with the lock
+     * held.
+     *
+     * @param clockModeVal One of the MODE_* flags.
+     */
+    private void setMode(final int clockModeVal) {
+        clockMode = clockModeVal;
+        nextStepNanos = System.nanoTime();
+        generationsSinceFrame = 0;
+        framePending = false;
+        wake();
+    }
+
+    /**
+     * This method unparks the simulation thread, if it has waited on the
+     * clock.
+     */
+    private void wake() {
+        Thread simulationThread = waitingThread;
+        if (simulationThread != null) {
+            LockSupport.unpark(simulationThread);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * This class implements a pipeline that steps a cell grid on a simulation
+ * thread of its own and hands each new generation to the Swing event dispatch
+ * thread as a GenerationFrame. While the event dispatch thread paints
+ * generation N, the simulation thread is already computing N + 1, so
+ * computing and painting overlap rather than taking turns, and a slow step
+ * never holds up the GUI.
+ * <p>
+ * Frames are published to a GenerationRing, whose slots are filled in place,
+ * so publishing a generation allocates nothing. The painter is a POLICY_SKIP
+ * consumer of the ring, polled by the event dispatch thread: it copies out
+ * only the newest frame when it paints, and the frames in between are counted
+ * as dropped, so the simulation goes on at its own pace however slowly it's
+ * painted. Other stages, such as statistics or a recorder, can be attached
+ * with addConsumer(), each on a thread of its own and with a policy of its
+ * own: a POLICY_BACKPRESSURE consumer sees every frame and slows the
+ * simulation down to its pace when it falls behind, and a POLICY_SKIP
+ * consumer keeps up by skipping frames.
+ * <p>
+ * Anything else that changes the cell grid, such as a click, a seed or a
+ * clear, or that changes the view of it, has to go through applyEdit(), which
+ * queues the change and returns at once. The simulation thread applies the
+ * queued changes between steps, and publishes a frame of the edited
+ * generation afterward, so the event dispatch thread never waits for a step.
+ * The simulation thread is started with the pipeline and lives as long as
+ * it, parked while the simulation is stopped and no change is queued.
+ * <p>
+ * The simulation thread is paced by a SimulationClock, which can be changed
+ * between modes while it runs.
+ *
+ * @see org.kmfahey.jgameoflife.SimulationClock
+ * @see org.kmfahey.jgameoflife.GenerationRing
+ * @see org.kmfahey.jgameoflife.RingConsumer
+ * @see org.kmfahey.jgameoflife.SimulationSource
+ * @see org.kmfahey.jgameoflife.GenerationFrame
+ * @see org.kmfahey.jgameoflife.CellGrid
+ */
+public class SimulationPipeline {
+
+    /** This int is the number of slots in the ring, which is how far a
+        POLICY_BACKPRESSURE consumer can fall behind before the simulation
+        waits for it. */
+    private final int ringSlotCount = 8;
+
+    /** This SimulationSource object is the cell grid that's stepped. */
+    private final SimulationSource simulationSource;
+
+    /** This Runnable object is run after every frame is published, to tell
+        the painter there's a frame to take. It's run on the simulation
+        thread, so it mustn't block; the CellGrid classes queue a display
+        update on the event dispatch thread. */
+    private final Runnable frameListener;
+
+    /** This GenerationRing object holds the frames published. */
+    private final GenerationRing generationRing;
+
+    /** This RingConsumer object is the painter's consumer of the ring,
+        polled by takeLatestFrame(). */
+    private final RingConsumer displayConsumer;
+
+    /** This Object is held by the simulation thread while the cell grid is
+        stepped, captured or edited, so that stop() can wait out a step. */
+    private final Object editLock = new Object();
+
+    /** This ConcurrentLinkedQueue object holds the changes applyEdit() has
+        queued that the simulation thread hasn't made yet. */
+    private final ConcurrentLinkedQueue<Runnable> pendingEdits = new ConcurrentLinkedQueue<>();
+
+    /** This GenerationFrame object is the slot of the frame published last,
+        or null if none has been. It's only used while editLock is held. */
+    private GenerationFrame previousFrame;
+
+    /** This SimulationClock object paces the simulation thread. */
+    private final SimulationClock simulationClock;
+
+    /** This long counts the generations the cell grid has been stepped. It's
+        only read or written while editLock is held. */
+    private long generationNumber;
+
+    /** This boolean is true while the simulation thread should keep
+        stepping. */
+    private volatile boolean simulationRunning;
+
+    /** This Thread object is the simulation thread, which steps the cell
+        grid while the simulation is running and makes the queued changes to
+        it whether it's running or not. */
+    private final Thread simulationThread;
+
+    /**
+     * This constructor initializes the SimulationPipeline object, and starts
+     * the simulation thread, which waits for start() before it steps the
+     * cell grid.
+     *
+     * @param simulationSourceVal The cell grid to step.
+     * @param simulationClockVal  The clock that paces the steps.
+     * @param frameListenerVal    The Runnable object to run after every frame
+     *                            is published.
+     */
+    public SimulationPipeline(final SimulationSource simulationSourceVal, final SimulationClock simulationClockVal,
+                              final Runnable frameListenerVal) {
+        simulationSource = simulationSourceVal;
+        simulationClock = simulationClockVal;
+        frameListener = frameListenerVal;
+        generationRing = new GenerationRing(ringSlotCount);
+        displayConsumer = new RingConsumer(generationRing, RingConsumer.POLICY_SKIP, null);
+        simulationThread = new Thread(this::runSimulation, "simulation");
+        simulationThread.setDaemon(true);
+        simulationThread.start();
+    }
+
+    /**
+     * This method has the simulation thread start stepping the cell grid, if
+     * it isn't already.
+     */
+    public synchronized void start() {
+        if (simulationRunning) {
+            return;
+        }
+        simulationClock.restart();
+        simulationRunning = true;
+        LockSupport.unpark(simulationThread);
+    }
+
+    /**
+     * This method has the simulation thread stop stepping the cell grid, and
+     * returns once it has finished the step it was on, so the cell grid won't
+     * be stepped again until start() is called. Changes queued by applyEdit()
+     * are still made.
+     */
+    public synchronized void stop() {
+        if (!simulationRunning) {
+            return;
+        }
+        simulationRunning = false;
+        /* The thread is unparked rather than interrupted, since an interrupt
+           could land in the middle of a step and abandon it half done. A step
+           in progress holds editLock, and the thread checks simulationRunning
+           again once it holds the lock, so once this thread has held it no
+           other step starts. */
+        LockSupport.unpark(simulationThread);
+        synchronized (editLock) {
+            simulationRunning = false;
+        }
+    }
+
+    /**
+     * This method is an accessor for the private simulationClock variable.
+     *
+     * @return The SimulationClock object that paces the steps.
+     */
+    public SimulationClock getSimulationClock() {
+        return simulationClock;
+    }
+
+    /**
+     * This method reports whether the simulation thread is running.
+     *
+     * @return true if the cell grid is being stepped, false otherwise.
+     */
+    public boolean isRunning() {
+        return simulationRunning;
+    }
+
+    /**
+     * This method queues a change to the cell grid or its view, such as
+     * setting a cell, and returns at once. The simulation thread makes the
+     * change between steps, in the order the changes were queued, and then
+     * publishes a frame of the result. Neither a lock nor a step is waited
+     * for, so it can be called from the event dispatch thread.
+     *
+     * @param cellGridEdit The change to make.
+     */
+    public void applyEdit(final Runnable cellGridEdit) {
+        pendingEdits.offer(cellGridEdit);
+        LockSupport.unpark(simulationThread);
+    }
+
+    /**
+     * This method waits until every change queued by applyEdit() before it
+     * was called has been made, and the frame of them published. It's for a
+     * thread that has to see the result of its changes, such as a seeding
+     * thread or a benchmark, and mustn't be called from the event dispatch
+     * thread or the simulation thread.
+     *
+     * @return The number of generations the cell grid had been stepped when
+     *         the changes were made.
+     * @throws IllegalStateException If the calling thread is interrupted
+     *                               while it waits, or a change throws an
+     *                               exception.
+     */
+    public long awaitEdits() {
+        FutureTask<Object> editsMade = new FutureTask<>(() -> { }, null);
+        applyEdit(editsMade);
+        try {
+            editsMade.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the edits", exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("an edit failed", exception.getCause());
+        }
+
+        /* The simulation thread holds editLock until the frame of the changes
+           is published, so once this thread holds it, the cell grid is no
+           longer being captured. */
+        synchronized (editLock) {
+            return generationNumber;
+        }
+    }
+
+    /**
+     * This method attaches a stage that consumes the frames published from
+     * now on, running its handler on a thread of its own. The handler must
+     * be done with a frame when it returns; a handler that keeps a frame has
+     * to copy it.
+     *
+     * @param frameHandler   The Consumer object to hand each frame to.
+     * @param consumerPolicy RingConsumer.POLICY_BACKPRESSURE to see every
+     *                       frame and hold up the simulation when it falls
+     *                       behind, or RingConsumer.POLICY_SKIP to take the
+     *                       newest frame whenever it's ready.
+     * @param threadName     The name to give the consumer thread.
+     * @return               The RingConsumer object, which removeConsumer()
+     *                       takes to detach it.
+     */
+    public RingConsumer addConsumer(final Consumer<GenerationFrame> frameHandler, final int consumerPolicy,
+                                    final String threadName) {
+        RingConsumer ringConsumer = new RingConsumer(generationRing, consumerPolicy, frameHandler);
+        ringConsumer.start(threadName);
+        return ringConsumer;
+    }
+
+    /**
+     * This method detaches a stage attached by addConsumer(), and stops its
+     * thread.
+     *
+     * @param ringConsumer The RingConsumer object addConsumer() returned.
+     */
+    public void removeConsumer(final RingConsumer ringConsumer) {
+        ringConsumer.stop();
+    }
+
+    /**
+     * This method takes the newest frame published, if it's newer than the
+     * last one taken, and returns it; the frames published in between count
+     * as dropped. If there's nothing new, the frame it returned last time is
+     * returned again, so a repaint with nothing new repaints the same
+     * generation. Taking a new frame tells the clock, which may be waiting
+     * for it. The frame returned is the painter's own copy, and is only
+     * changed by the next call, so it should only be called by one thread.
+     *
+     * @return The newest frame published, or null if none has been.
+     */
+    public GenerationFrame takeLatestFrame() {
+        if (displayConsumer.pollLatest()) {
+            simulationClock.frameTaken();
+        }
+        return displayConsumer.getLatestFrame();
+    }
+
+    /**
+     * This method is an accessor for the private publishedFrameCount
+     * variable.
+     *
+     * @return The number of frames published.
+     */
+    public long getPublishedFrameCount() {
+        return generationRing.getCursor() + 1;
+    }
+
+    /**
+     * This method is an accessor for the private droppedFrameCount variable.
+     *
+     * @return The number of frames published but never painted.
+     */
+    public long getDroppedFrameCount() {
+        return displayConsumer.getSkippedFrameCount();
+    }
+
+    /**
+     * This method is the body of the simulation thread. While the simulation
+     * is running, it steps the cell grid and publishes frames of the new
+     * generations, waiting on the clock before each step and telling it about
+     * each step afterward; the clock decides which generations get a frame.
+     * Whether it's running or not, it makes the changes queued by applyEdit()
+     * whenever it's woken, and before every step.
+     */
+    private void runSimulation() {
+        while (true) {
+            /* Both waits return early when the thread is unparked by
+               applyEdit(), start(), stop() or a change to the clock, so the
+               queue and whether the simulation is running are checked again
+               after either. */
+            if (!simulationRunning) {
+                if (pendingEdits.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                synchronized (editLock) {
+                    makePendingEdits();
+                }
+                continue;
+            }
+            boolean stepDue = simulationClock.awaitNextStep();
+            synchronized (editLock) {
+                makePendingEdits();
+                if (!stepDue || !simulationRunning) {
+                    continue;
+                }
+                int generationCount = simulationSource.stepSimulation();
+                generationNumber += generationCount;
+                if (simulationClock.recordStep(generationCount)) {
+                    publishFrame();
+                }
+            }
+        }
+    }
+
+    /**
+     * This method makes the changes queued by applyEdit(), and publishes a
+     * single frame of the result if there were any. It's called on the
+     * simulation thread with editLock held.
+     */
+    private void makePendingEdits() {
+        Runnable cellGridEdit = pendingEdits.poll();
+        /* The markers awaitEdits() queues change nothing, so a batch of only
+           markers doesn't need a frame of its own. */
+        boolean cellGridEdited = false;
+        while (cellGridEdit != null) {
+            cellGridEdit.run();
+            cellGridEdited |= !(cellGridEdit instanceof FutureTask);
+            cellGridEdit = pendingEdits.poll();
+        }
+        if (cellGridEdited) {
+            publishFrame();
+        }
+    }
+
+    /**
+     * This method captures the current generation into the next slot of the
+     * ring, stamps the tiles that changed since the frame published before
+     * it, publishes it, and runs the frame listener. It's only called on the
+     * simulation thread, with editLock held, which makes it the ring's single
+     * producer. It only blocks if a POLICY_BACKPRESSURE consumer has fallen a
+     * whole ring behind.
+     */
+    private void publishFrame() {
+        /* The frame published last is still in its slot, since the ring has
+           at least 2 and only the producer writes them. */
+        long frameSequence = generationRing.getCursor() + 1;
+        GenerationFrame frameSlot = generationRing.claimNext();
+        simulationSource.captureFrame(frameSlot, generationNumber);
+        frameSlot.stampChangedTiles(previousFrame, frameSequence);
+        generationRing.publish();
+        previousFrame = frameSlot;
+        frameListener.run();
+    }
+}
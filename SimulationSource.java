@@ -0,0 +1,38 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This interface describes what SimulationPipeline runs: a cell grid that can
+ * be stepped, and whose current generation can be captured into a
+ * GenerationFrame, which is a slot of the pipeline's GenerationRing that's
+ * filled in place. Both CellGrid classes implement it, the main one over its
+ * GridEngine and the threaded one over its CellGridSection objects.
+ * <p>
+ * SimulationPipeline calls the two methods only on its simulation thread, so
+ * an implementation needn't be thread-safe as long as its other changes to
+ * the cell grid are made through SimulationPipeline.applyEdit(), which has
+ * that thread make them.
+ *
+ * @see org.kmfahey.jgameoflife.SimulationPipeline
+ * @see org.kmfahey.jgameoflife.GenerationFrame
+ */
+public interface SimulationSource {
+
+    /**
+     * This method advances the cell grid by one step of the algorithm.
+     *
+     * @return The number of generations the step advanced, which is more
+     *         than 1 for an engine that skips ahead.
+     */
+    int stepSimulation();
+
+    /**
+     * This method captures the current generation of the cell grid into a
+     * frame, overwriting whatever it held. It should fill the frame without
+     * allocating, past what GenerationFrame.reset() does the first time.
+     *
+     * @param targetFrame      The frame to fill.
+     * @param generationNumber The number of generations the cell grid has
+     *                         been stepped, to record in the frame.
+     */
+    void captureFrame(GenerationFrame targetFrame, long generationNumber);
+}
@@ -0,0 +1,186 @@
+package org.kmfahey.jgameoflife;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class is a commandline soup survey: it fills a number of small boards
+ * with random soups, steps them all with an EnsembleGridEngine until they've
+ * stabilized or a generation limit is reached, and reports how long the
+ * boards took to stabilize, with what periods, and how many live cells they
+ * were left with. It also reports the throughput in board-generations per
+ * second. With --compare, it steps every soup again, one board at a time in a
+ * BitPackedGridEngine, checks that each board ends up the same, and reports
+ * the ensemble's speedup.
+ * <p>
+ * Usage: java org.kmfahey.jgameoflife.SoupSurvey --boards=4096 --width=32
+ * --height=32 --generations=2000 --fill=0.375 --rule=B3/S23 --seed=1
+ * --compare
+ *
+ * @see org.kmfahey.jgameoflife.EnsembleGridEngine
+ */
+public class SoupSurvey {
+
+    /**
+     * This method looks through the commandline arguments for one of the form
+     * --name=value and returns its value.
+     *
+     * @param args         The argument string array composed from the
+     *                     commandline arguments.
+     * @param optionName   The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option isn't present.
+     * @return             The value of the option, or defaultValue.
+     */
+    private static String findOption(final String[] args, final String optionName, final String defaultValue) {
+        String optionPrefix = "--" + optionName + "=";
+        for (String arg : args) {
+            if (arg.startsWith(optionPrefix)) {
+                return arg.substring(optionPrefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * This method fills every board of an ensemble with a random soup, and
+     * makes the same soups in the same order when given the same seed.
+     *
+     * @param ensembleEngine The ensemble to fill.
+     * @param seed           The seed of the random number generator.
+     * @param fillRatio      The fraction of cells, between 0 and 1, that
+     *                       should be live.
+     */
+    private static void fillSoups(final EnsembleGridEngine ensembleEngine, final long seed,
+                                  final double fillRatio) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int boardIndex = 0; boardIndex < ensembleEngine.getBoardCount(); boardIndex++) {
+            for (int vertIndex = 0; vertIndex < ensembleEngine.getVertDim(); vertIndex++) {
+                for (int horizIndex = 0; horizIndex < ensembleEngine.getHorizDim(); horizIndex++) {
+                    if (random.nextDouble() < fillRatio) {
+                        ensembleEngine.setCell(boardIndex, horizIndex, vertIndex, 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This method steps every soup of an ensemble again, one board at a time
+     * in a BitPackedGridEngine, and counts the boards that don't end up the
+     * same as the ensemble's.
+     *
+     * @param ensembleEngine The ensemble, already stepped.
+     * @param lifeRule       The rule it was stepped by.
+     * @param seed           The seed its soups were made with.
+     * @param fillRatio      The fill ratio its soups were made with.
+     * @param generations    The number of generations it was stepped.
+     * @return               A 2-element array of the number of boards that
+     *                       differ and the elapsed time in nanoseconds.
+     */
+    private static long[] compareSingleBoards(final EnsembleGridEngine ensembleEngine, final LifeRule lifeRule,
+                                              final long seed, final double fillRatio, final long generations) {
+        int horizDim = ensembleEngine.getHorizDim();
+        int vertDim = ensembleEngine.getVertDim();
+        SplittableRandom random = new SplittableRandom(seed);
+        long mismatchCount = 0L;
+        long elapsedNanos = 0L;
+        for (int boardIndex = 0; boardIndex < ensembleEngine.getBoardCount(); boardIndex++) {
+            BitPackedGridEngine boardEngine = new BitPackedGridEngine(horizDim, vertDim, lifeRule);
+            for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+                for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                    if (random.nextDouble() < fillRatio) {
+                        boardEngine.setCell(horizIndex, vertIndex, 1);
+                    }
+                }
+            }
+            long startNanos = System.nanoTime();
+            for (long generation = 0; generation < generations; generation++) {
+                boardEngine.stepGeneration();
+            }
+            elapsedNanos += System.nanoTime() - startNanos;
+
+            boolean boardDiffers = false;
+            for (int vertIndex = 0; vertIndex < vertDim && !boardDiffers; vertIndex++) {
+                for (int horizIndex = 0; horizIndex < horizDim && !boardDiffers; horizIndex++) {
+                    boardDiffers = boardEngine.getCell(horizIndex, vertIndex)
+                                   != ensembleEngine.getCell(boardIndex, horizIndex, vertIndex);
+                }
+            }
+            if (boardDiffers) {
+                mismatchCount++;
+            }
+        }
+        return new long[] {mismatchCount, elapsedNanos};
+    }
+
+    /**
+     * This method is called when the class is run from the commandline. It
+     * runs the survey and prints its results.
+     *
+     * @param args The argument string array composed from the commandline
+     *             arguments, if any.
+     */
+    public static void main(final String[] args) {
+        int boardCount = Integer.parseInt(findOption(args, "boards", "4096"));
+        int horizDim = Integer.parseInt(findOption(args, "width", "32"));
+        int vertDim = Integer.parseInt(findOption(args, "height", "32"));
+        int maxGenerations = Integer.parseInt(findOption(args, "generations", "2000"));
+        double fillRatio = Double.parseDouble(findOption(args, "fill", "0.375"));
+        LifeRule lifeRule = LifeRule.parse(findOption(args, "rule", "B3/S23"));
+        long seed = Long.parseLong(findOption(args, "seed", "1"));
+        boolean compare = false;
+        for (String arg : args) {
+            compare |= arg.equals("--compare");
+        }
+
+        EnsembleGridEngine ensembleEngine = new EnsembleGridEngine(horizDim, vertDim, boardCount, lifeRule);
+        fillSoups(ensembleEngine, seed, fillRatio);
+        System.out.printf("%d soups of %d x %d cells, fill %.3f, rule %s, %s kernel%n", boardCount, horizDim,
+                          vertDim, fillRatio, lifeRule, ensembleEngine.isVectorized() ? "vector" : "scalar");
+
+        long startNanos = System.nanoTime();
+        while (ensembleEngine.getGenerationNumber() < maxGenerations
+               && ensembleEngine.getStableBoardCount() < boardCount) {
+            ensembleEngine.stepGeneration();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long generations = ensembleEngine.getGenerationNumber();
+        double boardGenerationsPerSecond = (double) boardCount * generations / (elapsedNanos / 1e9D);
+        System.out.printf("%d generations in %.1f ms: %.3g board-generations/sec%n", generations,
+                          elapsedNanos / 1e6D, boardGenerationsPerSecond);
+
+        /* The stabilization times are summarized by their mean and maximum,
+           and the periods by a count of the boards with each. */
+        int[] populations = ensembleEngine.countPopulations();
+        int[] periodCounts = new int[4];
+        long totalStabilizedGeneration = 0L;
+        long maxStabilizedGeneration = 0L;
+        long totalPopulation = 0L;
+        for (int boardIndex = 0; boardIndex < boardCount; boardIndex++) {
+            int period = ensembleEngine.getStabilizedPeriod(boardIndex);
+            periodCounts[Math.min(period, 3)]++;
+            if (period != 0) {
+                long stabilizedGeneration = ensembleEngine.getStabilizedGeneration(boardIndex);
+                totalStabilizedGeneration += stabilizedGeneration;
+                maxStabilizedGeneration = Math.max(maxStabilizedGeneration, stabilizedGeneration);
+            }
+            totalPopulation += populations[boardIndex];
+        }
+        int stableBoardCount = ensembleEngine.getStableBoardCount();
+        System.out.printf("%d stabilized (%d still, %d period 2, %d period 3), %d still active%n",
+                          stableBoardCount, periodCounts[1], periodCounts[2], periodCounts[3], periodCounts[0]);
+        if (stableBoardCount > 0) {
+            System.out.printf("stabilized at generation %.1f on average, %d at the latest%n",
+                              (double) totalStabilizedGeneration / stableBoardCount, maxStabilizedGeneration);
+        }
+        System.out.printf("%.1f live cells per board on average%n", (double) totalPopulation / boardCount);
+
+        if (compare) {
+            long[] comparison = compareSingleBoards(ensembleEngine, lifeRule, seed, fillRatio, generations);
+            System.out.printf("one board at a time: %.3g board-generations/sec, %.1fx slower; %s%n",
+                              (double) boardCount * generations / (comparison[1] / 1e9D),
+                              comparison[1] / (double) elapsedNanos,
+                              (comparison[0] == 0L) ? "every board matches"
+                              : comparison[0] + " boards differ");
+        }
+    }
+}
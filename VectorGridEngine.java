@@ -0,0 +1,166 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This class implements a bit-packed stepping engine whose inner loop runs on
+ * the vector lanes of the CPU by way of the jdk.incubator.vector module. It
+ * stores the cell grid exactly the way BitPackedGridEngine does, but steps it
+ * a band of rows at a time: every row in the band is shifted into line with
+ * its west and east neighbors once, and then the adder logic is applied to a
+ * whole vector of words per instruction by the WordRowKernel.
+ * <p>
+ * The vectorized kernel lives in the vectorkernel package, which has to be
+ * compiled and run with --add-modules jdk.incubator.vector. If that package or
+ * that module is missing, this engine falls back to the scalar kernel and
+ * produces the same generations, just more slowly.
+ *
+ * @see org.kmfahey.jgameoflife.BitPackedGridEngine
+ * @see org.kmfahey.jgameoflife.WordRowKernel
+ */
+public class VectorGridEngine extends BitPackedGridEngine {
+
+    /** This String constant is the name of the class that implements the
+        vectorized row kernel. It's loaded reflectively so that the rest of the
+        program compiles and runs without the incubator module. */
+    private static final String VECTOR_KERNEL_CLASS_NAME = "org.kmfahey.jgameoflife.vectorkernel.VectorRowKernel";
+
+    /** This int constant is the number of rows stepped together as a band;
+        the shifted copies of a band's rows are small enough to stay in
+        cache while the band is stepped. */
+    private static final int BAND_HEIGHT = 64;
+
+    /** This WordRowKernel object is the row kernel used to step each row,
+        either the vectorized one or the scalar fallback. */
+    private WordRowKernel rowKernel;
+
+    /** This long[][] array holds references to the rows of the band being
+        stepped, plus the row to the north and the row to the south of it. */
+    private long[][] bandRows;
+
+    /** This long[][] array holds the rows of the band being stepped, each
+        shifted into line with its west neighbors. */
+    private long[][] westBandRows;
+
+    /** This long[][] array holds the rows of the band being stepped, each
+        shifted into line with its east neighbors. */
+    private long[][] eastBandRows;
+
+    /**
+     * This constructor initializes the VectorGridEngine object with the
+     * B3/S23 rule.
+     *
+     * @param horizDim The horizontal dimension of the cell grid, in cells.
+     * @param vertDim  The vertical dimension of the cell grid, in cells.
+     */
+    public VectorGridEngine(final int horizDim, final int vertDim) {
+        this(horizDim, vertDim, LifeRule.CONWAY);
+    }
+
+    /**
+     * This constructor initializes the VectorGridEngine object, allocating
+     * the rows of the cell grid and the band scratch rows and loading the row
+     * kernel.
+     *
+     * @param horizDim    The horizontal dimension of the cell grid, in cells.
+     * @param vertDim     The vertical dimension of the cell grid, in cells.
+     * @param lifeRuleVal The rule to step the cells by.
+     */
+    public VectorGridEngine(final int horizDim, final int vertDim, final LifeRule lifeRuleVal) {
+        super(horizDim, vertDim, lifeRuleVal);
+        rowKernel = loadRowKernel();
+        bandRows = new long[BAND_HEIGHT + 2][];
+        westBandRows = new long[BAND_HEIGHT + 2][wordsPerRow];
+        eastBandRows = new long[BAND_HEIGHT + 2][wordsPerRow];
+    }
+
+    /**
+     * This method loads the vectorized row kernel if it's available, or
+     * returns the scalar row kernel if it isn't. The vectorized kernel is
+     * unavailable if the vectorkernel package wasn't compiled or the
+     * jdk.incubator.vector module wasn't added to the running JVM.
+     *
+     * @return The best WordRowKernel available.
+     */
+    public static WordRowKernel loadRowKernel() {
+        try {
+            return (WordRowKernel) Class.forName(VECTOR_KERNEL_CLASS_NAME).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError exception) {
+            return SCALAR_ROW_KERNEL;
+        }
+    }
+
+    /**
+     * This method reports whether this engine is running on the vectorized
+     * row kernel or has fallen back to the scalar one.
+     *
+     * @return true if the vectorized row kernel is in use.
+     */
+    public boolean isVectorized() {
+        return rowKernel != SCALAR_ROW_KERNEL;
+    }
+
+    /**
+     * This method steps a band of bit-packed rows. Every row in bandRows is
+     * shifted into westBandRows and eastBandRows once, then each row between
+     * the first and the last is handed to the row kernel along with the rows
+     * above and below it.
+     *
+     * @param rowKernel    The row kernel to step the rows with.
+     * @param lifeRule     The rule to step the cells by.
+     * @param bandRows     The rows of the band, preceded by the row to the
+     *                     north of it and followed by the row to the south of
+     *                     it; rowCount + 2 rows are used.
+     * @param nextRows     The array of rows the next generation is written
+     *                     into.
+     * @param nextOffset   The index in nextRows of the first row of the band.
+     * @param rowCount     The number of rows in the band.
+     * @param wordCount    The number of longs in each row.
+     * @param westBandRows Scratch rows for the west-shifted band, at least
+     *                     rowCount + 2 of them.
+     * @param eastBandRows Scratch rows for the east-shifted band, at least
+     *                     rowCount + 2 of them.
+     */
+    public static void stepRowBand(final WordRowKernel rowKernel, final LifeRule lifeRule,
+                                   final long[][] bandRows, final long[][] nextRows, final int nextOffset,
+                                   final int rowCount, final int wordCount,
+                                   final long[][] westBandRows, final long[][] eastBandRows) {
+        for (int bandIndex = 0; bandIndex < rowCount + 2; bandIndex++) {
+            shiftRowWest(bandRows[bandIndex], westBandRows[bandIndex], wordCount);
+            shiftRowEast(bandRows[bandIndex], eastBandRows[bandIndex], wordCount);
+        }
+        for (int bandIndex = 1; bandIndex <= rowCount; bandIndex++) {
+            rowKernel.combineRows(lifeRule,
+                                  westBandRows[bandIndex - 1], bandRows[bandIndex - 1], eastBandRows[bandIndex - 1],
+                                  westBandRows[bandIndex], bandRows[bandIndex], eastBandRows[bandIndex],
+                                  westBandRows[bandIndex + 1], bandRows[bandIndex + 1], eastBandRows[bandIndex + 1],
+                                  nextRows[nextOffset + bandIndex - 1], wordCount);
+        }
+    }
+
+    /**
+     * This method executes a single step of the algorithm, a band of rows at a
+     * time, and then swaps the two sets of rows.
+     */
+    public void stepGeneration() {
+        for (long[] row : displayRows) {
+            refreshHaloBits(row);
+        }
+        for (int bandStart = 0; bandStart < cellGridVertDim; bandStart += BAND_HEIGHT) {
+            int rowCount = Math.min(BAND_HEIGHT, cellGridVertDim - bandStart);
+            /* The band's row references run from the row north of the band
+               to the row south of it, wrapping around the top and bottom
+               borders of the cell grid. */
+            for (int bandIndex = 0; bandIndex < rowCount + 2; bandIndex++) {
+                int vertIndex = Math.floorMod(bandStart + bandIndex - 1, cellGridVertDim);
+                bandRows[bandIndex] = displayRows[vertIndex];
+            }
+            stepRowBand(rowKernel, lifeRule, bandRows, updateRows, bandStart, rowCount, wordsPerRow,
+                        westBandRows, eastBandRows);
+            for (int vertIndex = bandStart; vertIndex < bandStart + rowCount; vertIndex++) {
+                clearHaloBits(updateRows[vertIndex], cellGridHorizDim);
+            }
+        }
+        long[][] swapRows = displayRows;
+        displayRows = updateRows;
+        updateRows = swapRows;
+    }
+}
@@ -0,0 +1,290 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This class implements the view that CellGrid shows of a cell grid that may
+ * be much larger than the component, or much smaller. The size of the cell
+ * grid the engine steps is set when it's built and has nothing to do with the
+ * size of the component; the Viewport maps the one onto the other with an
+ * origin, the cell grid coordinate of the cell in the top left corner, and a
+ * scale from a fixed ladder of zoom levels.
+ * <p>
+ * A positive scale is the number of pixels on a side of each cell, from 1 to
+ * 32. A negative scale is the number of cells on a side of each pixel, from 2
+ * to 64, and the view is zoomed out: each pixel is shaded by the density of
+ * live cells in its block rather than by the state of one cell, so that a
+ * pattern too small to be drawn cell by cell still shows where it is.
+ * <p>
+ * Only the cells inside the view are captured into a frame, so a frame, and
+ * the work of filling and drawing it, is about the size of the component
+ * however large the cell grid is. Zoomed out, each block is counted with
+ * GridEngine.countLiveCells(), which the engines meant for large cell grids
+ * do a word, a chunk or a quadtree node at a time.
+ * <p>
+ * The viewport isn't synchronized. CellGrid only changes it or reads it in
+ * edits made through its SimulationPipeline object, and in captureFrame(),
+ * which are all made with the pipeline's edit lock held; every edit to the
+ * view then publishes a frame of the new view.
+ *
+ * @see org.kmfahey.jgameoflife.CellGrid
+ * @see org.kmfahey.jgameoflife.GenerationFrame
+ * @see org.kmfahey.jgameoflife.GridEngine
+ */
+public class Viewport {
+
+    /** This int[] array holds the zoom levels, from the farthest out to the
+        nearest in, as view scales. */
+    private final int[] zoomScales = {-64, -32, -16, -8, -4, -2, 1, 2, 3, 4, 6, 8, 10, 12, 16, 24, 32};
+
+    /** This int is the horizontal dimension of the cell grid, in cells. */
+    private final int cellGridHorizDim;
+
+    /** This int is the vertical dimension of the cell grid, in cells. */
+    private final int cellGridVertDim;
+
+    /** This int is the width of the view, in pixels. */
+    private final int viewWidth;
+
+    /** This int is the height of the view, in pixels. */
+    private final int viewHeight;
+
+    /** This int is the index in zoomScales of the current zoom level. */
+    private int zoomIndex;
+
+    /** This int is the horizontal coordinate of the cell at the left edge of
+        the view. */
+    private int originHoriz;
+
+    /** This int is the vertical coordinate of the cell at the top edge of the
+        view. */
+    private int originVert;
+
+    /** This int holds the pixels the view has been panned across that don't
+        yet add up to a whole cell. */
+    private int panRemainderHoriz;
+
+    /** This int holds the pixels the view has been panned down that don't yet
+        add up to a whole cell. */
+    private int panRemainderVert;
+
+    /**
+     * This constructor initializes the Viewport object, looking at the top
+     * left corner of the cell grid.
+     *
+     * @param cellGridHorizDimVal The horizontal dimension of the cell grid, in
+     *                            cells.
+     * @param cellGridVertDimVal  The vertical dimension of the cell grid, in
+     *                            cells.
+     * @param viewWidthVal        The width of the view, in pixels.
+     * @param viewHeightVal       The height of the view, in pixels.
+     * @param viewScale           The scale to start at, one of the zoom
+     *                            levels.
+     * @throws IllegalArgumentException If a dimension isn't positive, or the
+     *                                  scale isn't one of the zoom levels.
+     */
+    public Viewport(final int cellGridHorizDimVal, final int cellGridVertDimVal, final int viewWidthVal,
+                    final int viewHeightVal, final int viewScale) {
+        if (cellGridHorizDimVal <= 0 || cellGridVertDimVal <= 0 || viewWidthVal <= 0 || viewHeightVal <= 0) {
+            throw new IllegalArgumentException("a viewport of " + viewWidthVal + " x " + viewHeightVal
+                                               + " pixels can't show a cell grid of " + cellGridHorizDimVal
+                                               + " x " + cellGridVertDimVal + " cells");
+        }
+        cellGridHorizDim = cellGridHorizDimVal;
+        cellGridVertDim = cellGridVertDimVal;
+        viewWidth = viewWidthVal;
+        viewHeight = viewHeightVal;
+        zoomIndex = -1;
+        for (int scaleIndex = 0; scaleIndex < zoomScales.length; scaleIndex++) {
+            if (zoomScales[scaleIndex] == viewScale) {
+                zoomIndex = scaleIndex;
+            }
+        }
+        if (zoomIndex < 0) {
+            throw new IllegalArgumentException("a view scale of " + viewScale + " isn't one of the zoom levels");
+        }
+    }
+
+    /**
+     * This method is used to compute the number of cells spanned by a number
+     * of pixels at the current scale, rounding down.
+     *
+     * @param pixelCount The number of pixels.
+     * @return           The number of whole cells they span.
+     */
+    private int pixelsToCells(final int pixelCount) {
+        int viewScale = getViewScale();
+        return (viewScale > 0) ? pixelCount / viewScale : pixelCount * -viewScale;
+    }
+
+    /**
+     * This method moves the origin back inside the range that keeps the view
+     * on the cell grid; a cell grid smaller than the view is shown from its
+     * top left corner.
+     */
+    private void clampOrigin() {
+        originHoriz = Math.max(0, Math.min(originHoriz, cellGridHorizDim - pixelsToCells(viewWidth)));
+        originVert = Math.max(0, Math.min(originVert, cellGridVertDim - pixelsToCells(viewHeight)));
+    }
+
+    /**
+     * This method pans the view by a number of pixels, as the pointer does
+     * when it drags the cell grid: dragging it right or down brings the cells
+     * to the left or above into view. Zoomed in, a drag of less than a cell is
+     * remembered and added to the next one.
+     *
+     * @param pixelsHoriz The number of pixels dragged to the right, or to the
+     *                    left if it's negative.
+     * @param pixelsVert  The number of pixels dragged down, or up if it's
+     *                    negative.
+     */
+    public void pan(final int pixelsHoriz, final int pixelsVert) {
+        int viewScale = getViewScale();
+        if (viewScale > 0) {
+            int totalHoriz = panRemainderHoriz + pixelsHoriz;
+            int totalVert = panRemainderVert + pixelsVert;
+            originHoriz -= Math.floorDiv(totalHoriz, viewScale);
+            originVert -= Math.floorDiv(totalVert, viewScale);
+            panRemainderHoriz = Math.floorMod(totalHoriz, viewScale);
+            panRemainderVert = Math.floorMod(totalVert, viewScale);
+        } else {
+            originHoriz -= pixelsHoriz * -viewScale;
+            originVert -= pixelsVert * -viewScale;
+        }
+        clampOrigin();
+    }
+
+    /**
+     * This method zooms the view in or out by a number of zoom levels,
+     * keeping the cell under a given pixel where it is, as a mouse wheel does
+     * around the pointer.
+     *
+     * @param zoomSteps The number of levels to zoom in, or out if it's
+     *                  negative. Zooming stops at the nearest and farthest
+     *                  levels.
+     * @param anchorX   The X coordinate of the pixel to zoom around.
+     * @param anchorY   The Y coordinate of the pixel to zoom around.
+     */
+    public void zoom(final int zoomSteps, final int anchorX, final int anchorY) {
+        int anchorHoriz = originHoriz + pixelsToCells(anchorX);
+        int anchorVert = originVert + pixelsToCells(anchorY);
+        zoomIndex = Math.max(0, Math.min(zoomIndex + zoomSteps, zoomScales.length - 1));
+        originHoriz = anchorHoriz - pixelsToCells(anchorX);
+        originVert = anchorVert - pixelsToCells(anchorY);
+        panRemainderHoriz = 0;
+        panRemainderVert = 0;
+        clampOrigin();
+    }
+
+    /**
+     * This method finds the horizontal coordinate of the cell under a pixel.
+     *
+     * @param pixelX The X coordinate of the pixel.
+     * @return       The horizontal coordinate of the cell, or -1 if the pixel
+     *               isn't over a single cell of the cell grid: if it's past its
+     *               edge, or the view is zoomed out.
+     */
+    public int cellHorizAt(final int pixelX) {
+        if (getViewScale() < 0) {
+            return -1;
+        }
+        int horizIndex = originHoriz + pixelsToCells(pixelX);
+        return (pixelX < 0 || horizIndex >= cellGridHorizDim) ? -1 : horizIndex;
+    }
+
+    /**
+     * This method finds the vertical coordinate of the cell under a pixel.
+     *
+     * @param pixelY The Y coordinate of the pixel.
+     * @return       The vertical coordinate of the cell, or -1 if the pixel
+     *               isn't over a single cell of the cell grid: if it's past its
+     *               edge, or the view is zoomed out.
+     */
+    public int cellVertAt(final int pixelY) {
+        if (getViewScale() < 0) {
+            return -1;
+        }
+        int vertIndex = originVert + pixelsToCells(pixelY);
+        return (pixelY < 0 || vertIndex >= cellGridVertDim) ? -1 : vertIndex;
+    }
+
+    /**
+     * This method fills a frame with the part of the cell grid in view: the
+     * states of the cells in view when zoomed in, or the densities of the
+     * blocks of cells in view when zoomed out. Cells only partly in view, at
+     * the right and bottom edges, are included.
+     *
+     * @param gridEngine       The engine to read the cell grid from.
+     * @param targetFrame      The frame to fill.
+     * @param generationNumber The number of generations the engine has been
+     *                         stepped.
+     */
+    public void captureView(final GridEngine gridEngine, final GenerationFrame targetFrame,
+                            final long generationNumber) {
+        int viewScale = getViewScale();
+        if (viewScale > 0) {
+            targetFrame.captureRegion(gridEngine, originHoriz, originVert, getVisibleHoriz(), getVisibleVert(),
+                                      generationNumber);
+        } else {
+            int blockDim = -viewScale;
+            targetFrame.captureDensity(gridEngine, originHoriz, originVert, blockDim,
+                                       (getVisibleHoriz() + blockDim - 1) / blockDim,
+                                       (getVisibleVert() + blockDim - 1) / blockDim, generationNumber);
+        }
+        targetFrame.setView(viewScale, originHoriz, originVert);
+    }
+
+    /**
+     * This method is used to get the current scale.
+     *
+     * @return The number of pixels on a side of each cell, or if it's
+     *         negative, the number of cells on a side of each pixel.
+     */
+    public int getViewScale() {
+        return zoomScales[zoomIndex];
+    }
+
+    /**
+     * This method is an accessor for the private originHoriz variable.
+     *
+     * @return The horizontal coordinate of the cell at the left edge of the
+     *         view.
+     */
+    public int getOriginHoriz() {
+        return originHoriz;
+    }
+
+    /**
+     * This method is an accessor for the private originVert variable.
+     *
+     * @return The vertical coordinate of the cell at the top edge of the
+     *         view.
+     */
+    public int getOriginVert() {
+        return originVert;
+    }
+
+    /**
+     * This method is used to get the number of columns of cells in view,
+     * counting one only partly in view, and not counting any past the edge
+     * of the cell grid.
+     *
+     * @return The number of columns of cells in view.
+     */
+    public int getVisibleHoriz() {
+        int viewScale = getViewScale();
+        int viewCells = (viewScale > 0) ? (viewWidth + viewScale - 1) / viewScale : viewWidth * -viewScale;
+        return Math.min(viewCells, cellGridHorizDim - originHoriz);
+    }
+
+    /**
+     * This method is used to get the number of rows of cells in view,
+     * counting one only partly in view, and not counting any past the edge
+     * of the cell grid.
+     *
+     * @return The number of rows of cells in view.
+     */
+    public int getVisibleVert() {
+        int viewScale = getViewScale();
+        int viewCells = (viewScale > 0) ? (viewHeight + viewScale - 1) / viewScale : viewHeight * -viewScale;
+        return Math.min(viewCells, cellGridVertDim - originVert);
+    }
+}
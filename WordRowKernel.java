@@ -0,0 +1,38 @@
+package org.kmfahey.jgameoflife;
+
+/**
+ * This interface describes a row kernel: the innermost loop of a bit-packed
+ * stepping engine, which computes the next generation of one row of cells from
+ * the nine rows that line each cell up with itself and its eight neighbors.
+ * BitPackedGridEngine.SCALAR_ROW_KERNEL is the scalar implementation; the
+ * vectorized implementation is in the vectorkernel package and is loaded by
+ * VectorGridEngine when the jdk.incubator.vector module is available.
+ *
+ * @see org.kmfahey.jgameoflife.BitPackedGridEngine
+ * @see org.kmfahey.jgameoflife.VectorGridEngine
+ */
+@FunctionalInterface
+public interface WordRowKernel {
+
+    /**
+     * This method computes the next generation of a row of bit-packed cells.
+     *
+     * @param lifeRule     The rule to step the cells by.
+     * @param northWestRow The north row, shifted west.
+     * @param northRow     The north row.
+     * @param northEastRow The north row, shifted east.
+     * @param westRow      The center row, shifted west.
+     * @param centerRow    The row being stepped.
+     * @param eastRow      The center row, shifted east.
+     * @param southWestRow The south row, shifted west.
+     * @param southRow     The south row.
+     * @param southEastRow The south row, shifted east.
+     * @param nextRow      The row that the next generation is written into.
+     * @param wordCount    The number of longs in each row.
+     */
+    void combineRows(LifeRule lifeRule,
+                     long[] northWestRow, long[] northRow, long[] northEastRow,
+                     long[] westRow, long[] centerRow, long[] eastRow,
+                     long[] southWestRow, long[] southRow, long[] southEastRow,
+                     long[] nextRow, int wordCount);
+}
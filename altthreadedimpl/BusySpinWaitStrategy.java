@@ -0,0 +1,36 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements the wait strategy that spins on the counter without
+ * ever giving up the core. It has the lowest latency, but every waiting thread
+ * holds a core at 100% for as long as it waits, including while the animation
+ * is stopped, so it only makes sense when there's a core to spare for every
+ * worker thread and the main thread.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.WaitStrategy
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    /**
+     * This method spins until the counter changes.
+     *
+     * @param counter   The counter to watch.
+     * @param seenValue The value the calling thread last saw in it.
+     */
+    public void awaitChange(final AtomicInteger counter, final int seenValue) {
+        while (counter.get() == seenValue) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * This method does nothing, since no waiting thread is ever parked.
+     *
+     * @param waitingThreads The threads that may be waiting.
+     */
+    public void signalChange(final Thread[] waitingThreads) {
+        assert true;
+    }
+}
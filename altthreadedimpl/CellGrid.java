@@ -2,44 +2,148 @@ package org.kmfahey.jgameoflife.altthreadedimpl;
 
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.JComponent;
-import javax.swing.Timer;
+import javax.swing.SwingUtilities;
+import org.kmfahey.jgameoflife.CellRasterizer;
+import org.kmfahey.jgameoflife.GenerationFrame;
+import org.kmfahey.jgameoflife.LargerThanLifeRule;
+import org.kmfahey.jgameoflife.LifeRule;
+import org.kmfahey.jgameoflife.SimulationClock;
+import org.kmfahey.jgameoflife.SimulationPipeline;
+import org.kmfahey.jgameoflife.SimulationSource;
 
 /**
  * This class is a JComponent subclass that implements the viewable area in
  * the GUI where the cellular automata runs. It divides the cell grid up into
  * a (currently) 4 x 4 subdivision of portions and allocates each one to a
- * CellGridSection object. CellGridSection implements the Runnable interface.
- * A CellGridDispatch object is instanced with the 2d array of CellGridSection
- * objects so that it can allocate each into its own thread and then use
- * inter-thread communication to dispatch cell grid alteration directives to
- * them.
+ * CellGridSection object. A CellGridDispatch object is instanced with the 2d
+ * array of CellGridSection objects so that it can give each its own worker
+ * thread and then use inter-thread communication to dispatch cell grid
+ * alteration directives to them.
+ * <p>
+ * If it's constructed with a ForkJoinPool, it instead divides the cell grid
+ * into many more sections than the pool has worker threads, and hands them to
+ * a ForkJoinDispatch object, whose threads steal sections from each other.
+ * If it's constructed with an ExecutorService, such as one that starts a
+ * virtual thread per task, it divides the cell grid the same way and hands
+ * the sections to an ExecutorDispatch object, which submits a task per
+ * section every generation. Either way, the sections start out sized so
+ * there are several per worker thread, and every so many generations their
+ * mean cost is checked: sections so cheap that dispatching them costs as much
+ * as computing them are merged, and sections so costly that one of them can
+ * hold up a generation are split.
+ * <p>
+ * Sections that store their cells one per int can also compute several
+ * generations per step, each from a ghost zone as wide around its region,
+ * so that the worker threads meet once per step rather than once per
+ * generation. The number of generations is set with setGenerationsPerStep(),
+ * which can also have it tuned from the measured time per generation.
+ * <p>
+ * The steps are run by a SimulationPipeline object on a simulation thread of
+ * its own, which waits on the dispatcher for each generation, so the Swing
+ * event dispatch thread never does. Nor does it draw the cells: after every
+ * step, each worker thread copies its sections into the GenerationFrame and
+ * draws them into its slice of the back one of two images, and the images are
+ * swapped once every section is drawn. The event dispatch thread only paints
+ * the front image, so drawing the cells takes as many threads as stepping
+ * them does. A section is only drawn if the back image doesn't show it
+ * already, and only the sections that differ between the two images are
+ * repainted.
  *
  * @see org.kmfahey.jgameoflife.altthreadedimpl.GameOfLife
  * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
  * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridSection
  */
-public class CellGrid extends JComponent implements ActionListener, MouseListener {
+public class CellGrid extends JComponent implements SimulationSource, MouseListener {
 
     /** This double sets the horizontal dimension of the 2d cellGridSection
-        array that will store subdivisions of the cell grid. */
-    private final double horizSectionsDim = 4D;
+        array that will store subdivisions of the cell grid. It's 4 unless
+        the sections are run as tasks, in which case it follows from
+        tileEdge. */
+    private double horizSectionsDim = 4D;
 
     /** This double sets the vertical dimension of the 2d cellGridSection
-        array that will store subdivisions of the cell grid. */
-    private final double vertSectionsDim = 4D;
-
-    /** This int holds the length of time in milliseconds that the Timer
-        object is instructed to wait between "repaint" events. */
-    private final int stepLengthMillis = 333;
-
-    /** This Color object holds the default color of the component, as used by
-        paintComponent when it renders the component. */
+        array that will store subdivisions of the cell grid. It's 4 unless
+        the sections are run as tasks, in which case it follows from
+        tileEdge. */
+    private double vertSectionsDim = 4D;
+
+    /** This int is the fewest cells on a side that a section is cut to when
+        the sections are run as tasks. */
+    private final int minTileEdge = 16;
+
+    /** This int is the number of sections per worker thread that the cell
+        grid is first cut into when the sections are run as tasks, so that
+        there's work left to take up when a thread finishes early. */
+    private final int tilesPerWorker = 8;
+
+    /** This long is the mean time, in nanoseconds, below which a section's
+        generation is cheap enough that the sections are merged. */
+    private final long minTileStepNanos = 20_000L;
+
+    /** This long is the mean time, in nanoseconds, above which a section's
+        generation is costly enough that the sections are split. */
+    private final long maxTileStepNanos = 1_000_000L;
+
+    /** This int is the number of generations between checks of the mean
+        time a section takes. */
+    private final int retileInterval = 32;
+
+    /** This int is the length in cells of a side of a section, when the
+        sections are run as tasks. Sections at the edge of the cell grid take
+        up the remainder, so they can be somewhat larger. */
+    private int tileEdge;
+
+    /** This int counts the generations since the mean time a section takes
+        was last checked. */
+    private int generationsSinceRetile;
+
+    /** This int is the most generations a step can compute, and so the width
+        of the halo of the SharedCellGrid of ENGINE_INT_ARRAY sections. */
+    private final int maxGenerationsPerStep = 8;
+
+    /** This int is the number of generations each step computes. */
+    private int generationsPerStep = 1;
+
+    /** This boolean is true while generationsPerStep is being tuned: each
+        power of 2 up to maxGenerationsPerStep is tried for tuningSteps steps
+        in turn, and the one that took the least time per generation is kept. */
+    private boolean tuningGenerationsPerStep;
+
+    /** This int is the number of steps each number of generations per step is
+        tried for while it's being tuned. The first of them is a warm-up, and
+        isn't timed. */
+    private final int tuningSteps = 9;
+
+    /** This int counts the steps left to try the current number of
+        generations per step for. */
+    private int tuningStepsLeft;
+
+    /** This long sums the time taken by the timed steps of the current number
+        of generations per step, in nanoseconds. */
+    private long tuningNanos;
+
+    /** This long holds the least time per generation any number of
+        generations per step has taken while being tuned, in nanoseconds. */
+    private long tunedNanosPerGeneration;
+
+    /** This int holds the number of generations per step that took
+        tunedNanosPerGeneration. */
+    private int tunedGenerationsPerStep;
+
+    /** This double holds the number of generations per second the
+        simulation clock steps at until it's told otherwise. */
+    private final double defaultGenerationsPerSecond = 3D;
+
+    /** This Color object holds the color of a dead cell, and of the margin
+        around the cell grid, as the CellRasterizer draws them. */
     private final Color fieldColor = Color.WHITE;
 
     /** This int is used to store the width of the component, in pixels. */
@@ -61,6 +165,11 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
         tasks in a distributed fashion. */
     private CellGridSection[][] cellGridSections;
 
+    /** This SharedCellGrid object holds the cells of every CellGridSection
+        object when they store their cells one per int, or is null when they
+        store them bit-packed. */
+    private SharedCellGrid sharedCellGrid;
+
     /** This variable is used to store the horizontal dimensions of each
         subdivision of the cell grid that is apportioned to the CellGridSection
         objects instantiated in the CellGrid constructor. */
@@ -71,16 +180,68 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
         objects instantiated in the CellGrid constructor. */
     private int[] sectionsVertDims;
 
-    /** This variable is used to store the CellGridDispatch object that handles
+    /** This variable is used to store the SectionDispatch object that handles
       * dispatching tasks to the CellGridSections used by this class to handle
       * individual portions of the cell grid. */
-    private CellGridDispatch cellGridDispatch;
+    private SectionDispatch cellGridDispatch;
+
+    /** This TileDispatch object is the same object as cellGridDispatch when
+        the sections are run as tasks, on a ForkJoinPool or an
+        ExecutorService, or null otherwise. */
+    private TileDispatch tileDispatch;
+
+    /** This int holds one of the CellGridSection.ENGINE_* constants, and
+        determines how every CellGridSection object stores and steps its
+        cells. */
+    private int sectionEngineFlag;
+
+    /** This LifeRule object is the rule every CellGridSection object steps
+        its cells by. */
+    private LifeRule sectionLifeRule;
+
+    /** This LargerThanLifeRule object is the rule every CellGridSection object
+        steps its cells by when sectionEngineFlag is
+        CellGridSection.ENGINE_LARGER_THAN_LIFE, or null otherwise. */
+    private LargerThanLifeRule sectionLargerThanLifeRule;
 
     /** This boolean is used to track whether the automata animation is running or not. */
     private boolean automataRunning = false;
 
-    /** This Timer object is used to send regular "repaint" events to actionPerformed(). */
-    private Timer animationTimer;
+    /** This SimulationPipeline object steps the sections on a simulation
+        thread and hands their generations to paintComponent(). Every change
+        to the cell grid goes through it. */
+    private SimulationPipeline simulationPipeline;
+
+    /** This CellRasterizer object holds the image paintComponent() paints,
+        which shows the newest generation drawn. */
+    private CellRasterizer frontRasterizer;
+
+    /** This CellRasterizer object holds the image the worker threads draw the
+        next generation into. It's only used by the simulation thread and, in
+        renderSections(), the worker threads. */
+    private CellRasterizer backRasterizer;
+
+    /** This Object is held while the images are swapped and while the front
+        one is painted, so that one isn't painted as it's being drawn over. */
+    private final Object imageLock = new Object();
+
+    /** This int is 0 or 1, for which of the two images backRasterizer
+        holds. The sections keep track of what they last drew into each. */
+    private int backImageIndex = 1;
+
+    /** This Rectangle object bounds the pixels of the front image that have
+        changed since updateDisplay() last repainted, or is empty if none
+        have. It's guarded by imageLock. */
+    private final Rectangle dirtyRegion = new Rectangle();
+
+    /** This AtomicBoolean object is true while a call to updateDisplay() is
+        queued on the event dispatch thread, so that a burst of frames queues
+        only one. */
+    private final AtomicBoolean displayUpdateQueued = new AtomicBoolean();
+
+    /** This Runnable object runs updateDisplay(). It's made once, rather than
+        for every frame. */
+    private final Runnable displayUpdater = this::updateDisplay;
 
     /** This variable stores the default width in pixels of a single cell in the
         cell grid display. */
@@ -100,6 +261,193 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
      *                     these values.
      */
     public CellGrid(final Dimension cellGridDims) {
+        this(cellGridDims, CellGridSection.ENGINE_INT_ARRAY);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with CellGridSection
+     * objects that use the given engine to store and step their cells.
+     *
+     * @param cellGridDims A Dimension object that holds the width and height of
+     *                     the component; the size of the cell grid is set from
+     *                     these values.
+     * @param engineFlag   One of the constants CellGridSection.ENGINE_INT_ARRAY,
+     *                     CellGridSection.ENGINE_BIT_PACKED or
+     *                     CellGridSection.ENGINE_VECTOR.
+     */
+    public CellGrid(final Dimension cellGridDims, final int engineFlag) {
+        this(cellGridDims, engineFlag, LifeRule.CONWAY);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with CellGridSection
+     * objects that use the given engine and rule to store and step their
+     * cells.
+     *
+     * @param cellGridDims A Dimension object that holds the width and height of
+     *                     the component; the size of the cell grid is set from
+     *                     these values.
+     * @param engineFlag   One of the constants CellGridSection.ENGINE_INT_ARRAY,
+     *                     CellGridSection.ENGINE_BIT_PACKED or
+     *                     CellGridSection.ENGINE_VECTOR.
+     * @param lifeRule     The rule to step the cells by.
+     */
+    public CellGrid(final Dimension cellGridDims, final int engineFlag, final LifeRule lifeRule) {
+        this(cellGridDims, engineFlag, lifeRule, new ParkWaitStrategy());
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with CellGridSection
+     * objects that use the given engine and rule to store and step their
+     * cells, dispatched to worker threads that wait with the given strategy.
+     *
+     * @param cellGridDims A Dimension object that holds the width and height of
+     *                     the component; the size of the cell grid is set from
+     *                     these values.
+     * @param engineFlag   One of the constants CellGridSection.ENGINE_INT_ARRAY,
+     *                     CellGridSection.ENGINE_BIT_PACKED or
+     *                     CellGridSection.ENGINE_VECTOR.
+     * @param lifeRule     The rule to step the cells by.
+     * @param waitStrategy The way the worker threads wait for tasks and for
+     *                     each other.
+     */
+    public CellGrid(final Dimension cellGridDims, final int engineFlag, final LifeRule lifeRule,
+                    final WaitStrategy waitStrategy) {
+        this(cellGridDims, engineFlag, lifeRule, null, waitStrategy, null, null);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with CellGridSection
+     * objects that use the given engine and rule to store and step their
+     * cells, sized to the pool and run as tasks on its worker threads.
+     *
+     * @param cellGridDims A Dimension object that holds the width and height of
+     *                     the component; the size of the cell grid is set from
+     *                     these values.
+     * @param engineFlag   One of the constants CellGridSection.ENGINE_INT_ARRAY,
+     *                     CellGridSection.ENGINE_BIT_PACKED or
+     *                     CellGridSection.ENGINE_VECTOR.
+     * @param lifeRule     The rule to step the cells by.
+     * @param forkJoinPool The pool whose worker threads run the sections.
+     */
+    public CellGrid(final Dimension cellGridDims, final int engineFlag, final LifeRule lifeRule,
+                    final ForkJoinPool forkJoinPool) {
+        this(cellGridDims, engineFlag, lifeRule, null, null, forkJoinPool, null);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with CellGridSection
+     * objects that use the given engine and rule to store and step their
+     * cells, run as a task apiece on the executor every generation. The
+     * sections are sized as if the executor could run a task per available
+     * processor at once, which is how many carrier threads a virtual thread
+     * executor has.
+     *
+     * @param cellGridDims    A Dimension object that holds the width and
+     *                        height of the component; the size of the cell
+     *                        grid is set from these values.
+     * @param engineFlag      One of the constants
+     *                        CellGridSection.ENGINE_INT_ARRAY,
+     *                        CellGridSection.ENGINE_BIT_PACKED or
+     *                        CellGridSection.ENGINE_VECTOR.
+     * @param lifeRule        The rule to step the cells by.
+     * @param executorService The executor that runs the sections.
+     */
+    public CellGrid(final Dimension cellGridDims, final int engineFlag, final LifeRule lifeRule,
+                    final ExecutorService executorService) {
+        this(cellGridDims, engineFlag, lifeRule, null, null, null, executorService);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with CellGridSection
+     * objects that step a Larger than Life rule, each gathering a halo as wide
+     * as the rule's radius from its neighbors.
+     *
+     * @param cellGridDims       A Dimension object that holds the width and
+     *                           height of the component; the size of the cell
+     *                           grid is set from these values.
+     * @param largerThanLifeRule The rule to step the cells by.
+     */
+    public CellGrid(final Dimension cellGridDims, final LargerThanLifeRule largerThanLifeRule) {
+        this(cellGridDims, largerThanLifeRule, new ParkWaitStrategy());
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with CellGridSection
+     * objects that step a Larger than Life rule, dispatched to worker threads
+     * that wait with the given strategy.
+     *
+     * @param cellGridDims       A Dimension object that holds the width and
+     *                           height of the component; the size of the cell
+     *                           grid is set from these values.
+     * @param largerThanLifeRule The rule to step the cells by.
+     * @param waitStrategy       The way the worker threads wait for tasks and
+     *                           for each other.
+     */
+    public CellGrid(final Dimension cellGridDims, final LargerThanLifeRule largerThanLifeRule,
+                    final WaitStrategy waitStrategy) {
+        this(cellGridDims, CellGridSection.ENGINE_LARGER_THAN_LIFE, LifeRule.CONWAY, largerThanLifeRule,
+             waitStrategy, null, null);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with CellGridSection
+     * objects that step a Larger than Life rule, sized to the pool and run as
+     * tasks on its worker threads.
+     *
+     * @param cellGridDims       A Dimension object that holds the width and
+     *                           height of the component; the size of the cell
+     *                           grid is set from these values.
+     * @param largerThanLifeRule The rule to step the cells by.
+     * @param forkJoinPool       The pool whose worker threads run the
+     *                           sections.
+     */
+    public CellGrid(final Dimension cellGridDims, final LargerThanLifeRule largerThanLifeRule,
+                    final ForkJoinPool forkJoinPool) {
+        this(cellGridDims, CellGridSection.ENGINE_LARGER_THAN_LIFE, LifeRule.CONWAY, largerThanLifeRule, null,
+             forkJoinPool, null);
+    }
+
+    /**
+     * This constructor initializes the CellGrid object with CellGridSection
+     * objects that step a Larger than Life rule, run as a task apiece on the
+     * executor every generation.
+     *
+     * @param cellGridDims       A Dimension object that holds the width and
+     *                           height of the component; the size of the cell
+     *                           grid is set from these values.
+     * @param largerThanLifeRule The rule to step the cells by.
+     * @param executorService    The executor that runs the sections.
+     */
+    public CellGrid(final Dimension cellGridDims, final LargerThanLifeRule largerThanLifeRule,
+                    final ExecutorService executorService) {
+        this(cellGridDims, CellGridSection.ENGINE_LARGER_THAN_LIFE, LifeRule.CONWAY, largerThanLifeRule, null,
+             null, executorService);
+    }
+
+    /**
+     * This constructor does the work of the public constructors.
+     *
+     * @param cellGridDims       A Dimension object that holds the width and
+     *                           height of the component; the size of the cell
+     *                           grid is set from these values.
+     * @param engineFlag         One of the CellGridSection.ENGINE_* constants.
+     * @param lifeRule           The rule to step the cells by, unless the
+     *                           engine is ENGINE_LARGER_THAN_LIFE.
+     * @param largerThanLifeRule The rule to step the cells by if the engine is
+     *                           ENGINE_LARGER_THAN_LIFE, or null.
+     * @param waitStrategy       The way the worker threads wait for tasks and
+     *                           for each other, if every section has a
+     *                           worker thread of its own, or null.
+     * @param forkJoinPool       The pool whose worker threads run the
+     *                           sections, or null.
+     * @param executorService    The executor that runs the sections, or
+     *                           null. If both it and forkJoinPool are null,
+     *                           every section has a worker thread of its own.
+     */
+    private CellGrid(final Dimension cellGridDims, final int engineFlag, final LifeRule lifeRule,
+                     final LargerThanLifeRule largerThanLifeRule, final WaitStrategy waitStrategy,
+                     final ForkJoinPool forkJoinPool, final ExecutorService executorService) {
 
         /* The Dimensions object holding the width and height of this JComponent
            subclass are passed as an argument. I am guaranteed that these
@@ -111,14 +459,163 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
         canvasHeight = (int) cellGridDims.getHeight();
         cellGridHorizDim = canvasWidth / cellWidth;
         cellGridVertDim = canvasHeight / cellHeight;
+        sectionEngineFlag = engineFlag;
+        sectionLifeRule = lifeRule;
+        sectionLargerThanLifeRule = largerThanLifeRule;
+
+        /* Sections that store their cells one per int are all views of a
+           single SharedCellGrid, with a halo as wide as the farthest a cell's
+           neighborhood reaches, or for Life-like rules as wide as the ghost
+           zone of the most generations a step can compute. */
+        if (sectionEngineFlag == CellGridSection.ENGINE_LARGER_THAN_LIFE) {
+            sharedCellGrid = new SharedCellGrid(cellGridHorizDim, cellGridVertDim,
+                                                sectionLargerThanLifeRule.getRadius());
+        } else if (sectionEngineFlag == CellGridSection.ENGINE_INT_ARRAY) {
+            sharedCellGrid = new SharedCellGrid(cellGridHorizDim, cellGridVertDim, maxGenerationsPerStep);
+        }
 
-        instantiateCellGridSectionObjects();
+        /* Lastly, a dispatch object is instantiated with the array of
+           CellGridSection objects to set up for dispatching tasks to, though
+           sections run as tasks can only be cut to size once it's known how
+           many worker threads there are. */
+        if (forkJoinPool != null || executorService != null) {
+            int workerCount = (forkJoinPool != null) ? forkJoinPool.getParallelism()
+                                                     : Runtime.getRuntime().availableProcessors();
+
+            /* The first tile edge is the one that cuts the cell grid into
+               tilesPerWorker sections per worker thread, though no shorter
+               than minTileEdge, or than the radius of a Larger than Life
+               rule, since a section narrower than its halo can't sleep. */
+            tileEdge = (int) Math.sqrt((double) cellGridHorizDim * cellGridVertDim
+                                       / (workerCount * tilesPerWorker));
+            tileEdge = Math.max(tileEdge, minimumTileEdge());
+            horizSectionsDim = Math.max(1, cellGridHorizDim / tileEdge);
+            vertSectionsDim = Math.max(1, cellGridVertDim / tileEdge);
+            instantiateCellGridSectionObjects();
+            setCellGridSectionNeighbors();
+            if (forkJoinPool != null) {
+                tileDispatch = new ForkJoinDispatch(cellGridSections, forkJoinPool);
+            } else {
+                tileDispatch = new ExecutorDispatch(cellGridSections, executorService, workerCount);
+            }
+            cellGridDispatch = tileDispatch;
+        } else {
+            instantiateCellGridSectionObjects();
+            setCellGridSectionNeighbors();
+            cellGridDispatch = new CellGridDispatch(cellGridSections, waitStrategy);
+        }
+        simulationPipeline = new SimulationPipeline(this, new SimulationClock(defaultGenerationsPerSecond),
+                                                    this::queueDisplayUpdate);
+        /* The worker threads draw the sections in parallel, so the images
+           aren't filled in bands as well. */
+        frontRasterizer = new CellRasterizer(canvasWidth, canvasHeight, new Color[] {fieldColor, Color.BLACK}, false);
+        backRasterizer = new CellRasterizer(canvasWidth, canvasHeight, new Color[] {fieldColor, Color.BLACK}, false);
+    }
+
+    /**
+     * This method returns the shortest a side of a section can be cut to when
+     * the sections are run as tasks.
+     *
+     * @return The larger of minTileEdge and the radius of the Larger than Life
+     *         rule, if there is one.
+     */
+    private int minimumTileEdge() {
+        if (sectionLargerThanLifeRule == null) {
+            return minTileEdge;
+        }
+        return Math.max(minTileEdge, sectionLargerThanLifeRule.getRadius());
+    }
 
+    /**
+     * This method checks the mean time a section has taken to compute a
+     * generation since the last check, and cuts the cell grid into sections
+     * of a new size if that time is out of bounds. Sections that took less
+     * than minTileStepNanos have their edge doubled, as long as that leaves
+     * at least a section per worker thread. Sections that took more than
+     * maxTileStepNanos have it halved, if there are fewer than tilesPerWorker
+     * of them per worker thread and that leaves the edge no shorter than the
+     * minimum; with enough sections to go around, splitting them further
+     * only adds to the edge cells, which are the costly ones. The bounds are
+     * far enough apart that a merge or a split, which changes the cost of a
+     * section about fourfold, doesn't bring on the opposite change at the
+     * next check.
+     */
+    private void adaptTileSize() {
+        long meanStepNanos = tileDispatch.takeMeanStepNanos();
+        int workerCount = tileDispatch.getWorkerCount();
+        int tileCount = (int) horizSectionsDim * (int) vertSectionsDim;
+        int newTileEdge = tileEdge;
+
+        if (meanStepNanos == 0L) {
+            return;
+        } else if (meanStepNanos < minTileStepNanos
+                   && (cellGridHorizDim / (tileEdge * 2)) * (cellGridVertDim / (tileEdge * 2)) >= workerCount) {
+            newTileEdge = tileEdge * 2;
+        } else if (meanStepNanos > maxTileStepNanos && tileCount < workerCount * tilesPerWorker
+                   && tileEdge / 2 >= minimumTileEdge()) {
+            newTileEdge = tileEdge / 2;
+        }
+        if (newTileEdge == tileEdge) {
+            return;
+        }
+        tileEdge = newTileEdge;
+        retileCellGrid();
+    }
+
+    /**
+     * This method cuts the cell grid into sections of tileEdge cells on a
+     * side. It instantiates the new sections and hands them to a new
+     * dispatcher of the same kind on the same worker threads. Sections that
+     * store their cells one per int are views of the SharedCellGrid, which
+     * keeps its cells whatever the sections are; bit-packed cells are copied
+     * out of the current sections and into the new ones. Every new section
+     * starts out awake, since it can't know how recently its cells were set.
+     */
+    private void retileCellGrid() {
+        if (sharedCellGrid != null) {
+            horizSectionsDim = Math.max(1, cellGridHorizDim / tileEdge);
+            vertSectionsDim = Math.max(1, cellGridVertDim / tileEdge);
+            instantiateCellGridSectionObjects();
+            setCellGridSectionNeighbors();
+            tileDispatch = tileDispatch.redispatch(cellGridSections);
+            cellGridDispatch = tileDispatch;
+            return;
+        }
+
+        int[][] cellValues = new int[cellGridHorizDim][cellGridVertDim];
+
+        for (CellGridSection[] sectionsColumn : cellGridSections) {
+            for (CellGridSection cellGridSection : sectionsColumn) {
+                for (int horizIndex = 0; horizIndex < cellGridSection.getHorizDim(); horizIndex++) {
+                    for (int vertIndex = 0; vertIndex < cellGridSection.getVertDim(); vertIndex++) {
+                        cellValues[cellGridSection.getOriginHorizCoord() + horizIndex]
+                                  [cellGridSection.getOriginVertCoord() + vertIndex] =
+                            cellGridSection.getCell(horizIndex, vertIndex);
+                    }
+                }
+            }
+        }
+
+        horizSectionsDim = Math.max(1, cellGridHorizDim / tileEdge);
+        vertSectionsDim = Math.max(1, cellGridVertDim / tileEdge);
+        instantiateCellGridSectionObjects();
         setCellGridSectionNeighbors();
 
-        /* Lastly, a CellGridDispatch object is instantiated with the array of
-           CellGridSection objects to set up for dispatching tasks to. */
-        cellGridDispatch = new CellGridDispatch(cellGridSections);
+        for (CellGridSection[] sectionsColumn : cellGridSections) {
+            for (CellGridSection cellGridSection : sectionsColumn) {
+                for (int horizIndex = 0; horizIndex < cellGridSection.getHorizDim(); horizIndex++) {
+                    for (int vertIndex = 0; vertIndex < cellGridSection.getVertDim(); vertIndex++) {
+                        if (cellValues[cellGridSection.getOriginHorizCoord() + horizIndex]
+                                      [cellGridSection.getOriginVertCoord() + vertIndex] == 1) {
+                            cellGridSection.setCell(horizIndex, vertIndex, 1);
+                        }
+                    }
+                }
+            }
+        }
+
+        tileDispatch = tileDispatch.redispatch(cellGridSections);
+        cellGridDispatch = tileDispatch;
     }
 
     /**
@@ -142,42 +639,21 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
         int originCumulativeHorizCoord = 0;
         int originCumulativeVertCoord = 0;
 
-        /* These values are used in computing the values for the above array. */
-        int remainingHorizCells = cellGridHorizDim;
-        int remainingVertCells = cellGridVertDim;
-
         cellGridSections = new CellGridSection[(int) horizSectionsDim][(int) vertSectionsDim];
 
         /* These two for loops determine the horizIndex and vertIndex at
            which the cell grid will be partitioned in order to assign each
            CellGridSection object a roughly equal section of the cell grid.
-           They alternate between Math.floor and Math.ceil to round alternately
-           up or down, and then for the last section in the line they allocate
-           the entire remaining dimension, which should be roughly equal to the
-           previously computed values. */
+           Each section ends at its share of the dimension, rounded down, so
+           the sections differ in size by at most one cell however many of
+           them there are. */
         for (int horizIndex = 0; horizIndex < cellGridSections.length; horizIndex++) {
-            if (horizIndex == cellGridSections.length - 1) {
-                sectionsHorizDims[horizIndex] = remainingHorizCells;
-            } else {
-                if (horizIndex % 2 == 0) {
-                    sectionsHorizDims[horizIndex] = (int) Math.floor((double) cellGridHorizDim / horizSectionsDim);
-                } else {
-                    sectionsHorizDims[horizIndex] = (int) Math.ceil((double) cellGridHorizDim / horizSectionsDim);
-                }
-                remainingHorizCells -= sectionsHorizDims[horizIndex];
-            }
+            sectionsHorizDims[horizIndex] = (int) ((long) cellGridHorizDim * (horizIndex + 1) / cellGridSections.length
+                                                   - (long) cellGridHorizDim * horizIndex / cellGridSections.length);
         }
         for (int vertIndex = 0; vertIndex < cellGridSections[0].length; vertIndex++) {
-            if (vertIndex == cellGridSections[0].length - 1) {
-                sectionsVertDims[vertIndex] = remainingVertCells;
-            } else {
-                if (vertIndex % 2 == 0) {
-                    sectionsVertDims[vertIndex] = (int) Math.floor((double) cellGridVertDim / vertSectionsDim);
-                } else {
-                    sectionsVertDims[vertIndex] = (int) Math.ceil((double) cellGridVertDim / vertSectionsDim);
-                }
-                remainingVertCells -= sectionsVertDims[vertIndex];
-            }
+            sectionsVertDims[vertIndex] = (int) ((long) cellGridVertDim * (vertIndex + 1) / cellGridSections[0].length
+                                                 - (long) cellGridVertDim * vertIndex / cellGridSections[0].length);
         }
 
         /* The CellGridSection constructor accepts as its arguments the
@@ -188,10 +664,22 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
         for (int horizIndex = 0; horizIndex < cellGridSections.length; horizIndex++) {
             originCumulativeVertCoord = 0;
             for (int vertIndex = 0; vertIndex < cellGridSections[0].length; vertIndex++) {
-                cellGridSections[horizIndex][vertIndex] = new CellGridSection(sectionsHorizDims[horizIndex],
-                                                                              sectionsVertDims[vertIndex],
-                                                                              originCumulativeHorizCoord,
-                                                                              originCumulativeVertCoord);
+                if (sectionEngineFlag == CellGridSection.ENGINE_LARGER_THAN_LIFE) {
+                    cellGridSections[horizIndex][vertIndex] = new CellGridSection(sectionsHorizDims[horizIndex],
+                                                                                  sectionsVertDims[vertIndex],
+                                                                                  originCumulativeHorizCoord,
+                                                                                  originCumulativeVertCoord,
+                                                                                  sectionLargerThanLifeRule,
+                                                                                  sharedCellGrid);
+                } else {
+                    cellGridSections[horizIndex][vertIndex] = new CellGridSection(sectionsHorizDims[horizIndex],
+                                                                                  sectionsVertDims[vertIndex],
+                                                                                  originCumulativeHorizCoord,
+                                                                                  originCumulativeVertCoord,
+                                                                                  sectionEngineFlag,
+                                                                                  sectionLifeRule,
+                                                                                  sharedCellGrid);
+                }
                 originCumulativeVertCoord += sectionsVertDims[vertIndex];
             }
             originCumulativeHorizCoord += sectionsHorizDims[horizIndex];
@@ -244,7 +732,7 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
            CellGridSection.setNeighbor(). */
 
         for (int horizIndex = 0; horizIndex < cellGridSections.length; horizIndex++) {
-            for (int vertIndex = 0; vertIndex < cellGridSections.length; vertIndex++) {
+            for (int vertIndex = 0; vertIndex < cellGridSections[0].length; vertIndex++) {
                 for (int[] deltaPair : deltaPairs) {
                     /* moddedHorizIndex and moddedVertIndex are derived values
                        that are computed from (horizIndex, vertIndex) by adding
@@ -291,7 +779,7 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
      * state. It is called by the Clear button defined in the GameOfLife class.
      */
     public void clearCellGrid() {
-        cellGridDispatch.clearSections();
+        simulationPipeline.applyEdit(() -> cellGridDispatch.clearSections());
     }
 
     /**
@@ -301,175 +789,338 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
      *
      */
     public void seedCellGrid() {
-        cellGridDispatch.seedSections();
+        simulationPipeline.applyEdit(() -> cellGridDispatch.seedSections());
+    }
+
+    /**
+     * This method is called by the SimulationPipeline object on the
+     * simulation thread. It calls sectionsRunAlgorithm() to execute a single
+     * step of the algorithm.
+     *
+     * @return The number of generations the step advanced.
+     */
+    public int stepSimulation() {
+        /* Tuning can change generationsPerStep once the step is done, so
+           the number the step ran with is taken first. */
+        int stepGenerations = generationsPerStep;
+        sectionsRunAlgorithm();
+        return stepGenerations;
+    }
+
+    /**
+     * This method is called by the SimulationPipeline object after every step
+     * and edit. It has every section copy its displayed generation into a
+     * GenerationFrame, for any consumer of the pipeline, and draw it into the
+     * back image, on the worker threads, and then swaps the back image to the
+     * front for paintComponent(). The cell grid fills the component, so the
+     * frame is always drawn at cellWidth pixels per cell from the cell grid's
+     * corner. The back image was last drawn two frames ago, so only the
+     * sections whose cells have changed since then are drawn into it. The
+     * sections that differ from the front image are added to dirtyRegion for
+     * updateDisplay() to repaint.
+     *
+     * @param targetFrame      The frame to fill.
+     * @param generationNumber The number of generations the sections have
+     *                         been stepped.
+     */
+    public void captureFrame(final GenerationFrame targetFrame, final long generationNumber) {
+        targetFrame.reset(cellGridHorizDim, cellGridVertDim, generationNumber);
+        targetFrame.setView(cellWidth, 0, 0);
+        cellGridDispatch.renderSections(targetFrame, backRasterizer, backImageIndex);
+
+        /* The changed sections are gathered into a rectangle of cells before
+           the lock is taken. */
+        int firstHoriz = Integer.MAX_VALUE;
+        int firstVert = Integer.MAX_VALUE;
+        int endHoriz = 0;
+        int endVert = 0;
+        for (CellGridSection[] sectionsColumn : cellGridSections) {
+            for (CellGridSection cellGridSection : sectionsColumn) {
+                if (cellGridSection.isRenderChanged()) {
+                    firstHoriz = Math.min(firstHoriz, cellGridSection.getOriginHorizCoord());
+                    firstVert = Math.min(firstVert, cellGridSection.getOriginVertCoord());
+                    endHoriz = Math.max(endHoriz, cellGridSection.getOriginHorizCoord()
+                                                  + cellGridSection.getHorizDim());
+                    endVert = Math.max(endVert, cellGridSection.getOriginVertCoord() + cellGridSection.getVertDim());
+                }
+            }
+        }
+
+        synchronized (imageLock) {
+            CellRasterizer drawnRasterizer = backRasterizer;
+            backRasterizer = frontRasterizer;
+            frontRasterizer = drawnRasterizer;
+            backImageIndex = 1 - backImageIndex;
+            if (endHoriz == 0) {
+                return;
+            } else if (dirtyRegion.isEmpty()) {
+                dirtyRegion.setBounds(firstHoriz * cellWidth, firstVert * cellHeight,
+                                      (endHoriz - firstHoriz) * cellWidth, (endVert - firstVert) * cellHeight);
+            } else {
+                dirtyRegion.add(firstHoriz * cellWidth, firstVert * cellHeight);
+                dirtyRegion.add(endHoriz * cellWidth, endVert * cellHeight);
+            }
+        }
+    }
+
+    /**
+     * This method is an accessor for the private simulationPipeline
+     * variable.
+     *
+     * @return The SimulationPipeline object that steps the cell grid.
+     */
+    public SimulationPipeline getSimulationPipeline() {
+        return simulationPipeline;
+    }
+
+    /**
+     * This method returns the SimulationClock object that paces the
+     * simulation thread, so its mode can be set and its rate read.
+     *
+     * @return The SimulationClock object.
+     */
+    public SimulationClock getSimulationClock() {
+        return simulationPipeline.getSimulationClock();
     }
 
     /**
-     * This method calls CellGridDispatch.sectionsRunAlgorithm() to execute a
-     * single step of the game of life algorithm.
+     * This method calls SectionDispatch.sectionsRunGenerations() to execute a
+     * single step of the game of life algorithm, which is generationsPerStep
+     * generations. When the sections are run as tasks, every
+     * retileInterval steps it checks whether the sections should be resized.
      */
     public void sectionsRunAlgorithm() {
-        cellGridDispatch.sectionsRunAlgorithm();
+        long startNanos = System.nanoTime();
+        cellGridDispatch.sectionsRunGenerations(generationsPerStep);
+        if (tuningGenerationsPerStep) {
+            tuneGenerationsPerStep(System.nanoTime() - startNanos);
+        }
+        if (tileDispatch != null) {
+            generationsSinceRetile++;
+            if (generationsSinceRetile == retileInterval) {
+                generationsSinceRetile = 0;
+                adaptTileSize();
+            }
+        }
+    }
+
+    /**
+     * This method sets the number of generations each step of the algorithm
+     * computes. More than one is only supported by ENGINE_INT_ARRAY sections,
+     * which compute them from a ghost zone as wide around their regions, so
+     * the worker threads only meet once per step. The gain is in the barriers
+     * and the trips to the cell grid's memory that are saved, and the cost is
+     * in computing the ghost zones, which the neighboring sections compute as
+     * well; which wins depends on the board, the section size and the
+     * machine. Passing 0 has the number tuned: each power of 2 up to
+     * maxGenerationsPerStep is tried for a few steps, and the fastest per
+     * generation is kept. Sections can't sleep while more than one generation
+     * is computed per step.
+     *
+     * @param generationCount The number of generations per step, from 1 to
+     *                        8, or 0 to tune it.
+     * @throws IllegalArgumentException If the number is out of range, or more
+     *                                  than 1 for sections that don't store
+     *                                  their cells one per int.
+     */
+    public void setGenerationsPerStep(final int generationCount) {
+        if (generationCount < 0 || generationCount > maxGenerationsPerStep) {
+            throw new IllegalArgumentException("generations per step must be from 0 to " + maxGenerationsPerStep);
+        } else if (generationCount != 1 && sectionEngineFlag != CellGridSection.ENGINE_INT_ARRAY) {
+            throw new IllegalArgumentException("only intarray sections can compute several generations per step");
+        }
+        tuningGenerationsPerStep = generationCount == 0;
+        if (tuningGenerationsPerStep) {
+            generationsPerStep = 1;
+            tuningStepsLeft = tuningSteps;
+            tuningNanos = 0L;
+            tunedNanosPerGeneration = Long.MAX_VALUE;
+        } else {
+            generationsPerStep = generationCount;
+        }
+    }
+
+    /**
+     * This method is an accessor for the private generationsPerStep variable.
+     *
+     * @return The number of generations the next step will compute.
+     */
+    public int getGenerationsPerStep() {
+        return generationsPerStep;
+    }
+
+    /**
+     * This method takes the time of a step while generationsPerStep is being
+     * tuned. Once the current number of generations per step has been tried
+     * for tuningSteps steps, its time per generation is compared against the
+     * best so far, and the next power of 2 is tried, or if there isn't one
+     * the best is kept and tuning ends.
+     *
+     * @param stepNanos The time the step took, in nanoseconds.
+     */
+    private void tuneGenerationsPerStep(final long stepNanos) {
+        /* The first step of each try is left untimed, so the time of any
+           compiling a new number of generations sets off isn't counted
+           against it. */
+        if (tuningStepsLeft < tuningSteps) {
+            tuningNanos += stepNanos;
+        }
+        tuningStepsLeft--;
+        if (tuningStepsLeft > 0) {
+            return;
+        }
+        long nanosPerGeneration = tuningNanos / ((long) (tuningSteps - 1) * generationsPerStep);
+        if (nanosPerGeneration < tunedNanosPerGeneration) {
+            tunedNanosPerGeneration = nanosPerGeneration;
+            tunedGenerationsPerStep = generationsPerStep;
+        }
+        if (generationsPerStep * 2 <= maxGenerationsPerStep) {
+            generationsPerStep *= 2;
+            tuningStepsLeft = tuningSteps;
+            tuningNanos = 0L;
+        } else {
+            generationsPerStep = tunedGenerationsPerStep;
+            tuningGenerationsPerStep = false;
+        }
+    }
+
+    /**
+     * This method is an accessor for the private tileEdge variable.
+     *
+     * @return The length in cells of a side of a section, or 0 if the
+     *         sections aren't run as tasks.
+     */
+    public int getTileEdge() {
+        return tileEdge;
+    }
+
+    /**
+     * This method stops the worker threads of the SectionDispatch object. The
+     * cell grid can't be stepped, seeded, cleared or drawn afterward. It's
+     * used by DispatchBenchmark to stop one grid's threads before timing the
+     * next. The simulation thread is stopped first, if it's running.
+     */
+    public void shutdownWorkers() {
+        simulationPipeline.stop();
+        cellGridDispatch.shutdown();
+    }
+
+    /**
+     * This method is run by the SimulationPipeline object on the simulation
+     * thread after every frame is published. It queues a call to
+     * updateDisplay() on the event dispatch thread, unless one is queued
+     * already.
+     */
+    private void queueDisplayUpdate() {
+        if (displayUpdateQueued.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(displayUpdater);
+        }
+    }
+
+    /**
+     * This method is run on the event dispatch thread when frames have been
+     * published. The front image already shows the newest frame, so only
+     * dirtyRegion, the union of the sections that changed in every frame
+     * since the last repaint, is repainted, and nothing if it's empty. The
+     * frame is still taken from the SimulationPipeline object, though its
+     * cells aren't used, so that the simulation clock sees the frame
+     * displayed and the frames never displayed are counted.
+     */
+    private void updateDisplay() {
+        /* The flag is cleared before the frame is taken, so a frame published
+           after this point queues another update rather than being missed. */
+        displayUpdateQueued.set(false);
+        if (simulationPipeline.takeLatestFrame() == null) {
+            return;
+        }
+        synchronized (imageLock) {
+            if (!dirtyRegion.isEmpty()) {
+                repaint(dirtyRegion);
+                dirtyRegion.setSize(0, 0);
+            }
+        }
     }
 
     /**
      * This method is called when paint() or repaint() is called. It overrides
-     * JComponent.paintComponent(). It iterates over the CellGridSections,
-     * therewithin iterating across each one's cell grid and setting cells in
-     * the JComponent area to black or white to render the composite cells grid
-     * on-screen. According to a profiler, 87% of the work done by this program
-     * is done by fillRect() calls in this method.
+     * JComponent.paintComponent(). The front image was drawn by the worker
+     * threads, so it's painted with a single drawImage() call, with the image
+     * lock held so the images can't be swapped partway through. Only the
+     * pixels inside the clip are copied: the dirty rectangle when the repaint
+     * came from updateDisplay(), or the whole component when Swing asked for
+     * it.
      *
      * @param graphics A graphics object that is used to draw in the component.
      * @see javax.swing.JComponent
      * @see java.awt.Graphics
      */
     protected void paintComponent(final Graphics graphics) {
-
-        /* This array of 2-element int arrays stores coordinates that were not
-           set to black so they can later be set to white without iterating over
-           the CellGridSections object and each one's cell grid again. It is set
-           to cellGridHorizDim * cellGridVertDim in length so it can hold up to
-           the total cell grid size in cells of white coordinates. */
-        int[][] whiteCoords = new int[cellGridHorizDim * cellGridVertDim][2];
-        int whiteCoordsIndex = 0;
-
-        graphics.setColor(fieldColor);
-        graphics.fillRect(0, 0, canvasWidth, canvasHeight);
-        graphics.setColor(Color.BLACK);
-
-        /* These nested for loops iterate over the 2d array of CellGridSections,
-           and then iterate over each CellGridSection object's cell grid to find
-           1 values which mean a black cell can be drawn in the viewable area.
-           In order to correct for a display bug, the coordinates of 0 values
-           are stored to int[][] whiteCoords, which is later used to paint white
-           cells without needing another quadruply nested four loop. */
-        for (int outerHorizIndex = 0; outerHorizIndex < cellGridSections.length; outerHorizIndex++) {
-            for (int outerVertIndex = 0; outerVertIndex < cellGridSections[0].length; outerVertIndex++) {
-
-                /* These values are stored so they can be used without a full
-                   call path. */
-                int originHorizCoord = cellGridSections[outerHorizIndex][outerVertIndex].getOriginHorizCoord();
-                int originVertCoord = cellGridSections[outerHorizIndex][outerVertIndex].getOriginVertCoord();
-
-                for (int innerHorizIndex = 0;
-                     innerHorizIndex < cellGridSections[outerHorizIndex][outerVertIndex].getHorizDim();
-                     innerHorizIndex++) {
-                    for (int innerVertIndex = 0;
-                         innerVertIndex < cellGridSections[outerHorizIndex][outerVertIndex].getVertDim();
-                         innerVertIndex++) {
-                        if (cellGridSections[outerHorizIndex][outerVertIndex]
-                                .getDisplayCells()[innerHorizIndex][innerVertIndex] == 1) {
-                            graphics.fillRect((originHorizCoord + innerHorizIndex) * cellWidth,
-                                              (originVertCoord + innerVertIndex) * cellHeight,
-                                              cellWidth, cellHeight);
-                        } else {
-                            whiteCoords[whiteCoordsIndex][0] = originHorizCoord + innerHorizIndex + 1;
-                            whiteCoords[whiteCoordsIndex][1] = originVertCoord + innerVertIndex + 1;
-                            whiteCoordsIndex++;
-                        }
-                    }
-                }
-            }
-        }
-        /* I'm displeased by having to do this, but it seems
-           necessary. I was dealing with a weird bug where <a
-           href="https://conwaylife.com/wiki/File:Blinker.gif">blinkers</a> --
-           and only blinkers -- would hang and not update while the rest of the
-           automata continued to update. I dug into the update algorithm and
-           found the correct transformations were being done for the blinkers --
-           so it was a display issue.
-
-           I found that if I implemented this loop, which paints a 10px *white*
-           square in the component area for every *0* cell, the issue went away.
-           This is a major processing slowdown but I don't know any
-           other way to ensure the blinkers issue goes away. */
-        graphics.setColor(Color.WHITE);
-        for (int[] coordsPair : whiteCoords) {
-            /* The coordsPair array's 2-element arrays are initialized to 0.
-               The coordinates are always stored with +1 added to each one, so
-               valid 2-element arrays never contain a 0. When the first 0 value
-               is encountered, I know I've reached the beginning of the unused
-               pairs in the array and the loop can exit. */
-            if (coordsPair[0] == 0) {
-                break;
-            }
-            /* When coordinates are stored to this array, they're incremented
-               by 1 so that 0 values are never stored and 0 can be treated as
-               a signal value that means this loop has come to the end of the
-               used portion of the array. So here the values are decremented to
-               recover the original coordinate values. */
-            graphics.fillRect((coordsPair[0] - 1) * cellWidth, (coordsPair[1] - 1) * cellHeight,
-                               cellWidth, cellHeight);
+        synchronized (imageLock) {
+            frontRasterizer.paintImage(graphics);
         }
     }
 
     /**
      * This method is used to begin or resume the cellular automata
      * animation. It's called by the Start button in the GameOfLife class. It
-     * either instantiated a Timer object and starts it, or if one already
-     * exists it restarts it. The Timer object sends a "repaint" event to
-     * actionPerformed() every stepLengthMillis milliseconds (optimistically).
+     * starts the simulation thread of the SimulationPipeline object, which
+     * runs steps at the pace its SimulationClock sets and has the component
+     * repainted after each frame.
      *
      */
     public void startCellularAutomata() {
         if (!automataRunning) {
             automataRunning = true;
         }
-        if (animationTimer == null) {
-            animationTimer = new Timer(stepLengthMillis, this);
-            animationTimer.setActionCommand("repaint");
-            animationTimer.setRepeats(true);
-            animationTimer.start();
-        } else if (!animationTimer.isRunning()) {
-            animationTimer.restart();
-        }
+        simulationPipeline.start();
     }
 
     /**
      * This method is used to suspend the cellular automata animation. It's
      * called by the Stop button defined in the GameOfLife class. It stops
-     * the Timer object that is used to send regular repaint events to
-     * actionPerformed().
+     * the simulation thread, and returns once the step it was on is done.
      */
     public void stopCellularAutomata() {
         if (automataRunning) {
             automataRunning = false;
         }
-        animationTimer.stop();
-    }
-
-    /**
-     * This method is called by the Timer object set by startCellularAutomata()
-     * above, every stepLengthMillis milliseconds (optimistically). It calls
-     * cellGridDispatch.sectionsRunAlgorithm() to execute a single step of the
-     * algorithm.
-     *
-     * @param event The event sent to this method by the Timer object that this
-     *              class uses to regularly prompt steps of the algorithm so the
-     *              cellular automata animates. Its getActionCommand() method
-     *              should equal "repaint".
-     * @see javax.swing.Timer
-     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
-     */
-    public void actionPerformed(final ActionEvent event) {
-        if (event.getActionCommand().equals("repaint")) {
-            cellGridDispatch.sectionsRunAlgorithm();
-            repaint();
-        }
+        simulationPipeline.stop();
     }
 
     /**
      * An implementation of MouseListener.mouseClicked, as part of the
      * MouseListener interface. The pixel X and Y values are collected from the
      * event and used to determine a cell in the cell grid. If that cell is 1,
-     * it's set to 0; if 0, it's set to 1.
+     * it's set to 0; if 0, it's set to 1. The cell is inverted by
+     * invertCellAt(), run as an edit by the SimulationPipeline object so that
+     * it falls between steps, which then publishes a frame of the edited
+     * generation and calls repaint().
      *
      * @param event The event to be processed.
      * @see java.awt.event.MouseListener
      */
     public void mouseClicked(final MouseEvent event) {
 
+        /* The cells are 10 pixels on a side, so the X and Y values on the
+           MouseEvent object are interpreted to coordinates in the cell grid by
+           dividing them by 10 and rounding down. */
+        int horizCoord = (int) Math.floor((double) event.getX() / cellWidth);
+        int vertCoord = (int) Math.floor((double) event.getY() / cellHeight);
+
+        simulationPipeline.applyEdit(() -> invertCellAt(horizCoord, vertCoord));
+    }
+
+    /**
+     * This method inverts the cell at the given coordinates in the composite
+     * cell grid, finding the CellGridSection it falls in. The sections are
+     * looked up here rather than in mouseClicked(), since the cell grid may
+     * be cut into new sections between steps.
+     *
+     * @param horizCoord The horizontal coordinate of the cell.
+     * @param vertCoord  The vertical coordinate of the cell.
+     */
+    private void invertCellAt(final int horizCoord, final int vertCoord) {
+
         int moddedHorizCoord = 0;
         int moddedVertCoord = 0;
         int horizIndex = 0;
@@ -480,12 +1131,6 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
         int[] sectionHorizOrdinateBounds = new int[cellGridSections.length + 1];
         int[] sectionVertOrdinateBounds = new int[cellGridSections[0].length + 1];
 
-        /* The cells are 10 pixels on a side, so the X and Y values on the
-           MouseEvent object are interpreted to coordinates in the cell grid by
-           dividing them by 10 and rounding down. */
-        int horizCoord = (int) Math.floor((double) event.getX() / cellWidth);
-        int vertCoord = (int) Math.floor((double) event.getY() / cellHeight);
-
         /* sectionHorizOrdinateBounds is populated with the .originHorizCoord
            values from each CellGridSection in order, followed by
            cellGridHorizDim + 1 to mark the edge of the cell grid. */
@@ -516,7 +1161,7 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
                 break;
             }
         }
-        for (vertIndex = 0; vertIndex < cellGridSections.length; vertIndex++) {
+        for (vertIndex = 0; vertIndex < cellGridSections[0].length; vertIndex++) {
             if (sectionVertOrdinateBounds[vertIndex] <= vertCoord
                     && vertCoord < sectionVertOrdinateBounds[vertIndex + 1]) {
                 moddedVertCoord = vertCoord - sectionVertOrdinateBounds[vertIndex];
@@ -528,16 +1173,7 @@ public class CellGrid extends JComponent implements ActionListener, MouseListene
            CellGridSection where the click falls, and the moddedHorizCoord and
            moddedVertCoord that point to that cell in its cell grid, the cell at
            that point is set to 0 if it's 1 or 1 if it's 0. */
-        synchronized (cellGridSections[horizIndex][vertIndex].getDisplayCells()) {
-            if (cellGridSections[horizIndex][vertIndex].getDisplayCells()[moddedHorizCoord][moddedVertCoord] == 1) {
-                cellGridSections[horizIndex][vertIndex].getDisplayCells()[moddedHorizCoord][moddedVertCoord] = 0;
-            } else {
-                cellGridSections[horizIndex][vertIndex].getDisplayCells()[moddedHorizCoord][moddedVertCoord] = 1;
-            }
-        }
-
-        /* repaint() is called, which will trigger paintComponent above. */
-        repaint();
+        cellGridSections[horizIndex][vertIndex].invertCell(moddedHorizCoord, moddedVertCoord);
     }
 
     /**
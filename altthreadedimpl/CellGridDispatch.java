@@ -1,24 +1,42 @@
 package org.kmfahey.jgameoflife.altthreadedimpl;
 
-import java.util.ArrayList;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.kmfahey.jgameoflife.CellRasterizer;
+import org.kmfahey.jgameoflife.GenerationFrame;
 
 /**
  * This class implements a worker-threads-manager that instances and maintains
- * communication with (currently) 16 worker threads each of which is running
- * a CellGridSection object's run() method. Monitor objects are used to
- * notifyAll() the worker threads into action, and then wait() on their notify()
- * calls; but the actual communication of task states is managed using 16
- * 1-capacity ArrayBlockingQueue&lt;Integer&gt; objects which hold signal values
- * that are passed back and forth. This object is instanced by the controlling
- * CellGrid object, and uses the CellGridSection objects that it suppplies to
- * this class's constructor.
+ * communication with (currently) 16 worker threads, each of which runs the
+ * tasks of one CellGridSection object. This object is instanced by the
+ * controlling CellGrid object, and uses the CellGridSection objects that it
+ * suppplies to this class's constructor.
+ * <p>
+ * A task is handed out by writing its mode flag and advancing the dispatch
+ * counter, which every worker thread waits on; each worker runs the task on
+ * its section if the section is selected, and then meets the others and the
+ * main thread at a GenerationBarrier. A generation of the algorithm is a
+ * single task and a single barrier: the worker threads compute their
+ * sections' next generations into their update arrays, which no other thread
+ * reads, and the last thread to reach the barrier makes those the display
+ * arrays for every section at once. How the threads wait, between tasks and at
+ * the barrier, is up to the WaitStrategy the object is constructed with.
+ * <p>
+ * When the sections keep their cells in a SharedCellGrid, the halo around its
+ * edges is wrapped before each generation is handed out, and the barrier
+ * action rotates its arrays once for every section, rather than each section
+ * swapping its own.
+ * <p>
+ * Sections that have settled are put to sleep between generations. Sleeping
+ * sections aren't given update work; the barrier action advances them with
+ * CellGridSection.algorithmSleepStep(), which is only a swap.
  *
  * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
  * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridSection
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.GenerationBarrier
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.ForkJoinDispatch
  */
-public class CellGridDispatch {
+public class CellGridDispatch implements SectionDispatch {
 
     /** This CellGridSection[] array stores the CellGridSection objects that
         manage the individual portions of the composite cell grid used in this
@@ -30,29 +48,49 @@ public class CellGridDispatch {
         to. */
     private Thread[] threadArray;
 
-    /** This Object object holds the monitor object that worker threads wait()
-        on and this object in the main thread notifyAll()s on. This thread doesn't
-        wait() on it and the worker threads don't notify() on it. */
-    private final Object mainToThreadsMonitor = new Object();
+    /** This SharedCellGrid object holds the cells of every section, or is null
+        if the sections store their cells bit-packed. */
+    private final SharedCellGrid sharedCellGrid;
 
-    /** This Object object holds the monitor object that worker threads notify()
-        on and this object in the main thread wait()s on. This thread doesn't
-        notify() on it and the worker threads don't wait() on it. */
-    private final Object threadsToMainMonitor = new Object();
+    /** This WaitStrategy object determines how the worker threads wait for
+        tasks and how every thread waits at the barrier. */
+    private final WaitStrategy waitStrategy;
 
-    /** This ArrayList&lt;ArrayBlockingQueue&lt;Integer&gt;&gt; stores the
-        ArrayBlockingQueue&lt;Integer&gt; objects used to communicate signal
-        values to each thread. There is one for every thread in the threadArray
-        and every CellGridSection object in the cellGridSections array, at the
-        same indexes. */
-    private volatile ArrayList<ArrayBlockingQueue<Integer>> modeFlagQueues;
+    /** This GenerationBarrier object is where the worker threads and the main
+        thread meet at the end of every task. Its parties are the worker
+        threads, at their section indexes, and the main thread, at the index
+        after the last of them. */
+    private final GenerationBarrier generationBarrier;
+
+    /** This AtomicInteger counts the tasks handed out. Worker threads wait on
+        it to change; the mode flag and selection of the task are written
+        before it's advanced, so they're visible to every worker that sees the
+        new count. */
+    private final AtomicInteger dispatchCount = new AtomicInteger();
+
+    /** This int holds the mode flag of the current task, one of the
+        CellGridSection.MODE_* constants. */
+    private int dispatchedRunMode;
+
+    /** This boolean[] array holds, for each section, whether the current task
+        is to be run on it. */
+    private boolean[] dispatchedSections;
+
+    /** This boolean[] array holds, for each section, whether it's to be
+        stepped by the next task. It's filled in place before every step,
+        rather than allocated, and only used with this object's lock held. */
+    private boolean[] stepSections;
+
+    /** This boolean[] array is true for every section, for the tasks that
+        run on all of them. It's never changed after it's filled. */
+    private boolean[] allSections;
+
+    /** This boolean is set by shutdown() before it hands out its task, to
+        tell the worker threads to return once they reach the barrier. */
+    private boolean workersStopping;
 
     /**
-     * This method initializes the object and set instance variables. It's
-     * called with a 2d array of CellGridSection objects, which it copies to a
-     * single array and discards. It sets monitor objects and a queue object
-     * on each CellGridSection objects, then instances a Thread around each
-     * CellGridSection object and start()s it.
+     * This method initializes the object with the park wait strategy.
      *
      * @param sectionObjs A 2d array of CellGridSection objects, which this
      *                    object will delegate tasks to.
@@ -60,6 +98,23 @@ public class CellGridDispatch {
      * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridSection
      */
     public CellGridDispatch(final CellGridSection[][] sectionObjs) {
+        this(sectionObjs, new ParkWaitStrategy());
+    }
+
+    /**
+     * This method initializes the object and set instance variables. It's
+     * called with a 2d array of CellGridSection objects, which it copies to a
+     * single array and discards. It then instances a worker thread for each
+     * CellGridSection object and start()s it.
+     *
+     * @param sectionObjs     A 2d array of CellGridSection objects, which
+     *                        this object will delegate tasks to.
+     * @param waitStrategyVal The way the worker threads and the main thread
+     *                        wait for each other.
+     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
+     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridSection
+     */
+    public CellGridDispatch(final CellGridSection[][] sectionObjs, final WaitStrategy waitStrategyVal) {
         /* This iterator variable is used across two for loops looping on other
            variables in order to keep track of the insertion point in the
            cellGridSections array. */
@@ -67,13 +122,12 @@ public class CellGridDispatch {
 
         cellGridSections = new CellGridSection[sectionObjs.length * sectionObjs[0].length];
         threadArray = new Thread[cellGridSections.length];
-        modeFlagQueues = new ArrayList<ArrayBlockingQueue<Integer>>();
-
-        /* This loop populates the modeFlagQueue object with
-           ArrayBlockingQueue<Integer> objects. */
-        for (int index = 0; index < cellGridSections.length; index++) {
-            modeFlagQueues.add(new ArrayBlockingQueue<Integer>(1));
-        }
+        dispatchedSections = new boolean[cellGridSections.length];
+        stepSections = new boolean[cellGridSections.length];
+        allSections = new boolean[cellGridSections.length];
+        Arrays.fill(allSections, true);
+        waitStrategy = waitStrategyVal;
+        generationBarrier = new GenerationBarrier(cellGridSections.length + 1, this::finishTask, waitStrategy);
 
         /* This loop copies the contents of the 2d sectionObjs array to a single
            array cellGridSections. */
@@ -84,25 +138,90 @@ public class CellGridDispatch {
             }
         }
 
-        /* This loop sets two monitor objects on each CellGridSection object,
-           and also supplies its designated ArrayBlockingQueue<Integer> object
-           out of the array of same. */
-        for (int index = 0; index < cellGridSections.length; index++) {
-            cellGridSections[index].setMonitors(mainToThreadsMonitor, threadsToMainMonitor);
-            cellGridSections[index].setModeFlagQueue(modeFlagQueues.get(index));
-        }
+        /* Every section of a cell grid is a view of the same SharedCellGrid,
+           if it has one at all. */
+        sharedCellGrid = cellGridSections[0].getSharedCellGrid();
 
-        /* This loop instantiates a Thread object around each CellGridSection
-           object in the array of them, sets a name, and then start()s it. Its
-           run() method is immediately called, but because its queue is empty,
-           it goes directly to wait()ing. */
+        /* This loop instantiates a Thread object around the worker loop for
+           each CellGridSection object, sets a name, and then start()s it. The
+           threads are daemons, so that a spinning wait strategy can't keep
+           the program running once the window is closed. */
         for (int index = 0; index < threadArray.length; index++) {
-            threadArray[index] = new Thread(cellGridSections[index]);
+            final int sectionIndex = index;
+            threadArray[index] = new Thread(() -> runWorker(sectionIndex));
             threadArray[index].setName(String.valueOf(index));
+            threadArray[index].setDaemon(true);
             threadArray[index].start();
         }
     }
 
+    /**
+     * This method is the loop each worker thread runs until shutdown() is
+     * called. It waits for a task to be handed out, runs it on its section if
+     * the section was selected, and then waits at the barrier.
+     *
+     * @param sectionIndex The index of the worker thread's section in the
+     *                     cellGridSections array, which is also its party
+     *                     index at the barrier.
+     */
+    private void runWorker(final int sectionIndex) {
+        CellGridSection cellGridSection = cellGridSections[sectionIndex];
+        int seenDispatch = 0;
+        while (true) {
+            waitStrategy.awaitChange(dispatchCount, seenDispatch);
+            seenDispatch = dispatchCount.get();
+            if (workersStopping) {
+                generationBarrier.await(sectionIndex);
+                return;
+            }
+            if (dispatchedSections[sectionIndex]) {
+                cellGridSection.runMode(dispatchedRunMode);
+            }
+            generationBarrier.await(sectionIndex);
+        }
+    }
+
+    /**
+     * This method is the barrier action, run by the last thread to reach the
+     * barrier once every selected section has finished the task. After a
+     * MODE_STEP task, it makes each awake section's new generation its
+     * display generation, advances the sleeping sections, and has every
+     * section decide whether it sleeps through the next generation. After a
+     * MODE_DISPLAY task, it rotates the arrays of the SharedCellGrid, if
+     * there is one, and after a MODE_BLOCK_STEP task it rotates them and
+     * refreshes the sleep states. No worker thread is reading any section
+     * then, so none of this needs to be synchronized.
+     */
+    private void finishTask() {
+        if (workersStopping) {
+            return;
+        } else if (dispatchedRunMode == CellGridSection.MODE_DISPLAY && sharedCellGrid != null) {
+            sharedCellGrid.rotateGenerations();
+            return;
+        } else if (dispatchedRunMode == CellGridSection.MODE_BLOCK_STEP) {
+            sharedCellGrid.rotateGenerations();
+            for (CellGridSection cellGridSection : cellGridSections) {
+                cellGridSection.refreshSleepState();
+            }
+            return;
+        } else if (dispatchedRunMode != CellGridSection.MODE_STEP) {
+            return;
+        }
+        for (int index = 0; index < cellGridSections.length; index++) {
+            if (dispatchedSections[index]) {
+                cellGridSections[index].algorithmSwapStep();
+            } else {
+                cellGridSections[index].algorithmSleepStep();
+            }
+        }
+        if (sharedCellGrid != null) {
+            sharedCellGrid.rotateGenerations();
+        }
+        for (CellGridSection cellGridSection : cellGridSections) {
+            cellGridSection.refreshSleepState();
+        }
+    }
+
     /**
      * This method is shorthand for calling delegateRunMode with the MODE_SEED
      * flag to cause the composite cells grid to be populated with randomly
@@ -121,116 +240,141 @@ public class CellGridDispatch {
     }
 
     /**
-     * This method is shorthand for calling delegateRunMode with the MODE_UPDATE
-     * and MODE_DISPLAY flags to effect a single step in the game of life
-     * algorithm.
+     * This method effects a single step in the game of life algorithm. It
+     * hands the MODE_STEP task to the sections that are awake; the barrier
+     * action that ends the task swaps in their new generations, steps the
+     * sleeping sections, and has every section decide whether it sleeps
+     * through the next step.
      */
-    public void sectionsRunAlgorithm() {
-        delegateRunMode(CellGridSection.MODE_UPDATE);
-        delegateRunMode(CellGridSection.MODE_DISPLAY);
+    public synchronized void sectionsRunAlgorithm() {
+        for (int index = 0; index < cellGridSections.length; index++) {
+            stepSections[index] = cellGridSections[index].isAwake();
+        }
+        delegateRunMode(CellGridSection.MODE_STEP, stepSections);
     }
 
     /**
-     * This method accepts a CellGridSection constant execution mode flag and
-     * distributes it to worker threads to execute the matching method on all
-     * (currently) 16 CellGridSection objects. More spewcifically, it uses
-     * 1-capacity ArrayBlockingQueue&lt;Integer&gt; queues to distribute it to
-     * the CellGridSection.run() methods running in worker threads, notifyAll()s
-     * to wake them up, wait()s untl the queues have been repopulated with
-     * CellGridSection.FINISHED flags, collects them and completes.
+     * This method effects a number of steps in the game of life algorithm as
+     * a single task. Every section computes that many generations of its
+     * region from a ghost zone as wide, with
+     * CellGridSection.algorithmBlockStep(), so the threads meet once for the
+     * lot rather than once per generation. Sleeping sections are woken, since
+     * the block step can't tell whether they've settled. A single generation
+     * is left to sectionsRunAlgorithm().
      *
-     * @param runMode An integer flag, one of CellGridSection.MODE_CLEAR,
-     *                CellGridSection.MODE_SEED, CellGridSection.MODE_DISPLAY,
-     *                CellGridSection.MODE_or UPDATE.
-     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridSection
+     * @param generationCount The number of generations to step, no more than
+     *                        the width of the halo of the SharedCellGrid.
      */
-    public void delegateRunMode(final int runMode) {
-        final int sleepIntervalMillis = 10;
-
-        synchronized (modeFlagQueues) {
-            /* The fancy one-liner that's the conditional for this while loop
-               filters modeFlagQueues using a lambda expression and returns true
-               if at least one of the 1-capacity queues doesn't contain the
-               runMode flag yet. It's used to repeat the operation that inserts
-               the runMode in each queue until all queues have been populated,
-               in case an InterruptedException breaks the execution of that
-               process. */
-            alldlgtd:
-            while (modeFlagQueues.stream()
-                   .filter(abq -> !Objects.equals(abq.peek(), runMode))
-                   .findFirst().isPresent()) {
-                for (int index = 0; index < modeFlagQueues.size(); index++) {
-                    try {
-                        if (Objects.isNull(modeFlagQueues.get(index).peek())) {
-                            modeFlagQueues.get(index).put(runMode);
-                        }
-                    } catch (InterruptedException exception) {
-                        continue alldlgtd;
-                    }
-                }
-            }
+    public synchronized void sectionsRunGenerations(final int generationCount) {
+        if (generationCount == 1) {
+            sectionsRunAlgorithm();
+            return;
         }
-        /* The one-liner that's the conditional for this while loop filters
-           modeFlagQueues using a lambda expression and returns true if at
-           least one of the 1-capacity queues still contains the runMode flag
-           that was put in it. This loop repeatedly send notifyAll(); the
-           CellGridSection.run() method that's waiting on the signal responds
-           by removing the runMode flag from the queue, which signals that it's
-           started the task. This loop repeats until all the threads have so
-           signalled. */
-        while (modeFlagQueues.stream()
-               .filter(abq -> Objects.equals(abq.peek(), runMode))
-               .findFirst().isPresent()) {
-            int notifiedCount = 0;
-            synchronized (mainToThreadsMonitor) {
-                mainToThreadsMonitor.notifyAll();
-            }
-            try {
-                Thread.sleep(sleepIntervalMillis);
-            } catch (InterruptedException exception) {
-                continue;
-            }
+        for (CellGridSection cellGridSection : cellGridSections) {
+            cellGridSection.setBlockGenerations(generationCount);
         }
-        /* The one-liner that's the conditional for this while loop filters
-           modeFlagQueues using a lambda expression and returns true
-           if at least one of the 1-capacity queues doesn't contain a
-           CellGridSection.FINISHED signal value. The body of the loop wait()s
-           on signals from the worker threads. CellGridSection.run() inserts a
-           FINISHED value in the queue and then notify()s this thread. The loop
-           repeats until all (currently) 16 worker threads have so signalled. */
-        allfinshd:
-        while (modeFlagQueues.stream()
-                          .filter(abq -> !Objects.equals(abq.peek(), CellGridSection.FINISHED))
-                          .findFirst().isPresent()) {
-            int notifiedCount = 0;
-            synchronized (threadsToMainMonitor) {
-                try {
-                    threadsToMainMonitor.wait();
-                } catch (InterruptedException exception) {
-                    continue allfinshd;
-                }
-            }
+        delegateRunMode(CellGridSection.MODE_BLOCK_STEP);
+    }
+
+    /**
+     * This method has every section copy its displayed generation into a
+     * frame and draw it into a rasterizer's image, with the MODE_RENDER
+     * task. The threads meet at the barrier once, when every section is
+     * drawn.
+     *
+     * @param targetFrame      The frame to copy the cells into, already reset
+     *                         to the size of the cell grid.
+     * @param targetRasterizer The rasterizer to draw them with.
+     * @param imageIndex       Which of the two images the rasterizer holds,
+     *                         0 or 1.
+     */
+    public void renderSections(final GenerationFrame targetFrame, final CellRasterizer targetRasterizer,
+                               final int imageIndex) {
+        for (CellGridSection cellGridSection : cellGridSections) {
+            cellGridSection.setRenderTarget(targetFrame, targetRasterizer, imageIndex);
         }
-        /* The one-liner that's the conditional for this while loop filters
-           modeFlagQueues using a lambda expression and returns true if at
-           least one of the 1-capacity queues still has a nonzero size.
-           The body of the loop attempts to empty each queue, but since an
-           InterruptedException can upset that operation, a while loop is used
-           to ensure the loop is restarted as many times as needed to empty all
-           16 of them. */
-        emptyqs:
-        while (modeFlagQueues.stream()
-                        .filter(abq -> abq.size() == 1).findFirst().isPresent()) {
-            for (int index = 0; index < modeFlagQueues.size(); index++) {
-                if (modeFlagQueues.get(index).size() == 0) {
-                    continue;
-                }
-                try {
-                    modeFlagQueues.get(index).take();
-                } catch (InterruptedException exception) {
-                    continue emptyqs;
-                }
+        delegateRunMode(CellGridSection.MODE_RENDER);
+    }
+
+    /**
+     * This method counts the sections that are awake. It's a diagnostic for
+     * how much of the cell grid is still being computed.
+     *
+     * @return The number of CellGridSection objects that are awake.
+     */
+    public int getAwakeSectionCount() {
+        int awakeCount = 0;
+        for (CellGridSection cellGridSection : cellGridSections) {
+            if (cellGridSection.isAwake()) {
+                awakeCount++;
             }
         }
+        return awakeCount;
+    }
+
+    /**
+     * This method is an accessor for the private waitStrategy variable.
+     *
+     * @return The WaitStrategy object the threads wait with.
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * This method stops the worker threads. It returns once all of them have
+     * reached the barrier, after which they return from their loops. No task
+     * can be delegated afterward.
+     */
+    public synchronized void shutdown() {
+        workersStopping = true;
+        Arrays.fill(stepSections, false);
+        delegateRunMode(CellGridSection.MODE_STEP, stepSections);
+    }
+
+    /**
+     * This method calls delegateRunMode with the given flag for every one of
+     * the (currently) 16 CellGridSection objects.
+     *
+     * @param runMode An integer flag, one of CellGridSection.MODE_CLEAR,
+     *                CellGridSection.MODE_SEED, CellGridSection.MODE_UPDATE,
+     *                CellGridSection.MODE_DISPLAY or CellGridSection.MODE_STEP.
+     */
+    public void delegateRunMode(final int runMode) {
+        delegateRunMode(runMode, allSections);
+    }
+
+    /**
+     * This method accepts a CellGridSection constant execution mode flag and
+     * has the worker threads execute the matching method on the selected
+     * CellGridSection objects. It writes the flag and the selection, advances
+     * the dispatch counter to release the worker threads, and then waits at
+     * the barrier until all of them have finished. Before a task that reads
+     * the cells beyond the edges of the cell grid, it wraps the halo of the
+     * SharedCellGrid, if there is one. Every worker thread reaches
+     * the barrier, whether or not its section was selected, so the barrier
+     * always has the same parties.
+     *
+     * @param runMode          An integer flag, one of
+     *                         CellGridSection.MODE_CLEAR,
+     *                         CellGridSection.MODE_SEED,
+     *                         CellGridSection.MODE_UPDATE,
+     *                         CellGridSection.MODE_DISPLAY or
+     *                         CellGridSection.MODE_STEP.
+     * @param selectedSections A boolean array with an element for each
+     *                         section, true for the sections that should
+     *                         run the task.
+     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridSection
+     */
+    public synchronized void delegateRunMode(final int runMode, final boolean[] selectedSections) {
+        if (sharedCellGrid != null && (runMode == CellGridSection.MODE_STEP || runMode == CellGridSection.MODE_UPDATE
+                                       || runMode == CellGridSection.MODE_BLOCK_STEP)) {
+            sharedCellGrid.wrapHaloCells();
+        }
+        dispatchedRunMode = runMode;
+        System.arraycopy(selectedSections, 0, dispatchedSections, 0, dispatchedSections.length);
+        dispatchCount.incrementAndGet();
+        waitStrategy.signalChange(threadArray);
+        generationBarrier.await(cellGridSections.length);
     }
 }
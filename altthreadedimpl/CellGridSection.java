@@ -1,9 +1,16 @@
 package org.kmfahey.jgameoflife.altthreadedimpl;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.CyclicBarrier;
+import java.util.Arrays;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.Iterator;
+import org.kmfahey.jgameoflife.BitPackedGridEngine;
+import org.kmfahey.jgameoflife.CellRasterizer;
+import org.kmfahey.jgameoflife.GenerationFrame;
+import org.kmfahey.jgameoflife.LargerThanLifeGridEngine;
+import org.kmfahey.jgameoflife.LargerThanLifeRule;
+import org.kmfahey.jgameoflife.LifeRule;
+import org.kmfahey.jgameoflife.VectorGridEngine;
+import org.kmfahey.jgameoflife.WordRowKernel;
 
 /**
  * This class implements a portion of the composite cell grid maintained by
@@ -12,11 +19,33 @@ import java.util.Iterator;
  * eight of its neighboring CellGridSection objects so that it can complete
  * calculations of the sum of neighboring cells for cells located on the edge or
  * in the corner of the region of the cells grid that it maintains.
+ * <p>
+ * A section can store its cells either one per int, or bit-packed 64 per
+ * long in rows laid out the way BitPackedGridEngine lays them out, in which
+ * case its update step is computed a word at a time by
+ * BitPackedGridEngine.stepRowWords(). One-per-int cells aren't stored by the
+ * section at all: every section of the cell grid is a view of a range of the
+ * rows and columns of one SharedCellGrid object, so a cell on the edge of the
+ * section reads its neighbors in the next section over directly, with no
+ * locking, and no different from any other cell. It can also step a Larger
+ * than Life rule, for which it copies out its region with a halo as wide as
+ * the rule's radius and counts each cell's neighborhood from a summed-area
+ * table.
+ * <p>
+ * A section also keeps the generation before the one it displays, so that it
+ * can tell when its region has settled into still lifes and period-2
+ * oscillators. Once it has, and the edges of its eight neighbors have settled
+ * too, it goes to sleep: CellGridDispatch stops handing it update work, and
+ * instead calls algorithmSleepStep(), which advances a period-2 region by
+ * just swapping its two generations, or for cells in a SharedCellGrid, by
+ * copying the previous one into the update array. It's woken when the edge of
+ * a neighbor stops repeating with period 2, or when one of its cells is set.
  *
  * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
  * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
+ * @see org.kmfahey.jgameoflife.BitPackedGridEngine
  */
-public class CellGridSection implements Runnable {
+public class CellGridSection {
 
     /** This int constant is a signal value used to signify the compass
         direction north. */
@@ -50,10 +79,6 @@ public class CellGridSection implements Runnable {
         direction northwest. */
     public static final int NORTHWEST = 7;
 
-    /** This int constant is a signal value used to signify that a distributed
-        processing task is complete. */
-    public static final int FINISHED = 0;
-
     /** This int constant is a signal value used to signify a distributed
         processing task that calls clearCellGrid(). */
     public static final int MODE_CLEAR = 1;
@@ -70,11 +95,43 @@ public class CellGridSection implements Runnable {
         processing task that calls algorithmDisplayStep(). */
     public static final int MODE_DISPLAY = 4;
 
-    /** This ArrayBlockingQueue&lt;Integer&gt; object holds the 1-capacity queue
-        used to pass signal values back and forth between this object running
-        in a worker thread and the CellGridDispatch object running in the main
-        thread. */
-    public volatile ArrayBlockingQueue<Integer> modeFlagQueue;
+    /** This int constant is a signal value used to signify a distributed
+        processing task that calls algorithmUpdateStep() and then
+        algorithmSettleStep(), leaving the new generation for
+        algorithmSwapStep() to display once every section has computed its
+        own. */
+    public static final int MODE_STEP = 5;
+
+    /** This int constant is a signal value used to signify a distributed
+        processing task that calls algorithmBlockStep(), computing
+        blockGenerations generations at once. */
+    public static final int MODE_BLOCK_STEP = 6;
+
+    /** This int constant is a signal value used to signify a distributed
+        processing task that calls algorithmRenderStep(), copying this
+        object's displayed generation into renderFrame and drawing it into
+        the image of renderRasterizer. */
+    public static final int MODE_RENDER = 7;
+
+    /** This int constant is a signal value used to signify a section that
+        stores one cell per int in int[][] arrays. */
+    public static final int ENGINE_INT_ARRAY = 0;
+
+    /** This int constant is a signal value used to signify a section that
+        stores its cells bit-packed, 64 per long. */
+    public static final int ENGINE_BIT_PACKED = 1;
+
+    /** This int constant is a signal value used to signify a section that
+        stores its cells bit-packed and steps them with the vectorized row
+        kernel.
+        @see org.kmfahey.jgameoflife.VectorGridEngine */
+    public static final int ENGINE_VECTOR = 2;
+
+    /** This int constant is a signal value used to signify a section that
+        stores one cell per int and steps a Larger than Life rule, counting
+        each cell's neighborhood from a summed-area table.
+        @see org.kmfahey.jgameoflife.LargerThanLifeGridEngine */
+    public static final int ENGINE_LARGER_THAN_LIFE = 3;
 
     /** This CellGridSection object is the one that neighbors this object
         to the north.
@@ -116,51 +173,177 @@ public class CellGridSection implements Runnable {
         @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid */
     private CellGridSection northWestNeighbor;
 
-    /** This Object is the monitor object this object running in a worker thread
-        wait()s on, and the main thread notifyAll()s on. This object does not
-        notify() on it.
-        @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch */
-    private Object mainToThreadsMonitor;
-
-    /** This Object is the monitor object used by this object running in a
-        worker thread to notify() the main thread. This object does not wait()
-        on it.
-        @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch */
-    private Object threadsToMainMonitor;
-
-    /** This int[][] array is the alternate hidden cell grid used in
-        algorithmUpdateStep() and algorithmDisplayStep() to temporarily hold the
-        computed values of the next generation of the cellular automata before
-        they're copied back into the main int[][] displayCells array. */
-    private volatile int[][] updateCells;
-
-    /** This int[][] array is the cell grid used to store the 0 and 1 values
-        that represent 'dead' and 'live' cells, and is the array consulted by
-        CellGrid when it's rendering the cells grid to the viewable area of the
-        GUI.
+    /** This SharedCellGrid object holds the cells of this object's region,
+        along with those of every other section of the cell grid, when this
+        object stores its cells one per int; it's null if this object stores
+        them bit-packed. The region is the horizDim columns starting at
+        originHorizCoord of the vertDim rows starting at originVertCoord.
         @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid */
-    private volatile int[][] displayCells;
+    private SharedCellGrid sharedCellGrid;
+
+    /** This int holds one of the constants ENGINE_INT_ARRAY,
+        ENGINE_BIT_PACKED, ENGINE_VECTOR or ENGINE_LARGER_THAN_LIFE, and
+        determines how this object stores and steps its cells. */
+    private int engineFlag;
+
+    /** This LifeRule object is the rule this object steps its cells by. */
+    private LifeRule lifeRule;
+
+    /** This LargerThanLifeRule object is the rule this object steps its cells
+        by when engineFlag is ENGINE_LARGER_THAN_LIFE, or null otherwise. */
+    private LargerThanLifeRule largerThanLifeRule;
+
+    /** This int is the width of the halo of cells beyond this object's edges
+        that the next generation of its region depends on: 1 for Life-like
+        rules, or the radius of a Larger than Life rule. It's also the width of
+        the edge band that's compared to decide whether the edges settled. */
+    private int haloRadius = 1;
+
+    /** This byte[] array holds this object's region padded by haloRadius
+        cells on every side, at index ((vertIndex + haloRadius) *
+        paddedHorizDim + horizIndex + haloRadius), when engineFlag is
+        ENGINE_LARGER_THAN_LIFE. */
+    private byte[] paddedCells;
+
+    /** This int is the horizontal dimension of paddedCells. */
+    private int paddedHorizDim;
+
+    /** This int[] array holds the summed-area table of paddedCells. */
+    private int[] summedAreaTable;
 
-    /** This int is the number of cells in the vertical dimension of the
-        displayCells array. */
+    /** This boolean is true if this object stores its cells bit-packed in
+        displayRows and updateRows rather than one per int in
+        sharedCellGrid. */
+    private boolean bitPacked;
+
+    /** This WordRowKernel object is the row kernel used to step the rows of
+        this object's region when engineFlag is ENGINE_VECTOR. */
+    private WordRowKernel rowKernel;
+
+    /** This long[][] array holds references to the rows of this object's
+        region, preceded by the north halo row and followed by the south halo
+        row, for use with VectorGridEngine.stepRowBand(). */
+    private long[][] bandRows;
+
+    /** These long[][] arrays are the scratch rows that
+        VectorGridEngine.stepRowBand() shifts bandRows into. */
+    private long[][] westBandRows;
+    private long[][] eastBandRows;
+
+    /** This long[][] array holds the displayed generation of this object's
+        region when bitPacked is true. It's indexed
+        [vertIndex][wordIndex], and the cell at horizIndex is kept in bit
+        horizIndex + 1 of its row.
+        @see org.kmfahey.jgameoflife.BitPackedGridEngine */
+    private long[][] displayRows;
+
+    /** This long[][] array holds the generation being computed when
+        bitPacked is true. */
+    private long[][] updateRows;
+
+    /** This long[][] array holds the generation before the displayed one
+        when bitPacked is true. */
+    private long[][] previousRows;
+
+    /** This long[] array holds a mask for each word of a bit-packed row with
+        the bits that hold cells set and the halo bits cleared. */
+    private long[] cellWordMasks;
+
+    /** These long[] arrays hold the bit-packed rows of cells just beyond the
+        north and south edges of this object's region, which are gathered from
+        the neighboring objects before every bit-packed update step. */
+    private long[] northHaloRow;
+    private long[] southHaloRow;
+
+    /** This int is the number of longs in each bit-packed row. */
+    private int wordsPerRow;
+
+    /** This int is the number of cells in the vertical dimension of this
+        object's region. */
     private int horizDim;
 
-    /** This int is the number of cells in the vertical dimension of the
-        displayCells array. */
+    /** This int is the number of cells in the vertical dimension of this
+        object's region. */
     private int vertDim;
 
-    /** This int is the maximum value of the horizontal dimension of the
-        displayCells array. */
+    /** This int is the maximum value of the horizontal dimension of this
+        object's region. */
     private int maxHoriz;
 
-    /** This int is the maximum value of the vertical dimension of the
-        displayCells array. */
+    /** This int is the maximum value of the vertical dimension of this
+        object's region. */
     private int maxVert;
 
     /** This int is the horizontal coordinate of the upper left corner of
         this object's cells grid in the composite cells grid it is a part of. */
     private int originHorizCoord;
 
+    /** This boolean is true while this object is asleep, and CellGridDispatch
+        calls algorithmSleepStep() in place of delegating it a step. */
+    private volatile boolean asleep;
+
+    /** This boolean is true if the last generation computed for this object's
+        region differed anywhere from the generation two before it. */
+    private volatile boolean regionUnsettled = true;
+
+    /** This boolean is true if the last generation computed for this object's
+        region differed along its edges from the generation two before it,
+        which means the halos of its neighbors aren't repeating. */
+    private volatile boolean edgeUnsettled = true;
+
+    /** This int counts the generations computed since a cell in this object's
+        region was last set, up to 2. Until it reaches 2, the previous
+        generation doesn't necessarily lead to the displayed one, and can't be
+        compared against. */
+    private int generationsSinceEdit;
+
+    /** This int is the number of generations algorithmBlockStep() computes,
+        which is also the width of the ghost zone it copies around this
+        object's region. */
+    private int blockGenerations = 1;
+
+    /** These int[] arrays hold this object's region and its ghost zone while
+        algorithmBlockStep() steps them, at index (blockVert * (horizDim + 2 *
+        blockGenerations) + blockHoriz). They're allocated on first use. */
+    private int[] blockCells;
+    private int[] blockNextCells;
+
+    /** This GenerationFrame object is the frame algorithmRenderStep() copies
+        this object's region into. It's set by the dispatcher before it hands
+        out a MODE_RENDER task. */
+    private GenerationFrame renderFrame;
+
+    /** This CellRasterizer object is the one algorithmRenderStep() draws
+        this object's region of renderFrame with. */
+    private CellRasterizer renderRasterizer;
+
+    /** This int is 0 or 1, for which of the two images CellGrid draws into
+        alternately renderRasterizer holds. */
+    private int renderImageIndex;
+
+    /** This long stamps the cells of this object's displayed generation: two
+        generations with the same stamp have the same cells. It's replaced
+        with a new stamp whenever the cells change, and swapped with
+        previousStamp when a sleeping region swaps its two generations. The
+        two start out different, since a section made over cells a
+        SharedCellGrid already holds doesn't know its previous generation. */
+    private long displayStamp = 0L;
+
+    /** This long stamps the cells of this object's previous generation. */
+    private long previousStamp = 1L;
+
+    /** This long is the last stamp handed out by newStamp(). */
+    private long lastStamp = 1L;
+
+    /** This long[] array holds the stamp of the generation last drawn into
+        each of the two images, or -1 if this object hasn't drawn into it. */
+    private final long[] drawnStamps = {-1L, -1L};
+
+    /** This boolean is true if the last algorithmRenderStep() left this
+        object's region of its image different from the same region of the
+        other image, so it has to be repainted once the images are swapped. */
+    private boolean renderChanged;
+
     /** This int is the vertical coordinate of the upper left corner of
         this object's cells grid in the composite cells grid it is a part of. */
     private int originVertCoord;
@@ -181,57 +364,151 @@ public class CellGridSection implements Runnable {
      * @param originVertCoordVal  The vertical coordinate of the upper left
      *                            corner of this object's cells grid in the
      *                            composite cells grid it is a part of.
+     * @param sharedCellGridVal   The store of cells that this object's
+     *                            region is a view of.
      * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
      */
     public CellGridSection(final int cellsWidth, final int cellsHeight,
-                           final int originHorizCoordVal, final int originVertCoordVal) {
+                           final int originHorizCoordVal, final int originVertCoordVal,
+                           final SharedCellGrid sharedCellGridVal) {
+        this(cellsWidth, cellsHeight, originHorizCoordVal, originVertCoordVal, ENGINE_INT_ARRAY, LifeRule.CONWAY,
+             sharedCellGridVal);
+    }
+
+    /**
+     * This method initializes the CellGridSection object, setting instance
+     * variables and allocating the cell storage called for by the engine
+     * flag.
+     *
+     * @param cellsWidth          The width of the portion of the cells grid
+     *                            that's been delegated to this object, in
+     *                            cells.
+     * @param cellsHeight         The height of the portion of the cells grid
+     *                            that's been delegated to this object, in
+     *                            cells.
+     * @param originHorizCoordVal The horizontal coordinate of the upper left
+     *                            corner of this object's cells grid in the
+     *                            composite cells grid it is a part of.
+     * @param originVertCoordVal  The vertical coordinate of the upper left
+     *                            corner of this object's cells grid in the
+     *                            composite cells grid it is a part of.
+     * @param engineFlagVal       One of the constants ENGINE_BIT_PACKED or
+     *                            ENGINE_VECTOR.
+     * @param lifeRuleVal         The rule to step the cells by.
+     * @throws IllegalArgumentException If the engine flag is ENGINE_INT_ARRAY,
+     *                                  which needs a SharedCellGrid.
+     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
+     */
+    public CellGridSection(final int cellsWidth, final int cellsHeight,
+                           final int originHorizCoordVal, final int originVertCoordVal,
+                           final int engineFlagVal, final LifeRule lifeRuleVal) {
+        this(cellsWidth, cellsHeight, originHorizCoordVal, originVertCoordVal, engineFlagVal, lifeRuleVal, null);
+    }
+
+    /**
+     * This method initializes the CellGridSection object, setting instance
+     * variables and allocating the cell storage called for by the engine
+     * flag.
+     *
+     * @param cellsWidth          The width of the portion of the cells grid
+     *                            that's been delegated to this object, in
+     *                            cells.
+     * @param cellsHeight         The height of the portion of the cells grid
+     *                            that's been delegated to this object, in
+     *                            cells.
+     * @param originHorizCoordVal The horizontal coordinate of the upper left
+     *                            corner of this object's cells grid in the
+     *                            composite cells grid it is a part of.
+     * @param originVertCoordVal  The vertical coordinate of the upper left
+     *                            corner of this object's cells grid in the
+     *                            composite cells grid it is a part of.
+     * @param engineFlagVal       One of the constants ENGINE_INT_ARRAY,
+     *                            ENGINE_BIT_PACKED or ENGINE_VECTOR.
+     * @param lifeRuleVal         The rule to step the cells by.
+     * @param sharedCellGridVal   The store of cells that this object's
+     *                            region is a view of if the engine flag is
+     *                            ENGINE_INT_ARRAY; ignored otherwise.
+     * @throws IllegalArgumentException If the engine flag is ENGINE_INT_ARRAY
+     *                                  and sharedCellGridVal is null.
+     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
+     */
+    public CellGridSection(final int cellsWidth, final int cellsHeight,
+                           final int originHorizCoordVal, final int originVertCoordVal,
+                           final int engineFlagVal, final LifeRule lifeRuleVal,
+                           final SharedCellGrid sharedCellGridVal) {
+        lifeRule = lifeRuleVal;
         horizDim = cellsWidth;
         vertDim = cellsHeight;
         maxHoriz = horizDim - 1;
         maxVert = vertDim - 1;
         originHorizCoord = originHorizCoordVal;
         originVertCoord = originVertCoordVal;
-        displayCells = new int[horizDim][vertDim];
-        updateCells = new int[horizDim][vertDim];
-    }
-
-    /**
-     * This method is used by CellGridDispatch to set the modeFlagQueue instance
-     * variable. This 1-capacity queue is used by CellGridDispatch to convey one
-     * of the constants MODE_CLEAR, MODE_SEED, MODE_UPDATE, or MODE_DISPLAY.
-     * The run() method removes that value from the queue to signal the work
-     * has begun, and replaces it with the constant FINISHED when the task is
-     * complete. The CellGridDispatch object in the main thread removes that
-     * value while it is wrapping up the execution of the task,
-     *
-     * @param modeFlagQueueVar The 1-capacity queue used to communicate mode
-     *                         flags back and forth between this object's run()
-     *                         method in a worker thread and CellGridDispatch
-     *                         running in the main thread.
-     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
-     */
-    public void setModeFlagQueue(final ArrayBlockingQueue<Integer> modeFlagQueueVar) {
-        modeFlagQueue = modeFlagQueueVar;
+        engineFlag = engineFlagVal;
+        bitPacked = engineFlag == ENGINE_BIT_PACKED || engineFlag == ENGINE_VECTOR;
+        if (bitPacked) {
+            wordsPerRow = BitPackedGridEngine.wordsForCells(horizDim);
+            displayRows = new long[vertDim][wordsPerRow];
+            updateRows = new long[vertDim][wordsPerRow];
+            previousRows = new long[vertDim][wordsPerRow];
+            cellWordMasks = new long[wordsPerRow];
+            Arrays.fill(cellWordMasks, -1L);
+            BitPackedGridEngine.clearHaloBits(cellWordMasks, horizDim);
+            northHaloRow = new long[wordsPerRow];
+            southHaloRow = new long[wordsPerRow];
+            if (engineFlag == ENGINE_VECTOR) {
+                rowKernel = VectorGridEngine.loadRowKernel();
+                bandRows = new long[vertDim + 2][];
+                westBandRows = new long[vertDim + 2][wordsPerRow];
+                eastBandRows = new long[vertDim + 2][wordsPerRow];
+            }
+        } else if (sharedCellGridVal == null) {
+            throw new IllegalArgumentException("a section storing its cells one per int needs a SharedCellGrid");
+        } else {
+            sharedCellGrid = sharedCellGridVal;
+        }
     }
 
     /**
-     * This method is used to set the two monitor objects that are used to
-     * signal and be signalled by the CellGridDispatch object running in the
-     * main thread.
+     * This method initializes the CellGridSection object to store its cells
+     * one per int and step them by a Larger than Life rule. The region is
+     * padded by a halo as wide as the rule's radius, copied out of the
+     * SharedCellGrid along with it before every update step.
      *
-     * @param mainToThreadsMonitorObj The monitor object that CellGridDispatch
-     *                                in the main thread calls notifyAll() on
-     *                                and this object in a worker thread calls
-     *                                wait() on.
-     * @param threadsToMainMonitorObj The monitor object that CellGridDispatch
-     *                                in the main thread calls wait() on and
-     *                                this object in a worker thread calls
-     *                                notify() on.
-     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
+     * @param cellsWidth            The width of the portion of the cells grid
+     *                              that's been delegated to this object, in
+     *                              cells.
+     * @param cellsHeight           The height of the portion of the cells grid
+     *                              that's been delegated to this object, in
+     *                              cells.
+     * @param originHorizCoordVal   The horizontal coordinate of the upper left
+     *                              corner of this object's cells grid in the
+     *                              composite cells grid it is a part of.
+     * @param originVertCoordVal    The vertical coordinate of the upper left
+     *                              corner of this object's cells grid in the
+     *                              composite cells grid it is a part of.
+     * @param largerThanLifeRuleVal The rule to step the cells by.
+     * @param sharedCellGridVal     The store of cells that this object's
+     *                              region is a view of. Its halo must be at
+     *                              least as wide as the rule's radius.
+     * @throws IllegalArgumentException If the halo of the SharedCellGrid is
+     *                                  narrower than the rule's radius.
+     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
      */
-    public void setMonitors(final Object mainToThreadsMonitorObj, final Object threadsToMainMonitorObj) {
-        mainToThreadsMonitor = mainToThreadsMonitorObj;
-        threadsToMainMonitor = threadsToMainMonitorObj;
+    public CellGridSection(final int cellsWidth, final int cellsHeight,
+                           final int originHorizCoordVal, final int originVertCoordVal,
+                           final LargerThanLifeRule largerThanLifeRuleVal, final SharedCellGrid sharedCellGridVal) {
+        this(cellsWidth, cellsHeight, originHorizCoordVal, originVertCoordVal, ENGINE_INT_ARRAY, LifeRule.CONWAY,
+             sharedCellGridVal);
+        engineFlag = ENGINE_LARGER_THAN_LIFE;
+        largerThanLifeRule = largerThanLifeRuleVal;
+        haloRadius = largerThanLifeRule.getRadius();
+        if (sharedCellGrid.getHaloWidth() < haloRadius) {
+            throw new IllegalArgumentException("the SharedCellGrid's halo is narrower than the rule's radius");
+        }
+        paddedHorizDim = horizDim + 2 * haloRadius;
+        int paddedVertDim = vertDim + 2 * haloRadius;
+        paddedCells = new byte[paddedHorizDim * paddedVertDim];
+        summedAreaTable = new int[LargerThanLifeGridEngine.summedAreaTableSize(paddedHorizDim, paddedVertDim)];
     }
 
     /**
@@ -277,79 +554,63 @@ public class CellGridSection implements Runnable {
     }
 
     /**
-     * This method implements the run() method called for by the Runnable
-     * interface, and is the method that's called by the Thread object that's
-     * instantiated around this CellGridSection object by CellGridDispatch. In
-     * order to keep the thread persistent during the indefinite period of the
-     * automata, it contains an infinite loop and never returns. During the
-     * execution, it uses a pair of monitor objects to start and stop execution,
-     * and passes signal int values back and forth with the main thread run from
-     * CellGridDispatch using an ArrayBlockingQueue&lt;Integer&gt;.
-     */
-    public void run() {
-        while (true) {
-            int runMode = -1;
-            if (modeFlagQueue.size() > 0) {
-                synchronized (modeFlagQueue) {
-                    while (modeFlagQueue.size() > 0) {
-                        while (runMode == -1) {
-                            try {
-                                runMode = modeFlagQueue.take();
-                            } catch (InterruptedException exception) {
-                                continue;
-                            }
-                        }
-                        switch (runMode) {
-                            case MODE_CLEAR:
-                                clearCellGrid();
-                                break;
-                            case MODE_SEED:
-                                seedCellGrid();
-                                break;
-                            case MODE_UPDATE:
-                                algorithmUpdateStep();
-                                break;
-                            case MODE_DISPLAY:
-                                algorithmDisplayStep();
-                                break;
-                        }
-                    }
-                }
-                while (modeFlagQueue.size() == 0) {
-                    try {
-                        modeFlagQueue.put(FINISHED);
-                    } catch (InterruptedException exception) {
-                        continue;
-                    }
-                }
-                synchronized (threadsToMainMonitor) {
-                    threadsToMainMonitor.notify();
-                }
-            }
-            try {
-                synchronized (mainToThreadsMonitor) {
-                    mainToThreadsMonitor.wait();
-                }
-            } catch (InterruptedException exception) {
-                assert true;
-            }
+     * This method runs the task given by a mode flag on this object. It's
+     * called by the worker thread CellGridDispatch runs for this object, once
+     * for every task the object is selected for.
+     *
+     * @param runMode One of the constants MODE_CLEAR, MODE_SEED, MODE_UPDATE,
+     *                MODE_DISPLAY, MODE_STEP, MODE_BLOCK_STEP or
+     *                MODE_RENDER.
+     * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
+     */
+    public void runMode(final int runMode) {
+        switch (runMode) {
+            case MODE_CLEAR:
+                clearCellGrid();
+                break;
+            case MODE_SEED:
+                seedCellGrid();
+                break;
+            case MODE_UPDATE:
+                algorithmUpdateStep();
+                break;
+            case MODE_DISPLAY:
+                algorithmDisplayStep();
+                break;
+            case MODE_STEP:
+                algorithmUpdateStep();
+                algorithmSettleStep();
+                break;
+            case MODE_BLOCK_STEP:
+                algorithmBlockStep();
+                break;
+            case MODE_RENDER:
+                algorithmRenderStep();
+                break;
         }
     }
 
     /**
-     * This method clears the displayCells array by setting every value in it to
+     * This method clears this object's region by setting every cell in it to
      * 0.
      */
     public void clearCellGrid() {
-        for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
-            for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
-                displayCells[horizIndex][vertIndex] = 0;
+        wakeForEdit();
+        if (bitPacked) {
+            for (long[] row : displayRows) {
+                Arrays.fill(row, 0L);
             }
+            return;
+        }
+        int[] displayCells = sharedCellGrid.getDisplayCells();
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            int rowIndex = sharedCellGrid.cellIndex(originHorizCoord, originVertCoord + vertIndex);
+            Arrays.fill(displayCells, rowIndex, rowIndex + horizDim, 0);
         }
     }
 
     /**
-     * This method populates the displayCells array with randomly chosen 1
+     * This method populates this object's region with randomly chosen 1
      * values in order to spontaneously create cellular automata before or
      * during the automata execution. Roughly 1 in 8 cells are set to 1,
      * regardless of their previous setting.
@@ -373,7 +634,7 @@ public class CellGridSection implements Runnable {
                    number of cells in the grid, so the iterator lasts exactly
                    the number of iterations in the combined loops. */
                 if ((int) Math.floor((double) randomInts.next() / (double) Integer.MAX_VALUE * 8) == 0) {
-                    displayCells[horizIndex][vertIndex] = 1;
+                    setCell(horizIndex, vertIndex, 1);
                 }
             }
         }
@@ -383,7 +644,7 @@ public class CellGridSection implements Runnable {
      * This method is an accessor for the private horizDim variable.
      *
      * @return The int maxHoriz, the maximum value of the horizontal dimension
-     *         of the displayCells array.
+     *         of this object's region.
      */
     public int getHorizDim() {
         return horizDim;
@@ -393,7 +654,7 @@ public class CellGridSection implements Runnable {
      * This method is an accessor for the private originHorizCoord variable.
      *
      * @return The int maxHoriz, the maximum value of the horizontal dimension
-     *         of the displayCells array.
+     *         of this object's region.
      */
     public int getOriginHorizCoord() {
         return originHorizCoord;
@@ -403,7 +664,7 @@ public class CellGridSection implements Runnable {
      * This method is an accessor for the private originVertCoord variable.
      *
      * @return The int maxHoriz, the maximum value of the horizontal dimension
-     *         of the displayCells array.
+     *         of this object's region.
      */
     public int getOriginVertCoord() {
         return originVertCoord;
@@ -413,7 +674,7 @@ public class CellGridSection implements Runnable {
      * This method is an accessor for the private vertDim variable.
      *
      * @return The int maxHoriz, the maximum value of the horizontal dimension
-     *         of the displayCells array.
+     *         of this object's region.
      */
     public int getVertDim() {
         return vertDim;
@@ -423,7 +684,7 @@ public class CellGridSection implements Runnable {
      * This method is an accessor for the private maxHoriz variable.
      *
      * @return The int maxHoriz, the maximum value of the horizontal dimension
-     *         of the displayCells array.
+     *         of this object's region.
      */
     public int getMaxHoriz() {
         return maxHoriz;
@@ -433,124 +694,587 @@ public class CellGridSection implements Runnable {
      * This method is an accessor for the private maxVert variable.
      *
      * @return The int maxVert, the maximum value of the vertical dimension of
-     *         the displayCells array.
+     *         this object's region.
      */
     public int getMaxVert() {
         return maxVert;
     }
 
     /**
-     * This method is an accessor for the private displayCells variable.
+     * This method is an accessor for the private sharedCellGrid variable.
+     *
+     * @return The SharedCellGrid object that this object's region is a view
+     *         of, or null if this object stores its cells bit-packed.
+     */
+    public SharedCellGrid getSharedCellGrid() {
+        return sharedCellGrid;
+    }
+
+    /**
+     * This method returns the value of a single cell in this object's region,
+     * regardless of how the cells are stored.
+     *
+     * @param horizIndex The horizontal coordinate of the cell within this
+     *                   object's region.
+     * @param vertIndex  The vertical coordinate of the cell within this
+     *                   object's region.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    public int getCell(final int horizIndex, final int vertIndex) {
+        if (bitPacked) {
+            return BitPackedGridEngine.getRowBit(displayRows[vertIndex], horizIndex + 1);
+        }
+        return sharedCellGrid.getCell(originHorizCoord + horizIndex, originVertCoord + vertIndex);
+    }
+
+    /**
+     * This method sets the value of a single cell in this object's region,
+     * regardless of how the cells are stored.
+     *
+     * @param horizIndex The horizontal coordinate of the cell within this
+     *                   object's region.
+     * @param vertIndex  The vertical coordinate of the cell within this
+     *                   object's region.
+     * @param cellValue  1 to make the cell live, or 0 to make it dead.
+     */
+    public void setCell(final int horizIndex, final int vertIndex, final int cellValue) {
+        wakeForEdit();
+        if (bitPacked) {
+            BitPackedGridEngine.setRowBit(displayRows[vertIndex], horizIndex + 1, cellValue);
+        } else {
+            sharedCellGrid.setCell(originHorizCoord + horizIndex, originVertCoord + vertIndex, cellValue);
+        }
+    }
+
+    /**
+     * This method inverts a single cell in this object's region from 1 to 0 or
+     * from 0 to 1. It's called by CellGrid when the cell is clicked on.
      *
-     * @return The int[][] displayCells comprising the region of the composite
-     *         cells grid that this object maintains.
+     * @param horizIndex The horizontal coordinate of the cell within this
+     *                   object's region.
+     * @param vertIndex  The vertical coordinate of the cell within this
+     *                   object's region.
      */
-    public int[][] getDisplayCells() {
-        return displayCells;
+    public void invertCell(final int horizIndex, final int vertIndex) {
+        setCell(horizIndex, vertIndex, 1 - getCell(horizIndex, vertIndex));
     }
 
     /**
      * This method completes the first step of the 2-step algorithm execution
-     * process, computing the updateCells cell grid array's value from the
-     * neighbors of each cell in the displayCells cell grid array.
+     * process, computing the next generation of this object's region into the
+     * update array of the SharedCellGrid from the neighbors of each cell in
+     * its display array.
      */
     public void algorithmUpdateStep() {
-        /* This int[][] array of length-2 arrays stores the eight sets of
-           increments & decrements used to adjust the (horizIndex, vertIndex)
-           values to one of eight (moddedHorizIndex, moddedVertIndex) values
-           that can be used to locate a neighbor of the value at (horizIndex,
-           vertIndex) while computing its sumOfNeighbors value. This is done
-           in preference to using 2 further nested for loops in order to avoid
-           having to skip the (0,0) case. */
-        final int[][] deltaPairs = new int[][] {new int[] {-1, -1}, new int[] {-1, 0},
-                                                new int[] {-1, +1}, new int[] {0, -1},
-                                                new int[] {0, +1}, new int[] {+1, -1},
-                                                new int[] {+1, 0}, new int[] {+1, +1}};
-
-        /* This big conditional chain handles all 8 cases where the neigbhoring
-           cells we're looking for are off the edge of this object's cellGrid
-           and are on the edge or in the corner of a neighboring CellGridSection
-           object's displayCells array. It tests for the modded indexes
-           equalling -1 or the dimension of the array (which is 1 above its max
-           index on that dimension). */
-        for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
-            for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
-                int sumOfNeighbors = 0;
-                for (int[] deltaPair : deltaPairs) {
-                    int moddedHorizIndex = horizIndex + deltaPair[0];
-                    int moddedVertIndex = vertIndex + deltaPair[1];
-
-                    /* For each of 8 possible neigbhring cellGrids, the correct
-                       indexes in *that* displayCells array are computed and
-                       used to access the appropriate neighboring cell to add
-                       its value to sumOfNeighbors. */
-                    if (moddedHorizIndex == -1 && moddedVertIndex == -1) {
-                        synchronized (northWestNeighbor.getDisplayCells()) {
-                            sumOfNeighbors += northWestNeighbor.getDisplayCells()[northWestNeighbor.getMaxHoriz()][northWestNeighbor.getMaxVert()];
-                        }
-                    } else if (moddedHorizIndex == -1 && moddedVertIndex == vertDim) {
-                        synchronized (southWestNeighbor.getDisplayCells()) {
-                            sumOfNeighbors += southWestNeighbor.getDisplayCells()[southWestNeighbor.getMaxHoriz()][0];
-                        }
-                    } else if (moddedHorizIndex == -1) { /* -1 < moddedVertIndex < vertDim */
-                        synchronized (westNeighbor.getDisplayCells()) {
-                            sumOfNeighbors += westNeighbor.getDisplayCells()[westNeighbor.getMaxHoriz()][moddedVertIndex];
-                        }
-                    } else if (moddedHorizIndex == horizDim && moddedVertIndex == -1) {
-                        synchronized (northEastNeighbor.getDisplayCells()) {
-                            sumOfNeighbors += northEastNeighbor.getDisplayCells()[0][northEastNeighbor.getMaxVert()];
-                        }
-                    } else if (moddedHorizIndex == horizDim && moddedVertIndex == vertDim) {
-                        synchronized (southEastNeighbor.getDisplayCells()) {
-                            sumOfNeighbors += southEastNeighbor.getDisplayCells()[0][0];
-                        }
-                    } else if (moddedHorizIndex == horizDim) { /* -1 < moddedVertIndex < vertDim */
-                        synchronized (eastNeighbor.getDisplayCells()) {
-                            sumOfNeighbors += eastNeighbor.getDisplayCells()[0][moddedVertIndex];
-                        }
-                    } else if (moddedVertIndex == -1) { /* -1 < moddedHorizIndex < horizDim && */
-                        synchronized (northNeighbor.getDisplayCells()) {
-                            sumOfNeighbors += northNeighbor.getDisplayCells()[moddedHorizIndex][northNeighbor.getMaxVert()];
-                        }
-                    } else if (moddedVertIndex == vertDim) { /* -1 < moddedHorizIndex < horizDim && */
-                        synchronized (southNeighbor.getDisplayCells()) {
-                            sumOfNeighbors += southNeighbor.getDisplayCells()[moddedHorizIndex][0];
-                        }
-                    } else { /* -1 < moddedHorizIndex < horizDim && -1 < moddedVertIndex < vertDim */
-                        synchronized (displayCells) {
-                            sumOfNeighbors += displayCells[moddedHorizIndex][moddedVertIndex];
+        if (bitPacked) {
+            bitPackedUpdateStep();
+            return;
+        } else if (engineFlag == ENGINE_LARGER_THAN_LIFE) {
+            largerThanLifeUpdateStep();
+            return;
+        }
+
+        int[] displayCells = sharedCellGrid.getDisplayCells();
+        int[] updateCells = sharedCellGrid.getUpdateCells();
+        int rowStride = sharedCellGrid.getRowStride();
+
+        /* Since every section's region is laid out in the same arrays, and the
+           edges of the cell grid are surrounded by a halo that the dispatcher
+           wrapped from the opposite edges before the task, the eight
+           neighbors of every cell in the region are at the same fixed offsets
+           from it, whether they're in this region, a neighboring one or the
+           halo. None of the display array is written while the task runs, so
+           none of these reads need to be synchronized. */
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            int rowIndex = sharedCellGrid.cellIndex(originHorizCoord, originVertCoord + vertIndex);
+            for (int cellIndex = rowIndex; cellIndex < rowIndex + horizDim; cellIndex++) {
+                int sumOfNeighbors = displayCells[cellIndex - rowStride - 1] + displayCells[cellIndex - rowStride]
+                                     + displayCells[cellIndex - rowStride + 1] + displayCells[cellIndex - 1]
+                                     + displayCells[cellIndex + 1] + displayCells[cellIndex + rowStride - 1]
+                                     + displayCells[cellIndex + rowStride] + displayCells[cellIndex + rowStride + 1];
+
+                /* With sumOfNeighbors computed, the rule looks up the cell's
+                   next value from it and the value the cell has in the display
+                   array; the update array can't be relied on to already hold
+                   that, since cells are clicked, seeded and cleared in the
+                   display array alone. */
+                updateCells[cellIndex] = lifeRule.nextCellValue(displayCells[cellIndex], sumOfNeighbors);
+            }
+        }
+    }
+
+    /**
+     * This method sets the number of generations algorithmBlockStep()
+     * computes. It's called by the dispatcher before it hands out a
+     * MODE_BLOCK_STEP task.
+     *
+     * @param generationCount The number of generations, no more than the
+     *                        width of the halo of the SharedCellGrid.
+     */
+    public void setBlockGenerations(final int generationCount) {
+        blockGenerations = generationCount;
+    }
+
+    /**
+     * This method computes blockGenerations generations of this object's
+     * region at once, into the update array of the SharedCellGrid, reading
+     * the display array only once and writing the update array only once
+     * along the way. It's only supported for cells stored one per int and
+     * stepped by a Life-like rule.
+     * <p>
+     * A cell's next generation depends on the cells within 1 of it, so its
+     * generation k later depends on the cells within k of it. The region is
+     * copied out with a ghost zone blockGenerations cells wide around it, and
+     * each generation computed shrinks the area that's still correct by a
+     * cell on every side, so after the last one exactly the region is left.
+     * The cells of the ghost zone are computed by the neighboring sections as
+     * well, which is the cost of not having to meet them at a barrier between
+     * the generations.
+     * <p>
+     * The generations in between aren't kept, so there's no generation before
+     * the new one to compare it against, and this object can't tell whether
+     * its region has settled. It's left awake, as if its cells had just been
+     * set.
+     */
+    public void algorithmBlockStep() {
+        int blockHorizDim = horizDim + 2 * blockGenerations;
+        int blockVertDim = vertDim + 2 * blockGenerations;
+        int[] displayCells = sharedCellGrid.getDisplayCells();
+        int[] updateCells = sharedCellGrid.getUpdateCells();
+
+        if (blockCells == null || blockCells.length != blockHorizDim * blockVertDim) {
+            blockCells = new int[blockHorizDim * blockVertDim];
+            blockNextCells = new int[blockHorizDim * blockVertDim];
+        }
+
+        /* The ghost zone of a region on the edge of the cell grid runs into
+           the halo of the SharedCellGrid, which the dispatcher wrapped before
+           the task and which is at least blockGenerations wide. */
+        for (int blockVert = 0; blockVert < blockVertDim; blockVert++) {
+            System.arraycopy(displayCells, sharedCellGrid.cellIndex(originHorizCoord - blockGenerations,
+                                                                    originVertCoord - blockGenerations + blockVert),
+                             blockCells, blockVert * blockHorizDim, blockHorizDim);
+        }
+
+        /* Each generation is computed over the area a cell narrower on every
+           side than the last one's, the trapezoid that the ghost zone
+           shrinks through. */
+        int[] currentCells = blockCells;
+        int[] nextCells = blockNextCells;
+        for (int generation = 1; generation <= blockGenerations; generation++) {
+            for (int blockVert = generation; blockVert < blockVertDim - generation; blockVert++) {
+                int rowIndex = blockVert * blockHorizDim;
+                for (int cellIndex = rowIndex + generation; cellIndex < rowIndex + blockHorizDim - generation;
+                     cellIndex++) {
+                    int sumOfNeighbors = currentCells[cellIndex - blockHorizDim - 1]
+                                         + currentCells[cellIndex - blockHorizDim]
+                                         + currentCells[cellIndex - blockHorizDim + 1] + currentCells[cellIndex - 1]
+                                         + currentCells[cellIndex + 1] + currentCells[cellIndex + blockHorizDim - 1]
+                                         + currentCells[cellIndex + blockHorizDim]
+                                         + currentCells[cellIndex + blockHorizDim + 1];
+                    nextCells[cellIndex] = lifeRule.nextCellValue(currentCells[cellIndex], sumOfNeighbors);
+                }
+            }
+            int[] swapCells = currentCells;
+            currentCells = nextCells;
+            nextCells = swapCells;
+        }
+
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            System.arraycopy(currentCells, (vertIndex + blockGenerations) * blockHorizDim + blockGenerations,
+                             updateCells, sharedCellGrid.cellIndex(originHorizCoord, originVertCoord + vertIndex),
+                             horizDim);
+        }
+
+        /* The generation before the new one is never displayed, so neither
+           stamp matches one drawn. */
+        previousStamp = newStamp();
+        displayStamp = newStamp();
+        generationsSinceEdit = 0;
+        regionUnsettled = true;
+        edgeUnsettled = true;
+    }
+
+    /**
+     * This method sets the frame and the rasterizer algorithmRenderStep()
+     * works with. It's called by the dispatcher before it hands out a
+     * MODE_RENDER task.
+     *
+     * @param renderFrameVal      The frame to copy this object's region into;
+     *                            it must already be reset to the size of the
+     *                            cell grid.
+     * @param renderRasterizerVal The rasterizer to draw the region with.
+     * @param imageIndexVal       Which of the two images the rasterizer
+     *                            holds, 0 or 1.
+     */
+    public void setRenderTarget(final GenerationFrame renderFrameVal, final CellRasterizer renderRasterizerVal,
+                                final int imageIndexVal) {
+        renderFrame = renderFrameVal;
+        renderRasterizer = renderRasterizerVal;
+        renderImageIndex = imageIndexVal;
+    }
+
+    /**
+     * This method copies this object's displayed generation into its region
+     * of renderFrame, and draws that region into the image of
+     * renderRasterizer unless the image already shows it. The image was last
+     * drawn two frames ago, so a sleeping region, which repeats with period
+     * 2, is never redrawn. The regions of the sections don't overlap, in the
+     * frame or in the image, so every section can run this at once, each on
+     * its own worker thread.
+     */
+    public void algorithmRenderStep() {
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                renderFrame.setCellState(originHorizCoord + horizIndex, originVertCoord + vertIndex,
+                                         getCell(horizIndex, vertIndex));
+            }
+        }
+        if (drawnStamps[renderImageIndex] != displayStamp) {
+            renderRasterizer.rasterizeRegion(renderFrame, originHorizCoord, originVertCoord, horizDim, vertDim);
+            drawnStamps[renderImageIndex] = displayStamp;
+        }
+        renderChanged = drawnStamps[1 - renderImageIndex] != displayStamp;
+    }
+
+    /**
+     * This method reports whether the last algorithmRenderStep() left this
+     * object's region of its image different from the other image's, so
+     * that the region has to be repainted once the images are swapped.
+     *
+     * @return true if the region has to be repainted, or false otherwise.
+     */
+    public boolean isRenderChanged() {
+        return renderChanged;
+    }
+
+    /**
+     * This method hands out a stamp no generation of this object's region has
+     * had yet.
+     *
+     * @return The new stamp.
+     */
+    private long newStamp() {
+        lastStamp++;
+        return lastStamp;
+    }
+
+    /**
+     * This method completes the two-step algorithm by making the new
+     * generation the displayed one, which for cells kept in a SharedCellGrid
+     * is left to the dispatcher. Along the way it compares the new generation
+     * against the one two before it, to record whether the region and its
+     * edges have settled.
+     */
+    public void algorithmDisplayStep() {
+        algorithmSettleStep();
+        algorithmSwapStep();
+    }
+
+    /**
+     * This method compares the new generation in the update array against the
+     * one two before it in the previous array, to record whether the region
+     * and its edges have settled. It only reads this object's region of those
+     * arrays, so it can run while other objects are still reading its display
+     * cells.
+     */
+    public void algorithmSettleStep() {
+        boolean regionDiffers = false;
+        boolean edgeDiffers = false;
+
+        if (bitPacked) {
+            for (int vertIndex = 0; vertIndex < vertDim && !edgeDiffers; vertIndex++) {
+                long[] nextRow = updateRows[vertIndex];
+                long[] priorRow = previousRows[vertIndex];
+                if (rowCellsDiffer(nextRow, priorRow)) {
+                    regionDiffers = true;
+                    edgeDiffers = vertIndex == 0 || vertIndex == maxVert
+                                  || BitPackedGridEngine.getRowBit(nextRow, 1)
+                                     != BitPackedGridEngine.getRowBit(priorRow, 1)
+                                  || BitPackedGridEngine.getRowBit(nextRow, horizDim)
+                                     != BitPackedGridEngine.getRowBit(priorRow, horizDim);
+                }
+            }
+        } else {
+            /* This nested for loop iterates across the region of the update
+               array and compares every value against the equivalent value in
+               the previous array. */
+            int[] updateCells = sharedCellGrid.getUpdateCells();
+            int[] previousCells = sharedCellGrid.getPreviousCells();
+            for (int vertIndex = 0; vertIndex < vertDim && !edgeDiffers; vertIndex++) {
+                int rowIndex = sharedCellGrid.cellIndex(originHorizCoord, originVertCoord + vertIndex);
+                for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                    if (updateCells[rowIndex + horizIndex] != previousCells[rowIndex + horizIndex]) {
+                        regionDiffers = true;
+                        if (horizIndex < haloRadius || horizIndex > maxHoriz - haloRadius
+                            || vertIndex < haloRadius || vertIndex > maxVert - haloRadius) {
+                            edgeDiffers = true;
+                            break;
                         }
                     }
                 }
+            }
+        }
 
-                /* With sumOfNeighbors computed, the actual algorithm decision
-                   is carried out. If the number of live cells neighboring this
-                   cell is less than 2 or more than 3, the cell is set to 0. If
-                   it equals 3, the cell is set to 1. If it equals 2, the cell
-                   remains set to whatever value it already has (a no-op, so
-                   this if/else cascade doesn't address that possibility. */
-                if (sumOfNeighbors < 2) {
-                    updateCells[horizIndex][vertIndex] = 0;
-                } else if (sumOfNeighbors == 3) {
-                    updateCells[horizIndex][vertIndex] = 1;
-                } else if (sumOfNeighbors >= 4) {
-                    updateCells[horizIndex][vertIndex] = 0;
+        regionUnsettled = regionDiffers;
+        edgeUnsettled = edgeDiffers;
+        if (generationsSinceEdit < 2) {
+            generationsSinceEdit++;
+        }
+    }
+
+    /**
+     * This method makes the new generation in updateRows the displayed one.
+     * It must only be called once no other object is reading this object's
+     * displayRows, since that array changes. It does nothing for cells kept in
+     * a SharedCellGrid, whose arrays are rotated for every section at once by
+     * the dispatcher.
+     */
+    public void algorithmSwapStep() {
+        /* The new generation isn't compared against the displayed one, so
+           it's taken to have changed. */
+        previousStamp = displayStamp;
+        displayStamp = newStamp();
+
+        /* The three arrays are rotated rather than copied: displayRows
+           becomes previousRows, updateRows becomes displayRows, and the
+           oldest generation is overwritten by the next update step. */
+        if (bitPacked) {
+            long[][] swapRows = previousRows;
+            previousRows = displayRows;
+            displayRows = updateRows;
+            updateRows = swapRows;
+        }
+    }
+
+    /**
+     * This method is called by CellGridDispatch in place of both steps of the
+     * algorithm while this object is asleep. A sleeping region repeats with
+     * period 2, so the next generation is the previous one, and the step is
+     * just a swap of the display array with the previous array. For cells
+     * kept in a SharedCellGrid, whose arrays are rotated for every section at
+     * once, the region of the previous array is copied into the update array
+     * instead, so that the rotation brings it back.
+     */
+    public void algorithmSleepStep() {
+        long swapStamp = previousStamp;
+        previousStamp = displayStamp;
+        displayStamp = swapStamp;
+        if (bitPacked) {
+            long[][] swapRows = previousRows;
+            previousRows = displayRows;
+            displayRows = swapRows;
+            return;
+        }
+        int[] updateCells = sharedCellGrid.getUpdateCells();
+        int[] previousCells = sharedCellGrid.getPreviousCells();
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            int rowIndex = sharedCellGrid.cellIndex(originHorizCoord, originVertCoord + vertIndex);
+            System.arraycopy(previousCells, rowIndex, updateCells, rowIndex, horizDim);
+        }
+    }
+
+    /**
+     * This method decides whether this object sleeps through the next
+     * generation. It's called by CellGridDispatch once every object has
+     * finished the current generation. This object sleeps if its region
+     * repeated with period 2 and the edges of all eight of its neighbors did
+     * too, since then its halo will repeat as well and the next generation is
+     * known in advance. A still life is the special case of period 1. A halo
+     * wider than a neighbor reaches past the eight neighbors, whose edges
+     * can't vouch for it, so this object never sleeps then. When this object
+     * falls asleep on a still life, its two generations are given the same
+     * stamp, so that algorithmRenderStep() sees its region never changes.
+     */
+    public void refreshSleepState() {
+        boolean wasAsleep = asleep;
+        asleep = generationsSinceEdit >= 2 && !regionUnsettled
+                 && haloRadius <= westNeighbor.horizDim && haloRadius <= eastNeighbor.horizDim
+                 && haloRadius <= northNeighbor.vertDim && haloRadius <= southNeighbor.vertDim
+                 && !northNeighbor.edgeUnsettled && !northEastNeighbor.edgeUnsettled
+                 && !eastNeighbor.edgeUnsettled && !southEastNeighbor.edgeUnsettled
+                 && !southNeighbor.edgeUnsettled && !southWestNeighbor.edgeUnsettled
+                 && !westNeighbor.edgeUnsettled && !northWestNeighbor.edgeUnsettled;
+        if (asleep && !wasAsleep && previousStamp != displayStamp && !displayDiffersFromPrevious()) {
+            previousStamp = displayStamp;
+        }
+    }
+
+    /**
+     * This method compares this object's region of the displayed generation
+     * against the previous one.
+     *
+     * @return true if any cell in the region differs, or false otherwise.
+     */
+    private boolean displayDiffersFromPrevious() {
+        if (bitPacked) {
+            for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+                if (rowCellsDiffer(displayRows[vertIndex], previousRows[vertIndex])) {
+                    return true;
                 }
             }
+            return false;
         }
+        int[] displayCells = sharedCellGrid.getDisplayCells();
+        int[] previousCells = sharedCellGrid.getPreviousCells();
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            int rowIndex = sharedCellGrid.cellIndex(originHorizCoord, originVertCoord + vertIndex);
+            if (!Arrays.equals(displayCells, rowIndex, rowIndex + horizDim,
+                               previousCells, rowIndex, rowIndex + horizDim)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * This method completes the two-step algorithm by copying every cell from
-     * the buffer array updateCells into the display array displayCells.
+     * This method reports whether this object is awake, and so takes part in
+     * the next generation's update and display steps. It's used by
+     * CellGridDispatch, and is available for diagnostics.
+     *
+     * @return true if this object is awake, or false if it's asleep.
      */
-    public void algorithmDisplayStep() {
-        /* This nested for loop iterates across the 2d displayCells array and
-           copies every value in from the equivalent value in the updateCells
-           array. */
+    public boolean isAwake() {
+        return !asleep;
+    }
+
+    /**
+     * This method wakes this object and its eight neighbors when a cell in its
+     * region is set from outside the algorithm. The neighbors are woken since
+     * the cell may lie in their halos, and this object's previous generation
+     * is disregarded until two generations have been computed from the edit.
+     * The displayed generation gets a new stamp, so that it's redrawn.
+     */
+    private void wakeForEdit() {
+        displayStamp = newStamp();
+        generationsSinceEdit = 0;
+        asleep = false;
+        if (northNeighbor != null) {
+            northNeighbor.asleep = false;
+            northEastNeighbor.asleep = false;
+            eastNeighbor.asleep = false;
+            southEastNeighbor.asleep = false;
+            southNeighbor.asleep = false;
+            southWestNeighbor.asleep = false;
+            westNeighbor.asleep = false;
+            northWestNeighbor.asleep = false;
+        }
+    }
+
+    /**
+     * This method compares the cells of two bit-packed rows, ignoring their
+     * halo bits.
+     *
+     * @param rowA The first row.
+     * @param rowB The second row.
+     * @return     true if any cell differs between the two rows.
+     */
+    private boolean rowCellsDiffer(final long[] rowA, final long[] rowB) {
+        long diffBits = 0L;
+        for (int wordIndex = 0; wordIndex < wordsPerRow; wordIndex++) {
+            diffBits |= (rowA[wordIndex] ^ rowB[wordIndex]) & cellWordMasks[wordIndex];
+        }
+        return diffBits != 0L;
+    }
+
+    /**
+     * This method is the bit-packed counterpart of algorithmUpdateStep(). It
+     * gathers the cells just beyond this object's edges from its eight
+     * neighbors into the halo bits of its rows and into two halo rows, then
+     * has BitPackedGridEngine.stepRowWords() compute every row of updateRows a
+     * word at a time, or in vector mode a vector of words at a time. Neighbors
+     * are only read a perimeter's worth of cells per step, rather than once per
+     * edge cell per neighbor offset.
+     */
+    private void bitPackedUpdateStep() {
+        final int eastHaloBit = horizDim + 1;
+
+        /* The west and east halo bits of each row are taken from the last
+           column of the west neighbor and the first column of the east
+           neighbor. Only this object's thread writes the halo bits, and the
+           neighbors only ever read the bits holding cells, so this is safe to
+           do while they're reading this object's rows. */
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            BitPackedGridEngine.setRowBit(displayRows[vertIndex], 0,
+                                          westNeighbor.getCell(westNeighbor.getMaxHoriz(), vertIndex));
+            BitPackedGridEngine.setRowBit(displayRows[vertIndex], eastHaloBit,
+                                          eastNeighbor.getCell(0, vertIndex));
+        }
+
+        /* The north halo row is the last row of the north neighbor, flanked by
+           the corner cells of the northwest and northeast neighbors; the south
+           halo row is built the same way from the south side. */
         for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
-            for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
-                displayCells[horizIndex][vertIndex] = updateCells[horizIndex][vertIndex];
+            BitPackedGridEngine.setRowBit(northHaloRow, horizIndex + 1,
+                                          northNeighbor.getCell(horizIndex, northNeighbor.getMaxVert()));
+            BitPackedGridEngine.setRowBit(southHaloRow, horizIndex + 1, southNeighbor.getCell(horizIndex, 0));
+        }
+        BitPackedGridEngine.setRowBit(northHaloRow, 0,
+                                      northWestNeighbor.getCell(northWestNeighbor.getMaxHoriz(),
+                                                                northWestNeighbor.getMaxVert()));
+        BitPackedGridEngine.setRowBit(northHaloRow, eastHaloBit,
+                                      northEastNeighbor.getCell(0, northEastNeighbor.getMaxVert()));
+        BitPackedGridEngine.setRowBit(southHaloRow, 0,
+                                      southWestNeighbor.getCell(southWestNeighbor.getMaxHoriz(), 0));
+        BitPackedGridEngine.setRowBit(southHaloRow, eastHaloBit, southEastNeighbor.getCell(0, 0));
+
+        /* In vector mode the whole region is stepped as a single band, from
+           the north halo row down to the south halo row. */
+        if (engineFlag == ENGINE_VECTOR) {
+            bandRows[0] = northHaloRow;
+            System.arraycopy(displayRows, 0, bandRows, 1, vertDim);
+            bandRows[vertDim + 1] = southHaloRow;
+            VectorGridEngine.stepRowBand(rowKernel, lifeRule, bandRows, updateRows, 0, vertDim, wordsPerRow,
+                                         westBandRows, eastBandRows);
+            for (long[] row : updateRows) {
+                BitPackedGridEngine.clearHaloBits(row, horizDim);
+            }
+            return;
+        }
+
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            long[] northRow = (vertIndex == 0) ? northHaloRow : displayRows[vertIndex - 1];
+            long[] southRow = (vertIndex == maxVert) ? southHaloRow : displayRows[vertIndex + 1];
+            BitPackedGridEngine.stepRowWords(lifeRule, northRow, displayRows[vertIndex], southRow,
+                                             updateRows[vertIndex], wordsPerRow);
+            BitPackedGridEngine.clearHaloBits(updateRows[vertIndex], horizDim);
+        }
+    }
+
+    /**
+     * This method is the Larger than Life counterpart of algorithmUpdateStep().
+     * It copies this object's region and the halo of cells within haloRadius
+     * of its edges into paddedCells, which is a rectangle of the display
+     * array of the SharedCellGrid, builds the summed-area table of that, and
+     * steps every cell by the count of its square, which
+     * LargerThanLifeGridEngine.squareSum() reads off the table in constant
+     * time whatever the radius.
+     */
+    private void largerThanLifeUpdateStep() {
+        int paddedVertDim = vertDim + 2 * haloRadius;
+        int[] displayCells = sharedCellGrid.getDisplayCells();
+        int[] updateCells = sharedCellGrid.getUpdateCells();
+
+        /* The halo of the SharedCellGrid is at least haloRadius wide, so the
+           rectangle never runs off the arrays, even for a region on the edge
+           of the cell grid. */
+        for (int paddedVert = 0; paddedVert < paddedVertDim; paddedVert++) {
+            int sourceIndex = sharedCellGrid.cellIndex(originHorizCoord - haloRadius,
+                                                       originVertCoord - haloRadius + paddedVert);
+            int paddedOffset = paddedVert * paddedHorizDim;
+            for (int paddedHoriz = 0; paddedHoriz < paddedHorizDim; paddedHoriz++) {
+                paddedCells[paddedOffset + paddedHoriz] = (byte) displayCells[sourceIndex + paddedHoriz];
+            }
+        }
+        LargerThanLifeGridEngine.buildSummedAreaTable(paddedCells, paddedHorizDim, paddedVertDim, summedAreaTable);
+
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            int rowIndex = sharedCellGrid.cellIndex(originHorizCoord, originVertCoord + vertIndex);
+            for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                int sumOfSquare = LargerThanLifeGridEngine.squareSum(summedAreaTable, paddedHorizDim, haloRadius,
+                                                                     horizIndex, vertIndex);
+                int cellValue = displayCells[rowIndex + horizIndex];
+                updateCells[rowIndex + horizIndex] = largerThanLifeRule.nextCellValue(cellValue, sumOfSquare);
             }
         }
     }
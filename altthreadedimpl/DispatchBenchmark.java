@@ -0,0 +1,149 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.awt.Dimension;
+import java.util.concurrent.ForkJoinPool;
+import org.kmfahey.jgameoflife.LifeRule;
+
+/**
+ * This class is a commandline benchmark for the threaded implementation's
+ * dispatch. It builds a CellGrid of the given size with each named wait
+ * strategy in turn, seeds it, steps it for a fixed number of generations
+ * after a warm-up run, and reports the generations per second achieved. On a
+ * small board the cost of a generation is mostly the cost of handing the
+ * worker threads their tasks and waiting for them, so that's what the
+ * benchmark measures. It runs headless; the CellGrid is never displayed.
+ * <p>
+ * The rule defaults to Seeds, B2/S, since a Seeds soup never settles: no
+ * section falls asleep, so every generation is a full round of work for every
+ * worker thread.
+ * <p>
+ * The name forkjoin may be given among the wait strategies, to time the
+ * sections run as tasks on a ForkJoinPool of --workers threads, by default
+ * one per available processor, instead of on a thread apiece. Its line also
+ * reports the tile edge the CellGrid settled on. The name virtual times the
+ * same sections run as a task apiece on a virtual thread of their own every
+ * generation, or on a platform thread where the runtime has no virtual
+ * threads, which its line says.
+ * <p>
+ * With --block=k, intarray sections compute k generations per step, up to 8,
+ * and meet at a barrier once per step; --block=auto has CellGrid tune k
+ * during the warm-up run. Each line then reports the k it ran with.
+ * <p>
+ * Usage: java org.kmfahey.jgameoflife.altthreadedimpl.DispatchBenchmark
+ * --waits=park,spin-yield,busy-spin,forkjoin,virtual --engine=intarray --width=64
+ * --height=64 --generations=2000 --rule=B2/S --workers=4 --block=1
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.WaitStrategy
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.ForkJoinDispatch
+ */
+public class DispatchBenchmark {
+
+    /**
+     * This method times a number of generations of a cell grid. If the cell
+     * grid computes several generations per step, the last step may take it
+     * a few generations past the number.
+     *
+     * @param cellGrid    The cell grid to step.
+     * @param generations The number of generations to step it.
+     * @return            The elapsed time, in nanoseconds.
+     */
+    private static long timeGenerations(final CellGrid cellGrid, final int generations) {
+        long startNanos = System.nanoTime();
+        for (int generation = 0; generation < generations; generation += cellGrid.getGenerationsPerStep()) {
+            cellGrid.sectionsRunAlgorithm();
+        }
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * This method looks through the commandline arguments for one of the form
+     * --name=value and returns its value.
+     *
+     * @param args         The argument string array composed from the
+     *                     commandline arguments.
+     * @param optionName   The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option isn't present.
+     * @return             The value of the option, or defaultValue.
+     */
+    private static String findOption(final String[] args, final String optionName, final String defaultValue) {
+        String optionPrefix = "--" + optionName + "=";
+        for (String arg : args) {
+            if (arg.startsWith(optionPrefix)) {
+                return arg.substring(optionPrefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * This method is called when the class is run from the commandline. It
+     * benchmarks each named wait strategy in turn, and the ForkJoinPool if
+     * forkjoin is named, and prints one line per strategy.
+     *
+     * @param args The argument string array composed from the commandline
+     *             arguments, if any.
+     */
+    public static void main(final String[] args) {
+        String[] strategyNames = findOption(args, "waits", "park,spin-yield,busy-spin,forkjoin,virtual").split(",");
+        String engineName = findOption(args, "engine", "intarray");
+        int horizDim = Integer.parseInt(findOption(args, "width", "64"));
+        int vertDim = Integer.parseInt(findOption(args, "height", "64"));
+        int generations = Integer.parseInt(findOption(args, "generations", "2000"));
+        LifeRule lifeRule = LifeRule.parse(findOption(args, "rule", "B2/S"));
+        int workerCount = Integer.parseInt(findOption(args, "workers",
+                                                      String.valueOf(Runtime.getRuntime().availableProcessors())));
+        String blockName = findOption(args, "block", "1");
+        int generationsPerStep = blockName.equals("auto") ? 0 : Integer.parseInt(blockName);
+        int engineFlag;
+        switch (engineName) {
+            case "intarray":
+                engineFlag = CellGridSection.ENGINE_INT_ARRAY;
+                break;
+            case "bitpacked":
+                engineFlag = CellGridSection.ENGINE_BIT_PACKED;
+                break;
+            case "vector":
+                engineFlag = CellGridSection.ENGINE_VECTOR;
+                break;
+            default:
+                throw new IllegalArgumentException("unrecognized engine name: " + engineName);
+        }
+
+        System.out.printf("%d x %d cells, %s sections, rule %s, %d generations, %d cores%n", horizDim, vertDim,
+                          engineName, lifeRule, generations, Runtime.getRuntime().availableProcessors());
+        for (String strategyName : strategyNames) {
+            /* CellGrid sizes its cell grid from a size in pixels, at 10 pixels
+               per cell. */
+            Dimension cellGridDims = new Dimension(horizDim * 10, vertDim * 10);
+            CellGrid cellGrid;
+            if (strategyName.equals("forkjoin")) {
+                cellGrid = new CellGrid(cellGridDims, engineFlag, lifeRule, new ForkJoinPool(workerCount));
+            } else if (strategyName.equals("virtual")) {
+                cellGrid = new CellGrid(cellGridDims, engineFlag, lifeRule,
+                                        ExecutorDispatch.newVirtualThreadExecutor());
+            } else {
+                cellGrid = new CellGrid(cellGridDims, engineFlag, lifeRule, WaitStrategy.parse(strategyName));
+            }
+            cellGrid.setGenerationsPerStep(generationsPerStep);
+            cellGrid.seedCellGrid();
+            cellGrid.getSimulationPipeline().awaitEdits();
+            timeGenerations(cellGrid, Math.max(1, generations / 4));
+            long elapsedNanos = timeGenerations(cellGrid, generations);
+            cellGrid.shutdownWorkers();
+            System.out.printf("%-12s %10.1f gens/sec %8.1f us/gen", strategyName,
+                              generations / (elapsedNanos / 1e9D), elapsedNanos / 1e3D / generations);
+            if (strategyName.equals("forkjoin")) {
+                System.out.printf("  %d workers, %d-cell tiles", workerCount, cellGrid.getTileEdge());
+            } else if (strategyName.equals("virtual")) {
+                System.out.printf("  %s threads, %d-cell tiles",
+                                  ExecutorDispatch.hasVirtualThreads() ? "virtual" : "platform",
+                                  cellGrid.getTileEdge());
+            }
+            if (generationsPerStep != 1) {
+                System.out.printf("  %d gens/step", cellGrid.getGenerationsPerStep());
+            }
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import org.kmfahey.jgameoflife.BitPackedGridEngine;
+import org.kmfahey.jgameoflife.GenerationFrame;
+import org.kmfahey.jgameoflife.LifeRule;
+import org.kmfahey.jgameoflife.SimulationSource;
+
+/**
+ * This class implements the coordinator of a distributed cell grid, whose
+ * torus is cut into a grid of blocks stepped by DistributedWorker processes,
+ * one block apiece. The coordinator starts the worker processes on this
+ * machine, tells each where the others are listening so they can connect
+ * their halo links, and from then on directs them over a control connection
+ * to each: seeding, clearing, inverting cells, stepping generations, and
+ * sending back the cells of their blocks. It never touches a cell itself, and
+ * no cell passes through it while the workers step; they exchange their edges
+ * directly with each other, in lockstep.
+ * <p>
+ * It implements SimulationSource, so a SimulationPipeline can drive it a
+ * generation at a time and collect a frame of the whole cell grid after each.
+ * <p>
+ * Run from the commandline, it starts a distributed cell grid, seeds it, and
+ * times a number of generations. With --verify, it also steps the same seed
+ * in this process with BitPackedGridEngine and checks that the two cell grids
+ * match, so every worker, halo link and corner can be tested on localhost.
+ * <p>
+ * Usage: java org.kmfahey.jgameoflife.altthreadedimpl.DistributedCoordinator
+ * --width=512 --height=512 --workers=2x2 --generations=500 --rule=B3/S23
+ * --seed=1 --verify
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.DistributedWorker
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.MessageChannel
+ * @see org.kmfahey.jgameoflife.SimulationPipeline
+ */
+public class DistributedCoordinator implements SimulationSource {
+
+    /** This long is how long shutdown() waits for a worker process to exit
+        before it kills it, in milliseconds. */
+    private final long exitWaitMillis = 5000L;
+
+    /** This long is how long launch() waits for every worker process to
+        connect, in milliseconds, before it gives up on them. */
+    private final long connectWaitMillis = 30000L;
+
+    /** This long is how long launch() waits for a connection at a time
+        before checking that the worker processes are still running, in
+        milliseconds. */
+    private final long acceptPollMillis = 100L;
+
+    /** This int is the width of the cell grid, in cells. */
+    private final int gridHorizDim;
+
+    /** This int is the height of the cell grid, in cells. */
+    private final int gridVertDim;
+
+    /** This int is the number of workers across the cell grid. */
+    private final int horizWorkers;
+
+    /** This int is the number of workers down the cell grid. */
+    private final int vertWorkers;
+
+    /** This LifeRule object is the rule the workers step the cells by. */
+    private final LifeRule lifeRule;
+
+    /** This Process[] array holds the worker processes, by worker index. */
+    private final Process[] workerProcesses;
+
+    /** This MessageChannel[] array holds the control connections to the
+        workers, by worker index. */
+    private final MessageChannel[] controlChannels;
+
+    /** This long[][] array holds a buffer per worker, by worker index, that
+        the packed cells of its block are received into by captureFrame(). */
+    private final long[][] snapshotWords;
+
+    /** This long is the number of generations the workers have stepped. */
+    private long generationNumber;
+
+    /**
+     * This constructor initializes the DistributedCoordinator object. The
+     * worker processes aren't started until launch() is called.
+     *
+     * @param gridHorizDimVal The width of the cell grid, in cells.
+     * @param gridVertDimVal  The height of the cell grid, in cells.
+     * @param horizWorkersVal The number of workers across the cell grid.
+     * @param vertWorkersVal  The number of workers down the cell grid.
+     * @param lifeRuleVal     The rule to step the cells by.
+     * @throws IllegalArgumentException If there are fewer than 1 worker in
+     *                                  either direction, or more workers in a
+     *                                  direction than cells.
+     */
+    public DistributedCoordinator(final int gridHorizDimVal, final int gridVertDimVal, final int horizWorkersVal,
+                                  final int vertWorkersVal, final LifeRule lifeRuleVal) {
+        if (horizWorkersVal < 1 || vertWorkersVal < 1
+            || horizWorkersVal > gridHorizDimVal || vertWorkersVal > gridVertDimVal) {
+            throw new IllegalArgumentException("a " + gridHorizDimVal + " x " + gridVertDimVal
+                                               + " cell grid can't be cut into " + horizWorkersVal + " x "
+                                               + vertWorkersVal + " blocks");
+        }
+        gridHorizDim = gridHorizDimVal;
+        gridVertDim = gridVertDimVal;
+        horizWorkers = horizWorkersVal;
+        vertWorkers = vertWorkersVal;
+        lifeRule = lifeRuleVal;
+        workerProcesses = new Process[horizWorkers * vertWorkers];
+        controlChannels = new MessageChannel[horizWorkers * vertWorkers];
+        snapshotWords = new long[horizWorkers * vertWorkers][];
+        for (int workerIndex = 0; workerIndex < snapshotWords.length; workerIndex++) {
+            int blockHorizDim = blockOrigin(gridHorizDim, horizWorkers, workerIndex % horizWorkers + 1)
+                                - blockOrigin(gridHorizDim, horizWorkers, workerIndex % horizWorkers);
+            int blockVertDim = blockOrigin(gridVertDim, vertWorkers, workerIndex / horizWorkers + 1)
+                               - blockOrigin(gridVertDim, vertWorkers, workerIndex / horizWorkers);
+            snapshotWords[workerIndex] = new long[MessageChannel.wordsForBits(blockHorizDim * blockVertDim)];
+        }
+    }
+
+    /**
+     * This method returns the coordinate that a block starts at, cutting a
+     * dimension of the cell grid into blocks that differ in size by no more
+     * than a cell.
+     *
+     * @param gridDim     The dimension of the cell grid, in cells.
+     * @param blockCount  The number of blocks it's cut into.
+     * @param blockOrdinal The ordinal of the block, or blockCount for the end
+     *                    of the last block.
+     * @return            The coordinate of the first cell of the block.
+     */
+    public static int blockOrigin(final int gridDim, final int blockCount, final int blockOrdinal) {
+        return (int) ((long) gridDim * blockOrdinal / blockCount);
+    }
+
+    /**
+     * This method decides whether a cell starts out live when the cell grid
+     * is seeded, from the seed and the cell's coordinates alone, so that the
+     * workers seed their blocks independently and the cell grid comes out the
+     * same however it's cut up. Roughly 1 in 8 cells are live, as with
+     * CellGridSection.seedCellGrid().
+     *
+     * @param seed       The seed.
+     * @param horizCoord The horizontal coordinate of the cell.
+     * @param vertCoord  The vertical coordinate of the cell.
+     * @return           1 if the cell is live, or 0 if it's dead.
+     */
+    public static int seedCellValue(final long seed, final int horizCoord, final int vertCoord) {
+        /* This is the finalizer of the SplitMix64 generator, which scatters
+           neighboring coordinates across the whole range of a long. */
+        long mixedBits = seed + 0x9E3779B97F4A7C15L * ((((long) horizCoord) << 32) | (vertCoord & 0xFFFFFFFFL));
+        mixedBits = (mixedBits ^ (mixedBits >>> 30)) * 0xBF58476D1CE4E5B9L;
+        mixedBits = (mixedBits ^ (mixedBits >>> 27)) * 0x94D049BB133111EBL;
+        mixedBits = mixedBits ^ (mixedBits >>> 31);
+        return ((mixedBits & 7L) == 0L) ? 1 : 0;
+    }
+
+    /**
+     * This method starts the worker processes, with the same Java runtime and
+     * classpath as this one, and waits until every one of them has connected
+     * to it and to its neighbors. The connections are waited for a tick at a
+     * time, and at every tick the worker processes are checked, so a worker
+     * that exits before it connects is noticed at once; one that's still
+     * running but hasn't connected after connectWaitMillis is given up on.
+     * If the launch fails, every worker process started is killed.
+     *
+     * @throws IllegalStateException If a worker process can't be started,
+     *                               exits, or doesn't connect in time.
+     */
+    public void launch() {
+        String javaCommand = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        try (ServerSocketChannel controlServer = ServerSocketChannel.open();
+             Selector acceptSelector = Selector.open()) {
+            controlServer.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            int controlPort = ((InetSocketAddress) controlServer.getLocalAddress()).getPort();
+            for (int workerIndex = 0; workerIndex < workerProcesses.length; workerIndex++) {
+                ProcessBuilder workerBuilder = new ProcessBuilder(javaCommand, "-Djava.awt.headless=true", "-cp",
+                                                                  System.getProperty("java.class.path"),
+                                                                  DistributedWorker.class.getName(),
+                                                                  String.valueOf(controlPort),
+                                                                  String.valueOf(workerIndex),
+                                                                  String.valueOf(gridHorizDim),
+                                                                  String.valueOf(gridVertDim),
+                                                                  String.valueOf(horizWorkers),
+                                                                  String.valueOf(vertWorkers),
+                                                                  lifeRule.toString());
+                workerBuilder.inheritIO();
+                workerProcesses[workerIndex] = workerBuilder.start();
+            }
+
+            /* The workers connect in whatever order they start up in, and say
+               which they are. The server socket doesn't block, so that the
+               wait for each connection can be cut into ticks. */
+            controlServer.configureBlocking(false);
+            controlServer.register(acceptSelector, SelectionKey.OP_ACCEPT);
+            long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectWaitMillis);
+            long[] workerPorts = new long[workerProcesses.length];
+            long[] helloWords = new long[1];
+            for (int connectionIndex = 0; connectionIndex < workerProcesses.length; connectionIndex++) {
+                SocketChannel workerSocket = controlServer.accept();
+                while (workerSocket == null) {
+                    for (int workerIndex = 0; workerIndex < workerProcesses.length; workerIndex++) {
+                        if (!workerProcesses[workerIndex].isAlive()) {
+                            throw new IOException("worker " + workerIndex + " exited with status "
+                                                  + workerProcesses[workerIndex].exitValue() + " before connecting");
+                        }
+                    }
+                    if (System.nanoTime() - deadlineNanos > 0L) {
+                        throw new IOException("only " + connectionIndex + " of " + workerProcesses.length
+                                              + " workers connected within " + connectWaitMillis + " ms");
+                    }
+                    acceptSelector.select(acceptPollMillis);
+                    acceptSelector.selectedKeys().clear();
+                    workerSocket = controlServer.accept();
+                }
+                MessageChannel controlChannel = new MessageChannel(workerSocket, workerPorts.length);
+                int workerIndex = (int) controlChannel.receive(MessageChannel.MSG_HELLO, helloWords);
+                controlChannels[workerIndex] = controlChannel;
+                workerPorts[workerIndex] = helloWords[0];
+            }
+            for (MessageChannel controlChannel : controlChannels) {
+                controlChannel.send(MessageChannel.MSG_LAYOUT, 0L, workerPorts, workerPorts.length);
+            }
+            for (MessageChannel controlChannel : controlChannels) {
+                controlChannel.receive(MessageChannel.MSG_READY, null);
+            }
+        } catch (IOException exception) {
+            killWorkers();
+            throw new IllegalStateException("the worker processes failed to start", exception);
+        }
+    }
+
+    /**
+     * This method seeds the cell grid, each cell chosen by seedCellValue().
+     *
+     * @param seed The seed.
+     * @throws IllegalStateException If a worker can't be reached.
+     */
+    public void seedCells(final long seed) {
+        broadcastCommand(MessageChannel.MSG_SEED, seed);
+    }
+
+    /**
+     * This method clears the cell grid.
+     *
+     * @throws IllegalStateException If a worker can't be reached.
+     */
+    public void clearCells() {
+        broadcastCommand(MessageChannel.MSG_CLEAR, 0L);
+    }
+
+    /**
+     * This method inverts a single cell, by way of the worker whose block it
+     * lies in.
+     *
+     * @param horizCoord The horizontal coordinate of the cell.
+     * @param vertCoord  The vertical coordinate of the cell.
+     * @throws IllegalStateException If the worker can't be reached.
+     */
+    public void invertCell(final int horizCoord, final int vertCoord) {
+        int blockHoriz = 0;
+        int blockVert = 0;
+        while (blockOrigin(gridHorizDim, horizWorkers, blockHoriz + 1) <= horizCoord) {
+            blockHoriz++;
+        }
+        while (blockOrigin(gridVertDim, vertWorkers, blockVert + 1) <= vertCoord) {
+            blockVert++;
+        }
+        MessageChannel controlChannel = controlChannels[blockVert * horizWorkers + blockHoriz];
+        try {
+            controlChannel.send(MessageChannel.MSG_INVERT_CELL, (((long) horizCoord) << 32) | vertCoord);
+            controlChannel.receive(MessageChannel.MSG_DONE, null);
+        } catch (IOException exception) {
+            throw new IllegalStateException("lost contact with a worker", exception);
+        }
+    }
+
+    /**
+     * This method has the workers step a number of generations, and returns
+     * once they all have.
+     *
+     * @param generationCount The number of generations.
+     * @throws IllegalStateException If a worker can't be reached.
+     */
+    public void runGenerations(final int generationCount) {
+        broadcastCommand(MessageChannel.MSG_STEP, generationCount);
+        generationNumber += generationCount;
+    }
+
+    /**
+     * This method advances the cell grid by one generation.
+     *
+     * @return 1, the number of generations advanced.
+     * @throws IllegalStateException If a worker can't be reached.
+     */
+    public int stepSimulation() {
+        runGenerations(1);
+        return 1;
+    }
+
+    /**
+     * This method collects the cells of every worker's block into a frame of
+     * the whole cell grid.
+     *
+     * @param targetFrame           The frame to fill.
+     * @param frameGenerationNumber The number of generations to record in the
+     *                              frame.
+     * @throws IllegalStateException If a worker can't be reached.
+     */
+    public void captureFrame(final GenerationFrame targetFrame, final long frameGenerationNumber) {
+        targetFrame.reset(gridHorizDim, gridVertDim, frameGenerationNumber);
+        try {
+            for (MessageChannel controlChannel : controlChannels) {
+                controlChannel.send(MessageChannel.MSG_SNAPSHOT, 0L);
+            }
+            for (int workerIndex = 0; workerIndex < controlChannels.length; workerIndex++) {
+                int originHoriz = blockOrigin(gridHorizDim, horizWorkers, workerIndex % horizWorkers);
+                int originVert = blockOrigin(gridVertDim, vertWorkers, workerIndex / horizWorkers);
+                int blockHorizDim = blockOrigin(gridHorizDim, horizWorkers, workerIndex % horizWorkers + 1)
+                                    - originHoriz;
+                int blockVertDim = blockOrigin(gridVertDim, vertWorkers, workerIndex / horizWorkers + 1)
+                                   - originVert;
+                long[] cellWords = snapshotWords[workerIndex];
+                controlChannels[workerIndex].receive(MessageChannel.MSG_CELLS, cellWords);
+                for (int vertIndex = 0; vertIndex < blockVertDim; vertIndex++) {
+                    for (int horizIndex = 0; horizIndex < blockHorizDim; horizIndex++) {
+                        targetFrame.setCellState(originHoriz + horizIndex, originVert + vertIndex,
+                                                 MessageChannel.getPackedCell(cellWords,
+                                                                              vertIndex * blockHorizDim + horizIndex));
+                    }
+                }
+            }
+        } catch (IOException exception) {
+            throw new IllegalStateException("lost contact with a worker", exception);
+        }
+    }
+
+    /**
+     * This method is an accessor for the private generationNumber variable.
+     *
+     * @return The number of generations the workers have stepped.
+     */
+    public long getGenerationNumber() {
+        return generationNumber;
+    }
+
+    /**
+     * This method tells the workers to exit and waits for them to, killing
+     * any that haven't after a few seconds.
+     */
+    public void shutdown() {
+        for (MessageChannel controlChannel : controlChannels) {
+            if (controlChannel != null) {
+                try {
+                    controlChannel.send(MessageChannel.MSG_SHUTDOWN, 0L);
+                } catch (IOException exception) {
+                    /* A worker that can't be told to exit is killed below. */
+                }
+                controlChannel.close();
+            }
+        }
+        for (Process workerProcess : workerProcesses) {
+            if (workerProcess == null) {
+                continue;
+            }
+            try {
+                if (!workerProcess.waitFor(exitWaitMillis, TimeUnit.MILLISECONDS)) {
+                    workerProcess.destroyForcibly();
+                }
+            } catch (InterruptedException exception) {
+                workerProcess.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * This method closes the control connections and kills the worker
+     * processes outright, without asking them to exit, for a launch that's
+     * failed: a worker that hasn't connected can't be asked.
+     */
+    private void killWorkers() {
+        for (MessageChannel controlChannel : controlChannels) {
+            if (controlChannel != null) {
+                controlChannel.close();
+            }
+        }
+        for (Process workerProcess : workerProcesses) {
+            if (workerProcess != null) {
+                workerProcess.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * This method sends a command to every worker and waits for all of them
+     * to report that they're done. The workers carry it out at the same time,
+     * and in the case of MSG_STEP, hold each other to the same generation.
+     *
+     * @param commandType One of the MessageChannel.MSG_* constants.
+     * @param argument    The argument of the command.
+     * @throws IllegalStateException If a worker can't be reached.
+     */
+    private void broadcastCommand(final int commandType, final long argument) {
+        try {
+            for (MessageChannel controlChannel : controlChannels) {
+                controlChannel.send(commandType, argument);
+            }
+            for (MessageChannel controlChannel : controlChannels) {
+                controlChannel.receive(MessageChannel.MSG_DONE, null);
+            }
+        } catch (IOException exception) {
+            throw new IllegalStateException("lost contact with a worker", exception);
+        }
+    }
+
+    /**
+     * This method looks through the commandline arguments for one of the form
+     * --name=value and returns its value.
+     *
+     * @param args         The argument string array composed from the
+     *                     commandline arguments.
+     * @param optionName   The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option isn't present.
+     * @return             The value of the option, or defaultValue.
+     */
+    private static String findOption(final String[] args, final String optionName, final String defaultValue) {
+        String optionPrefix = "--" + optionName + "=";
+        for (String arg : args) {
+            if (arg.startsWith(optionPrefix)) {
+                return arg.substring(optionPrefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * This method counts the cells where a frame differs from a
+     * single-process BitPackedGridEngine stepped from the same seed.
+     *
+     * @param cellGridFrame The frame collected from the workers.
+     * @param lifeRule      The rule the workers stepped by.
+     * @param seed          The seed the cell grid was seeded with.
+     * @param generations   The number of generations it was stepped.
+     * @return              The number of cells that differ.
+     */
+    private static int countMismatches(final GenerationFrame cellGridFrame, final LifeRule lifeRule,
+                                       final long seed, final int generations) {
+        int horizDim = cellGridFrame.getHorizDim();
+        int vertDim = cellGridFrame.getVertDim();
+        BitPackedGridEngine referenceEngine = new BitPackedGridEngine(horizDim, vertDim, lifeRule);
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                referenceEngine.setCell(horizIndex, vertIndex, seedCellValue(seed, horizIndex, vertIndex));
+            }
+        }
+        for (int generation = 0; generation < generations; generation++) {
+            referenceEngine.stepGeneration();
+        }
+        int mismatchCount = 0;
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                if (referenceEngine.getCell(horizIndex, vertIndex)
+                    != cellGridFrame.getCellState(horizIndex, vertIndex)) {
+                    mismatchCount++;
+                }
+            }
+        }
+        return mismatchCount;
+    }
+
+    /**
+     * This method is called when the class is run from the commandline. It
+     * starts the workers, seeds the cell grid, steps it, prints the
+     * generations per second, and with --verify checks the result against a
+     * single-process run.
+     *
+     * @param args The argument string array composed from the commandline
+     *             arguments, if any.
+     */
+    public static void main(final String[] args) {
+        int horizDim = Integer.parseInt(findOption(args, "width", "512"));
+        int vertDim = Integer.parseInt(findOption(args, "height", "512"));
+        String[] workerDims = findOption(args, "workers", "2x2").split("x");
+        int generations = Integer.parseInt(findOption(args, "generations", "500"));
+        LifeRule lifeRule = LifeRule.parse(findOption(args, "rule", "B3/S23"));
+        long seed = Long.parseLong(findOption(args, "seed", "1"));
+        boolean verify = false;
+        for (String arg : args) {
+            verify |= arg.equals("--verify");
+        }
+
+        DistributedCoordinator coordinator = new DistributedCoordinator(horizDim, vertDim,
+                                                                        Integer.parseInt(workerDims[0]),
+                                                                        Integer.parseInt(workerDims[1]), lifeRule);
+        long launchNanos = System.nanoTime();
+        coordinator.launch();
+        System.out.printf("%d x %d cells, %s x %s workers, rule %s: started in %.0f ms%n", horizDim, vertDim,
+                          workerDims[0], workerDims[1], lifeRule, (System.nanoTime() - launchNanos) / 1e6D);
+        try {
+            coordinator.seedCells(seed);
+            long startNanos = System.nanoTime();
+            coordinator.runGenerations(generations);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            System.out.printf("%d generations: %10.1f gens/sec %8.1f us/gen%n", generations,
+                              generations / (elapsedNanos / 1e9D), elapsedNanos / 1e3D / generations);
+            if (verify) {
+                GenerationFrame cellGridFrame = new GenerationFrame();
+                coordinator.captureFrame(cellGridFrame, coordinator.getGenerationNumber());
+                int mismatchCount = countMismatches(cellGridFrame, lifeRule, seed, generations);
+                System.out.println((mismatchCount == 0) ? "matches a single-process run"
+                                   : mismatchCount + " cells differ from a single-process run");
+            }
+        } finally {
+            coordinator.shutdown();
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import org.kmfahey.jgameoflife.LifeRule;
+
+/**
+ * This class implements a worker process of a distributed cell grid. The
+ * torus is cut into a grid of rectangular blocks, one per worker process, and
+ * each worker steps its block as a single bit-packed CellGridSection. The
+ * section's eight neighbors aren't the sections of the neighboring blocks,
+ * which live in other processes, but ghost sections: a column one cell wide
+ * to the west and east, a row one cell high to the north and south, and a
+ * single cell at each corner, which are refilled from the neighboring
+ * workers' edges before every generation. The section reads them through
+ * getCell() exactly as it would read neighbors in the same process.
+ * <p>
+ * The halo exchange takes two phases, so that a worker only talks to the four
+ * workers it shares an edge with. First each worker sends its west column
+ * west and its east column east, and receives the columns its neighbors sent.
+ * Then it sends its north row north and its south row south, each extended by
+ * a cell at either end taken from the columns it just received, and receives
+ * its neighbors' rows; the cells at their ends are its corner cells, which
+ * came from its diagonal neighbors by way of the first phase. Where the
+ * blocks are a single column or row wide, a worker is its own neighbor in
+ * that direction, and wraps its edges itself.
+ * <p>
+ * The exchange doubles as the barrier between generations: no worker can
+ * compute generation N + 1 until its neighbors have sent their edges of
+ * generation N. Everything else is directed by the DistributedCoordinator
+ * over a control connection, which it started the worker with.
+ * <p>
+ * Usage, as the coordinator launches it:
+ * java org.kmfahey.jgameoflife.altthreadedimpl.DistributedWorker
+ * coordinatorPort workerIndex gridWidth gridHeight horizWorkers vertWorkers
+ * rulestring
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.DistributedCoordinator
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.MessageChannel
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridSection
+ */
+public class DistributedWorker {
+
+    /** This int is the index of this worker, counted across the rows of
+        blocks. */
+    private final int workerIndex;
+
+    /** This int is the number of workers across the cell grid. */
+    private final int horizWorkers;
+
+    /** This int is the number of workers down the cell grid. */
+    private final int vertWorkers;
+
+    /** This int is the horizontal coordinate of the upper left corner of this
+        worker's block in the cell grid. */
+    private final int originHorizCoord;
+
+    /** This int is the vertical coordinate of the upper left corner of this
+        worker's block in the cell grid. */
+    private final int originVertCoord;
+
+    /** This int is the width of this worker's block, in cells. */
+    private final int horizDim;
+
+    /** This int is the height of this worker's block, in cells. */
+    private final int vertDim;
+
+    /** This CellGridSection object holds and steps this worker's block. */
+    private final CellGridSection blockSection;
+
+    /** These CellGridSection objects are the ghost sections around the
+        block, holding the cells received from the neighboring workers. */
+    private final CellGridSection westGhost;
+    private final CellGridSection eastGhost;
+    private final CellGridSection northGhost;
+    private final CellGridSection southGhost;
+    private final CellGridSection northWestGhost;
+    private final CellGridSection northEastGhost;
+    private final CellGridSection southWestGhost;
+    private final CellGridSection southEastGhost;
+
+    /** These long[] arrays hold the packed columns sent to and received from
+        the west and east neighbors. */
+    private final long[] westColumn;
+    private final long[] eastColumn;
+    private final long[] westHaloColumn;
+    private final long[] eastHaloColumn;
+
+    /** These long[] arrays hold the packed rows, a cell longer than the block
+        at either end, sent to and received from the north and south
+        neighbors. */
+    private final long[] northRow;
+    private final long[] southRow;
+    private final long[] northHaloRow;
+    private final long[] southHaloRow;
+
+    /** This ServerSocketChannel object accepts the halo links from the west
+        and north neighbors. */
+    private ServerSocketChannel haloServer;
+
+    /** This MessageChannel object is the connection to the coordinator. */
+    private MessageChannel controlChannel;
+
+    /** These MessageChannel objects are the halo links to the four
+        neighboring workers; each is null where this worker is its own
+        neighbor. */
+    private MessageChannel westLink;
+    private MessageChannel eastLink;
+    private MessageChannel northLink;
+    private MessageChannel southLink;
+
+    /** This long is the number of generations this worker has stepped. */
+    private long generationNumber;
+
+    /**
+     * This constructor initializes the DistributedWorker object, building the
+     * section for its block and the ghost sections around it.
+     *
+     * @param workerIndexVal  The index of this worker, counted across the
+     *                        rows of blocks.
+     * @param gridHorizDim    The width of the whole cell grid, in cells.
+     * @param gridVertDim     The height of the whole cell grid, in cells.
+     * @param horizWorkersVal The number of workers across the cell grid.
+     * @param vertWorkersVal  The number of workers down the cell grid.
+     * @param lifeRule        The rule to step the cells by.
+     */
+    public DistributedWorker(final int workerIndexVal, final int gridHorizDim, final int gridVertDim,
+                             final int horizWorkersVal, final int vertWorkersVal, final LifeRule lifeRule) {
+        workerIndex = workerIndexVal;
+        horizWorkers = horizWorkersVal;
+        vertWorkers = vertWorkersVal;
+        int blockHoriz = workerIndex % horizWorkers;
+        int blockVert = workerIndex / horizWorkers;
+        originHorizCoord = DistributedCoordinator.blockOrigin(gridHorizDim, horizWorkers, blockHoriz);
+        originVertCoord = DistributedCoordinator.blockOrigin(gridVertDim, vertWorkers, blockVert);
+        horizDim = DistributedCoordinator.blockOrigin(gridHorizDim, horizWorkers, blockHoriz + 1) - originHorizCoord;
+        vertDim = DistributedCoordinator.blockOrigin(gridVertDim, vertWorkers, blockVert + 1) - originVertCoord;
+
+        int engineFlag = CellGridSection.ENGINE_BIT_PACKED;
+        blockSection = new CellGridSection(horizDim, vertDim, originHorizCoord, originVertCoord, engineFlag,
+                                           lifeRule);
+        westGhost = new CellGridSection(1, vertDim, 0, 0, engineFlag, lifeRule);
+        eastGhost = new CellGridSection(1, vertDim, 0, 0, engineFlag, lifeRule);
+        northGhost = new CellGridSection(horizDim, 1, 0, 0, engineFlag, lifeRule);
+        southGhost = new CellGridSection(horizDim, 1, 0, 0, engineFlag, lifeRule);
+        northWestGhost = new CellGridSection(1, 1, 0, 0, engineFlag, lifeRule);
+        northEastGhost = new CellGridSection(1, 1, 0, 0, engineFlag, lifeRule);
+        southWestGhost = new CellGridSection(1, 1, 0, 0, engineFlag, lifeRule);
+        southEastGhost = new CellGridSection(1, 1, 0, 0, engineFlag, lifeRule);
+        blockSection.setNeighbor(westGhost, CellGridSection.WEST);
+        blockSection.setNeighbor(eastGhost, CellGridSection.EAST);
+        blockSection.setNeighbor(northGhost, CellGridSection.NORTH);
+        blockSection.setNeighbor(southGhost, CellGridSection.SOUTH);
+        blockSection.setNeighbor(northWestGhost, CellGridSection.NORTHWEST);
+        blockSection.setNeighbor(northEastGhost, CellGridSection.NORTHEAST);
+        blockSection.setNeighbor(southWestGhost, CellGridSection.SOUTHWEST);
+        blockSection.setNeighbor(southEastGhost, CellGridSection.SOUTHEAST);
+
+        westColumn = new long[MessageChannel.wordsForBits(vertDim)];
+        eastColumn = new long[westColumn.length];
+        westHaloColumn = new long[westColumn.length];
+        eastHaloColumn = new long[westColumn.length];
+        northRow = new long[MessageChannel.wordsForBits(horizDim + 2)];
+        southRow = new long[northRow.length];
+        northHaloRow = new long[northRow.length];
+        southHaloRow = new long[northRow.length];
+    }
+
+    /**
+     * This method connects the worker to the coordinator and to its
+     * neighbors. It opens a port for the west and north neighbors to connect
+     * to, reports it to the coordinator, learns the other workers' ports from
+     * the coordinator, connects to its east and south neighbors, accepts its
+     * west and north neighbors, and reports that it's ready.
+     *
+     * @param coordinatorPort The port the coordinator listens on, on the
+     *                        loopback address.
+     * @throws IOException If a connection can't be made, or a message isn't
+     *                     as expected.
+     */
+    public void connect(final int coordinatorPort) throws IOException {
+        InetAddress loopbackAddress = InetAddress.getLoopbackAddress();
+        int workerCount = horizWorkers * vertWorkers;
+        int maxPayloadWords = Math.max(westColumn.length, northRow.length);
+
+        haloServer = ServerSocketChannel.open();
+        haloServer.bind(new InetSocketAddress(loopbackAddress, 0));
+        controlChannel = new MessageChannel(SocketChannel.open(new InetSocketAddress(loopbackAddress,
+                                                                                     coordinatorPort)), 1);
+        long[] helloWords = {((InetSocketAddress) haloServer.getLocalAddress()).getPort()};
+        controlChannel.send(MessageChannel.MSG_HELLO, workerIndex, helloWords, 1);
+        long[] workerPorts = new long[workerCount];
+        controlChannel.receive(MessageChannel.MSG_LAYOUT, workerPorts);
+
+        /* A worker connects to its east and south neighbors and is connected
+           to by its west and north ones, so every shared edge gets exactly
+           one link. The neighbor says which of its sides the link is for,
+           since with two blocks across, the worker to the west is also the
+           worker to the east. */
+        int blockHoriz = workerIndex % horizWorkers;
+        int blockVert = workerIndex / horizWorkers;
+        int eastIndex = blockVert * horizWorkers + (blockHoriz + 1) % horizWorkers;
+        int southIndex = ((blockVert + 1) % vertWorkers) * horizWorkers + blockHoriz;
+        int expectedLinks = 0;
+        if (eastIndex != workerIndex) {
+            eastLink = openLink(loopbackAddress, (int) workerPorts[eastIndex], CellGridSection.EAST, maxPayloadWords);
+            expectedLinks++;
+        }
+        if (southIndex != workerIndex) {
+            southLink = openLink(loopbackAddress, (int) workerPorts[southIndex], CellGridSection.SOUTH,
+                                 maxPayloadWords);
+            expectedLinks++;
+        }
+        long[] sideWords = new long[1];
+        for (int linkIndex = 0; linkIndex < expectedLinks; linkIndex++) {
+            MessageChannel acceptedLink = new MessageChannel(haloServer.accept(), maxPayloadWords);
+            acceptedLink.receive(MessageChannel.MSG_HELLO, sideWords);
+            if (sideWords[0] == CellGridSection.EAST) {
+                westLink = acceptedLink;
+            } else {
+                northLink = acceptedLink;
+            }
+        }
+        haloServer.close();
+        controlChannel.send(MessageChannel.MSG_READY, workerIndex);
+    }
+
+    /**
+     * This method carries out the coordinator's commands until it's told to
+     * shut down.
+     *
+     * @throws IOException If a connection fails, or a message isn't as
+     *                     expected.
+     */
+    public void runCommands() throws IOException {
+        long[] commandWords = new long[1];
+        long[] cellWords = new long[MessageChannel.wordsForBits(horizDim * vertDim)];
+        while (true) {
+            int commandType = controlChannel.receiveCommand(commandWords);
+            long argument = commandWords[0];
+            switch (commandType) {
+                case MessageChannel.MSG_SEED:
+                    seedBlock(argument);
+                    break;
+                case MessageChannel.MSG_CLEAR:
+                    blockSection.clearCellGrid();
+                    break;
+                case MessageChannel.MSG_INVERT_CELL:
+                    blockSection.invertCell((int) (argument >>> 32) - originHorizCoord,
+                                            (int) argument - originVertCoord);
+                    break;
+                case MessageChannel.MSG_STEP:
+                    for (long generation = 0; generation < argument; generation++) {
+                        stepGeneration();
+                    }
+                    break;
+                case MessageChannel.MSG_SNAPSHOT:
+                    for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+                        for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                            MessageChannel.setPackedCell(cellWords, vertIndex * horizDim + horizIndex,
+                                                         blockSection.getCell(horizIndex, vertIndex));
+                        }
+                    }
+                    controlChannel.send(MessageChannel.MSG_CELLS, generationNumber, cellWords, cellWords.length);
+                    continue;
+                case MessageChannel.MSG_SHUTDOWN:
+                    close();
+                    return;
+                default:
+                    throw new IOException("unexpected command " + commandType);
+            }
+            controlChannel.send(MessageChannel.MSG_DONE, generationNumber);
+        }
+    }
+
+    /**
+     * This method steps the block one generation: it exchanges edges with the
+     * neighbors, loads the cells received into the ghost sections, and has
+     * the block section compute the next generation and display it.
+     *
+     * @throws IOException If a halo link fails, or a neighbor is on a
+     *                     different generation.
+     */
+    public void stepGeneration() throws IOException {
+        exchangeColumns();
+        exchangeRows();
+
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            westGhost.setCell(0, vertIndex, MessageChannel.getPackedCell(westHaloColumn, vertIndex));
+            eastGhost.setCell(0, vertIndex, MessageChannel.getPackedCell(eastHaloColumn, vertIndex));
+        }
+        for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+            northGhost.setCell(horizIndex, 0, MessageChannel.getPackedCell(northHaloRow, horizIndex + 1));
+            southGhost.setCell(horizIndex, 0, MessageChannel.getPackedCell(southHaloRow, horizIndex + 1));
+        }
+        northWestGhost.setCell(0, 0, MessageChannel.getPackedCell(northHaloRow, 0));
+        northEastGhost.setCell(0, 0, MessageChannel.getPackedCell(northHaloRow, horizDim + 1));
+        southWestGhost.setCell(0, 0, MessageChannel.getPackedCell(southHaloRow, 0));
+        southEastGhost.setCell(0, 0, MessageChannel.getPackedCell(southHaloRow, horizDim + 1));
+
+        blockSection.algorithmUpdateStep();
+        blockSection.algorithmSwapStep();
+        generationNumber++;
+    }
+
+    /**
+     * This method is the first phase of the halo exchange. It sends the
+     * block's west and east columns to the west and east neighbors and
+     * receives theirs, or swaps them itself if the block is its own neighbor.
+     *
+     * @throws IOException If a halo link fails.
+     */
+    private void exchangeColumns() throws IOException {
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            MessageChannel.setPackedCell(westColumn, vertIndex, blockSection.getCell(0, vertIndex));
+            MessageChannel.setPackedCell(eastColumn, vertIndex, blockSection.getCell(horizDim - 1, vertIndex));
+        }
+        if (eastLink == null) {
+            System.arraycopy(westColumn, 0, eastHaloColumn, 0, westColumn.length);
+            System.arraycopy(eastColumn, 0, westHaloColumn, 0, eastColumn.length);
+            return;
+        }
+        westLink.send(MessageChannel.MSG_HALO_COLUMN, generationNumber, westColumn, westColumn.length);
+        eastLink.send(MessageChannel.MSG_HALO_COLUMN, generationNumber, eastColumn, eastColumn.length);
+        checkGeneration(eastLink.receive(MessageChannel.MSG_HALO_COLUMN, eastHaloColumn));
+        checkGeneration(westLink.receive(MessageChannel.MSG_HALO_COLUMN, westHaloColumn));
+    }
+
+    /**
+     * This method is the second phase of the halo exchange. It sends the
+     * block's north and south rows, with the cells of the halo columns at
+     * their ends, to the north and south neighbors and receives theirs, or
+     * swaps them itself if the block is its own neighbor.
+     *
+     * @throws IOException If a halo link fails.
+     */
+    private void exchangeRows() throws IOException {
+        for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+            MessageChannel.setPackedCell(northRow, horizIndex + 1, blockSection.getCell(horizIndex, 0));
+            MessageChannel.setPackedCell(southRow, horizIndex + 1, blockSection.getCell(horizIndex, vertDim - 1));
+        }
+        MessageChannel.setPackedCell(northRow, 0, MessageChannel.getPackedCell(westHaloColumn, 0));
+        MessageChannel.setPackedCell(northRow, horizDim + 1, MessageChannel.getPackedCell(eastHaloColumn, 0));
+        MessageChannel.setPackedCell(southRow, 0, MessageChannel.getPackedCell(westHaloColumn, vertDim - 1));
+        MessageChannel.setPackedCell(southRow, horizDim + 1,
+                                     MessageChannel.getPackedCell(eastHaloColumn, vertDim - 1));
+        if (southLink == null) {
+            System.arraycopy(northRow, 0, southHaloRow, 0, northRow.length);
+            System.arraycopy(southRow, 0, northHaloRow, 0, southRow.length);
+            return;
+        }
+        northLink.send(MessageChannel.MSG_HALO_ROW, generationNumber, northRow, northRow.length);
+        southLink.send(MessageChannel.MSG_HALO_ROW, generationNumber, southRow, southRow.length);
+        checkGeneration(southLink.receive(MessageChannel.MSG_HALO_ROW, southHaloRow));
+        checkGeneration(northLink.receive(MessageChannel.MSG_HALO_ROW, northHaloRow));
+    }
+
+    /**
+     * This method checks that a neighbor sent the edge of the same generation
+     * this worker is on.
+     *
+     * @param neighborGeneration The generation number the neighbor sent.
+     * @throws IOException If it differs from this worker's.
+     */
+    private void checkGeneration(final long neighborGeneration) throws IOException {
+        if (neighborGeneration != generationNumber) {
+            throw new IOException("worker " + workerIndex + " is on generation " + generationNumber
+                                  + " but a neighbor sent generation " + neighborGeneration);
+        }
+    }
+
+    /**
+     * This method seeds the block, choosing each cell with
+     * DistributedCoordinator.seedCellValue() from its coordinates in the
+     * whole cell grid, so the cell grid comes out the same however it's cut
+     * into blocks.
+     *
+     * @param seed The seed the coordinator chose.
+     */
+    private void seedBlock(final long seed) {
+        for (int vertIndex = 0; vertIndex < vertDim; vertIndex++) {
+            for (int horizIndex = 0; horizIndex < horizDim; horizIndex++) {
+                if (DistributedCoordinator.seedCellValue(seed, originHorizCoord + horizIndex,
+                                                         originVertCoord + vertIndex) == 1) {
+                    blockSection.setCell(horizIndex, vertIndex, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method opens a halo link to a neighbor and introduces this worker
+     * on it.
+     *
+     * @param loopbackAddress The address the neighbor listens on.
+     * @param neighborPort    The port the neighbor listens on.
+     * @param sideFlag        The side of this block the neighbor is on,
+     *                        CellGridSection.EAST or CellGridSection.SOUTH.
+     * @param maxPayloadWords The longest edge, in longs.
+     * @return                The link.
+     * @throws IOException If the connection can't be made.
+     */
+    private MessageChannel openLink(final InetAddress loopbackAddress, final int neighborPort, final int sideFlag,
+                                    final int maxPayloadWords) throws IOException {
+        MessageChannel haloLink = new MessageChannel(SocketChannel.open(new InetSocketAddress(loopbackAddress,
+                                                                                             neighborPort)),
+                                                     maxPayloadWords);
+        long[] sideWords = {sideFlag};
+        haloLink.send(MessageChannel.MSG_HELLO, workerIndex, sideWords, 1);
+        return haloLink;
+    }
+
+    /**
+     * This method closes every connection.
+     */
+    private void close() {
+        controlChannel.close();
+        for (MessageChannel haloLink : new MessageChannel[] {westLink, eastLink, northLink, southLink}) {
+            if (haloLink != null) {
+                haloLink.close();
+            }
+        }
+    }
+
+    /**
+     * This method is called when the coordinator starts the worker process.
+     * It builds the worker from the commandline arguments, connects it, and
+     * carries out commands until it's shut down. If anything fails, the
+     * process exits with status 1, which closes its connections and lets the
+     * coordinator and the neighbors know.
+     *
+     * @param args The coordinator's port, the worker index, the width and
+     *             height of the cell grid, the number of workers across and
+     *             down it, and the rulestring.
+     */
+    public static void main(final String[] args) {
+        DistributedWorker worker = new DistributedWorker(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                                                         Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+                                                         Integer.parseInt(args[5]), LifeRule.parse(args[6]));
+        try {
+            worker.connect(Integer.parseInt(args[0]));
+            worker.runCommands();
+        } catch (IOException exception) {
+            System.err.println("worker " + args[1] + ": " + exception);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.kmfahey.jgameoflife.CellRasterizer;
+import org.kmfahey.jgameoflife.GenerationFrame;
+
+/**
+ * This class implements a dispatcher that runs the tasks of the
+ * CellGridSection objects on an ExecutorService, submitting a task per
+ * selected section and waiting for all of them. It's meant for an executor
+ * that starts a virtual thread per task, which newVirtualThreadExecutor()
+ * returns: no thread outlives the task it was started for, so a cell grid
+ * that isn't running holds no threads, and a cell grid cut into thousands of
+ * sections, or many cell grids, need only as many OS threads as there are
+ * carrier threads under the virtual ones.
+ * <p>
+ * A generation is a single round of tasks, as it is for ForkJoinDispatch: the
+ * sections compute their next generations into their update arrays, and once
+ * every task has finished, the calling thread swaps them in, steps the
+ * sleeping sections and refreshes their sleep states, wrapping the halo of a
+ * SharedCellGrid before the round and rotating its arrays after it.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.ForkJoinDispatch
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
+ */
+public class ExecutorDispatch implements TileDispatch {
+
+    /** This CellGridSection[] array stores the CellGridSection objects that
+        manage the individual portions of the composite cell grid. */
+    private final CellGridSection[] cellGridSections;
+
+    /** This SharedCellGrid object holds the cells of every section, or is null
+        if the sections store their cells bit-packed. */
+    private final SharedCellGrid sharedCellGrid;
+
+    /** This ExecutorService object runs the tasks. */
+    private final ExecutorService executorService;
+
+    /** This int is the number of tasks the executor can run at once. */
+    private final int workerCount;
+
+    /** This long[] array receives, for each section, how long it took to run
+        the last task it was selected for. */
+    private final long[] sectionNanos;
+
+    /** This boolean[] array holds, for each section, whether it's to be
+        stepped by the next task. It's filled in place before every step,
+        rather than allocated. */
+    private final boolean[] stepSections;
+
+    /** This boolean[] array is true for every section, for the tasks that
+        run on all of them. It's never changed after it's filled. */
+    private final boolean[] allSections;
+
+    /** This List object holds a Callable object for each section, made once,
+        which runs dispatchedRunMode on it. */
+    private final List<Callable<Object>> sectionCallables;
+
+    /** This List object is refilled with the Callable objects of the
+        selected sections before every task, rather than allocated. */
+    private final List<Callable<Object>> sectionTasks;
+
+    /** This int is the mode flag of the task being run. It's set before the
+        Callable objects are handed to the executor, which makes it visible
+        to the threads that run them. */
+    private int dispatchedRunMode;
+
+    /** This long sums the times the sections took to compute a step since
+        the mean was last taken. */
+    private long totalStepNanos;
+
+    /** This long counts the section steps summed in totalStepNanos. */
+    private long stepCount;
+
+    /** This int is the number of generations the last MODE_BLOCK_STEP task
+        computed, which the times of its sections are divided by. */
+    private int blockGenerations = 1;
+
+    /**
+     * This constructor initializes the object. It's called with a 2d array of
+     * CellGridSection objects, which it copies to a single array in the same
+     * order CellGridDispatch does.
+     *
+     * @param sectionObjs        A 2d array of CellGridSection objects, which
+     *                           this object will delegate tasks to.
+     * @param executorServiceVal The executor that runs the tasks.
+     * @param workerCountVal     The number of tasks the executor can run at
+     *                           once; for virtual threads, the number of
+     *                           carrier threads.
+     */
+    public ExecutorDispatch(final CellGridSection[][] sectionObjs, final ExecutorService executorServiceVal,
+                            final int workerCountVal) {
+        int cellGridSectionsIndex = 0;
+
+        executorService = executorServiceVal;
+        workerCount = workerCountVal;
+        cellGridSections = new CellGridSection[sectionObjs.length * sectionObjs[0].length];
+        sectionNanos = new long[cellGridSections.length];
+        stepSections = new boolean[cellGridSections.length];
+        allSections = new boolean[cellGridSections.length];
+        Arrays.fill(allSections, true);
+        sectionCallables = new ArrayList<>(cellGridSections.length);
+        sectionTasks = new ArrayList<>(cellGridSections.length);
+        for (int horizIndex = 0; horizIndex < sectionObjs.length; horizIndex++) {
+            for (int vertIndex = 0; vertIndex < sectionObjs[0].length; vertIndex++) {
+                cellGridSections[cellGridSectionsIndex] = sectionObjs[horizIndex][vertIndex];
+                final int sectionIndex = cellGridSectionsIndex;
+                sectionCallables.add(Executors.callable(() -> runSection(sectionIndex)));
+                cellGridSectionsIndex++;
+            }
+        }
+        sharedCellGrid = cellGridSections[0].getSharedCellGrid();
+    }
+
+    /**
+     * This method returns an executor that starts a new virtual thread for
+     * every task. Virtual threads arrived in Java 21, so the method is looked
+     * up by reflection; on an older runtime, an executor that starts a new
+     * platform thread for every task, and keeps it around for a minute in
+     * case another task comes along, is returned instead.
+     *
+     * @return The executor.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException exception) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * This method reports whether newVirtualThreadExecutor() returns an
+     * executor of virtual threads on this runtime.
+     *
+     * @return true if the runtime has virtual threads, false otherwise.
+     */
+    public static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * This method is shorthand for calling delegateRunMode with the MODE_SEED
+     * flag to cause the composite cells grid to be populated with randomly
+     * assigned 'live' cells.
+     */
+    public void seedSections() {
+        delegateRunMode(CellGridSection.MODE_SEED);
+    }
+
+    /**
+     * This method is shorthand for calling delegateRunMode with the MODE_CLEAR
+     * flag to cause the composite cells grid to be cleared of all 'live' cells.
+     */
+    public void clearSections() {
+        delegateRunMode(CellGridSection.MODE_CLEAR);
+    }
+
+    /**
+     * This method effects a single step in the game of life algorithm. It
+     * runs the MODE_STEP task on the sections that are awake, then swaps in
+     * their new generations, steps the sleeping sections, and has every
+     * section decide whether it sleeps through the next step.
+     */
+    public void sectionsRunAlgorithm() {
+        for (int index = 0; index < cellGridSections.length; index++) {
+            stepSections[index] = cellGridSections[index].isAwake();
+        }
+        delegateRunMode(CellGridSection.MODE_STEP, stepSections);
+
+        for (int index = 0; index < cellGridSections.length; index++) {
+            if (stepSections[index]) {
+                cellGridSections[index].algorithmSwapStep();
+                totalStepNanos += sectionNanos[index];
+                stepCount++;
+            } else {
+                cellGridSections[index].algorithmSleepStep();
+            }
+        }
+        if (sharedCellGrid != null) {
+            sharedCellGrid.rotateGenerations();
+        }
+        for (CellGridSection cellGridSection : cellGridSections) {
+            cellGridSection.refreshSleepState();
+        }
+    }
+
+    /**
+     * This method effects a number of steps in the game of life algorithm as
+     * a single round of tasks, each section computing them from a ghost zone
+     * with CellGridSection.algorithmBlockStep(). A single generation is left
+     * to sectionsRunAlgorithm().
+     *
+     * @param generationCount The number of generations to step, no more than
+     *                        the width of the halo of the SharedCellGrid.
+     */
+    public void sectionsRunGenerations(final int generationCount) {
+        if (generationCount == 1) {
+            sectionsRunAlgorithm();
+            return;
+        }
+        blockGenerations = generationCount;
+        for (CellGridSection cellGridSection : cellGridSections) {
+            cellGridSection.setBlockGenerations(generationCount);
+        }
+        delegateRunMode(CellGridSection.MODE_BLOCK_STEP);
+    }
+
+    /**
+     * This method has every section copy its displayed generation into a
+     * frame and draw it into a rasterizer's image, with the MODE_RENDER
+     * task. Each section is a task of its own, like any other task.
+     *
+     * @param targetFrame      The frame to copy the cells into, already reset
+     *                         to the size of the cell grid.
+     * @param targetRasterizer The rasterizer to draw them with.
+     * @param imageIndex       Which of the two images the rasterizer holds,
+     *                         0 or 1.
+     */
+    public void renderSections(final GenerationFrame targetFrame, final CellRasterizer targetRasterizer,
+                               final int imageIndex) {
+        for (CellGridSection cellGridSection : cellGridSections) {
+            cellGridSection.setRenderTarget(targetFrame, targetRasterizer, imageIndex);
+        }
+        delegateRunMode(CellGridSection.MODE_RENDER);
+    }
+
+    /**
+     * This method returns the mean time, in nanoseconds, that an awake
+     * section took to compute a step since the last time this method was
+     * called, and starts a new mean. A step of several generations is
+     * counted as its time per generation.
+     *
+     * @return The mean time per section step, or 0 if no section was awake
+     *         in that time.
+     */
+    public long takeMeanStepNanos() {
+        long meanStepNanos = (stepCount == 0) ? 0L : totalStepNanos / stepCount;
+        totalStepNanos = 0L;
+        stepCount = 0L;
+        return meanStepNanos;
+    }
+
+    /**
+     * This method is an accessor for the private workerCount variable.
+     *
+     * @return The number of tasks the executor can run at once.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * This method returns a new ExecutorDispatch object on the same executor
+     * for a new set of sections.
+     *
+     * @param sectionObjs A 2d array of CellGridSection objects, which the new
+     *                    object will delegate tasks to.
+     * @return            The new dispatcher.
+     */
+    public TileDispatch redispatch(final CellGridSection[][] sectionObjs) {
+        return new ExecutorDispatch(sectionObjs, executorService, workerCount);
+    }
+
+    /**
+     * This method counts the sections that are awake.
+     *
+     * @return The number of CellGridSection objects that are awake.
+     */
+    public int getAwakeSectionCount() {
+        int awakeCount = 0;
+        for (CellGridSection cellGridSection : cellGridSections) {
+            if (cellGridSection.isAwake()) {
+                awakeCount++;
+            }
+        }
+        return awakeCount;
+    }
+
+    /**
+     * This method shuts the executor down. No task can be delegated
+     * afterward.
+     */
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    /**
+     * This method runs the task given by the flag on every section.
+     *
+     * @param runMode An integer flag, one of the CellGridSection.MODE_*
+     *                constants.
+     */
+    public void delegateRunMode(final int runMode) {
+        delegateRunMode(runMode, allSections);
+    }
+
+    /**
+     * This method runs the task given by the flag on the selected sections,
+     * submitting a task per section to the executor, and returns once every
+     * one of them has finished. Around the tasks, it wraps the halo or
+     * rotates the arrays of the SharedCellGrid, if there is one, as
+     * ForkJoinDispatch does.
+     *
+     * @param runMode          An integer flag, one of the
+     *                         CellGridSection.MODE_* constants.
+     * @param selectedSections A boolean array with an element for each
+     *                         section, true for the sections that should
+     *                         run the task.
+     * @throws IllegalStateException If the calling thread is interrupted
+     *                               while it waits, or a section's task
+     *                               throws an exception.
+     */
+    public void delegateRunMode(final int runMode, final boolean[] selectedSections) {
+        if (sharedCellGrid != null && (runMode == CellGridSection.MODE_STEP || runMode == CellGridSection.MODE_UPDATE
+                                       || runMode == CellGridSection.MODE_BLOCK_STEP)) {
+            sharedCellGrid.wrapHaloCells();
+        }
+
+        dispatchedRunMode = runMode;
+        sectionTasks.clear();
+        for (int index = 0; index < cellGridSections.length; index++) {
+            if (selectedSections[index]) {
+                sectionTasks.add(sectionCallables.get(index));
+            }
+        }
+        try {
+            /* invokeAll() waits for every task, and get() rethrows whatever a
+               task threw. The executor's handoff of each finished task makes
+               its writes visible to this thread. */
+            for (Future<Object> sectionFuture : executorService.invokeAll(sectionTasks)) {
+                sectionFuture.get();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the sections", exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("a section failed to run its task", exception.getCause());
+        }
+
+        if (sharedCellGrid != null && runMode == CellGridSection.MODE_DISPLAY) {
+            sharedCellGrid.rotateGenerations();
+        } else if (runMode == CellGridSection.MODE_BLOCK_STEP) {
+            sharedCellGrid.rotateGenerations();
+            for (CellGridSection cellGridSection : cellGridSections) {
+                cellGridSection.refreshSleepState();
+            }
+            /* A block is counted as a step per generation, so that the
+               tiles are sized by the same cost per generation however many
+               generations a task computes. */
+            for (int index = 0; index < cellGridSections.length; index++) {
+                totalStepNanos += sectionNanos[index] / blockGenerations;
+                stepCount++;
+            }
+        }
+    }
+
+    /**
+     * This method runs the task given by dispatchedRunMode on a section, and
+     * records how long it took.
+     *
+     * @param sectionIndex The index of the section.
+     */
+    private void runSection(final int sectionIndex) {
+        long startNanos = System.nanoTime();
+        cellGridSections[sectionIndex].runMode(dispatchedRunMode);
+        sectionNanos[sectionIndex] = System.nanoTime() - startNanos;
+    }
+}
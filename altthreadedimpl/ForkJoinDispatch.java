@@ -0,0 +1,308 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.kmfahey.jgameoflife.CellRasterizer;
+import org.kmfahey.jgameoflife.GenerationFrame;
+
+/**
+ * This class implements a dispatcher that runs the tasks of the
+ * CellGridSection objects on the worker threads of a ForkJoinPool, rather
+ * than on a thread per section. Each task is a SectionTask over every
+ * section, which splits itself down to a task per section; a worker thread
+ * that runs out of sections steals half of another's remaining range. With
+ * many more sections than worker threads, a cell grid whose activity is
+ * concentrated in a few places keeps every core busy, where a thread per
+ * section leaves the threads with quiet sections idle while the rest finish.
+ * The number of worker threads is the pool's parallelism, and needn't have
+ * anything to do with the number of sections.
+ * <p>
+ * A generation is a single invocation of the pool. The sections compute their
+ * next generations into their update arrays, which no other section reads,
+ * and once the invocation returns, the calling thread swaps them in, steps the
+ * sleeping sections and refreshes their sleep states, as the barrier action
+ * of CellGridDispatch does; it likewise wraps the halo of a SharedCellGrid
+ * before the invocation and rotates its arrays after it.
+ * <p>
+ * The object also keeps the mean time a section took to compute a
+ * generation, which CellGrid uses to pick the size of its sections.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.SectionTask
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
+ */
+public class ForkJoinDispatch implements TileDispatch {
+
+    /** This CellGridSection[] array stores the CellGridSection objects that
+        manage the individual portions of the composite cell grid. */
+    private final CellGridSection[] cellGridSections;
+
+    /** This SharedCellGrid object holds the cells of every section, or is null
+        if the sections store their cells bit-packed. */
+    private final SharedCellGrid sharedCellGrid;
+
+    /** This ForkJoinPool object runs the tasks. */
+    private final ForkJoinPool forkJoinPool;
+
+    /** This long[] array receives, for each section, how long it took to run
+        the last task it was selected for. */
+    private final long[] sectionNanos;
+
+    /** This boolean[] array holds, for each section, whether it's to be
+        stepped by the next task. It's filled in place before every step,
+        rather than allocated. */
+    private final boolean[] stepSections;
+
+    /** This boolean[] array is true for every section, for the tasks that
+        run on all of them. It's never changed after it's filled. */
+    private final boolean[] allSections;
+
+    /** This long sums the times the sections took to compute a generation
+        since the mean was last taken. */
+    private long totalStepNanos;
+
+    /** This long counts the section steps summed in totalStepNanos. */
+    private long stepCount;
+
+    /** This int is the number of generations the last MODE_BLOCK_STEP task
+        computed, which the times of its sections are divided by. */
+    private int blockGenerations = 1;
+
+    /**
+     * This constructor initializes the object. It's called with a 2d array of
+     * CellGridSection objects, which it copies to a single array in the same
+     * order CellGridDispatch does, so that a range of the array is a block of
+     * adjacent columns of sections.
+     *
+     * @param sectionObjs     A 2d array of CellGridSection objects, which this
+     *                        object will delegate tasks to.
+     * @param forkJoinPoolVal The pool whose worker threads run the tasks.
+     */
+    public ForkJoinDispatch(final CellGridSection[][] sectionObjs, final ForkJoinPool forkJoinPoolVal) {
+        int cellGridSectionsIndex = 0;
+
+        forkJoinPool = forkJoinPoolVal;
+        cellGridSections = new CellGridSection[sectionObjs.length * sectionObjs[0].length];
+        sectionNanos = new long[cellGridSections.length];
+        stepSections = new boolean[cellGridSections.length];
+        allSections = new boolean[cellGridSections.length];
+        Arrays.fill(allSections, true);
+        for (int horizIndex = 0; horizIndex < sectionObjs.length; horizIndex++) {
+            for (int vertIndex = 0; vertIndex < sectionObjs[0].length; vertIndex++) {
+                cellGridSections[cellGridSectionsIndex] = sectionObjs[horizIndex][vertIndex];
+                cellGridSectionsIndex++;
+            }
+        }
+        sharedCellGrid = cellGridSections[0].getSharedCellGrid();
+    }
+
+    /**
+     * This method is shorthand for calling delegateRunMode with the MODE_SEED
+     * flag to cause the composite cells grid to be populated with randomly
+     * assigned 'live' cells.
+     */
+    public void seedSections() {
+        delegateRunMode(CellGridSection.MODE_SEED);
+    }
+
+    /**
+     * This method is shorthand for calling delegateRunMode with the MODE_CLEAR
+     * flag to cause the composite cells grid to be cleared of all 'live' cells.
+     */
+    public void clearSections() {
+        delegateRunMode(CellGridSection.MODE_CLEAR);
+    }
+
+    /**
+     * This method effects a single step in the game of life algorithm. It
+     * runs the MODE_STEP task on the sections that are awake, then swaps in
+     * their new generations, steps the sleeping sections, and has every
+     * section decide whether it sleeps through the next step. The time each
+     * awake section took is added to the running total for the mean.
+     */
+    public void sectionsRunAlgorithm() {
+        for (int index = 0; index < cellGridSections.length; index++) {
+            stepSections[index] = cellGridSections[index].isAwake();
+        }
+        delegateRunMode(CellGridSection.MODE_STEP, stepSections);
+
+        /* No task is running now, so no section is reading any other's
+           display cells, and they can all be swapped. */
+        for (int index = 0; index < cellGridSections.length; index++) {
+            if (stepSections[index]) {
+                cellGridSections[index].algorithmSwapStep();
+                totalStepNanos += sectionNanos[index];
+                stepCount++;
+            } else {
+                cellGridSections[index].algorithmSleepStep();
+            }
+        }
+        if (sharedCellGrid != null) {
+            sharedCellGrid.rotateGenerations();
+        }
+        for (CellGridSection cellGridSection : cellGridSections) {
+            cellGridSection.refreshSleepState();
+        }
+    }
+
+    /**
+     * This method returns the mean time, in nanoseconds, that an awake
+     * section took to compute a step since the last time this method was
+     * called, and starts a new mean. A step of several generations is
+     * counted as its time per generation.
+     *
+     * @return The mean time per section step, or 0 if no section was awake
+     *         in that time.
+     */
+    public long takeMeanStepNanos() {
+        long meanStepNanos = (stepCount == 0) ? 0L : totalStepNanos / stepCount;
+        totalStepNanos = 0L;
+        stepCount = 0L;
+        return meanStepNanos;
+    }
+
+    /**
+     * This method effects a number of steps in the game of life algorithm as
+     * a single task. Every section computes that many generations of its
+     * region from a ghost zone as wide, with
+     * CellGridSection.algorithmBlockStep(), so the threads meet once for the
+     * lot rather than once per generation. Sleeping sections are woken, since
+     * the block step can't tell whether they've settled. A single generation
+     * is left to sectionsRunAlgorithm().
+     *
+     * @param generationCount The number of generations to step, no more than
+     *                        the width of the halo of the SharedCellGrid.
+     */
+    public void sectionsRunGenerations(final int generationCount) {
+        if (generationCount == 1) {
+            sectionsRunAlgorithm();
+            return;
+        }
+        blockGenerations = generationCount;
+        for (CellGridSection cellGridSection : cellGridSections) {
+            cellGridSection.setBlockGenerations(generationCount);
+        }
+        delegateRunMode(CellGridSection.MODE_BLOCK_STEP);
+    }
+
+    /**
+     * This method has every section copy its displayed generation into a
+     * frame and draw it into a rasterizer's image, with the MODE_RENDER
+     * task. The sections are handed to the pool as a SectionTask, like any
+     * other task.
+     *
+     * @param targetFrame      The frame to copy the cells into, already reset
+     *                         to the size of the cell grid.
+     * @param targetRasterizer The rasterizer to draw them with.
+     * @param imageIndex       Which of the two images the rasterizer holds,
+     *                         0 or 1.
+     */
+    public void renderSections(final GenerationFrame targetFrame, final CellRasterizer targetRasterizer,
+                               final int imageIndex) {
+        for (CellGridSection cellGridSection : cellGridSections) {
+            cellGridSection.setRenderTarget(targetFrame, targetRasterizer, imageIndex);
+        }
+        delegateRunMode(CellGridSection.MODE_RENDER);
+    }
+
+    /**
+     * This method counts the sections that are awake. It's a diagnostic for
+     * how much of the cell grid is still being computed.
+     *
+     * @return The number of CellGridSection objects that are awake.
+     */
+    public int getAwakeSectionCount() {
+        int awakeCount = 0;
+        for (CellGridSection cellGridSection : cellGridSections) {
+            if (cellGridSection.isAwake()) {
+                awakeCount++;
+            }
+        }
+        return awakeCount;
+    }
+
+    /**
+     * This method returns the parallelism of the pool.
+     *
+     * @return The number of worker threads of the ForkJoinPool.
+     */
+    public int getWorkerCount() {
+        return forkJoinPool.getParallelism();
+    }
+
+    /**
+     * This method returns a new ForkJoinDispatch object on the same pool for
+     * a new set of sections.
+     *
+     * @param sectionObjs A 2d array of CellGridSection objects, which the new
+     *                    object will delegate tasks to.
+     * @return            The new dispatcher.
+     */
+    public TileDispatch redispatch(final CellGridSection[][] sectionObjs) {
+        return new ForkJoinDispatch(sectionObjs, forkJoinPool);
+    }
+
+    /**
+     * This method is an accessor for the private forkJoinPool variable.
+     *
+     * @return The ForkJoinPool object that runs the tasks.
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * This method shuts the pool down. No task can be delegated afterward.
+     */
+    public void shutdown() {
+        forkJoinPool.shutdown();
+    }
+
+    /**
+     * This method runs the task given by the flag on every section.
+     *
+     * @param runMode An integer flag, one of CellGridSection.MODE_CLEAR,
+     *                CellGridSection.MODE_SEED, CellGridSection.MODE_UPDATE,
+     *                CellGridSection.MODE_DISPLAY or CellGridSection.MODE_STEP.
+     */
+    public void delegateRunMode(final int runMode) {
+        delegateRunMode(runMode, allSections);
+    }
+
+    /**
+     * This method runs the task given by the flag on the selected sections,
+     * as a SectionTask over the whole array of sections, and returns once
+     * every one of them has finished. Around a task that reads the cells
+     * beyond the edges of the cell grid, or one that makes the new generation
+     * the displayed one, it wraps the halo or rotates the arrays of the
+     * SharedCellGrid, if there is one, as CellGridDispatch does.
+     *
+     * @param runMode          An integer flag, one of the
+     *                         CellGridSection.MODE_* constants.
+     * @param selectedSections A boolean array with an element for each
+     *                         section, true for the sections that should
+     *                         run the task.
+     */
+    public void delegateRunMode(final int runMode, final boolean[] selectedSections) {
+        if (sharedCellGrid != null && (runMode == CellGridSection.MODE_STEP || runMode == CellGridSection.MODE_UPDATE
+                                       || runMode == CellGridSection.MODE_BLOCK_STEP)) {
+            sharedCellGrid.wrapHaloCells();
+        }
+        forkJoinPool.invoke(new SectionTask(cellGridSections, 0, cellGridSections.length, runMode,
+                                            selectedSections, sectionNanos));
+        if (sharedCellGrid != null && runMode == CellGridSection.MODE_DISPLAY) {
+            sharedCellGrid.rotateGenerations();
+        } else if (runMode == CellGridSection.MODE_BLOCK_STEP) {
+            sharedCellGrid.rotateGenerations();
+            for (CellGridSection cellGridSection : cellGridSections) {
+                cellGridSection.refreshSleepState();
+            }
+            /* A block is counted as a step per generation, so that the
+               tiles are sized by the same cost per generation however many
+               generations a task computes. */
+            for (int index = 0; index < cellGridSections.length; index++) {
+                totalStepNanos += sectionNanos[index] / blockGenerations;
+                stepCount++;
+            }
+        }
+    }
+}
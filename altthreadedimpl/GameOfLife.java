@@ -7,9 +7,19 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.Toolkit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import javax.swing.JButton;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingConstants;
+import javax.swing.Timer;
+import org.kmfahey.jgameoflife.LargerThanLifeRule;
+import org.kmfahey.jgameoflife.LifeRule;
+import org.kmfahey.jgameoflife.PopulationTracker;
+import org.kmfahey.jgameoflife.RingConsumer;
+import org.kmfahey.jgameoflife.SimulationClock;
 
 /**
  * This class implements the GUI frontend that provides an interface to this
@@ -33,11 +43,43 @@ public class GameOfLife extends JFrame {
      * JComponent subclass CellGrid &amp; the JButton objects, and attaches them
      * to the JPanel that holds the GUI elements.
      *
+     * @param engineFlag   One of the CellGridSection.ENGINE_* constants,
+     *                     passed on to the CellGrid object.
+     * @param ruleString   The rulestring of the rule to step the cells by: a
+     *                     Larger than Life rule if engineFlag is
+     *                     CellGridSection.ENGINE_LARGER_THAN_LIFE, or a
+     *                     Life-like rule otherwise. If null, Bosco's Rule or
+     *                     B3/S23 is used respectively.
+     * @param waitStrategy The way the CellGrid object's worker threads wait
+     *                     for tasks and for each other.
+     * @throws IllegalArgumentException If the rulestring can't be parsed.
      * @see java.awt.GridBagLayout
      * @see javax.swing.JFrame
      */
-    public GameOfLife() {
-        super("Conway's Game of Life");
+    public GameOfLife(final int engineFlag, final String ruleString, final WaitStrategy waitStrategy) {
+        this(engineFlag, ruleString, waitStrategy, null);
+    }
+
+    /**
+     * This method initializes the GameOfLife object, with the CellGrid
+     * object's sections run either by worker threads of their own, by the
+     * worker threads of a ForkJoinPool, or as tasks on an ExecutorService.
+     *
+     * @param engineFlag   One of the CellGridSection.ENGINE_* constants,
+     *                     passed on to the CellGrid object.
+     * @param ruleString   The rulestring of the rule to step the cells by, or
+     *                     null for the engine's default rule.
+     * @param waitStrategy The way the CellGrid object's worker threads wait
+     *                     for tasks and for each other, if taskExecutor is
+     *                     null.
+     * @param taskExecutor The ForkJoinPool or other ExecutorService that runs
+     *                     the CellGrid object's sections, or null to give
+     *                     every section a worker thread of its own.
+     * @throws IllegalArgumentException If the rulestring can't be parsed.
+     */
+    public GameOfLife(final int engineFlag, final String ruleString, final WaitStrategy waitStrategy,
+                      final ExecutorService taskExecutor) {
+        super(windowTitle(engineFlag, ruleString));
 
         /* Basic setup of this JFrame subclass. */
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -101,7 +143,26 @@ public class GameOfLife extends JFrame {
                                                                                    - cellGridConstraints.insets.right,
                                                (int) cellGridRegionDims.getHeight() - cellGridConstraints.insets.top
                                                                                     - cellGridConstraints.insets.bottom);
-        cellGrid = new CellGrid(cellGridDims);
+        if (engineFlag == CellGridSection.ENGINE_LARGER_THAN_LIFE) {
+            LargerThanLifeRule largerThanLifeRule = (ruleString == null) ? LargerThanLifeRule.BOSCO
+                                                    : LargerThanLifeRule.parse(ruleString);
+            if (taskExecutor == null) {
+                cellGrid = new CellGrid(cellGridDims, largerThanLifeRule, waitStrategy);
+            } else if (taskExecutor instanceof ForkJoinPool) {
+                cellGrid = new CellGrid(cellGridDims, largerThanLifeRule, (ForkJoinPool) taskExecutor);
+            } else {
+                cellGrid = new CellGrid(cellGridDims, largerThanLifeRule, taskExecutor);
+            }
+        } else {
+            LifeRule lifeRule = (ruleString == null) ? LifeRule.CONWAY : LifeRule.parse(ruleString);
+            if (taskExecutor == null) {
+                cellGrid = new CellGrid(cellGridDims, engineFlag, lifeRule, waitStrategy);
+            } else if (taskExecutor instanceof ForkJoinPool) {
+                cellGrid = new CellGrid(cellGridDims, engineFlag, lifeRule, (ForkJoinPool) taskExecutor);
+            } else {
+                cellGrid = new CellGrid(cellGridDims, engineFlag, lifeRule, taskExecutor);
+            }
+        }
         cellGrid.addMouseListener(cellGrid);
         gamePanel.add(cellGrid, cellGridConstraints);
 
@@ -121,6 +182,10 @@ public class GameOfLife extends JFrame {
         JButton seedButton = buildSeedButton();
         gamePanel.add(seedButton, seedButtonGridConstraints);
 
+        GridBagConstraints rateLabelGridConstraints = buildButtonConstraints(1, 0, 1, 2, buttonRegionDims);
+        JLabel rateLabel = buildRateLabel();
+        gamePanel.add(rateLabel, rateLabelGridConstraints);
+
         /* These steps confirm the layout that I've defined, and pack()
            attends to the error in the dimensions introduced when I used
            Toolkit.getDefaultToolkit().getScreenSize().getHeight() (which
@@ -292,17 +357,168 @@ public class GameOfLife extends JFrame {
         return button;
     }
 
+    /**
+     * This method is used to construct a JLabel that reports the rate the
+     * simulation is achieving against the rate it was asked for, and the
+     * population of the cell grid. The population is counted by a
+     * PopulationTracker attached to the cell grid's SimulationPipeline, off
+     * the simulation thread. A Timer object refreshes the text twice a
+     * second.
+     *
+     * @return The JLabel constructed by the method.
+     */
+    private JLabel buildRateLabel() {
+        PopulationTracker populationTracker = new PopulationTracker();
+        cellGrid.getSimulationPipeline().addConsumer(populationTracker, RingConsumer.POLICY_BACKPRESSURE,
+                                                     "population tracker");
+        JLabel label = new JLabel(describeRate(cellGrid.getSimulationClock(), populationTracker),
+                                  SwingConstants.CENTER);
+        Timer refreshTimer = new Timer(500, new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent event) {
+                label.setText(describeRate(cellGrid.getSimulationClock(), populationTracker));
+            }
+        });
+        refreshTimer.start();
+        return label;
+    }
+
+    /**
+     * This method composes the text of the rate label from the clock's mode,
+     * its achieved rate, and the rate it was asked for, with the population
+     * and any cycle found by the tracker on a second line.
+     *
+     * @param simulationClock   The SimulationClock object to describe.
+     * @param populationTracker The PopulationTracker object to describe.
+     * @return                  The label text.
+     */
+    private static String describeRate(final SimulationClock simulationClock,
+                                       final PopulationTracker populationTracker) {
+        String rateText;
+        switch (simulationClock.getMode()) {
+            case SimulationClock.MODE_MAX_SPEED:
+                rateText = String.format("%.1f gen/s (max)", simulationClock.getAchievedRate());
+                break;
+            case SimulationClock.MODE_PER_FRAME:
+                rateText = String.format("%.1f gen/s (%d/frame)", simulationClock.getAchievedRate(),
+                                         simulationClock.getGenerationsPerFrame());
+                break;
+            default:
+                rateText = String.format("%.1f of %.1f gen/s", simulationClock.getAchievedRate(),
+                                         simulationClock.getRequestedRate());
+                break;
+        }
+        String populationText = populationTracker.getPopulation() + " live";
+        if (populationTracker.getCyclePeriod() == 1L) {
+            populationText += ", still";
+        } else if (populationTracker.getCyclePeriod() > 1L) {
+            populationText += ", period " + populationTracker.getCyclePeriod();
+        }
+        return "<html><center>" + rateText + "<br>" + populationText + "</center></html>";
+    }
+
+    /**
+     * This method looks through the commandline arguments for one of the form
+     * --name=value and returns its value.
+     *
+     * @param args         The argument string array composed from the
+     *                     commandline arguments.
+     * @param optionName   The name of the option, without the leading dashes.
+     * @param defaultValue The value to return if the option isn't present.
+     * @return             The value of the option, or defaultValue.
+     */
+    private static String findOption(final String[] args, final String optionName, final String defaultValue) {
+        String optionPrefix = "--" + optionName + "=";
+        for (String arg : args) {
+            if (arg.startsWith(optionPrefix)) {
+                return arg.substring(optionPrefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * This method composes the title of the window from the engine and the
+     * rulestring it was started with.
+     *
+     * @param engineFlag One of the CellGridSection.ENGINE_* constants.
+     * @param ruleString The rulestring, or null for the engine's default rule.
+     * @return           The window title.
+     */
+    private static String windowTitle(final int engineFlag, final String ruleString) {
+        if (engineFlag == CellGridSection.ENGINE_LARGER_THAN_LIFE) {
+            return "Larger than Life "
+                   + ((ruleString == null) ? LargerThanLifeRule.BOSCO : LargerThanLifeRule.parse(ruleString));
+        }
+        LifeRule lifeRule = (ruleString == null) ? LifeRule.CONWAY : LifeRule.parse(ruleString);
+        return (lifeRule == LifeRule.CONWAY) ? "Conway's Game of Life" : "Life-like Automaton " + lifeRule;
+    }
+
+    /**
+     * This method translates an engine name given on the commandline into the
+     * matching CellGridSection.ENGINE_* constant.
+     *
+     * @param engineName The engine name, eg. "bitpacked".
+     * @return           The matching CellGridSection.ENGINE_* constant.
+     * @throws IllegalArgumentException If the engine name isn't recognized.
+     */
+    private static int parseEngineFlag(final String engineName) {
+        switch (engineName) {
+            case "intarray":
+                return CellGridSection.ENGINE_INT_ARRAY;
+            case "bitpacked":
+                return CellGridSection.ENGINE_BIT_PACKED;
+            case "vector":
+                return CellGridSection.ENGINE_VECTOR;
+            case "ltl":
+                return CellGridSection.ENGINE_LARGER_THAN_LIFE;
+            default:
+                throw new IllegalArgumentException("unrecognized engine name: " + engineName);
+        }
+    }
+
     /**
      * This method is called when the class is run as the frontend to the
      * program. It instances the class into a GameOfLife object and sets some
      * instance variables appropriately. The rest of the execution occurs when
-     * the user interacts with the GUI this class implements.
+     * the user interacts with the GUI this class implements. Passing
+     * --engine=bitpacked or --engine=vector makes every CellGridSection store
+     * its cells bit-packed, and passing a rulestring such as --rule=B36/S23
+     * runs that rule instead of B3/S23. With --engine=ltl, the rulestring is
+     * a Larger than Life rule such as --rule=R5,C0,M1,S34..58,B34..45,NM,
+     * which is also the default. --wait=spin-yield or --wait=busy-spin makes
+     * the worker threads spin rather than park while they wait.
+     * --scheduler=forkjoin runs the sections on a ForkJoinPool instead of a
+     * thread apiece, with --workers=n worker threads, by default one per
+     * available processor. --scheduler=virtual runs each section's task on a
+     * virtual thread of its own every generation, on runtimes that have them,
+     * or on a platform thread otherwise. --block=k has intarray sections
+     * compute k generations per step, up to 8, and --block=auto has the
+     * number tuned. --speed=g steps g generations per second (3 by default),
+     * --speed=max steps as fast as possible, and --speed=n/frame steps n
+     * generations per frame painted.
      *
      * @param args The argument string array composed from the commandline
      *             arguments, if any.
      */
     public static void main(String[] args) {
-        GameOfLife game = new GameOfLife();
+        ExecutorService taskExecutor = null;
+        String schedulerName = findOption(args, "scheduler", "threads");
+        if (schedulerName.equals("forkjoin")) {
+            taskExecutor = new ForkJoinPool(Integer.parseInt(findOption(args, "workers", String.valueOf(
+                                                Runtime.getRuntime().availableProcessors()))));
+        } else if (schedulerName.equals("virtual")) {
+            taskExecutor = ExecutorDispatch.newVirtualThreadExecutor();
+        } else if (!schedulerName.equals("threads")) {
+            throw new IllegalArgumentException("unrecognized scheduler name: " + schedulerName);
+        }
+        GameOfLife game = new GameOfLife(parseEngineFlag(findOption(args, "engine", "intarray")),
+                                         findOption(args, "rule", null),
+                                         WaitStrategy.parse(findOption(args, "wait", "park")),
+                                         taskExecutor);
+        String blockName = findOption(args, "block", "1");
+        game.cellGrid.setGenerationsPerStep(blockName.equals("auto") ? 0 : Integer.parseInt(blockName));
+        game.cellGrid.getSimulationClock().setSpeed(findOption(args, "speed", "3"));
         game.setVisible(true);
         game.setLocationRelativeTo(null);
     }
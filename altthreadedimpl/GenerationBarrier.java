@@ -0,0 +1,93 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements a reusable barrier for a fixed number of parties,
+ * after the model of java.util.concurrent.CyclicBarrier: each party calls
+ * await(), the last one to arrive runs the barrier action, and then all of
+ * them go on. Unlike CyclicBarrier, which always parks the parties that wait,
+ * it leaves the waiting to a WaitStrategy, so that the parties can spin when
+ * the time between barriers is too short to be worth a trip through the
+ * scheduler.
+ * <p>
+ * The barrier counts arrivals in one atomic counter and trips in another. A
+ * party reads the trip counter before it arrives, and waits for it to change.
+ * The last party resets the arrival counter before it advances the trip
+ * counter, so no party can arrive for the next trip before the reset.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.WaitStrategy
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
+ */
+public class GenerationBarrier {
+
+    /** This int is the number of parties that must arrive to trip the
+        barrier. */
+    private final int partyCount;
+
+    /** This AtomicInteger counts the parties that have arrived since the last
+        trip. */
+    private final AtomicInteger arrivalCount = new AtomicInteger();
+
+    /** This AtomicInteger counts the trips of the barrier. */
+    private final AtomicInteger tripCount = new AtomicInteger();
+
+    /** This Runnable object is run by the last party to arrive, before any of
+        the parties go on. */
+    private final Runnable barrierAction;
+
+    /** This WaitStrategy object determines how the parties wait. */
+    private final WaitStrategy waitStrategy;
+
+    /** This Thread[] array holds the thread that last arrived as each party,
+        so that the strategy can wake them. */
+    private final Thread[] partyThreads;
+
+    /**
+     * This constructor initializes the GenerationBarrier object.
+     *
+     * @param partyCountVal    The number of parties that must arrive to trip
+     *                         the barrier.
+     * @param barrierActionVal The action the last party to arrive runs before
+     *                         the barrier trips.
+     * @param waitStrategyVal  The way the parties wait.
+     */
+    public GenerationBarrier(final int partyCountVal, final Runnable barrierActionVal,
+                             final WaitStrategy waitStrategyVal) {
+        partyCount = partyCountVal;
+        barrierAction = barrierActionVal;
+        waitStrategy = waitStrategyVal;
+        partyThreads = new Thread[partyCount];
+    }
+
+    /**
+     * This method is called by a party when it reaches the barrier. It returns
+     * once every party has arrived and the barrier action has been run. The
+     * writes every party made before arriving, and those of the barrier
+     * action, are visible to every party when it returns.
+     *
+     * @param partyIndex The index of the calling party, from 0 to the party
+     *                   count less 1.
+     */
+    public void await(final int partyIndex) {
+        partyThreads[partyIndex] = Thread.currentThread();
+        int seenTrip = tripCount.get();
+        if (arrivalCount.incrementAndGet() == partyCount) {
+            arrivalCount.set(0);
+            barrierAction.run();
+            tripCount.incrementAndGet();
+            waitStrategy.signalChange(partyThreads);
+        } else {
+            waitStrategy.awaitChange(tripCount, seenTrip);
+        }
+    }
+
+    /**
+     * This method is an accessor for the private waitStrategy variable.
+     *
+     * @return The WaitStrategy object the parties wait with.
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+}
@@ -0,0 +1,312 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class implements the binary framing that the processes of a
+ * distributed cell grid talk to each other with, over a blocking
+ * SocketChannel. Every message is a 16-byte header followed by a payload of
+ * longs:
+ * <pre>
+ *     int  messageType    one of the MSG_* constants
+ *     long argument       a generation number, a seed, a worker index, ...
+ *     int  wordCount      the number of longs in the payload
+ *     long[wordCount]     the payload, usually cells packed 64 to a long
+ * </pre>
+ * All of it is big-endian, as ByteBuffer writes it. Cells are packed with
+ * setPackedCell() in the order they're given, the first cell in the lowest
+ * bit of the first word, so a column of n cells costs n / 8 bytes and a
+ * generation's halo exchange costs the perimeter of a section in bits.
+ * <p>
+ * The halo exchange has every process send before it receives, so the socket
+ * buffers are sized to hold a whole message in each direction; a process can
+ * then finish its sends whether or not its neighbors have started reading.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.DistributedWorker
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.DistributedCoordinator
+ */
+public class MessageChannel {
+
+    /** This int is the message type a worker introduces itself with, to the
+        coordinator or to a neighboring worker. */
+    public static final int MSG_HELLO = 1;
+
+    /** This int is the message type the coordinator tells the workers where
+        each other are listening with. */
+    public static final int MSG_LAYOUT = 2;
+
+    /** This int is the message type a worker reports that its halo links are
+        connected with. */
+    public static final int MSG_READY = 3;
+
+    /** This int is the message type the coordinator has the workers seed their
+        blocks with. */
+    public static final int MSG_SEED = 4;
+
+    /** This int is the message type the coordinator has the workers clear their
+        blocks with. */
+    public static final int MSG_CLEAR = 5;
+
+    /** This int is the message type the coordinator has the workers step a
+        number of generations with. */
+    public static final int MSG_STEP = 6;
+
+    /** This int is the message type a worker reports that it's done with a
+        command with. */
+    public static final int MSG_DONE = 7;
+
+    /** This int is the message type the coordinator asks a worker for the
+        cells of its block with. */
+    public static final int MSG_SNAPSHOT = 8;
+
+    /** This int is the message type a worker sends the cells of its block
+        with. */
+    public static final int MSG_CELLS = 9;
+
+    /** This int is the message type the coordinator inverts a cell with. */
+    public static final int MSG_INVERT_CELL = 10;
+
+    /** This int is the message type the coordinator has a worker exit with. */
+    public static final int MSG_SHUTDOWN = 11;
+
+    /** This int is the message type a column of edge cells is sent to an east
+        or west neighbor with. */
+    public static final int MSG_HALO_COLUMN = 12;
+
+    /** This int is the message type a row of edge cells, with a corner cell
+        at either end, is sent to a north or south neighbor with. */
+    public static final int MSG_HALO_ROW = 13;
+
+    /** This int is the length of a message header, in bytes. */
+    private final int headerBytes = 16;
+
+    /** This SocketChannel object is the connection. */
+    private final SocketChannel socketChannel;
+
+    /** This ByteBuffer object holds the header of a message being read or
+        written. */
+    private final ByteBuffer headerBuffer = ByteBuffer.allocate(headerBytes);
+
+    /** This ByteBuffer object holds the payload of a message being read or
+        written. It's reallocated when a longer payload comes along. */
+    private ByteBuffer payloadBuffer = ByteBuffer.allocate(0);
+
+    /** This ByteBuffer[] array holds the header and payload buffers, to be
+        written with a single gathering write. */
+    private final ByteBuffer[] sendBuffers = new ByteBuffer[2];
+
+    /**
+     * This constructor initializes the MessageChannel object over a
+     * connected SocketChannel, which it puts in blocking mode with Nagle's
+     * algorithm off, since every message is waited on by the other side.
+     *
+     * @param socketChannelVal The connected channel.
+     * @param maxPayloadWords  The longest payload, in longs, that's expected
+     *                         to be sent before the other side reads; the
+     *                         socket buffers are made at least that large.
+     * @throws IOException If the channel's options can't be set.
+     */
+    public MessageChannel(final SocketChannel socketChannelVal, final int maxPayloadWords) throws IOException {
+        socketChannel = socketChannelVal;
+        socketChannel.configureBlocking(true);
+        socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        int bufferBytes = headerBytes + 8 * maxPayloadWords;
+        if (socketChannel.getOption(StandardSocketOptions.SO_SNDBUF) < bufferBytes) {
+            socketChannel.setOption(StandardSocketOptions.SO_SNDBUF, bufferBytes);
+        }
+        if (socketChannel.getOption(StandardSocketOptions.SO_RCVBUF) < bufferBytes) {
+            socketChannel.setOption(StandardSocketOptions.SO_RCVBUF, bufferBytes);
+        }
+    }
+
+    /**
+     * This method sends a message with no payload.
+     *
+     * @param messageType One of the MSG_* constants.
+     * @param argument    The argument of the message.
+     * @throws IOException If the channel can't be written.
+     */
+    public void send(final int messageType, final long argument) throws IOException {
+        send(messageType, argument, null, 0);
+    }
+
+    /**
+     * This method sends a message.
+     *
+     * @param messageType  One of the MSG_* constants.
+     * @param argument     The argument of the message.
+     * @param payloadWords An array holding the payload, or null if there is
+     *                     none.
+     * @param wordCount    The number of longs of the array to send.
+     * @throws IOException If the channel can't be written.
+     */
+    public void send(final int messageType, final long argument, final long[] payloadWords, final int wordCount)
+                     throws IOException {
+        headerBuffer.clear();
+        headerBuffer.putInt(messageType).putLong(argument).putInt(wordCount).flip();
+        ByteBuffer sendPayload = fillPayloadBuffer(wordCount);
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+            sendPayload.putLong(payloadWords[wordIndex]);
+        }
+        sendPayload.flip();
+        sendBuffers[0] = headerBuffer;
+        sendBuffers[1] = sendPayload;
+        while (headerBuffer.hasRemaining() || sendPayload.hasRemaining()) {
+            socketChannel.write(sendBuffers);
+        }
+    }
+
+    /**
+     * This method reads a message, which must be of the expected type, into
+     * an array, and returns its argument.
+     *
+     * @param expectedType One of the MSG_* constants.
+     * @param payloadWords The array to read the payload into, or null if the
+     *                     message has no payload. It must be long enough.
+     * @return             The argument of the message.
+     * @throws IOException If the channel can't be read, the other side has
+     *                     closed it, or the message isn't of the expected
+     *                     type or doesn't fit.
+     */
+    public long receive(final int expectedType, final long[] payloadWords) throws IOException {
+        int messageType = readHeader();
+        long argument = headerBuffer.getLong();
+        int wordCount = headerBuffer.getInt();
+        if (messageType != expectedType) {
+            throw new IOException("expected message type " + expectedType + " but received " + messageType);
+        }
+        int capacityWords = (payloadWords == null) ? 0 : payloadWords.length;
+        if (wordCount < 0 || wordCount > capacityWords) {
+            throw new IOException("a payload of " + wordCount + " words doesn't fit in " + capacityWords);
+        }
+
+        ByteBuffer receivePayload = fillPayloadBuffer(wordCount);
+        receivePayload.limit(8 * wordCount);
+        readFully(receivePayload);
+        receivePayload.flip();
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+            payloadWords[wordIndex] = receivePayload.getLong();
+        }
+        return argument;
+    }
+
+    /**
+     * This method reads a message of whatever type, which must have no
+     * payload. It's how a worker reads the coordinator's commands, which it
+     * can't know the type of in advance.
+     *
+     * @param argumentWords A 1-element array that receives the argument of
+     *                      the message.
+     * @return              The type of the message, one of the MSG_*
+     *                      constants.
+     * @throws IOException If the channel can't be read, the other side has
+     *                     closed it, or the message has a payload.
+     */
+    public int receiveCommand(final long[] argumentWords) throws IOException {
+        int messageType = readHeader();
+        argumentWords[0] = headerBuffer.getLong();
+        if (headerBuffer.getInt() != 0) {
+            throw new IOException("message type " + messageType + " isn't a command");
+        }
+        return messageType;
+    }
+
+    /**
+     * This method closes the connection.
+     */
+    public void close() {
+        try {
+            socketChannel.close();
+        } catch (IOException exception) {
+            /* There's nothing left to do with a connection that won't close
+               cleanly. */
+        }
+    }
+
+    /**
+     * This method returns the number of longs it takes to pack a number of
+     * cells.
+     *
+     * @param cellCount The number of cells.
+     * @return          The number of longs.
+     */
+    public static int wordsForBits(final int cellCount) {
+        return (cellCount + 63) / 64;
+    }
+
+    /**
+     * This method sets a cell in an array of packed cells.
+     *
+     * @param packedWords The packed cells.
+     * @param cellIndex   The index of the cell.
+     * @param cellValue   1 or 0.
+     */
+    public static void setPackedCell(final long[] packedWords, final int cellIndex, final int cellValue) {
+        long cellBit = 1L << (cellIndex & 63);
+        if (cellValue == 0) {
+            packedWords[cellIndex >>> 6] &= ~cellBit;
+        } else {
+            packedWords[cellIndex >>> 6] |= cellBit;
+        }
+    }
+
+    /**
+     * This method reads a cell from an array of packed cells.
+     *
+     * @param packedWords The packed cells.
+     * @param cellIndex   The index of the cell.
+     * @return            1 or 0.
+     */
+    public static int getPackedCell(final long[] packedWords, final int cellIndex) {
+        return (int) (packedWords[cellIndex >>> 6] >>> (cellIndex & 63)) & 1;
+    }
+
+    /**
+     * This method makes sure payloadBuffer can hold a number of longs, and
+     * clears it.
+     *
+     * @param wordCount The number of longs.
+     * @return          The buffer.
+     */
+    private ByteBuffer fillPayloadBuffer(final int wordCount) {
+        if (payloadBuffer.capacity() < 8 * wordCount) {
+            payloadBuffer = ByteBuffer.allocate(8 * wordCount);
+        }
+        payloadBuffer.clear();
+        return payloadBuffer;
+    }
+
+    /**
+     * This method reads the header of a message into headerBuffer, and
+     * returns its type, leaving the argument and word count to be read.
+     *
+     * @return The type of the message.
+     * @throws IOException If the channel can't be read, or the other side
+     *                     closed it first.
+     */
+    private int readHeader() throws IOException {
+        headerBuffer.clear();
+        readFully(headerBuffer);
+        headerBuffer.flip();
+        return headerBuffer.getInt();
+    }
+
+    /**
+     * This method reads from the channel until a buffer is full.
+     *
+     * @param readBuffer The buffer to fill.
+     * @throws IOException If the channel can't be read, or the other side
+     *                     closed it first.
+     */
+    private void readFully(final ByteBuffer readBuffer) throws IOException {
+        while (readBuffer.hasRemaining()) {
+            if (socketChannel.read(readBuffer) < 0) {
+                throw new EOFException("the connection was closed mid-message");
+            }
+        }
+    }
+}
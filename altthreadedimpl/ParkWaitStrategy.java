@@ -0,0 +1,44 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements the wait strategy that parks a waiting thread until
+ * it's unparked by the thread that advances the counter. A waiting thread
+ * costs no CPU time, but each wakeup goes through the scheduler, which takes
+ * some microseconds. It's the default, and the only strategy that suits a
+ * machine with fewer cores than there are worker threads.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.WaitStrategy
+ */
+public class ParkWaitStrategy implements WaitStrategy {
+
+    /**
+     * This method parks the calling thread until the counter changes. An
+     * unpark that arrives before the thread parks isn't lost, since it leaves
+     * the thread a permit that makes the park return at once; and a wakeup
+     * for which the counter hasn't changed just parks the thread again.
+     *
+     * @param counter   The counter to watch.
+     * @param seenValue The value the calling thread last saw in it.
+     */
+    public void awaitChange(final AtomicInteger counter, final int seenValue) {
+        while (counter.get() == seenValue) {
+            LockSupport.park(counter);
+        }
+    }
+
+    /**
+     * This method unparks every thread given.
+     *
+     * @param waitingThreads The threads that may be waiting.
+     */
+    public void signalChange(final Thread[] waitingThreads) {
+        for (Thread waitingThread : waitingThreads) {
+            if (waitingThread != null) {
+                LockSupport.unpark(waitingThread);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import org.kmfahey.jgameoflife.CellRasterizer;
+import org.kmfahey.jgameoflife.GenerationFrame;
+
+/**
+ * This interface describes the object CellGrid hands the work on its
+ * CellGridSection objects to. CellGridDispatch gives every section a worker
+ * thread of its own and meets them all at a barrier each generation;
+ * ForkJoinDispatch hands the sections to the worker threads of a ForkJoinPool
+ * as tasks, so that a thread that finishes early can take work from one that
+ * hasn't.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.ForkJoinDispatch
+ */
+public interface SectionDispatch {
+
+    /**
+     * This method populates every section with randomly assigned 'live'
+     * cells.
+     */
+    void seedSections();
+
+    /**
+     * This method clears every section of all 'live' cells.
+     */
+    void clearSections();
+
+    /**
+     * This method effects a single step in the game of life algorithm across
+     * every section, returning once the new generation is the displayed one.
+     */
+    void sectionsRunAlgorithm();
+
+    /**
+     * This method effects a number of steps in the game of life algorithm
+     * across every section as a single task, with a single synchronization
+     * of the worker threads at the end of it.
+     *
+     * @param generationCount The number of generations to step.
+     */
+    void sectionsRunGenerations(int generationCount);
+
+    /**
+     * This method has every section copy its displayed generation into a
+     * frame and draw it into a rasterizer's image, if the image doesn't show
+     * it already, each on its own worker thread, returning once all of them
+     * have.
+     *
+     * @param targetFrame      The frame to copy the cells into, already reset
+     *                         to the size of the cell grid.
+     * @param targetRasterizer The rasterizer to draw them with.
+     * @param imageIndex       Which of the two images the rasterizer holds,
+     *                         0 or 1.
+     */
+    void renderSections(GenerationFrame targetFrame, CellRasterizer targetRasterizer, int imageIndex);
+
+    /**
+     * This method counts the sections that are awake.
+     *
+     * @return The number of CellGridSection objects that are awake.
+     */
+    int getAwakeSectionCount();
+
+    /**
+     * This method stops the worker threads. No task can be dispatched
+     * afterward.
+     */
+    void shutdown();
+}
@@ -0,0 +1,83 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class implements the ForkJoin task that runs a mode on a range of
+ * CellGridSection objects. A range of more than one section is split in half
+ * and both halves are forked, down to tasks of a single section, so the
+ * ForkJoinPool's worker threads can steal half-ranges from each other's
+ * queues: a thread whose sections are sparse or asleep finishes early and
+ * takes over some of the sections a busier thread hasn't reached yet.
+ * <p>
+ * Each single-section task times its run and records it, which
+ * ForkJoinDispatch uses to report the mean cost of a section.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.ForkJoinDispatch
+ */
+public class SectionTask extends RecursiveAction {
+
+    /** This long is the serialization version of the class, which
+        RecursiveAction, being Serializable, calls for. */
+    private static final long serialVersionUID = 1L;
+
+    /** This CellGridSection[] array holds every section of the cell grid;
+        this task runs on a range of it. */
+    private final CellGridSection[] cellGridSections;
+
+    /** This int is the index of the first section in this task's range. */
+    private final int fromIndex;
+
+    /** This int is the index after the last section in this task's range. */
+    private final int toIndex;
+
+    /** This int holds the mode flag to run, one of the
+        CellGridSection.MODE_* constants. */
+    private final int runMode;
+
+    /** This boolean[] array holds, for each section, whether the mode is to
+        be run on it. */
+    private final boolean[] selectedSections;
+
+    /** This long[] array receives, for each section the mode is run on, how
+        long the run took in nanoseconds. */
+    private final long[] sectionNanos;
+
+    /**
+     * This constructor initializes the SectionTask object.
+     *
+     * @param sectionsVal     Every section of the cell grid.
+     * @param fromIndexVal    The index of the first section in the range.
+     * @param toIndexVal      The index after the last section in the range.
+     * @param runModeVal      One of the CellGridSection.MODE_* constants.
+     * @param selectedVal     For each section, whether to run the mode on it.
+     * @param sectionNanosVal The array to record each run's duration in.
+     */
+    public SectionTask(final CellGridSection[] sectionsVal, final int fromIndexVal, final int toIndexVal,
+                       final int runModeVal, final boolean[] selectedVal, final long[] sectionNanosVal) {
+        cellGridSections = sectionsVal;
+        fromIndex = fromIndexVal;
+        toIndex = toIndexVal;
+        runMode = runModeVal;
+        selectedSections = selectedVal;
+        sectionNanos = sectionNanosVal;
+    }
+
+    /**
+     * This method runs the mode on the single section in this task's range,
+     * or splits the range in two and runs both halves as subtasks.
+     */
+    protected void compute() {
+        if (toIndex - fromIndex == 1) {
+            if (selectedSections[fromIndex]) {
+                long startNanos = System.nanoTime();
+                cellGridSections[fromIndex].runMode(runMode);
+                sectionNanos[fromIndex] = System.nanoTime() - startNanos;
+            }
+            return;
+        }
+        int middleIndex = (fromIndex + toIndex) >>> 1;
+        invokeAll(new SectionTask(cellGridSections, fromIndex, middleIndex, runMode, selectedSections, sectionNanos),
+                  new SectionTask(cellGridSections, middleIndex, toIndex, runMode, selectedSections, sectionNanos));
+    }
+}
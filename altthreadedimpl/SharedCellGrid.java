@@ -0,0 +1,225 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+/**
+ * This class implements the single store of cells that the CellGridSection
+ * objects of a cell grid share when they keep one cell per int. Rather than
+ * each section owning arrays of its own, every section is a view of a range
+ * of rows and columns of this object's arrays, so a cell on the edge of a
+ * section finds its neighbors in the next section over at the same offsets as
+ * any other cell, without knowing there's another section there.
+ * <p>
+ * The cells are kept row by row in flat int arrays, at index ((vertIndex +
+ * haloWidth) * rowStride + horizIndex + haloWidth), surrounded by a halo
+ * haloWidth cells wide that wrapHaloCells() fills from the opposite edges of
+ * the cell grid, so that it wraps around as a torus. There are three arrays:
+ * the display generation, the update generation that the sections compute
+ * into, and the previous generation, which the sections compare against to
+ * decide whether they've settled.
+ * <p>
+ * No reads or writes are synchronized. The display array is only written
+ * between tasks, when no section is computing, and during a task each section
+ * only writes its own range of the update array. The handoff between a task
+ * and the code that runs after it, which wraps the halo and rotates the
+ * arrays, goes through the dispatcher's barrier or pool join, which makes the
+ * writes on either side visible to the other.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridSection
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
+ */
+public class SharedCellGrid {
+
+    /** This int is the number of cells in the horizontal dimension of the
+        cell grid. */
+    private final int horizDim;
+
+    /** This int is the number of cells in the vertical dimension of the cell
+        grid. */
+    private final int vertDim;
+
+    /** This int is the width of the halo around the cell grid, which is the
+        farthest any cell's neighborhood reaches. */
+    private final int haloWidth;
+
+    /** This int is the length of a row of the arrays, halo included. */
+    private final int rowStride;
+
+    /** This int[] array holds the displayed generation. */
+    private int[] displayCells;
+
+    /** This int[] array holds the generation being computed. */
+    private int[] updateCells;
+
+    /** This int[] array holds the generation before the displayed one. */
+    private int[] previousCells;
+
+    /**
+     * This constructor initializes the SharedCellGrid object with every cell
+     * dead.
+     *
+     * @param horizDimVal  The number of cells in the horizontal dimension of
+     *                     the cell grid.
+     * @param vertDimVal   The number of cells in the vertical dimension of the
+     *                     cell grid.
+     * @param haloWidthVal The farthest any cell's neighborhood reaches: 1 for
+     *                     Life-like rules, or the radius of a Larger than Life
+     *                     rule.
+     */
+    public SharedCellGrid(final int horizDimVal, final int vertDimVal, final int haloWidthVal) {
+        horizDim = horizDimVal;
+        vertDim = vertDimVal;
+        haloWidth = haloWidthVal;
+        rowStride = horizDim + 2 * haloWidth;
+        int arrayLength = rowStride * (vertDim + 2 * haloWidth);
+        displayCells = new int[arrayLength];
+        updateCells = new int[arrayLength];
+        previousCells = new int[arrayLength];
+    }
+
+    /**
+     * This method returns the index in the arrays of a cell. The coordinates
+     * may lie up to haloWidth cells outside the cell grid, which gives the
+     * index of a halo cell.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           The index of the cell in the arrays.
+     */
+    public int cellIndex(final int horizIndex, final int vertIndex) {
+        return (vertIndex + haloWidth) * rowStride + horizIndex + haloWidth;
+    }
+
+    /**
+     * This method returns the value of a cell of the displayed generation.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @return           The value of the cell.
+     */
+    public int getCell(final int horizIndex, final int vertIndex) {
+        return displayCells[cellIndex(horizIndex, vertIndex)];
+    }
+
+    /**
+     * This method sets the value of a cell of the displayed generation.
+     *
+     * @param horizIndex The horizontal coordinate of the cell.
+     * @param vertIndex  The vertical coordinate of the cell.
+     * @param cellValue  The new value of the cell.
+     */
+    public void setCell(final int horizIndex, final int vertIndex, final int cellValue) {
+        displayCells[cellIndex(horizIndex, vertIndex)] = cellValue;
+    }
+
+    /**
+     * This method fills the halo of the displayed generation from the
+     * opposite edges of the cell grid. It's called before every generation is
+     * computed, since cells on the edges may have changed since the last one.
+     * A halo wider than the cell grid wraps around it more than once.
+     */
+    public void wrapHaloCells() {
+        for (int vertIndex = -haloWidth; vertIndex < vertDim + haloWidth; vertIndex++) {
+            int sourceVert = Math.floorMod(vertIndex, vertDim);
+            if (vertIndex < 0 || vertIndex >= vertDim) {
+                /* A halo row is the whole of the row it wraps to, halo
+                   included, so the corners come along with it. The source
+                   row's own halo is filled first, since the row is in the
+                   cell grid. */
+                wrapRowHalo(sourceVert);
+                System.arraycopy(displayCells, cellIndex(-haloWidth, sourceVert), displayCells,
+                                 cellIndex(-haloWidth, vertIndex), rowStride);
+            } else {
+                wrapRowHalo(vertIndex);
+            }
+        }
+    }
+
+    /**
+     * This method fills the west and east halo cells of a row of the cell
+     * grid from the other end of the row.
+     *
+     * @param vertIndex The vertical coordinate of the row.
+     */
+    private void wrapRowHalo(final int vertIndex) {
+        int rowOffset = cellIndex(0, vertIndex);
+        for (int haloIndex = 1; haloIndex <= haloWidth; haloIndex++) {
+            displayCells[rowOffset - haloIndex] = displayCells[rowOffset + Math.floorMod(-haloIndex, horizDim)];
+            displayCells[rowOffset + horizDim - 1 + haloIndex] =
+                displayCells[rowOffset + Math.floorMod(horizDim - 1 + haloIndex, horizDim)];
+        }
+    }
+
+    /**
+     * This method makes the update generation the displayed one and the
+     * displayed one the previous one. The previous generation's array becomes
+     * the update array, to be overwritten by the next generation.
+     */
+    public void rotateGenerations() {
+        int[] swapCells = previousCells;
+        previousCells = displayCells;
+        displayCells = updateCells;
+        updateCells = swapCells;
+    }
+
+    /**
+     * This method is an accessor for the private displayCells variable.
+     *
+     * @return The array holding the displayed generation.
+     */
+    public int[] getDisplayCells() {
+        return displayCells;
+    }
+
+    /**
+     * This method is an accessor for the private updateCells variable.
+     *
+     * @return The array the next generation is computed into.
+     */
+    public int[] getUpdateCells() {
+        return updateCells;
+    }
+
+    /**
+     * This method is an accessor for the private previousCells variable.
+     *
+     * @return The array holding the generation before the displayed one.
+     */
+    public int[] getPreviousCells() {
+        return previousCells;
+    }
+
+    /**
+     * This method is an accessor for the private rowStride variable.
+     *
+     * @return The length of a row of the arrays, halo included.
+     */
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    /**
+     * This method is an accessor for the private haloWidth variable.
+     *
+     * @return The width of the halo around the cell grid.
+     */
+    public int getHaloWidth() {
+        return haloWidth;
+    }
+
+    /**
+     * This method is an accessor for the private horizDim variable.
+     *
+     * @return The number of cells in the horizontal dimension of the grid.
+     */
+    public int getHorizDim() {
+        return horizDim;
+    }
+
+    /**
+     * This method is an accessor for the private vertDim variable.
+     *
+     * @return The number of cells in the vertical dimension of the grid.
+     */
+    public int getVertDim() {
+        return vertDim;
+    }
+}
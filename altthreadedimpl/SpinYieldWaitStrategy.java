@@ -0,0 +1,69 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements the wait strategy that spins on the counter for a
+ * while, and then keeps checking it but yields the core between checks. A
+ * change that comes soon is seen within nanoseconds, and a thread that's kept
+ * waiting lets other threads run, although it never stops using some CPU
+ * time.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.WaitStrategy
+ */
+public class SpinYieldWaitStrategy implements WaitStrategy {
+
+    /** This int constant is the default number of times the counter is
+        checked before the waiting thread starts yielding. */
+    public static final int DEFAULT_SPIN_COUNT = 1_000;
+
+    /** This int is the number of times the counter is checked before the
+        waiting thread starts yielding. */
+    private final int spinCount;
+
+    /**
+     * This constructor initializes the SpinYieldWaitStrategy object with the
+     * default spin count.
+     */
+    public SpinYieldWaitStrategy() {
+        this(DEFAULT_SPIN_COUNT);
+    }
+
+    /**
+     * This constructor initializes the SpinYieldWaitStrategy object.
+     *
+     * @param spinCountVal The number of times the counter is checked before
+     *                     the waiting thread starts yielding.
+     */
+    public SpinYieldWaitStrategy(final int spinCountVal) {
+        spinCount = spinCountVal;
+    }
+
+    /**
+     * This method spins until the counter changes, yielding the core between
+     * checks once spinCount checks have gone by.
+     *
+     * @param counter   The counter to watch.
+     * @param seenValue The value the calling thread last saw in it.
+     */
+    public void awaitChange(final AtomicInteger counter, final int seenValue) {
+        int spinsLeft = spinCount;
+        while (counter.get() == seenValue) {
+            if (spinsLeft > 0) {
+                spinsLeft--;
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * This method does nothing, since no waiting thread is ever parked.
+     *
+     * @param waitingThreads The threads that may be waiting.
+     */
+    public void signalChange(final Thread[] waitingThreads) {
+        assert true;
+    }
+}
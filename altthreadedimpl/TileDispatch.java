@@ -0,0 +1,48 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+/**
+ * This interface describes a SectionDispatch object that runs the sections
+ * as tasks on a set of worker threads that have nothing to do with the number
+ * of sections, so that CellGrid can cut the cell grid into as many sections as
+ * suits their cost. ForkJoinDispatch runs them on a ForkJoinPool, whose
+ * threads steal work from each other; ExecutorDispatch runs them on an
+ * ExecutorService, such as one that starts a virtual thread per task.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.ForkJoinDispatch
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.ExecutorDispatch
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGrid
+ */
+public interface TileDispatch extends SectionDispatch {
+
+    /**
+     * This method returns the mean time, in nanoseconds, that an awake
+     * section took to compute a generation since the last time this method
+     * was called, and starts a new mean.
+     *
+     * @return The mean time per section step, or 0 if no section was awake
+     *         in that time.
+     */
+    long takeMeanStepNanos();
+
+    /**
+     * This method returns the number of sections that can be computed at
+     * once, which CellGrid cuts the cell grid into several sections apiece
+     * for.
+     *
+     * @return The number of worker threads, or of the carrier threads under
+     *         them.
+     */
+    int getWorkerCount();
+
+    /**
+     * This method returns a new dispatcher of the same kind, on the same
+     * worker threads, for a new set of sections. It's called when the cell
+     * grid is cut into sections of a new size; this object isn't used again,
+     * and its worker threads aren't stopped.
+     *
+     * @param sectionObjs A 2d array of CellGridSection objects, which the new
+     *                    object will delegate tasks to.
+     * @return            The new dispatcher.
+     */
+    TileDispatch redispatch(CellGridSection[][] sectionObjs);
+}
@@ -0,0 +1,58 @@
+package org.kmfahey.jgameoflife.altthreadedimpl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This interface describes how the threads that CellGridDispatch coordinates
+ * wait for one another. Every wait is for a counter to move on from a value
+ * the waiting thread has already seen: the dispatch counter, which the main
+ * thread advances to hand the worker threads a task, or the trip counter of
+ * the GenerationBarrier, which the last thread to arrive advances. The
+ * implementations trade latency against the CPU time spent waiting:
+ * ParkWaitStrategy sleeps in the scheduler, SpinYieldWaitStrategy spins for a
+ * while before yielding its core, and BusySpinWaitStrategy never gives it up.
+ *
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.GenerationBarrier
+ * @see org.kmfahey.jgameoflife.altthreadedimpl.CellGridDispatch
+ */
+public interface WaitStrategy {
+
+    /**
+     * This method returns until the counter no longer holds the value the
+     * calling thread last saw in it.
+     *
+     * @param counter   The counter to watch.
+     * @param seenValue The value the calling thread last saw in it.
+     */
+    void awaitChange(AtomicInteger counter, int seenValue);
+
+    /**
+     * This method is called after a counter has been advanced, to wake any of
+     * the given threads that may be waiting on it in awaitChange(). Elements
+     * may be null.
+     *
+     * @param waitingThreads The threads that may be waiting.
+     */
+    void signalChange(Thread[] waitingThreads);
+
+    /**
+     * This method returns the wait strategy named by the argument, as it's
+     * given on the commandline.
+     *
+     * @param strategyName One of "park", "spin-yield" or "busy-spin".
+     * @return             A new WaitStrategy object of that kind.
+     * @throws IllegalArgumentException If the name isn't recognized.
+     */
+    static WaitStrategy parse(final String strategyName) {
+        switch (strategyName) {
+            case "park":
+                return new ParkWaitStrategy();
+            case "spin-yield":
+                return new SpinYieldWaitStrategy();
+            case "busy-spin":
+                return new BusySpinWaitStrategy();
+            default:
+                throw new IllegalArgumentException("unrecognized wait strategy: " + strategyName);
+        }
+    }
+}
@@ -11,10 +11,18 @@
  * that would obstruct further development (if any), but because it
  * was a successful example of threaded distributed execution of
  * computing tasks, I've preserved it here for my own recollection in
- * case I need to implement a comparable solution again. It makes use
- * of monitor objects, interthread signalling via wait(), notify(),
- * notifyAll(), and passing signal values back and forth using per-thread
- * java.util.concurrent.ArrayBlockingQueue&lt;Integer&gt; objects.
+ * case I need to implement a comparable solution again. Tasks are handed
+ * to the worker threads by advancing an atomic counter, and a generation ends
+ * at a single barrier whose last arrival swaps in every section's new cells;
+ * the threads wait at both by parking or by spinning, according to a
+ * pluggable WaitStrategy. Alternatively, the sections can be cut smaller and
+ * run as tasks on a ForkJoinPool, whose threads steal work from each other,
+ * or on an ExecutorService that starts a virtual thread per task.
+ * Sections that keep one cell per int are views of a single SharedCellGrid,
+ * and read across their edges without locking; they can also compute several
+ * generations per task from ghost zones around their regions, so the threads
+ * meet less often. A cell grid can also be cut into blocks stepped by
+ * separate worker processes, which exchange their edges over sockets.
  *
  * @since 0.9
  * @author MagentaToBe
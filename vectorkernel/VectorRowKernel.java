@@ -0,0 +1,165 @@
+package org.kmfahey.jgameoflife.vectorkernel;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.kmfahey.jgameoflife.BitPackedGridEngine;
+import org.kmfahey.jgameoflife.LifeRule;
+import org.kmfahey.jgameoflife.WordRowKernel;
+
+/**
+ * This class implements the vectorized row kernel. It applies the same
+ * bitwise adder tree as BitPackedGridEngine.nextWord(), and the same
+ * multiplexer tree as LifeRule.nextWord(), but to as many words at once as the
+ * preferred LongVector species has lanes, and finishes any words left over at
+ * the end of the row with the scalar method.
+ * <p>
+ * This class must be compiled and run with --add-modules jdk.incubator.vector.
+ * VectorGridEngine loads it reflectively, so leaving it out doesn't prevent
+ * the rest of the program from compiling or running.
+ *
+ * @see org.kmfahey.jgameoflife.VectorGridEngine
+ * @see org.kmfahey.jgameoflife.BitPackedGridEngine
+ */
+public class VectorRowKernel implements WordRowKernel {
+
+    /** This VectorSpecies constant is the species of LongVector used, the
+        widest one the CPU supports. */
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    /**
+     * This method computes the next generation of a row of bit-packed cells,
+     * a vector of words at a time.
+     *
+     * @param lifeRule     The rule to step the cells by.
+     * @param northWestRow The north row, shifted west.
+     * @param northRow     The north row.
+     * @param northEastRow The north row, shifted east.
+     * @param westRow      The center row, shifted west.
+     * @param centerRow    The row being stepped.
+     * @param eastRow      The center row, shifted east.
+     * @param southWestRow The south row, shifted west.
+     * @param southRow     The south row.
+     * @param southEastRow The south row, shifted east.
+     * @param nextRow      The row that the next generation is written into.
+     * @param wordCount    The number of longs in each row.
+     */
+    public void combineRows(final LifeRule lifeRule,
+                            final long[] northWestRow, final long[] northRow, final long[] northEastRow,
+                            final long[] westRow, final long[] centerRow, final long[] eastRow,
+                            final long[] southWestRow, final long[] southRow, final long[] southEastRow,
+                            final long[] nextRow, final int wordCount) {
+        int upperBound = SPECIES.loopBound(wordCount);
+        int wordIndex = 0;
+
+        boolean conway = lifeRule.isConway();
+
+        /* The rule's outcome words are broadcast into vectors once per row
+           rather than once per vector of words. */
+        LongVector birthWords0 = LongVector.broadcast(SPECIES, lifeRule.getBirthWord(0));
+        LongVector birthWords1 = LongVector.broadcast(SPECIES, lifeRule.getBirthWord(1));
+        LongVector birthWords2 = LongVector.broadcast(SPECIES, lifeRule.getBirthWord(2));
+        LongVector birthWords3 = LongVector.broadcast(SPECIES, lifeRule.getBirthWord(3));
+        LongVector birthWords4 = LongVector.broadcast(SPECIES, lifeRule.getBirthWord(4));
+        LongVector birthWords5 = LongVector.broadcast(SPECIES, lifeRule.getBirthWord(5));
+        LongVector birthWords6 = LongVector.broadcast(SPECIES, lifeRule.getBirthWord(6));
+        LongVector birthWords7 = LongVector.broadcast(SPECIES, lifeRule.getBirthWord(7));
+        LongVector birthWords8 = LongVector.broadcast(SPECIES, lifeRule.getBirthWord(8));
+        LongVector survivalWords0 = LongVector.broadcast(SPECIES, lifeRule.getSurvivalWord(0));
+        LongVector survivalWords1 = LongVector.broadcast(SPECIES, lifeRule.getSurvivalWord(1));
+        LongVector survivalWords2 = LongVector.broadcast(SPECIES, lifeRule.getSurvivalWord(2));
+        LongVector survivalWords3 = LongVector.broadcast(SPECIES, lifeRule.getSurvivalWord(3));
+        LongVector survivalWords4 = LongVector.broadcast(SPECIES, lifeRule.getSurvivalWord(4));
+        LongVector survivalWords5 = LongVector.broadcast(SPECIES, lifeRule.getSurvivalWord(5));
+        LongVector survivalWords6 = LongVector.broadcast(SPECIES, lifeRule.getSurvivalWord(6));
+        LongVector survivalWords7 = LongVector.broadcast(SPECIES, lifeRule.getSurvivalWord(7));
+        LongVector survivalWords8 = LongVector.broadcast(SPECIES, lifeRule.getSurvivalWord(8));
+
+        for (; wordIndex < upperBound; wordIndex += SPECIES.length()) {
+            LongVector northWestWords = LongVector.fromArray(SPECIES, northWestRow, wordIndex);
+            LongVector northWords = LongVector.fromArray(SPECIES, northRow, wordIndex);
+            LongVector northEastWords = LongVector.fromArray(SPECIES, northEastRow, wordIndex);
+            LongVector westWords = LongVector.fromArray(SPECIES, westRow, wordIndex);
+            LongVector centerWords = LongVector.fromArray(SPECIES, centerRow, wordIndex);
+            LongVector eastWords = LongVector.fromArray(SPECIES, eastRow, wordIndex);
+            LongVector southWestWords = LongVector.fromArray(SPECIES, southWestRow, wordIndex);
+            LongVector southWords = LongVector.fromArray(SPECIES, southRow, wordIndex);
+            LongVector southEastWords = LongVector.fromArray(SPECIES, southEastRow, wordIndex);
+
+            /* The same adder tree as BitPackedGridEngine.nextWord(): four
+               2-bit pair sums, two 3-bit quad sums, one 4-bit count. */
+            LongVector pairSumA0 = xor(northWestWords, northWords);
+            LongVector pairSumA1 = northWestWords.and(northWords);
+            LongVector pairSumB0 = xor(northEastWords, westWords);
+            LongVector pairSumB1 = northEastWords.and(westWords);
+            LongVector pairSumC0 = xor(eastWords, southWestWords);
+            LongVector pairSumC1 = eastWords.and(southWestWords);
+            LongVector pairSumD0 = xor(southWords, southEastWords);
+            LongVector pairSumD1 = southWords.and(southEastWords);
+
+            LongVector carry = pairSumA0.and(pairSumB0);
+            LongVector quadSumA0 = xor(pairSumA0, pairSumB0);
+            LongVector quadSumA1 = xor(xor(pairSumA1, pairSumB1), carry);
+            LongVector quadSumA2 = pairSumA1.and(pairSumB1).or(carry.and(xor(pairSumA1, pairSumB1)));
+            carry = pairSumC0.and(pairSumD0);
+            LongVector quadSumB0 = xor(pairSumC0, pairSumD0);
+            LongVector quadSumB1 = xor(xor(pairSumC1, pairSumD1), carry);
+            LongVector quadSumB2 = pairSumC1.and(pairSumD1).or(carry.and(xor(pairSumC1, pairSumD1)));
+
+            carry = quadSumA0.and(quadSumB0);
+            LongVector countBit0 = xor(quadSumA0, quadSumB0);
+            LongVector countBit1 = xor(xor(quadSumA1, quadSumB1), carry);
+            carry = quadSumA1.and(quadSumB1).or(carry.and(xor(quadSumA1, quadSumB1)));
+            LongVector countBit2 = xor(xor(quadSumA2, quadSumB2), carry);
+            LongVector countBit3 = quadSumA2.and(quadSumB2).or(carry.and(xor(quadSumA2, quadSumB2)));
+
+            if (conway) {
+                countBit1.and(countBit2.not()).and(countBit3.not()).and(countBit0.or(centerWords))
+                         .intoArray(nextRow, wordIndex);
+                continue;
+            }
+
+            /* The same multiplexer tree as LifeRule.nextWord(): the center
+               cell selects each count's outcome, then the count bits select
+               among the outcomes. */
+            LongVector outcome0 = birthWords0.bitwiseBlend(survivalWords0, centerWords);
+            LongVector outcome1 = birthWords1.bitwiseBlend(survivalWords1, centerWords);
+            LongVector outcome2 = birthWords2.bitwiseBlend(survivalWords2, centerWords);
+            LongVector outcome3 = birthWords3.bitwiseBlend(survivalWords3, centerWords);
+            LongVector outcome4 = birthWords4.bitwiseBlend(survivalWords4, centerWords);
+            LongVector outcome5 = birthWords5.bitwiseBlend(survivalWords5, centerWords);
+            LongVector outcome6 = birthWords6.bitwiseBlend(survivalWords6, centerWords);
+            LongVector outcome7 = birthWords7.bitwiseBlend(survivalWords7, centerWords);
+            LongVector outcome8 = birthWords8.bitwiseBlend(survivalWords8, centerWords);
+            LongVector selected01 = outcome0.bitwiseBlend(outcome1, countBit0);
+            LongVector selected23 = outcome2.bitwiseBlend(outcome3, countBit0);
+            LongVector selected45 = outcome4.bitwiseBlend(outcome5, countBit0);
+            LongVector selected67 = outcome6.bitwiseBlend(outcome7, countBit0);
+            LongVector selected03 = selected01.bitwiseBlend(selected23, countBit1);
+            LongVector selected47 = selected45.bitwiseBlend(selected67, countBit1);
+            LongVector selected07 = selected03.bitwiseBlend(selected47, countBit2);
+            selected07.bitwiseBlend(outcome8, countBit3).intoArray(nextRow, wordIndex);
+        }
+
+        /* The words that don't fill a whole vector are finished one at a
+           time. */
+        for (; wordIndex < wordCount; wordIndex++) {
+            nextRow[wordIndex] = BitPackedGridEngine.nextWord(lifeRule, northWestRow[wordIndex], northRow[wordIndex],
+                                                              northEastRow[wordIndex], westRow[wordIndex],
+                                                              centerRow[wordIndex], eastRow[wordIndex],
+                                                              southWestRow[wordIndex], southRow[wordIndex],
+                                                              southEastRow[wordIndex]);
+        }
+    }
+
+    /**
+     * This method is shorthand for the lanewise exclusive or of two vectors.
+     *
+     * @param leftWords  The first vector.
+     * @param rightWords The second vector.
+     * @return           The lanewise exclusive or of the two vectors.
+     */
+    private static LongVector xor(final LongVector leftWords, final LongVector rightWords) {
+        return leftWords.lanewise(VectorOperators.XOR, rightWords);
+    }
+}